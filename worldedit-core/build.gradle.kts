@@ -3,6 +3,8 @@
 plugins {
     `java-library`
     antlr
+
+    alias(libs.plugins.jmh)
 }
 
 project.description = "Core"
@@ -64,12 +66,29 @@
     testRuntimeOnly(libs.log4jCore)
     testImplementation(libs.adventureNbt)
     testImplementation(libs.parallelgzip)
+
+    // Benchmarks
+    jmhImplementation(libs.lz4Java)
+    jmhImplementation(libs.sparsebitset)
+    jmhImplementation(libs.parallelgzip)
+    jmhImplementation(libs.adventure)
+    jmhImplementation(libs.adventureNbt)
+    jmhImplementation(libs.adventureTextMiniMessage)
+    jmhRuntimeOnly(libs.log4jCore)
 }
 
 tasks.named<Test>("test") {
     maxHeapSize = "1G"
 }
 
+// Run with `./gradlew :worldedit-core:jmh`, optionally restricted with e.g. `-PjmhIncludes=CharBlocksBenchmark`
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    includeTests.set(true)
+    resultFormat.set("JSON")
+    project.findProperty("jmhIncludes")?.let { includes.set(listOf(it.toString())) }
+}
+
 tasks.withType<JavaCompile>().configureEach {
     dependsOn(":worldedit-libs:build")
     options.compilerArgs.add("-Aarg.name.key.prefix=")
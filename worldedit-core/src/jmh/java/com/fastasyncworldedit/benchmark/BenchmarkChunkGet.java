@@ -0,0 +1,106 @@
+package com.fastasyncworldedit.benchmark;
+
+import com.fastasyncworldedit.core.extent.processor.heightmap.HeightMapType;
+import com.fastasyncworldedit.core.queue.IChunkSet;
+import com.fastasyncworldedit.core.queue.implementation.blocks.CharGetBlocks;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.biome.BiomeType;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Future;
+
+/**
+ * In-memory chunk without a world, holding only block data.
+ */
+public class BenchmarkChunkGet extends CharGetBlocks {
+
+    public BenchmarkChunkGet(int minSectionPosition, int maxSectionPosition) {
+        super(minSectionPosition, maxSectionPosition);
+    }
+
+    @Override
+    public BiomeType getBiomeType(int x, int y, int z) {
+        return null;
+    }
+
+    @Override
+    public int getSkyLight(int x, int y, int z) {
+        return 15;
+    }
+
+    @Override
+    public int getEmittedLight(int x, int y, int z) {
+        return 0;
+    }
+
+    @Override
+    public int[] getHeightMap(HeightMapType type) {
+        return new int[256];
+    }
+
+    @Override
+    public <T extends Future<T>> T call(IChunkSet set, Runnable finalize) {
+        finalize.run();
+        return null;
+    }
+
+    @Override
+    public CompoundTag getEntity(UUID uuid) {
+        return null;
+    }
+
+    @Override
+    public boolean isCreateCopy() {
+        return false;
+    }
+
+    @Override
+    public void setCreateCopy(boolean createCopy) {
+    }
+
+    @Override
+    public void setLightingToGet(char[][] lighting, int startSectionIndex, int endSectionIndex) {
+    }
+
+    @Override
+    public void setSkyLightingToGet(char[][] lighting, int startSectionIndex, int endSectionIndex) {
+    }
+
+    @Override
+    public void setHeightmapToGet(HeightMapType type, int[] data) {
+    }
+
+    @Override
+    public int getMaxY() {
+        return (getMaxSectionPosition() << 4) + 15;
+    }
+
+    @Override
+    public int getMinY() {
+        return getMinSectionPosition() << 4;
+    }
+
+    @Override
+    public Map<BlockVector3, CompoundTag> getTiles() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public CompoundTag getTile(int x, int y, int z) {
+        return null;
+    }
+
+    @Override
+    public Set<CompoundTag> getEntities() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public void removeSectionLighting(int layer, boolean sky) {
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.fastasyncworldedit.benchmark;
+
+import com.fastasyncworldedit.util.StubPlatform;
+import com.sk89q.worldedit.LocalConfiguration;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.event.platform.PlatformsRegisteredEvent;
+import com.sk89q.worldedit.extension.platform.Capability;
+import com.sk89q.worldedit.extension.platform.Preference;
+import com.sk89q.worldedit.world.registry.Registries;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Server-less platform for benchmarks, providing the bundled block registry.
+ */
+public class BenchmarkPlatform extends StubPlatform {
+
+    private static boolean registered;
+
+    private final LocalConfiguration configuration = new LocalConfiguration() {
+        @Override
+        public void load() {
+        }
+    };
+
+    /**
+     * Register the benchmark platform with WorldEdit, if not already registered.
+     */
+    public static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        WorldEdit.getInstance().getPlatformManager().register(new BenchmarkPlatform());
+        WorldEdit.getInstance().getEventBus().post(new PlatformsRegisteredEvent());
+        registered = true;
+    }
+
+    @Override
+    public Registries getRegistries() {
+        return BenchmarkRegistries.getInstance();
+    }
+
+    @Override
+    public LocalConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    @Override
+    public Map<Capability, Preference> getCapabilities() {
+        Map<Capability, Preference> capabilities = new EnumMap<>(Capability.class);
+        for (Capability capability : Capability.values()) {
+            capabilities.put(capability, Preference.NORMAL);
+        }
+        return capabilities;
+    }
+
+}
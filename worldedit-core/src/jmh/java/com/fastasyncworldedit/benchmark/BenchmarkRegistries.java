@@ -0,0 +1,61 @@
+package com.fastasyncworldedit.benchmark;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.sk89q.worldedit.world.registry.BlockRegistry;
+import com.sk89q.worldedit.world.registry.BundledBlockRegistry;
+import com.sk89q.worldedit.world.registry.BundledRegistries;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Registries backed by the block list bundled with WorldEdit. Blocks have no properties, so every block type has a
+ * single state.
+ */
+public class BenchmarkRegistries extends BundledRegistries {
+
+    private static final BenchmarkRegistries INSTANCE = new BenchmarkRegistries();
+
+    private final BlockRegistry blockRegistry = new BundledBlockRegistry() {
+        private final List<String> blocks = loadBlocks();
+
+        @Override
+        public Collection<String> values() {
+            return blocks;
+        }
+    };
+
+    private BenchmarkRegistries() {
+    }
+
+    public static BenchmarkRegistries getInstance() {
+        return INSTANCE;
+    }
+
+    private static List<String> loadBlocks() {
+        try (Reader reader = new InputStreamReader(
+                BundledRegistries.class.getResourceAsStream("blocks.117.json"),
+                StandardCharsets.UTF_8
+        )) {
+            List<String> blocks = new ArrayList<>();
+            for (JsonElement element : JsonParser.parseReader(reader).getAsJsonArray()) {
+                blocks.add(element.getAsJsonObject().get("id").getAsString());
+            }
+            return blocks;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read bundled block list", e);
+        }
+    }
+
+    @Override
+    public BlockRegistry getBlockRegistry() {
+        return blockRegistry;
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.fastasyncworldedit.benchmark;
+
+import com.fastasyncworldedit.core.history.MemoryOptimizedHistory;
+import com.fastasyncworldedit.core.history.change.MutableBlockChange;
+import com.fastasyncworldedit.core.history.changeset.FaweStreamChangeSet;
+import com.sk89q.worldedit.world.NullWorld;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing and reading block changes of a {@link FaweStreamChangeSet}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChangeSetBenchmark {
+
+    private static final int SIZE = 64;
+
+    private int from;
+    private int to;
+    private FaweStreamChangeSet written;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        BenchmarkPlatform.register();
+        from = BlockTypes.STONE.getDefaultState().getOrdinal();
+        to = BlockTypes.DIRT.getDefaultState().getOrdinal();
+        written = write();
+    }
+
+    private FaweStreamChangeSet write() throws IOException {
+        FaweStreamChangeSet changeSet = new MemoryOptimizedHistory(NullWorld.getInstance());
+        for (int y = 0; y < SIZE; y++) {
+            for (int z = 0; z < SIZE; z++) {
+                for (int x = 0; x < SIZE; x++) {
+                    changeSet.add(x, y, z, from, to);
+                }
+            }
+        }
+        changeSet.close();
+        return changeSet;
+    }
+
+    @Benchmark
+    public FaweStreamChangeSet writeChanges() throws IOException {
+        return write();
+    }
+
+    @Benchmark
+    public void readChanges(Blackhole blackhole) throws IOException {
+        Iterator<MutableBlockChange> iterator = written.getBlockIterator(false);
+        while (iterator.hasNext()) {
+            blackhole.consume(iterator.next().ordinal);
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.fastasyncworldedit.benchmark;
+
+import com.fastasyncworldedit.core.queue.implementation.blocks.CharBlocks;
+import com.fastasyncworldedit.core.queue.implementation.blocks.CharSetBlocks;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Block access on the char arrays backing chunk gets and sets.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CharBlocksBenchmark {
+
+    private static final int BLOCKS = 16 * 16 * 256;
+
+    private CharBlocks blocks;
+    private int[] randomIndices;
+    private char stone;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkPlatform.register();
+        stone = BlockTypes.STONE.getDefaultState().getOrdinalChar();
+        Random random = new Random(0);
+        randomIndices = new int[BLOCKS];
+        for (int i = 0; i < BLOCKS; i++) {
+            randomIndices[i] = random.nextInt(BLOCKS);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setupChunk() {
+        blocks = CharSetBlocks.newInstance();
+        for (int y = 0; y < 256; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    blocks.set(x, y, z, stone);
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownChunk() {
+        ((CharSetBlocks) blocks).recycle();
+    }
+
+    @Benchmark
+    public void setSequential() {
+        for (int y = 0; y < 256; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    blocks.set(x, y, z, stone);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void getSequential(Blackhole blackhole) {
+        for (int y = 0; y < 256; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    blackhole.consume(blocks.get(x, y, z));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void getRandom(Blackhole blackhole) {
+        for (int index : randomIndices) {
+            blackhole.consume(blocks.get(index & 15, index >> 8, (index >> 4) & 15));
+        }
+    }
+
+    @Benchmark
+    public void setRandom() {
+        for (int index : randomIndices) {
+            blocks.set(index & 15, index >> 8, (index >> 4) & 15, stone);
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.fastasyncworldedit.benchmark;
+
+import com.fastasyncworldedit.core.extent.filter.CountFilter;
+import com.fastasyncworldedit.core.extent.filter.block.CharFilterBlock;
+import com.fastasyncworldedit.core.function.mask.SingleBlockTypeMask;
+import com.fastasyncworldedit.core.queue.Filter;
+import com.fastasyncworldedit.core.queue.implementation.blocks.CharSetBlocks;
+import com.sk89q.worldedit.extent.NullExtent;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Iteration of a {@link CharFilterBlock} over a chunk with count and replace filters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CharFilterBlockBenchmark {
+
+    private BenchmarkChunkGet get;
+    private CharSetBlocks set;
+    private CharFilterBlock filterBlock;
+    private Filter count;
+    private Filter maskedCount;
+    private Filter replace;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkPlatform.register();
+        char stone = BlockTypes.STONE.getDefaultState().getOrdinalChar();
+        char dirt = BlockTypes.DIRT.getDefaultState().getOrdinalChar();
+        Random random = new Random(0);
+        get = new BenchmarkChunkGet(0, 15);
+        for (int y = 0; y < 256; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    get.set(x, y, z, random.nextBoolean() ? stone : dirt);
+                }
+            }
+        }
+        NullExtent extent = new NullExtent();
+        filterBlock = new CharFilterBlock(extent);
+        count = new CountFilter();
+        maskedCount = new SingleBlockTypeMask(extent, BlockTypes.STONE).toFilter(new CountFilter());
+        replace = new SingleBlockTypeMask(extent, BlockTypes.STONE).toFilter(BlockTypes.GRASS_BLOCK.getDefaultState());
+    }
+
+    @Setup(Level.Iteration)
+    public void setupSet() {
+        set = CharSetBlocks.newInstance();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownSet() {
+        set.recycle();
+    }
+
+    private void apply(Filter filter) {
+        filterBlock.initChunk(0, 0);
+        for (int layer = 0; layer < 16; layer++) {
+            filterBlock.initLayer(get, set, layer);
+            filterBlock.filter(filter);
+        }
+    }
+
+    @Benchmark
+    public Filter count() {
+        apply(count);
+        return count;
+    }
+
+    @Benchmark
+    public Filter maskedCount() {
+        apply(maskedCount);
+        return maskedCount;
+    }
+
+    @Benchmark
+    public Filter replace() {
+        apply(replace);
+        return replace;
+    }
+
+}
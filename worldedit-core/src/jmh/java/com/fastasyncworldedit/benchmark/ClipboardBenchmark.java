@@ -0,0 +1,123 @@
+package com.fastasyncworldedit.benchmark;
+
+import com.fastasyncworldedit.core.extent.clipboard.CPUOptimizedClipboard;
+import com.fastasyncworldedit.core.extent.clipboard.DiskOptimizedClipboard;
+import com.fastasyncworldedit.core.extent.clipboard.LinearClipboard;
+import com.fastasyncworldedit.core.extent.clipboard.MemoryOptimizedClipboard;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Block get/set on the different {@link LinearClipboard} implementations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClipboardBenchmark {
+
+    private static final int SIZE = 128;
+
+    @Param({"MEMORY", "CPU", "DISK"})
+    public String type;
+
+    private LinearClipboard clipboard;
+    private File file;
+    private BlockState[] states;
+    private int[] randomIndices;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        BenchmarkPlatform.register();
+        states = new BlockState[]{
+                BlockTypes.STONE.getDefaultState(),
+                BlockTypes.DIRT.getDefaultState(),
+                BlockTypes.GRASS_BLOCK.getDefaultState(),
+                BlockTypes.AIR.getDefaultState()
+        };
+        CuboidRegion region = new CuboidRegion(BlockVector3.ZERO, BlockVector3.at(SIZE - 1, SIZE - 1, SIZE - 1));
+        switch (type) {
+            case "MEMORY" -> clipboard = new MemoryOptimizedClipboard(region);
+            case "CPU" -> clipboard = new CPUOptimizedClipboard(region);
+            case "DISK" -> {
+                file = File.createTempFile("fawe-benchmark", ".bd");
+                clipboard = new DiskOptimizedClipboard(region.getDimensions(), file);
+            }
+            default -> throw new IllegalArgumentException(type);
+        }
+        Random random = new Random(0);
+        randomIndices = new int[SIZE * SIZE * SIZE];
+        for (int i = 0; i < randomIndices.length; i++) {
+            randomIndices[i] = random.nextInt(randomIndices.length);
+        }
+        setSequential();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        clipboard.close();
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    @Benchmark
+    public void setSequential() {
+        for (int y = 0; y < SIZE; y++) {
+            for (int z = 0; z < SIZE; z++) {
+                for (int x = 0; x < SIZE; x++) {
+                    clipboard.setBlock(x, y, z, states[(x ^ y ^ z) & 3]);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void getSequential(Blackhole blackhole) {
+        for (int y = 0; y < SIZE; y++) {
+            for (int z = 0; z < SIZE; z++) {
+                for (int x = 0; x < SIZE; x++) {
+                    blackhole.consume(clipboard.getBlock(x, y, z));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void getRandom(Blackhole blackhole) {
+        for (int index : randomIndices) {
+            blackhole.consume(clipboard.getBlock(index));
+        }
+    }
+
+    @Benchmark
+    public void setRandom() {
+        for (int index : randomIndices) {
+            clipboard.setBlock(index, states[index & 3]);
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.fastasyncworldedit.benchmark;
+
+import com.sk89q.worldedit.internal.expression.Expression;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of expressions as used by expression masks and patterns, once per block.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpressionBenchmark {
+
+    @Param({
+            "y < 64",
+            "x * x + y * y + z * z < 100",
+            "sin(x / 4) * 8 + 64 > y && z % 2 == 0"
+    })
+    public String expression;
+
+    private Expression compiled;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        BenchmarkPlatform.register();
+        compiled = Expression.compile(expression, "x", "y", "z");
+    }
+
+    @Benchmark
+    public double evaluate() {
+        int i = counter++;
+        return compiled.evaluate(i & 15, (i >> 4) & 255, (i >> 12) & 15);
+    }
+
+}
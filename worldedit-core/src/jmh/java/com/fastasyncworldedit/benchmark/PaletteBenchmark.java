@@ -0,0 +1,65 @@
+package com.fastasyncworldedit.benchmark;
+
+import com.fastasyncworldedit.core.FaweCache;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Palette creation for a single section, as done for chunk packets and when writing chunks to the world.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaletteBenchmark {
+
+    /**
+     * Number of distinct block states in the section.
+     */
+    @Param({"1", "16", "256"})
+    public int distinct;
+
+    private char[] section;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkPlatform.register();
+        Random random = new Random(0);
+        char[] states = new char[distinct];
+        for (int i = 0; i < distinct; i++) {
+            // Skip the reserved ordinals
+            states[i] = (char) (BlockTypesCache.ReservedIDs.VOID_AIR + 1 + random.nextInt(BlockTypesCache.states.length - 4));
+        }
+        section = new char[4096];
+        for (int i = 0; i < section.length; i++) {
+            section[i] = states[random.nextInt(distinct)];
+        }
+    }
+
+    @Benchmark
+    public FaweCache.Palette toPalette() {
+        return FaweCache.INSTANCE.toPalette(0, section);
+    }
+
+    @Benchmark
+    public FaweCache.Palette toPaletteUnstretched() {
+        return FaweCache.INSTANCE.toPaletteUnstretched(0, section);
+    }
+
+}
@@ -12,6 +12,7 @@
 import com.fastasyncworldedit.core.util.TaskManager;
 import com.fastasyncworldedit.core.util.TextureUtil;
 import com.fastasyncworldedit.core.util.WEManager;
+import com.fastasyncworldedit.core.util.metrics.PipelineMetrics;
 import com.github.luben.zstd.Zstd;
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.internal.util.LogManagerCompat;
@@ -131,6 +132,7 @@ private Fawe(final IFawe implementation) {
         }, 0);
 
         TaskManager.taskManager().repeat(timer, 1);
+        PipelineMetrics.setupExport();
     }
 
     /**
@@ -509,6 +509,8 @@ public static class QUEUE {
 
         @Create
         public static PROGRESS PROGRESS;
+        @Create
+        public static METRICS METRICS;
         @Comment({
                 "This should equal the number of processors you have",
         })
@@ -553,6 +555,30 @@ public static class QUEUE {
         // wayyy too much...
         public int PRELOAD_CHUNK_COUNT = 512;
 
+        @Comment({
+                "Adjust the target size, the chunks in flight and the preloaded chunks while edits run",
+                " - Based on TPS, free memory and how long chunks take to place",
+                " - The values above are used as the starting point, preloading never exceeds preload-chunk-count",
+                " - Decisions are shown in the console when debug is enabled"
+        })
+        public boolean ADAPTIVE = true;
+
+        @Comment({
+                "Count the block changes of limited edits for each chunk as it is placed, instead of for each block",
+                " - Limits are exact per chunk: a chunk that does not fit in what is left of the limit is not placed,",
+                "   and the edit is cancelled with the max changes message",
+                " - Block checks, entities and fails are still counted for each block",
+        })
+        public boolean COUNT_LIMIT_PER_CHUNK = false;
+
+        @Comment({
+                "Flood fills (e.g. //fill, recursive //replace, //drain) that visit more blocks than this",
+                "keep track of the visited blocks in off-heap memory",
+                " - Reduces garbage collection pauses during very large fills",
+                " - -1 = disabled"
+        })
+        public int OFF_HEAP_VISITOR_THRESHOLD = 1048576;
+
         @Comment({
                 "If pooling is enabled (reduces GC, higher memory usage)",
                 " - Enable to improve performance at the expense of memory",
@@ -587,6 +613,22 @@ public static class PROGRESS {
 
         }
 
+        public static class METRICS {
+
+            @Comment({"Record timings and throughput of the edit pipeline (chunk loading, processing, placement, lighting)",
+                    " - View with /fawe metrics",
+                    " - Has a small overhead, only enable when tuning the queue settings"
+            })
+            public boolean ENABLED = false;
+            @Comment({"How often (in seconds) the metrics are written to the export file",
+                    " - 0 = disabled"
+            })
+            public int EXPORT_INTERVAL = 0;
+            @Comment("File in the FAWE directory to write metrics to, in the Prometheus text format")
+            public String EXPORT_FILE = "metrics.prom";
+
+        }
+
     }
 
     @Comment({
@@ -735,6 +777,7 @@ public static class LIGHTING {
                 " - 0 = None (Do no relighting)",
                 " - 1 = Optimal (Relight changed light sources and changed blocks)",
                 " - 2 = All (Slowly relight every blocks)",
+                " - 3 = Parallel (Like optimal, but relights groups of chunks on multiple threads)",
         })
         public int MODE = 1;
         @Comment({"If existing lighting should be removed before relighting"})
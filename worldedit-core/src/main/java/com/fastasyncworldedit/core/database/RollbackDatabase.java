@@ -4,12 +4,14 @@
 import com.fastasyncworldedit.core.configuration.Settings;
 import com.fastasyncworldedit.core.history.RollbackOptimizedHistory;
 import com.fastasyncworldedit.core.util.MainUtil;
+import com.fastasyncworldedit.core.util.MathMan;
 import com.fastasyncworldedit.core.util.collection.YieldIterable;
 import com.fastasyncworldedit.core.util.task.AsyncNotifyQueue;
 import com.sk89q.worldedit.internal.util.LogManagerCompat;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.world.World;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import org.apache.logging.log4j.Logger;
 
 import javax.annotation.Nonnull;
@@ -33,11 +35,16 @@ public class RollbackDatabase extends AsyncNotifyQueue {
 
     private static final Logger LOGGER = LogManagerCompat.getLogger();
 
+    // Edits spanning more chunks don't store which chunks they touched and are assumed to touch all of them
+    private static final int MAX_CHUNK_BITMAP = 1 << 20;
+
     private final String prefix;
     private final File dbLocation;
     private final World world;
     private final ConcurrentLinkedQueue<RollbackOptimizedHistory> historyChanges = new ConcurrentLinkedQueue<>();
     private Connection connection;
+    // If the R*Tree index over the edit bounds is available
+    private boolean spatialIndex;
 
     RollbackDatabase(World world) throws SQLException, ClassNotFoundException {
         super((t, e) -> e.printStackTrace());
@@ -77,12 +84,96 @@ public Future<Boolean> init() {
                 stmt.executeUpdate();
             } catch (SQLException ignored) {
             } // Already updated
+            try (PreparedStatement stmt = connection.prepareStatement("ALTER TABLE`" + this.prefix + "edits` ADD COLUMN `chunks` BLOB")) {
+                stmt.executeUpdate();
+            } catch (SQLException ignored) {
+            } // Already updated
+            try (PreparedStatement stmt = connection.prepareStatement("CREATE VIRTUAL TABLE IF NOT EXISTS`" + this.prefix +
+                    "edits_index` USING rtree(`id`, `x1`, `x2`, `z1`, `z2`, `y1`, `y2`)")) {
+                stmt.executeUpdate();
+                spatialIndex = true;
+            } catch (SQLException e) {
+                LOGGER.warn("SQLite R*Tree module unavailable, history lookups will not be indexed: {}", e.getMessage());
+            }
+            if (spatialIndex) {
+                // Index edits logged before the index existed
+                try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO`" + this.prefix + "edits_index` " +
+                        "SELECT `rowid`, `x1`, `x2`, `z1`, `z2`, `y1` + 128, `y2` + 128 FROM`" + this.prefix + "edits` " +
+                        "WHERE `rowid` NOT IN (SELECT `id` FROM`" + this.prefix + "edits_index`)")) {
+                    stmt.executeUpdate();
+                }
+            }
             return true;
         });
     }
 
+    /**
+     * Create a bitmap of the chunks within the bounds of the edit which it changed blocks in, or null if unknown or
+     * too large.
+     */
+    private static byte[] toChunkBitmap(RollbackOptimizedHistory history) {
+        LongSet chunks = history.getChunks();
+        if (chunks.isEmpty()) {
+            return null;
+        }
+        BlockVector3 pos1 = history.getMinimumPoint();
+        BlockVector3 pos2 = history.getMaximumPoint();
+        int chunkX1 = pos1.getX() >> 4;
+        int chunkZ1 = pos1.getZ() >> 4;
+        long width = (pos2.getX() >> 4) - chunkX1 + 1;
+        long length = (pos2.getZ() >> 4) - chunkZ1 + 1;
+        if (width * length > MAX_CHUNK_BITMAP) {
+            return null;
+        }
+        byte[] bitmap = new byte[(int) ((width * length + 7) >> 3)];
+        for (long pair : chunks) {
+            int dx = MathMan.unpairIntX(pair) - chunkX1;
+            int dz = MathMan.unpairIntY(pair) - chunkZ1;
+            if (dx < 0 || dz < 0 || dx >= width || dz >= length) {
+                return null;
+            }
+            int index = (int) (dx + dz * width);
+            bitmap[index >> 3] |= (byte) (1 << (index & 7));
+        }
+        return bitmap;
+    }
+
+    /**
+     * Check if an edit with the given bounds and chunk bitmap changed blocks in any chunk between the two positions.
+     */
+    private static boolean touchesChunks(ResultSet result, BlockVector3 pos1, BlockVector3 pos2) throws SQLException {
+        byte[] bitmap = result.getBytes("chunks");
+        if (bitmap == null) {
+            return true;
+        }
+        int chunkX1 = result.getInt("x1") >> 4;
+        int chunkZ1 = result.getInt("z1") >> 4;
+        int width = (result.getInt("x2") >> 4) - chunkX1 + 1;
+        int minX = Math.max(pos1.getBlockX() >> 4, chunkX1);
+        int maxX = Math.min(pos2.getBlockX() >> 4, chunkX1 + width - 1);
+        int minZ = Math.max(pos1.getBlockZ() >> 4, chunkZ1);
+        int maxZ = Math.min(pos2.getBlockZ() >> 4, result.getInt("z2") >> 4);
+        for (int chunkZ = minZ; chunkZ <= maxZ; chunkZ++) {
+            for (int chunkX = minX; chunkX <= maxX; chunkX++) {
+                int index = (chunkX - chunkX1) + (chunkZ - chunkZ1) * width;
+                if ((bitmap[index >> 3] & (1 << (index & 7))) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     public Future<Integer> delete(UUID uuid, int id) {
         return call(() -> {
+            if (spatialIndex) {
+                try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM`" + this.prefix + "edits_index` WHERE " +
+                        "`id` IN (SELECT `rowid` FROM`" + this.prefix + "edits` WHERE `player`=? AND `id`=?)")) {
+                    stmt.setBytes(1, toBytes(uuid));
+                    stmt.setInt(2, id);
+                    stmt.executeUpdate();
+                }
+            }
             try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM`" + this.prefix + "edits` WHERE `player`=? AND `id`=?")) {
                 stmt.setBytes(1, toBytes(uuid));
                 stmt.setInt(2, id);
@@ -134,6 +225,13 @@ public Future<Integer> purge(int diff) {
         long now = System.currentTimeMillis() / 1000;
         final int then = (int) (now - diff);
         return call(() -> {
+            if (spatialIndex) {
+                try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM`" + this.prefix + "edits_index` WHERE " +
+                        "`id` IN (SELECT `rowid` FROM`" + this.prefix + "edits` WHERE `time`<?)")) {
+                    stmt.setInt(1, then);
+                    stmt.executeUpdate();
+                }
+            }
             try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM`" + this.prefix + "edits` WHERE `time`<?")) {
                 stmt.setInt(1, then);
                 return stmt.executeUpdate();
@@ -158,7 +256,7 @@ public Iterable<Supplier<RollbackOptimizedHistory>> getEdits(
         Future<Integer> future = call(() -> {
             try {
                 int count = 0;
-                String stmtStr = ascending ? uuid == null ? "SELECT * FROM`" + this.prefix + "edits` WHERE `time`>? AND `x2`>=? AND" +
+                String stmtStr = spatialIndex ? getIndexedQuery(uuid != null, ascending) : ascending ? uuid == null ? "SELECT * FROM`" + this.prefix + "edits` WHERE `time`>? AND `x2`>=? AND" +
                         " `x1`<=? AND `z2`>=? AND `z1`<=? AND `y2`>=? AND `y1`<=? ORDER BY `time` , `id`" :
                         "SELECT * FROM`" + this.prefix + "edits` WHERE `time`>? AND" +
                                 " `x2`>=? AND `x1`<=? AND `z2`>=? AND `z1`<=? AND `y2`>=? AND `y1`<=? AND `player`=? ORDER BY `time` ASC, `id` ASC" :
@@ -172,8 +270,13 @@ public Iterable<Supplier<RollbackOptimizedHistory>> getEdits(
                     stmt.setInt(3, pos2.getBlockX());
                     stmt.setInt(4, pos1.getBlockZ());
                     stmt.setInt(5, pos2.getBlockZ());
-                    stmt.setByte(6, (byte) (pos1.getBlockY() - 128));
-                    stmt.setByte(7, (byte) (pos2.getBlockY() - 128));
+                    if (spatialIndex) {
+                        stmt.setInt(6, pos1.getBlockY());
+                        stmt.setInt(7, pos2.getBlockY());
+                    } else {
+                        stmt.setByte(6, (byte) (pos1.getBlockY() - 128));
+                        stmt.setByte(7, (byte) (pos2.getBlockY() - 128));
+                    }
                     if (uuid != null) {
                         byte[] uuidBytes = toBytes(uuid);
                         stmt.setBytes(8, uuidBytes);
@@ -183,6 +286,10 @@ public Iterable<Supplier<RollbackOptimizedHistory>> getEdits(
                         return 0;
                     }
                     do {
+                        // Skip edits whose bounds intersect but which didn't change any of the chunks
+                        if (!touchesChunks(result, pos1, pos2)) {
+                            continue;
+                        }
                         count++;
                         Supplier<RollbackOptimizedHistory> history = create(result);
                         yieldIterable.accept(history);
@@ -216,6 +323,13 @@ public Iterable<Supplier<RollbackOptimizedHistory>> getEdits(
         return yieldIterable;
     }
 
+    private String getIndexedQuery(boolean player, boolean ascending) {
+        String order = ascending ? "ASC" : "DESC";
+        return "SELECT e.* FROM`" + this.prefix + "edits` e JOIN`" + this.prefix + "edits_index` i ON e.`rowid` = i.`id` " +
+                "WHERE e.`time`>? AND i.`x2`>=? AND i.`x1`<=? AND i.`z2`>=? AND i.`z1`<=? AND i.`y2`>=? AND i.`y1`<=?" +
+                (player ? " AND e.`player`=?" : "") + " ORDER BY e.`time` " + order + ", e.`id` " + order;
+    }
+
     public Future<?> logEdit(RollbackOptimizedHistory history) {
         historyChanges.add(history);
         return call(this::sendBatch);
@@ -236,9 +350,50 @@ private boolean sendBatch() throws SQLException {
         RollbackOptimizedHistory[] copy = IntStream.range(0, size)
                 .mapToObj(i -> historyChanges.poll()).toArray(RollbackOptimizedHistory[]::new);
 
+        try {
+            if (spatialIndex) {
+                // Replaced edits get a new rowid, so drop their old index entries first
+                try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM`" + this.prefix + "edits_index` WHERE " +
+                        "`id` IN (SELECT `rowid` FROM`" + this.prefix + "edits` WHERE `player`=? AND `id`=?)")) {
+                    for (RollbackOptimizedHistory change : copy) {
+                        stmt.setBytes(1, toBytes(change.getUUID()));
+                        stmt.setInt(2, change.getIndex());
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+            }
+            insertEdits(copy);
+            if (spatialIndex) {
+                try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO`" + this.prefix + "edits_index` " +
+                        "(`id`,`x1`,`x2`,`z1`,`z2`,`y1`,`y2`) SELECT `rowid`,?,?,?,?,?,? FROM`" + this.prefix + "edits` " +
+                        "WHERE `player`=? AND `id`=?")) {
+                    for (RollbackOptimizedHistory change : copy) {
+                        BlockVector3 pos1 = change.getMinimumPoint();
+                        BlockVector3 pos2 = change.getMaximumPoint();
+                        stmt.setInt(1, pos1.getX());
+                        stmt.setInt(2, pos2.getX());
+                        stmt.setInt(3, pos1.getZ());
+                        stmt.setInt(4, pos2.getZ());
+                        stmt.setInt(5, pos1.getY());
+                        stmt.setInt(6, pos2.getY());
+                        stmt.setBytes(7, toBytes(change.getUUID()));
+                        stmt.setInt(8, change.getIndex());
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+            }
+        } finally {
+            commit();
+        }
+        return true;
+    }
+
+    private void insertEdits(RollbackOptimizedHistory[] copy) throws SQLException {
         try (PreparedStatement stmt = connection.prepareStatement("INSERT OR REPLACE INTO`" + this.prefix + "edits`" +
-                " (`player`,`id`,`time`,`x1`,`x2`,`z1`,`z2`,`y1`,`y2`,`command`,`size`) VALUES(?,?,?,?,?,?,?,?,?,?,?)")) {
-            // `player`,`id`,`time`,`x1`,`x2`,`z1`,`z2`,`y1`,`y2`,`command`,`size`) VALUES(?,?,?,?,?,?,?,?,?,?,?)"
+                " (`player`,`id`,`time`,`x1`,`x2`,`z1`,`z2`,`y1`,`y2`,`command`,`size`,`chunks`) VALUES(?,?,?,?,?,?,?,?,?,?,?,?)")) {
+            // `player`,`id`,`time`,`x1`,`x2`,`z1`,`z2`,`y1`,`y2`,`command`,`size`,`chunks`) VALUES(?,?,?,?,?,?,?,?,?,?,?,?)"
             for (RollbackOptimizedHistory change : copy) {
                 UUID uuid = change.getUUID();
                 byte[] uuidBytes = toBytes(uuid);
@@ -257,13 +412,12 @@ private boolean sendBatch() throws SQLException {
                 stmt.setByte(9, (byte) (pos2.getY() - 128));
                 stmt.setString(10, change.getCommand());
                 stmt.setInt(11, change.size());
-                stmt.executeUpdate();
+                stmt.setBytes(12, toChunkBitmap(change));
+                stmt.addBatch();
                 stmt.clearParameters();
             }
-        } finally {
-            commit();
+            stmt.executeBatch();
         }
-        return true;
     }
 
     private void commit() {
@@ -38,6 +38,8 @@ public List<String> getMatchedAliases() {
     public Pattern parseFromSimpleInput(String input, ParserContext context) throws InputParseException {
         try {
             Expression exp = Expression.compile(input.substring(1), "x", "y", "z");
+            // evaluated for every block, so worth compiling ahead of time
+            exp.optimize();
             WorldEditExpressionEnvironment env = new WorldEditExpressionEnvironment(
                     context.requireExtent(), Vector3.ONE, Vector3.ZERO);
             exp.setEnvironment(env);
@@ -2,54 +2,28 @@
 
 import com.sk89q.worldedit.extent.Extent;
 
-import java.util.Arrays;
-
+/**
+ * Looks up the nearest terrain surface starting from the height last found, which is close to the next result when
+ * neighbouring columns are looked up. Surface heights themselves are cached per column by the queue of the edit.
+ */
 public class ExtentHeightCacher extends PassthroughExtent {
 
-    private transient int cacheBotX = Integer.MIN_VALUE;
-    private transient int cacheBotZ = Integer.MIN_VALUE;
-    private transient short[] cacheHeights;
-    private transient int lastY;
+    private transient int lastY = Integer.MIN_VALUE;
 
     public ExtentHeightCacher(Extent extent) {
         super(extent);
     }
 
     public void reset() {
-        cacheBotX = Integer.MIN_VALUE;
-        cacheBotZ = Integer.MIN_VALUE;
-        if (cacheHeights != null) {
-            Arrays.fill(cacheHeights, (short) 0);
-        }
+        lastY = Integer.MIN_VALUE;
     }
 
     @Override
     public int getNearestSurfaceTerrainBlock(int x, int z, int y, int minY, int maxY) {
-        int rx = x - cacheBotX + 16;
-        int rz = z - cacheBotZ + 16;
-        int index;
-        if ((rx & 0xFF) != rx || (rz & 0xFF) != rz) {
-            cacheBotX = x - 16;
-            cacheBotZ = z - 16;
+        if (lastY == Integer.MIN_VALUE) {
             lastY = y;
-            rx = x - cacheBotX + 16;
-            rz = z - cacheBotZ + 16;
-            index = rx + (rz << 8);
-            if (cacheHeights == null) {
-                cacheHeights = new short[65536];
-                Arrays.fill(cacheHeights, (short) minY);
-            } else {
-                Arrays.fill(cacheHeights, (short) minY);
-            }
-        } else {
-            index = rx + (rz << 8);
-        }
-        int result = cacheHeights[index] & 0xFF;
-        if (result == minY) {
-            cacheHeights[index] = (byte) (result = lastY = super
-                    .getNearestSurfaceTerrainBlock(x, z, lastY, minY, maxY));
         }
-        return result;
+        return lastY = super.getNearestSurfaceTerrainBlock(x, z, lastY, minY, maxY);
     }
 
 }
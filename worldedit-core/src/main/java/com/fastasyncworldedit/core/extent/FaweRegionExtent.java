@@ -4,6 +4,9 @@
 import com.fastasyncworldedit.core.extent.processor.ProcessorScope;
 import com.fastasyncworldedit.core.limit.FaweLimit;
 import com.fastasyncworldedit.core.queue.IBatchProcessor;
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.fastasyncworldedit.core.queue.IChunkGet;
+import com.fastasyncworldedit.core.queue.IChunkSet;
 import com.fastasyncworldedit.core.util.ExtentTraverser;
 import com.fastasyncworldedit.core.util.WEManager;
 import com.sk89q.worldedit.WorldEditException;
@@ -19,6 +22,7 @@
 import com.sk89q.worldedit.world.block.BlockState;
 import com.sk89q.worldedit.world.block.BlockStateHolder;
 import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
 
 import javax.annotation.Nullable;
 import java.util.Collection;
@@ -26,6 +30,7 @@
 public abstract class FaweRegionExtent extends ResettableExtent implements IBatchProcessor {
 
     private final FaweLimit limit;
+    private boolean writesProcessed;
 
     /**
      * Create a new instance.
@@ -44,6 +49,39 @@ public FaweRegionExtent(Extent extent, FaweLimit limit) {
 
     public abstract Collection<Region> getRegions();
 
+    /**
+     * Check if an entire chunk section is within the regions. Only used to skip checking the blocks of the section one by
+     * one, so implementations may return false if it is unknown.
+     *
+     * @param bx the minimum x of the section
+     * @param by the minimum y of the section
+     * @param bz the minimum z of the section
+     * @return true if every block of the section is within the regions
+     */
+    protected boolean containsSection(int bx, int by, int bz) {
+        return false;
+    }
+
+    /**
+     * Leave blocks, biomes and tiles set outside the regions to {@link #processSet(IChunk, IChunkGet, IChunkSet)}, which
+     * removes them from each chunk before it is placed, instead of checking them as they are set. Reads are still
+     * checked. Only use this if the extent is also added to the queue as a processor.
+     *
+     * @param writesProcessed if writes are only checked for each chunk
+     */
+    public void setWritesProcessed(boolean writesProcessed) {
+        this.writesProcessed = writesProcessed;
+    }
+
+    /**
+     * If blocks, biomes and tiles set outside the regions are only removed for each chunk.
+     *
+     * @return if writes are only checked for each chunk
+     */
+    public boolean isWritesProcessed() {
+        return writesProcessed;
+    }
+
     public boolean isGlobal() {
         for (Region r : getRegions()) {
             if (r.isGlobal()) {
@@ -73,7 +111,7 @@ public final boolean contains(BlockVector2 p) {
     @Override
     public <B extends BlockStateHolder<B>> boolean setBlock(int x, int y, int z, B block)
             throws WorldEditException {
-        if (!contains(x, y, z)) {
+        if (!writesProcessed && !contains(x, y, z)) {
             if (!limit.MAX_FAILS()) {
                 WEManager.weManager().cancelEditSafe(this, FaweCache.OUTSIDE_REGION);
             }
@@ -84,7 +122,7 @@ public <B extends BlockStateHolder<B>> boolean setBlock(int x, int y, int z, B b
 
     @Override
     public boolean setBiome(int x, int y, int z, BiomeType biome) {
-        if (!contains(x, y, z)) {
+        if (!writesProcessed && !contains(x, y, z)) {
             if (!limit.MAX_FAILS()) {
                 WEManager.weManager().cancelEditSafe(this, FaweCache.OUTSIDE_REGION);
             }
@@ -149,9 +187,58 @@ public Entity createEntity(Location location, BaseEntity entity) {
         return super.createEntity(location, entity);
     }
 
+    @Override
+    public IChunkSet processSet(IChunk chunk, IChunkGet get, IChunkSet set) {
+        if (!processGet(chunk.getX(), chunk.getZ())) {
+            return null;
+        }
+        int bx = chunk.getX() << 4;
+        int bz = chunk.getZ() << 4;
+        for (int layer = set.getMinSectionPosition(); layer <= set.getMaxSectionPosition(); layer++) {
+            int by = layer << 4;
+            char[] blocks = set.hasSection(layer) ? set.loadIfPresent(layer) : null;
+            if (blocks == null || containsSection(bx, by, bz)) {
+                continue;
+            }
+            boolean trimmed = false;
+            for (int y = 0, index = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++, index++) {
+                        if (blocks[index] != BlockTypesCache.ReservedIDs.__RESERVED__ && !contains(bx + x, by + y, bz + z)) {
+                            blocks[index] = BlockTypesCache.ReservedIDs.__RESERVED__;
+                            trimmed = true;
+                        }
+                    }
+                }
+            }
+            if (trimmed) {
+                set.setBlocks(layer, blocks);
+            }
+        }
+        BiomeType[][] biomes = set.getBiomes();
+        if (biomes != null) {
+            for (int i = 0; i < biomes.length; i++) {
+                BiomeType[] section = biomes[i];
+                if (section == null) {
+                    continue;
+                }
+                int by = (set.getMinSectionPosition() + i) << 4;
+                // Biomes are stored per 4x4x4 cell
+                for (int index = 0; index < section.length; index++) {
+                    if (section[index] != null
+                            && !contains(bx + ((index & 3) << 2), by + ((index >> 4) << 2), bz + (index & 12))) {
+                        section[index] = null;
+                    }
+                }
+            }
+        }
+        trimNBT(set, this::contains);
+        return set;
+    }
+
     @Override
     public ProcessorScope getScope() {
-        return ProcessorScope.READING_SET_BLOCKS;
+        return ProcessorScope.REMOVING_BLOCKS;
     }
 
 }
@@ -1,11 +1,18 @@
 package com.fastasyncworldedit.core.extent;
 
+import com.fastasyncworldedit.core.FaweCache;
 import com.fastasyncworldedit.core.extent.filter.block.ExtentFilterBlock;
+import com.fastasyncworldedit.core.extent.processor.ProcessorScope;
 import com.fastasyncworldedit.core.function.generator.GenBase;
 import com.fastasyncworldedit.core.function.generator.Resource;
 import com.fastasyncworldedit.core.internal.exception.FaweException;
 import com.fastasyncworldedit.core.limit.FaweLimit;
 import com.fastasyncworldedit.core.queue.Filter;
+import com.fastasyncworldedit.core.queue.IBatchProcessor;
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.fastasyncworldedit.core.queue.IChunkGet;
+import com.fastasyncworldedit.core.queue.IChunkSet;
+import com.fastasyncworldedit.core.util.ExtentTraverser;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.WorldEditException;
@@ -13,6 +20,7 @@
 import com.sk89q.worldedit.entity.Entity;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.function.pattern.Pattern;
 import com.sk89q.worldedit.math.BlockVector3;
@@ -27,6 +35,7 @@
 import com.sk89q.worldedit.world.block.BlockStateHolder;
 import com.sk89q.worldedit.world.block.BlockType;
 import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
 
 import javax.annotation.Nullable;
 import java.util.Collection;
@@ -35,9 +44,11 @@
 import java.util.Set;
 import java.util.UUID;
 
-public class LimitExtent extends AbstractDelegateExtent {
+public class LimitExtent extends AbstractDelegateExtent implements IBatchProcessor {
 
     private final FaweLimit limit;
+    private final boolean processing;
+    private volatile boolean exhausted;
 
     /**
      * Create a new instance.
@@ -45,8 +56,36 @@ public class LimitExtent extends AbstractDelegateExtent {
      * @param extent the extent
      */
     public LimitExtent(Extent extent, FaweLimit limit) {
+        this(extent, limit, false);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param extent     the extent
+     * @param limit      the limit
+     * @param processing if changes to blocks, biomes and block entities are counted for each chunk set, with this extent
+     *                   added to the queue as a processor, instead of for each block
+     */
+    public LimitExtent(Extent extent, FaweLimit limit, boolean processing) {
         super(extent);
         this.limit = limit;
+        this.processing = processing;
+    }
+
+    private void throwMaxChanges(long amount) {
+        if (!processing) {
+            limit.THROW_MAX_CHANGES(amount);
+        } else if (exhausted || limit.MAX_CHANGES <= amount) {
+            // Counted once the chunks are set, only refuse what can never fit
+            throw FaweCache.MAX_CHANGES;
+        }
+    }
+
+    private void throwExhausted() {
+        if (exhausted) {
+            throw FaweCache.MAX_CHANGES;
+        }
     }
 
     @Override
@@ -232,14 +271,14 @@ public int getNearestSurfaceTerrainBlock(
     @Override
     public void addCaves(Region region) throws WorldEditException {
         limit.THROW_MAX_CHECKS(region.getVolume());
-        limit.THROW_MAX_CHANGES(region.getVolume());
+        throwMaxChanges(region.getVolume());
         super.addCaves(region);
     }
 
     @Override
     public void generate(Region region, GenBase gen) throws WorldEditException {
         limit.THROW_MAX_CHECKS(region.getVolume());
-        limit.THROW_MAX_CHANGES(region.getVolume());
+        throwMaxChanges(region.getVolume());
         super.generate(region, gen);
     }
 
@@ -247,14 +286,14 @@ public void generate(Region region, GenBase gen) throws WorldEditException {
     public void addSchems(Region region, Mask mask, List<ClipboardHolder> clipboards, int rarity, boolean rotate) throws
             WorldEditException {
         limit.THROW_MAX_CHECKS(region.getVolume());
-        limit.THROW_MAX_CHANGES(region.getVolume());
+        throwMaxChanges(region.getVolume());
         super.addSchems(region, mask, clipboards, rarity, rotate);
     }
 
     @Override
     public void spawnResource(Region region, Resource gen, int rarity, int frequency) throws WorldEditException {
         limit.THROW_MAX_CHECKS(region.getVolume());
-        limit.THROW_MAX_CHANGES(region.getVolume());
+        throwMaxChanges(region.getVolume());
         super.spawnResource(region, gen, rarity, frequency);
     }
 
@@ -262,14 +301,14 @@ public void spawnResource(Region region, Resource gen, int rarity, int frequency
     public void addOre(Region region, Mask mask, Pattern material, int size, int frequency, int rarity, int minY, int maxY) throws
             WorldEditException {
         limit.THROW_MAX_CHECKS(region.getVolume());
-        limit.THROW_MAX_CHANGES(region.getVolume());
+        throwMaxChanges(region.getVolume());
         super.addOre(region, mask, material, size, frequency, rarity, minY, maxY);
     }
 
     @Override
     public void addOres(Region region, Mask mask) throws WorldEditException {
         limit.THROW_MAX_CHECKS(region.getVolume());
-        limit.THROW_MAX_CHANGES(region.getVolume());
+        throwMaxChanges(region.getVolume());
         super.addOres(region, mask);
     }
 
@@ -299,13 +338,13 @@ public int countBlocks(Region region, Mask searchMask) {
 
     @Override
     public <B extends BlockStateHolder<B>> int setBlocks(Region region, B block) throws MaxChangedBlocksException {
-        limit.THROW_MAX_CHANGES(region.getVolume());
+        throwMaxChanges(region.getVolume());
         return super.setBlocks(region, block);
     }
 
     @Override
     public int setBlocks(Region region, Pattern pattern) throws MaxChangedBlocksException {
-        limit.THROW_MAX_CHANGES(region.getVolume());
+        throwMaxChanges(region.getVolume());
         return super.setBlocks(region, pattern);
     }
 
@@ -313,41 +352,41 @@ public int setBlocks(Region region, Pattern pattern) throws MaxChangedBlocksExce
     public <B extends BlockStateHolder<B>> int replaceBlocks(Region region, Set<BaseBlock> filter, B replacement) throws
             MaxChangedBlocksException {
         limit.THROW_MAX_CHECKS(region.getVolume());
-        limit.THROW_MAX_CHANGES(region.getVolume());
+        throwMaxChanges(region.getVolume());
         return super.replaceBlocks(region, filter, replacement);
     }
 
     @Override
     public int replaceBlocks(Region region, Set<BaseBlock> filter, Pattern pattern) throws MaxChangedBlocksException {
         limit.THROW_MAX_CHECKS(region.getVolume());
-        limit.THROW_MAX_CHANGES(region.getVolume());
+        throwMaxChanges(region.getVolume());
         return super.replaceBlocks(region, filter, pattern);
     }
 
     @Override
     public int replaceBlocks(Region region, Mask mask, Pattern pattern) throws MaxChangedBlocksException {
         limit.THROW_MAX_CHECKS(region.getVolume());
-        limit.THROW_MAX_CHANGES(region.getVolume());
+        throwMaxChanges(region.getVolume());
         return super.replaceBlocks(region, mask, pattern);
     }
 
     @Override
     public int center(Region region, Pattern pattern) throws MaxChangedBlocksException {
         limit.THROW_MAX_CHECKS(region.getVolume());
-        limit.THROW_MAX_CHANGES(region.getVolume());
+        throwMaxChanges(region.getVolume());
         return super.center(region, pattern);
     }
 
     @Override
     public int setBlocks(Set<BlockVector3> vset, Pattern pattern) {
-        limit.THROW_MAX_CHANGES(vset.size());
+        throwMaxChanges(vset.size());
         return super.setBlocks(vset, pattern);
     }
 
     @Override
     public <T extends Filter> T apply(Region region, T filter, boolean full) {
         limit.THROW_MAX_CHECKS(region.getVolume());
-        limit.THROW_MAX_CHANGES(region.getVolume());
+        throwMaxChanges(region.getVolume());
         return super.apply(region, filter, full);
     }
 
@@ -379,7 +418,7 @@ public <T extends Filter> T apply(Iterable<BlockVector3> positions, T filter) {
             return filter;
         }
         limit.THROW_MAX_CHECKS(size);
-        limit.THROW_MAX_CHANGES(size);
+        throwMaxChanges(size);
         return super.apply(positions, filter);
     }
 
@@ -464,9 +503,13 @@ public BiomeType getBiomeType(int x, int y, int z) {
     @Override
     @Deprecated
     public <T extends BlockStateHolder<T>> boolean setBlock(BlockVector3 position, T block) throws WorldEditException {
-        limit.THROW_MAX_CHANGES();
-        if (block.getNbtData() != null || block.getBlockType().getMaterial().isTile()) {
-            limit.THROW_MAX_BLOCKSTATES();
+        if (processing) {
+            throwExhausted();
+        } else {
+            limit.THROW_MAX_CHANGES();
+            if (block.getNbtData() != null || block.getBlockType().getMaterial().isTile()) {
+                limit.THROW_MAX_BLOCKSTATES();
+            }
         }
         try {
             return super.setBlock(position, block);
@@ -480,9 +523,13 @@ public <T extends BlockStateHolder<T>> boolean setBlock(BlockVector3 position, T
 
     @Override
     public <T extends BlockStateHolder<T>> boolean setBlock(int x, int y, int z, T block) throws WorldEditException {
-        limit.THROW_MAX_CHANGES();
-        if (block.getNbtData() != null || block.getBlockType().getMaterial().isTile()) {
-            limit.THROW_MAX_BLOCKSTATES();
+        if (processing) {
+            throwExhausted();
+        } else {
+            limit.THROW_MAX_CHANGES();
+            if (block.getNbtData() != null || block.getBlockType().getMaterial().isTile()) {
+                limit.THROW_MAX_BLOCKSTATES();
+            }
         }
         try {
             return super.setBlock(x, y, z, block);
@@ -496,8 +543,12 @@ public <T extends BlockStateHolder<T>> boolean setBlock(int x, int y, int z, T b
 
     @Override
     public boolean setTile(int x, int y, int z, CompoundTag tile) throws WorldEditException {
-        limit.THROW_MAX_CHANGES();
-        limit.MAX_BLOCKSTATES();
+        if (processing) {
+            throwExhausted();
+        } else {
+            limit.THROW_MAX_CHANGES();
+            limit.MAX_BLOCKSTATES();
+        }
         try {
             return super.setTile(x, y, z, tile);
         } catch (FaweException e) {
@@ -510,7 +561,11 @@ public boolean setTile(int x, int y, int z, CompoundTag tile) throws WorldEditEx
 
     @Override
     public boolean setBiome(BlockVector3 position, BiomeType biome) {
-        limit.THROW_MAX_CHANGES();
+        if (processing) {
+            throwExhausted();
+        } else {
+            limit.THROW_MAX_CHANGES();
+        }
         try {
             return super.setBiome(position, biome);
         } catch (FaweException e) {
@@ -523,7 +578,11 @@ public boolean setBiome(BlockVector3 position, BiomeType biome) {
 
     @Override
     public boolean setBiome(int x, int y, int z, BiomeType biome) {
-        limit.THROW_MAX_CHANGES();
+        if (processing) {
+            throwExhausted();
+        } else {
+            limit.THROW_MAX_CHANGES();
+        }
         try {
             return super.setBiome(x, y, z, biome);
         } catch (FaweException e) {
@@ -534,4 +593,70 @@ public boolean setBiome(int x, int y, int z, BiomeType biome) {
         }
     }
 
+    @Override
+    public IChunkSet processSet(IChunk chunk, IChunkGet get, IChunkSet set) {
+        if (!processing) {
+            return set;
+        }
+        if (exhausted) {
+            return null;
+        }
+        long changes = 0;
+        for (int layer = set.getMinSectionPosition(); layer <= set.getMaxSectionPosition(); layer++) {
+            char[] blocks = set.hasSection(layer) ? set.loadIfPresent(layer) : null;
+            if (blocks == null) {
+                continue;
+            }
+            for (char block : blocks) {
+                if (block != BlockTypesCache.ReservedIDs.__RESERVED__) {
+                    changes++;
+                }
+            }
+        }
+        BiomeType[][] biomes = set.getBiomes();
+        if (biomes != null) {
+            for (BiomeType[] section : biomes) {
+                if (section == null) {
+                    continue;
+                }
+                for (BiomeType biome : section) {
+                    if (biome != null) {
+                        changes++;
+                    }
+                }
+            }
+        }
+        // The blocks of tiles are already counted as changes
+        int tiles = set.getTiles().size();
+        if ((changes == 0 && tiles == 0) || limit.reserve(changes, tiles)) {
+            return set;
+        }
+        // The edit is cancelled the next time it changes a block, or once it is flushed
+        exhausted = true;
+        return null;
+    }
+
+    @Override
+    public Operation commit() {
+        Operation operation = super.commit();
+        // Chunks that did not fit in the limit have been dropped while the queue was flushed
+        if (processing) {
+            throwExhausted();
+        }
+        return operation;
+    }
+
+    @Override
+    public Extent construct(Extent child) {
+        if (getExtent() != child) {
+            new ExtentTraverser<Extent>(this).setNext(child);
+        }
+        return this;
+    }
+
+    @Override
+    public ProcessorScope getScope() {
+        return ProcessorScope.REMOVING_BLOCKS;
+    }
+
 }
@@ -1,32 +1,23 @@
 package com.fastasyncworldedit.core.extent;
 
 import com.fastasyncworldedit.core.limit.FaweLimit;
-import com.fastasyncworldedit.core.queue.IChunk;
-import com.fastasyncworldedit.core.queue.IChunkGet;
-import com.fastasyncworldedit.core.queue.IChunkSet;
 import com.fastasyncworldedit.core.regions.RegionWrapper;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.regions.Region;
-import com.sk89q.worldedit.regions.RegionIntersection;
 
 import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.Future;
 
 public class MultiRegionExtent extends FaweRegionExtent {
 
-    @Nullable
-    private final RegionIntersection intersection;
-    @Nullable
-    private final RegionIntersection disallowedIntersection;
     @Nullable
     private final Region[] allowed;
     @Nullable
     private final Region[] disallowed;
-    @Nullable
-    private Region region;
+    // The allowed region last found to contain a position, which is checked first. It may be stale when used from
+    // several threads, but is always a valid index.
     private int index;
 
     /**
@@ -42,26 +33,21 @@ public MultiRegionExtent(Extent extent, FaweLimit limit, @Nullable Region[] allo
         super(extent, limit);
         this.index = 0;
         if (allowed != null && !allowed[0].isGlobal()) {
-            this.region = allowed[0];
             this.allowed = allowed;
-            this.intersection = new RegionIntersection(Arrays.asList(allowed));
         } else {
-            this.region = null;
             this.allowed = null;
-            this.intersection = null;
         }
         if (disallowed != null && disallowed.length > 0) {
             this.disallowed = disallowed;
-            this.disallowedIntersection = new RegionIntersection(Arrays.asList(disallowed));
         } else {
             this.disallowed = null;
-            this.disallowedIntersection = null;
         }
     }
 
     @Override
     public boolean contains(int x, int y, int z) {
-        if (region != null && region.contains(x, y, z)) {
+        int last = index;
+        if (allowed != null && allowed[last].contains(x, y, z)) {
             if (disallowed != null) {
                 for (final Region disallow : disallowed) {
                     if (disallow.contains(x, y, z)) {
@@ -74,10 +60,8 @@ public boolean contains(int x, int y, int z) {
         boolean result = allowed == null;
         if (!result) {
             for (int i = 0; i < allowed.length; i++) {
-                if (i != index) {
-                    Region current = allowed[i];
-                    if (current.contains(x, y, z)) {
-                        region = current;
+                if (i != last) {
+                    if (allowed[i].contains(x, y, z)) {
                         index = i;
                         result = true;
                         break;
@@ -98,7 +82,8 @@ public boolean contains(int x, int y, int z) {
 
     @Override
     public boolean contains(int x, int z) {
-        if (region != null && region.contains(x, z)) {
+        int last = index;
+        if (allowed != null && allowed[last].contains(x, z)) {
             if (disallowed != null) {
                 for (final Region disallow : disallowed) {
                     if (disallow.contains(x, z)) {
@@ -111,10 +96,8 @@ public boolean contains(int x, int z) {
         boolean result = allowed == null;
         if (!result) {
             for (int i = 0; i < allowed.length; i++) {
-                if (i != index) {
-                    Region current = allowed[i];
-                    if (current.contains(x, z)) {
-                        region = current;
+                if (i != last) {
+                    if (allowed[i].contains(x, z)) {
                         index = i;
                         result = true;
                         break;
@@ -133,6 +116,19 @@ public boolean contains(int x, int z) {
         return true;
     }
 
+    @Override
+    protected boolean containsSection(int bx, int by, int bz) {
+        if (allowed == null || disallowed != null) {
+            return allowed == null && disallowed == null;
+        }
+        for (Region region : allowed) {
+            if (region.containsEntireCuboid(bx, bx + 15, by, by + 15, bz, bz + 15)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Get all allowed regions
      */
@@ -146,45 +142,16 @@ public Collection<Region> getRegions() {
 
     @Override
     public boolean processGet(int chunkX, int chunkZ) {
-        boolean result = allowed == null;
-        if (!result) {
-            for (Region region : allowed) {
-                if (region.containsChunk(chunkX, chunkZ)) {
-                    result = true;
-                    break;
-                }
-            }
-        }
-        if (!result || disallowed == null) {
-            return result;
+        // Chunks only partially within a disallowed region still have allowed blocks
+        if (allowed == null) {
+            return true;
         }
-        for (Region region : disallowed) {
+        for (Region region : allowed) {
             if (region.containsChunk(chunkX, chunkZ)) {
-                return false;
+                return true;
             }
         }
-        return true;
-    }
-
-    @Override
-    public IChunkSet processSet(IChunk chunk, IChunkGet get, IChunkSet set) {
-        if (intersection != null) {
-            set = intersection.processSet(chunk, get, set);
-        }
-        if (disallowedIntersection != null) {
-            intersection.processSet(chunk, get, set);
-        }
-        return set;
-    }
-
-    @Override
-    public Future<?> postProcessSet(final IChunk chunk, final IChunkGet get, final IChunkSet set) {
-        return intersection.postProcessSet(chunk, get, set);
-    }
-
-    @Override
-    public void postProcess(IChunk chunk, IChunkGet get, IChunkSet set) {
-        intersection.postProcess(chunk, get, set);
+        return false;
     }
 
 }
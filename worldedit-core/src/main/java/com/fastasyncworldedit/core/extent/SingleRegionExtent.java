@@ -1,15 +1,11 @@
 package com.fastasyncworldedit.core.extent;
 
 import com.fastasyncworldedit.core.limit.FaweLimit;
-import com.fastasyncworldedit.core.queue.IChunk;
-import com.fastasyncworldedit.core.queue.IChunkGet;
-import com.fastasyncworldedit.core.queue.IChunkSet;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.regions.Region;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.concurrent.Future;
 
 public class SingleRegionExtent extends FaweRegionExtent {
 
@@ -41,20 +37,8 @@ public Collection<Region> getRegions() {
     }
 
     @Override
-    public IChunkSet processSet(IChunk chunk, IChunkGet get, IChunkSet set) {
-        return region.processSet(chunk, get, set);
-    }
-
-    @Override
-    public Future<?> postProcessSet(IChunk chunk, IChunkGet get, IChunkSet set) {
-        // Most likely will do nothing, but perhaps people will find some fun way of using this via API (though doubtful)
-        return region.postProcessSet(chunk, get, set);
-    }
-
-    @Override
-    public void postProcess(IChunk chunk, IChunkGet get, IChunkSet set) {
-        // Most likely will do nothing, but perhaps people will find some fun way of using this via API (though doubtful)
-        region.postProcess(chunk, get, set);
+    protected boolean containsSection(int bx, int by, int bz) {
+        return region.containsEntireCuboid(bx, bx + 15, by, by + 15, bz, bz + 15);
     }
 
     @Override
@@ -2,9 +2,12 @@
 
 import com.fastasyncworldedit.core.Fawe;
 import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.extent.filter.block.AbstractFilterBlock;
+import com.fastasyncworldedit.core.function.visitor.Order;
 import com.fastasyncworldedit.core.internal.exception.FaweClipboardVersionMismatchException;
 import com.fastasyncworldedit.core.jnbt.streamer.IntValueReader;
 import com.fastasyncworldedit.core.math.IntTriple;
+import com.fastasyncworldedit.core.math.MutableBlockVector3;
 import com.fastasyncworldedit.core.util.MainUtil;
 import com.fastasyncworldedit.core.util.ReflectionUtils;
 import com.sk89q.jnbt.CompoundTag;
@@ -12,6 +15,7 @@
 import com.sk89q.jnbt.Tag;
 import com.sk89q.worldedit.entity.BaseEntity;
 import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import com.sk89q.worldedit.internal.util.LogManagerCompat;
 import com.sk89q.worldedit.math.BlockVector3;
@@ -26,6 +30,7 @@
 import com.sk89q.worldedit.world.block.BlockTypes;
 import org.apache.logging.log4j.Logger;
 
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.DataInputStream;
 import java.io.File;
@@ -37,31 +42,62 @@
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
 /**
  * A clipboard with disk backed storage. (lower memory + loads on crash)
- * - Uses an auto closable RandomAccessFile for getting / setting id / data
+ * - Blocks are stored in 16x16x16 pages, in the same layout as a chunk section. A page index maps every page to its
+ * slot in the file, or to a single block state if the whole page is that block. Slots are only allocated when a page
+ * first receives differing blocks, so empty or uniform areas take no space.
+ * - Pages are mapped lazily in segments, allowing clipboards larger than 2GB on disk.
  * - I don't know how to reduce nbt / entities to O(2) complexity, so it is stored in memory.
  */
 public class DiskOptimizedClipboard extends LinearClipboard {
 
     private static final Logger LOGGER = LogManagerCompat.getLogger();
 
-    private static final int VERSION = 1;
-    private static final int HEADER_SIZE = 22;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+
+    private static final int HEADER_VERSION = 2;
+    private static final int HEADER_WIDTH = 4;
+    private static final int HEADER_HEIGHT = 8;
+    private static final int HEADER_LENGTH = 12;
+    private static final int HEADER_ORIGIN = 16;
+    private static final int HEADER_OFFSET = 28;
+    private static final int HEADER_HAS_BIOMES = 40;
+    private static final int HEADER_BIOME_LENGTH = 44;
+    private static final int HEADER_ALLOCATED_PAGES = 48;
+
+    private static final int PAGE_VOLUME = 4096;
+    private static final int PAGE_BYTES = PAGE_VOLUME << 1;
+    // 64MiB per mapped segment
+    static final int SEGMENT_PAGES = 8192;
 
     private final HashMap<IntTriple, CompoundTag> nbtMap;
     private final File file;
 
+    private final int pagesX;
+    private final int pagesY;
+    private final int pagesZ;
+    private final int pageCount;
+    private int biomeStart;
+    private int biomeLength;
+    private long dataStart;
+    private int allocatedPages;
+
     private RandomAccessFile braf;
     private MappedByteBuffer byteBuffer;
+    // Replaced, never modified, once published so that it can be read without holding the lock
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
 
     private FileChannel fileChannel;
     private boolean hasBiomes;
@@ -91,13 +127,24 @@ public DiskOptimizedClipboard(BlockVector3 dimensions) {
 
     public DiskOptimizedClipboard(BlockVector3 dimensions, File file) {
         super(dimensions, BlockVector3.ZERO);
-        if (HEADER_SIZE + ((long) getVolume() << 1) >= Integer.MAX_VALUE) {
+        this.pagesX = (getWidth() + 15) >> 4;
+        this.pagesY = (getHeight() + 15) >> 4;
+        this.pagesZ = (getLength() + 15) >> 4;
+        long pages = (long) pagesX * pagesY * pagesZ;
+        if (HEADER_SIZE + (pages << 3) >= Integer.MAX_VALUE) {
             throw new IllegalArgumentException(
                     "Dimensions too large for this clipboard format. Use //lazycopy for large selections.");
-        } else if (HEADER_SIZE + ((long) getVolume() << 1) + (long) ((getHeight() >> 2) + 1) * ((getLength() >> 2) + 1) * ((getWidth() >> 2) + 1) >= Integer.MAX_VALUE) {
+        }
+        this.pageCount = (int) pages;
+        // Since biomes represent a 4x4x4 cube, we store fewer biome bytes that volume at 1 byte per biome
+        // +1 to each too allow for cubes that lie across the region boundary
+        long biomes = (long) ((getHeight() >> 2) + 1) * ((getLength() >> 2) + 1) * ((getWidth() >> 2) + 1);
+        if (HEADER_SIZE + ((long) pageCount << 3) + biomes >= Integer.MAX_VALUE) {
             LOGGER.error("Dimensions are too large for biomes to be stored in a DiskOptimizedClipboard");
             canHaveBiomes = false;
+            biomes = 0;
         }
+        setLayout((int) biomes);
         nbtMap = new HashMap<>();
         try {
             this.file = file;
@@ -113,15 +160,15 @@ public DiskOptimizedClipboard(BlockVector3 dimensions, File file) {
                 e.printStackTrace();
             }
             this.braf = new RandomAccessFile(file, "rw");
-            long fileLength = (long) getVolume() * 2L + (long) HEADER_SIZE;
             braf.setLength(0);
-            braf.setLength(fileLength);
+            braf.setLength(dataStart);
             init();
             // write getLength() etc
-            byteBuffer.putChar(2, (char) (VERSION));
-            byteBuffer.putChar(4, (char) getWidth());
-            byteBuffer.putChar(6, (char) getHeight());
-            byteBuffer.putChar(8, (char) getLength());
+            byteBuffer.putChar(HEADER_VERSION, (char) (VERSION));
+            byteBuffer.putInt(HEADER_WIDTH, getWidth());
+            byteBuffer.putInt(HEADER_HEIGHT, getHeight());
+            byteBuffer.putInt(HEADER_LENGTH, getLength());
+            byteBuffer.putInt(HEADER_BIOME_LENGTH, biomeLength);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -129,15 +176,20 @@ public DiskOptimizedClipboard(BlockVector3 dimensions, File file) {
 
     public DiskOptimizedClipboard(File file) {
         super(readSize(file), BlockVector3.ZERO);
+        this.pagesX = (getWidth() + 15) >> 4;
+        this.pagesY = (getHeight() + 15) >> 4;
+        this.pagesZ = (getLength() + 15) >> 4;
+        this.pageCount = pagesX * pagesY * pagesZ;
         nbtMap = new HashMap<>();
         try {
             this.file = file;
             this.braf = new RandomAccessFile(file, "rw");
-            braf.setLength(file.length());
+            braf.seek(HEADER_BIOME_LENGTH);
+            setLayout(braf.readInt());
+            canHaveBiomes = biomeLength > 0;
             init();
-            if (braf.length() - HEADER_SIZE == ((long) getVolume() << 1) + (long) ((getHeight() >> 2) + 1) * ((getLength() >> 2) + 1) * ((getWidth() >> 2) + 1)) {
-                hasBiomes = true;
-            }
+            hasBiomes = byteBuffer.get(HEADER_HAS_BIOMES) != 0;
+            allocatedPages = byteBuffer.getInt(HEADER_ALLOCATED_PAGES);
             getAndSetOffsetAndOrigin();
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -151,13 +203,21 @@ private static BlockVector3 readSize(File file) {
             if (version != VERSION) {
                 throw new FaweClipboardVersionMismatchException();
             }
-            return BlockVector3.at(is.readChar(), is.readChar(), is.readChar());
+            return BlockVector3.at(is.readInt(), is.readInt(), is.readInt());
         } catch (IOException e) {
             e.printStackTrace();
             throw new RuntimeException(e);
         }
     }
 
+    // Header, then the page index, then biomes, then the pages themselves
+    private void setLayout(int biomeLength) {
+        this.biomeLength = biomeLength;
+        this.biomeStart = HEADER_SIZE + (pageCount << 3);
+        long end = (long) biomeStart + biomeLength;
+        this.dataStart = (end + PAGE_BYTES - 1) / PAGE_BYTES * PAGE_BYTES;
+    }
+
     @Override
     public URI getURI() {
         return file.toURI();
@@ -171,7 +231,7 @@ private void init() throws IOException {
         if (this.fileChannel == null) {
             this.fileChannel = braf.getChannel();
             this.fileChannel.lock();
-            this.byteBuffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, braf.length());
+            this.byteBuffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) biomeStart + biomeLength);
         }
     }
 
@@ -180,18 +240,8 @@ private boolean initBiome() {
             return false;
         }
         if (!hasBiomes) {
-            try {
-                hasBiomes = true;
-                close();
-                this.braf = new RandomAccessFile(file, "rw");
-                // Since biomes represent a 4x4x4 cube, we store fewer biome bytes that volume at 1 byte per biome
-                // +1 to each too allow for cubes that lie across the region boundary
-                this.braf.setLength(HEADER_SIZE + ((long) getVolume() << 1) + (long) ((getHeight() >> 2) + 1) * ((getLength() >> 2) + 1) * ((getWidth() >> 2) + 1));
-                init();
-            } catch (IOException e) {
-                e.printStackTrace();
-                return false;
-            }
+            hasBiomes = true;
+            byteBuffer.put(HEADER_HAS_BIOMES, (byte) 1);
         }
         return true;
     }
@@ -216,7 +266,7 @@ public boolean setBiome(int x, int y, int z, BiomeType biome) {
     public void setBiome(int index, BiomeType biome) {
         if (initBiome()) {
             try {
-                byteBuffer.put(HEADER_SIZE + (getVolume() << 1) + index, (byte) biome.getInternalId());
+                byteBuffer.put(biomeStart + index, (byte) biome.getInternalId());
             } catch (IndexOutOfBoundsException e) {
                 LOGGER.info((long) (getHeight() >> 2) * (getLength() >> 2) * (getWidth() >> 2));
                 LOGGER.info(index);
@@ -230,7 +280,7 @@ public BiomeType getBiome(int index) {
         if (!hasBiomes()) {
             return null;
         }
-        int biomeId = byteBuffer.get(HEADER_SIZE + (getVolume() << 1) + index) & 0xFF;
+        int biomeId = byteBuffer.get(biomeStart + index) & 0xFF;
         return BiomeTypes.get(biomeId);
     }
 
@@ -239,7 +289,7 @@ public void streamBiomes(IntValueReader task) {
         if (!hasBiomes()) {
             return;
         }
-        int mbbIndex = HEADER_SIZE + (getVolume() << 1);
+        int mbbIndex = biomeStart;
         try {
             for (int y = 0; y < getHeight(); y++) {
                 for (int z = 0; z < getLength(); z++) {
@@ -282,9 +332,9 @@ public void setOrigin(BlockVector3 origin) {
         super.setOrigin(origin);
         origin = origin.subtract(offset);
         try {
-            byteBuffer.putShort(10, (short) origin.getBlockX());
-            byteBuffer.putShort(12, (short) origin.getBlockY());
-            byteBuffer.putShort(14, (short) origin.getBlockZ());
+            byteBuffer.putInt(HEADER_ORIGIN, origin.getBlockX());
+            byteBuffer.putInt(HEADER_ORIGIN + 4, origin.getBlockY());
+            byteBuffer.putInt(HEADER_ORIGIN + 8, origin.getBlockZ());
         } catch (Throwable e) {
             e.printStackTrace();
         }
@@ -294,28 +344,33 @@ public void setOrigin(BlockVector3 origin) {
     protected void setOffset(BlockVector3 offset) {
         super.setOffset(offset);
         try {
-            byteBuffer.putShort(16, (short) offset.getBlockX());
-            byteBuffer.putShort(18, (short) offset.getBlockY());
-            byteBuffer.putShort(20, (short) offset.getBlockZ());
+            byteBuffer.putInt(HEADER_OFFSET, offset.getBlockX());
+            byteBuffer.putInt(HEADER_OFFSET + 4, offset.getBlockY());
+            byteBuffer.putInt(HEADER_OFFSET + 8, offset.getBlockZ());
         } catch (Throwable e) {
             e.printStackTrace();
         }
     }
 
     private void getAndSetOffsetAndOrigin() {
-        int x = byteBuffer.getShort(16);
-        int y = byteBuffer.getShort(18);
-        int z = byteBuffer.getShort(20);
+        int x = byteBuffer.getInt(HEADER_OFFSET);
+        int y = byteBuffer.getInt(HEADER_OFFSET + 4);
+        int z = byteBuffer.getInt(HEADER_OFFSET + 8);
         super.setOffset(BlockVector3.at(x, y, z));
-        int ox = byteBuffer.getShort(10);
-        int oy = byteBuffer.getShort(12);
-        int oz = byteBuffer.getShort(14);
+        int ox = byteBuffer.getInt(HEADER_ORIGIN);
+        int oy = byteBuffer.getInt(HEADER_ORIGIN + 4);
+        int oz = byteBuffer.getInt(HEADER_ORIGIN + 8);
         super.setOrigin(BlockVector3.at(ox, oy, oz).add(offset));
     }
 
     @Override
     public void flush() {
         byteBuffer.force();
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null) {
+                segment.force();
+            }
+        }
     }
 
     private void closeDirectBuffer(ByteBuffer cb) {
@@ -327,15 +382,21 @@ private void closeDirectBuffer(ByteBuffer cb) {
 
     @Override
     @SuppressWarnings("ResultOfMethodCallIgnored")
-    public void close() {
+    public synchronized void close() {
         try {
             if (byteBuffer != null) {
-                byteBuffer.force();
+                flush();
+                for (MappedByteBuffer segment : segments) {
+                    closeDirectBuffer(segment);
+                }
+                closeDirectBuffer(byteBuffer);
+                segments = new MappedByteBuffer[0];
+                byteBuffer = null;
+                // The last segment is mapped in full, drop the unused part of it
+                braf.setLength(dataStart + (long) allocatedPages * PAGE_BYTES);
                 fileChannel.close();
                 braf.close();
                 file.setWritable(true);
-                closeDirectBuffer(byteBuffer);
-                byteBuffer = null;
                 fileChannel = null;
                 braf = null;
             }
@@ -400,22 +461,136 @@ public BaseBlock getFullBlock(int i) {
         return toBaseBlock(getBlock(i), i);
     }
 
+    private int getPage(int x, int y, int z) {
+        return (y >> 4) + pagesY * ((x >> 4) + pagesX * (z >> 4));
+    }
+
+    private static int getPageIndex(int x, int y, int z) {
+        return (x & 15) | (z & 15) << 4 | (y & 15) << 8;
+    }
+
+    /**
+     * Get the page index entry. Positive values are the allocated slot + 1, otherwise the negated ordinal of the block
+     * filling the whole page.
+     */
+    private long getPageEntry(int page) {
+        return byteBuffer.getLong(HEADER_SIZE + (page << 3));
+    }
+
+    private MappedByteBuffer getSegment(int segment) {
+        MappedByteBuffer[] segments = this.segments;
+        if (segment < segments.length) {
+            MappedByteBuffer buffer = segments[segment];
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+        return mapSegment(segment);
+    }
+
+    private synchronized MappedByteBuffer mapSegment(int segment) {
+        MappedByteBuffer[] segments = this.segments;
+        if (segment < segments.length && segments[segment] != null) {
+            return segments[segment];
+        }
+        long pages = Math.min(SEGMENT_PAGES, pageCount - (long) segment * SEGMENT_PAGES);
+        MappedByteBuffer buffer;
+        try {
+            buffer = fileChannel.map(
+                    FileChannel.MapMode.READ_WRITE,
+                    dataStart + (long) segment * SEGMENT_PAGES * PAGE_BYTES,
+                    pages * PAGE_BYTES
+            );
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        MappedByteBuffer[] mapped = Arrays.copyOf(segments, Math.max(segments.length, segment + 1));
+        mapped[segment] = buffer;
+        this.segments = mapped;
+        return buffer;
+    }
+
+    private synchronized long allocatePage(int page) {
+        long entry = getPageEntry(page);
+        if (entry > 0) {
+            return entry;
+        }
+        char fill = (char) -entry;
+        int slot = allocatedPages++;
+        byteBuffer.putInt(HEADER_ALLOCATED_PAGES, allocatedPages);
+        if (fill != 0) {
+            MappedByteBuffer segment = getSegment(slot / SEGMENT_PAGES);
+            int start = (slot % SEGMENT_PAGES) * PAGE_BYTES;
+            for (int i = 0; i < PAGE_BYTES; i += 2) {
+                segment.putChar(start + i, fill);
+            }
+        }
+        entry = slot + 1;
+        byteBuffer.putLong(HEADER_SIZE + (page << 3), entry);
+        return entry;
+    }
+
+    char getOrdinal(int x, int y, int z) {
+        long entry = getPageEntry(getPage(x, y, z));
+        if (entry <= 0) {
+            return (char) -entry;
+        }
+        int slot = (int) (entry - 1);
+        return getSegment(slot / SEGMENT_PAGES).getChar((slot % SEGMENT_PAGES) * PAGE_BYTES + (getPageIndex(x, y, z) << 1));
+    }
+
+    void setOrdinal(int x, int y, int z, char ordinal) {
+        int page = getPage(x, y, z);
+        long entry = getPageEntry(page);
+        if (entry <= 0) {
+            if ((char) -entry == ordinal) {
+                return;
+            }
+            entry = allocatePage(page);
+        }
+        int slot = (int) (entry - 1);
+        getSegment(slot / SEGMENT_PAGES).putChar((slot % SEGMENT_PAGES) * PAGE_BYTES + (getPageIndex(x, y, z) << 1), ordinal);
+    }
+
+    // Read a whole page, in the order of a chunk section
+    private void readPage(int page, char[] buffer) {
+        long entry = getPageEntry(page);
+        if (entry <= 0) {
+            Arrays.fill(buffer, (char) -entry);
+            return;
+        }
+        int slot = (int) (entry - 1);
+        getSegment(slot / SEGMENT_PAGES).slice((slot % SEGMENT_PAGES) * PAGE_BYTES, PAGE_BYTES).asCharBuffer().get(buffer);
+    }
+
+    @Override
+    public boolean contains(int x, int y, int z) {
+        return x >= 0 && y >= 0 && z >= 0 && x < getWidth() && y < getHeight() && z < getLength();
+    }
+
     @Override
     public BlockState getBlock(int index) {
-        try {
-            int diskIndex = HEADER_SIZE + (index << 1);
-            char ordinal = byteBuffer.getChar(diskIndex);
-            return BlockState.getFromOrdinal(ordinal);
-        } catch (IndexOutOfBoundsException ignored) {
-        } catch (Exception e) {
-            e.printStackTrace();
+        if (index < 0 || index >= getVolume()) {
+            return BlockTypes.AIR.getDefaultState();
         }
-        return BlockTypes.AIR.getDefaultState();
+        int y = index / getArea();
+        int newI = index - y * getArea();
+        int z = newI / getWidth();
+        int x = newI - z * getWidth();
+        return getBlock(x, y, z);
     }
 
     @Override
     public BlockState getBlock(int x, int y, int z) {
-        return getBlock(getIndex(x, y, z));
+        if (!contains(x, y, z)) {
+            return BlockTypes.AIR.getDefaultState();
+        }
+        try {
+            return BlockState.getFromOrdinal(getOrdinal(x, y, z));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return BlockTypes.AIR.getDefaultState();
     }
 
     @Override
@@ -430,13 +605,15 @@ public boolean setTile(int x, int y, int z, CompoundTag tag) {
 
     @Override
     public <B extends BlockStateHolder<B>> boolean setBlock(int x, int y, int z, B block) {
+        if (!contains(x, y, z)) {
+            return false;
+        }
         try {
-            int index = HEADER_SIZE + (getIndex(x, y, z) << 1);
             char ordinal = block.getOrdinalChar();
             if (ordinal == 0) {
                 ordinal = 1;
             }
-            byteBuffer.putChar(index, ordinal);
+            setOrdinal(x, y, z, ordinal);
             boolean hasNbt = block instanceof BaseBlock && block.hasNbtData();
             if (hasNbt) {
                 setTile(x, y, z, block.getNbtData());
@@ -450,16 +627,17 @@ public <B extends BlockStateHolder<B>> boolean setBlock(int x, int y, int z, B b
 
     @Override
     public <B extends BlockStateHolder<B>> boolean setBlock(int i, B block) {
+        if (i < 0 || i >= getVolume()) {
+            return false;
+        }
         try {
-            char ordinal = block.getOrdinalChar();
-            int index = HEADER_SIZE + (i << 1);
-            byteBuffer.putChar(index, ordinal);
+            int y = i / getArea();
+            int newI = i - y * getArea();
+            int z = newI / getWidth();
+            int x = newI - z * getWidth();
+            setOrdinal(x, y, z, block.getOrdinalChar());
             boolean hasNbt = block instanceof BaseBlock && block.hasNbtData();
             if (hasNbt) {
-                int y = i / getArea();
-                int newI = i - y * getArea();
-                int z = newI / getWidth();
-                int x = newI - z * getWidth();
                 setTile(x, y, z, block.getNbtData());
             }
             return true;
@@ -469,6 +647,142 @@ public <B extends BlockStateHolder<B>> boolean setBlock(int i, B block) {
         return false;
     }
 
+    /**
+     * Iterates page by page, i.e. one chunk section at a time, so that the file is read sequentially and pasting
+     * touches as few chunk sections as possible at once. Use {@link #iterator(Order)} for linear order.
+     */
+    @Nonnull
+    @Override
+    public Iterator<BlockVector3> iterator() {
+        return new PageIterator();
+    }
+
+    private class PageIterator implements Iterator<BlockVector3> {
+
+        private final char[] page = new char[PAGE_VOLUME];
+        private final PageFilter filter = new PageFilter(page);
+        private int pageX;
+        private int pageY;
+        private int pageZ;
+        private int x;
+        private int y;
+        private int z;
+        private int maxX;
+        private int maxY;
+        private int maxZ;
+        private boolean hasNext = pageCount > 0;
+
+        private PageIterator() {
+            if (hasNext) {
+                loadPage();
+                // Start before the first block of the page
+                x--;
+            }
+        }
+
+        private void loadPage() {
+            readPage(getPage(pageX << 4, pageY << 4, pageZ << 4), page);
+            x = pageX << 4;
+            y = pageY << 4;
+            z = pageZ << 4;
+            maxX = Math.min(x + 15, getWidth() - 1);
+            maxY = Math.min(y + 15, getHeight() - 1);
+            maxZ = Math.min(z + 15, getLength() - 1);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext && (x < maxX || z < maxZ || y < maxY || nextPage(false));
+        }
+
+        // Advance to the next page in the order they are allocated by a chunk ordered copy: columns, then sections
+        private boolean nextPage(boolean load) {
+            int px = pageX;
+            int py = pageY + 1;
+            int pz = pageZ;
+            if (py >= pagesY) {
+                py = 0;
+                if (++px >= pagesX) {
+                    px = 0;
+                    if (++pz >= pagesZ) {
+                        if (load) {
+                            hasNext = false;
+                        }
+                        return false;
+                    }
+                }
+            }
+            if (load) {
+                pageX = px;
+                pageY = py;
+                pageZ = pz;
+                loadPage();
+            }
+            return true;
+        }
+
+        @Override
+        public BlockVector3 next() {
+            if (++x > maxX) {
+                x = pageX << 4;
+                if (++z > maxZ) {
+                    z = pageZ << 4;
+                    if (++y > maxY) {
+                        if (!hasNext || !nextPage(true)) {
+                            throw new NoSuchElementException();
+                        }
+                    }
+                }
+            }
+            return filter.init(x, y, z);
+        }
+
+    }
+
+    private class PageFilter extends AbstractFilterBlock {
+
+        private final char[] page;
+        private final MutableBlockVector3 position = new MutableBlockVector3();
+
+        private PageFilter(char[] page) {
+            this.page = page;
+        }
+
+        private PageFilter init(int x, int y, int z) {
+            position.setComponents(x, y, z);
+            return this;
+        }
+
+        @Override
+        public BaseBlock getFullBlock() {
+            int x = position.getX();
+            int y = position.getY();
+            int z = position.getZ();
+            return toBaseBlock(BlockState.getFromOrdinal(page[getPageIndex(x, y, z)]), x, y, z);
+        }
+
+        @Override
+        public void setFullBlock(BaseBlock block) {
+            int x = position.getX();
+            int y = position.getY();
+            int z = position.getZ();
+            if (DiskOptimizedClipboard.this.setBlock(x, y, z, block)) {
+                page[getPageIndex(x, y, z)] = DiskOptimizedClipboard.this.getOrdinal(x, y, z);
+            }
+        }
+
+        @Override
+        public BlockVector3 getPosition() {
+            return position;
+        }
+
+        @Override
+        public Extent getExtent() {
+            return DiskOptimizedClipboard.this;
+        }
+
+    }
+
     @Nullable
     @Override
     public Entity createEntity(Location location, BaseEntity entity) {
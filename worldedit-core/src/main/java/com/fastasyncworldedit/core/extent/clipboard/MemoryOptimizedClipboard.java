@@ -1,9 +1,10 @@
 package com.fastasyncworldedit.core.extent.clipboard;
 
+import com.fastasyncworldedit.core.FaweCache;
 import com.fastasyncworldedit.core.configuration.Settings;
 import com.fastasyncworldedit.core.jnbt.streamer.IntValueReader;
+import com.fastasyncworldedit.core.math.BitArrayUnstretched;
 import com.fastasyncworldedit.core.math.IntTriple;
-import com.fastasyncworldedit.core.util.MainUtil;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.IntTag;
 import com.sk89q.jnbt.Tag;
@@ -19,52 +20,65 @@
 import com.sk89q.worldedit.world.block.BaseBlock;
 import com.sk89q.worldedit.world.block.BlockState;
 import com.sk89q.worldedit.world.block.BlockStateHolder;
-import com.sk89q.worldedit.world.block.BlockType;
-import com.sk89q.worldedit.world.block.BlockTypes;
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+/**
+ * A clipboard storing blocks in 16x16x16 sections. Sections are written to uncompressed and once enough of them are
+ * open, the oldest is compacted to a palette with packed indices, or to a single value if it only holds one block.
+ * Reads never need to decompress a section.
+ */
 public class MemoryOptimizedClipboard extends LinearClipboard {
 
-    private static final int BLOCK_SIZE = 1048576 * 2;
-    private static final int BLOCK_MASK = 1048575;
-    private static final int BLOCK_SHIFT = 20;
+    // 2MiB of uncompressed sections
+    private static final int MAX_OPEN_SECTIONS = 128;
 
-    private final byte[][] states;
+    private final int sectionsX;
+    private final int sectionsY;
+
+    // Sections being written to, with ordinals in the same order as a chunk section
+    private final char[][] openSections;
+    private final IntArrayFIFOQueue openQueue = new IntArrayFIFOQueue();
+    private final char[][] palettes;
+    private final BitArrayUnstretched[] indices;
+    // The single value of compacted sections without a palette
+    private final char[] uniform;
 
-    private final byte[] buffer = new byte[MainUtil.getMaxCompressedLength(BLOCK_SIZE)];
     private byte[] biomes = null;
 
     private final HashMap<IntTriple, CompoundTag> nbtMap;
 
-
-    private int lastOrdinalsI = -1;
-
-    private byte[] lastOrdinals;
-
-    private boolean saveOrdinals = false;
-
     private final int compressionLevel;
 
     public MemoryOptimizedClipboard(Region region) {
         this(region, Settings.settings().CLIPBOARD.COMPRESSION_LEVEL);
     }
 
+    /**
+     * @param compressionLevel 0 to keep every section uncompressed, otherwise sections are compacted to palettes
+     */
     public MemoryOptimizedClipboard(Region region, int compressionLevel) {
         super(region.getDimensions(), region.getMinimumPoint());
-        states = new byte[1 + (getVolume() >> BLOCK_SHIFT)][];
+        this.sectionsX = (getWidth() + 15) >> 4;
+        this.sectionsY = (getHeight() + 15) >> 4;
+        int sections = sectionsX * sectionsY * ((getLength() + 15) >> 4);
+        this.openSections = new char[sections][];
+        this.palettes = new char[sections][];
+        this.indices = new BitArrayUnstretched[sections];
+        this.uniform = new char[sections];
         nbtMap = new HashMap<>();
         this.compressionLevel = compressionLevel;
     }
 
-
     @Override
     public boolean hasBiomes() {
         return biomes != null;
@@ -126,67 +140,103 @@ public BiomeType getBiome(BlockVector3 position) {
         return getBiome(getBiomeIndex(position.getX(), position.getY(), position.getZ()));
     }
 
-    private int getOrdinal(int index) {
-        int i = index >> BLOCK_SHIFT;
-        int li = (index & BLOCK_MASK) << 1;
-        if (i != lastOrdinalsI) {
-            saveOrdinals();
-            byte[] compressed = states[lastOrdinalsI = i];
-            if (compressed != null) {
-                lastOrdinals = MainUtil.decompress(compressed, lastOrdinals, BLOCK_SIZE, compressionLevel);
-            } else {
-                lastOrdinals = null;
-                return 0;
-            }
+    private int getSection(int x, int y, int z) {
+        return (y >> 4) + sectionsY * ((x >> 4) + sectionsX * (z >> 4));
+    }
+
+    private static int getSectionIndex(int x, int y, int z) {
+        return (x & 15) | (z & 15) << 4 | (y & 15) << 8;
+    }
+
+    private int getOrdinal(int x, int y, int z) {
+        int section = getSection(x, y, z);
+        char[] open = openSections[section];
+        if (open != null) {
+            return open[getSectionIndex(x, y, z)];
         }
-        if (lastOrdinals == null) {
-            return 0;
+        BitArrayUnstretched bits = indices[section];
+        if (bits == null) {
+            return uniform[section];
         }
-        return (((lastOrdinals[li] & 0xFF) << 8) + (lastOrdinals[li + 1] & 0xFF));
+        return palettes[section][bits.get(getSectionIndex(x, y, z))];
     }
 
-    private void saveOrdinals() {
-        if (saveOrdinals && lastOrdinals != null) {
-            states[lastOrdinalsI] = MainUtil.compress(lastOrdinals, buffer, compressionLevel);
+    private void setOrdinal(int x, int y, int z, int ordinal) {
+        int section = getSection(x, y, z);
+        char[] open = openSections[section];
+        if (open == null) {
+            if (indices[section] == null && uniform[section] == ordinal) {
+                return;
+            }
+            open = openSection(section);
         }
-        saveOrdinals = false;
+        open[getSectionIndex(x, y, z)] = (char) ordinal;
     }
 
-    private int lastI;
-    private int lastIMin;
-    private int lastIMax;
-
-    private int getLocalIndex(int index) {
-        if (index < lastIMin || index > lastIMax) {
-            lastI = index >> BLOCK_SHIFT;
-            lastIMin = lastI << BLOCK_SHIFT;
-            lastIMax = lastIMin + BLOCK_MASK;
+    private char[] openSection(int section) {
+        char[] open = null;
+        if (compressionLevel > 0 && openQueue.size() >= MAX_OPEN_SECTIONS) {
+            open = compact(openQueue.dequeueInt());
         }
-        return lastI;
+        if (open == null) {
+            open = new char[4096];
+        }
+        BitArrayUnstretched bits = indices[section];
+        if (bits == null) {
+            Arrays.fill(open, uniform[section]);
+        } else {
+            char[] palette = palettes[section];
+            bits.toRaw(open);
+            for (int i = 0; i < open.length; i++) {
+                open[i] = palette[open[i]];
+            }
+            indices[section] = null;
+            palettes[section] = null;
+        }
+        openSections[section] = open;
+        if (compressionLevel > 0) {
+            openQueue.enqueue(section);
+        }
+        return open;
     }
 
-    private void setOrdinal(int index, int v) {
-        int i = getLocalIndex(index);
-        if (i != lastOrdinalsI) {
-            saveOrdinals();
-            byte[] compressed = states[lastOrdinalsI = i];
-            if (compressed != null) {
-                lastOrdinals = MainUtil.decompress(compressed, lastOrdinals, BLOCK_SIZE, compressionLevel);
-            } else {
-                lastOrdinals = null;
-            }
+    /**
+     * Compact an open section to a palette.
+     *
+     * @return the now unused section array
+     */
+    private char[] compact(int section) {
+        char[] open = openSections[section];
+        if (open == null) {
+            return null;
         }
-        if (lastOrdinals == null) {
-            BlockType bt = BlockTypes.getFromStateOrdinal(v);
-            if (bt.getMaterial().isAir()) {
-                return;
+        openSections[section] = null;
+        FaweCache.Palette palette = FaweCache.INSTANCE.toPaletteUnstretched(0, open);
+        if (palette.paletteToBlockLength == 1) {
+            uniform[section] = (char) palette.paletteToBlock[0];
+        } else {
+            char[] paletteToBlock = new char[palette.paletteToBlockLength];
+            for (int i = 0; i < paletteToBlock.length; i++) {
+                paletteToBlock[i] = (char) palette.paletteToBlock[i];
             }
-            lastOrdinals = new byte[BLOCK_SIZE];
+            long[] blockStates = Arrays.copyOf(palette.blockStates, palette.blockStatesLength);
+            palettes[section] = paletteToBlock;
+            indices[section] = new BitArrayUnstretched(palette.bitsPerEntry, 4096, blockStates);
+        }
+        return open;
+    }
+
+    /**
+     * Compact all sections that are still being written to.
+     */
+    @Override
+    public void flush() {
+        if (compressionLevel <= 0) {
+            return;
+        }
+        while (!openQueue.isEmpty()) {
+            compact(openQueue.dequeueInt());
         }
-        int li = (index & BLOCK_MASK) << 1;
-        lastOrdinals[li] = (byte) ((v >>> 8) & 0xFF);
-        lastOrdinals[li + 1] = (byte) (v & 0xFF);
-        saveOrdinals = true;
     }
 
     @Override
@@ -204,8 +254,11 @@ public int getBiomeIndex(int x, int y, int z) {
 
     @Override
     public BaseBlock getFullBlock(int x, int y, int z) {
-        int index = getIndex(x, y, z);
-        return getFullBlock(index);
+        BlockState state = getBlock(x, y, z);
+        if (state.getMaterial().hasContainer() && !nbtMap.isEmpty()) {
+            return state.toBaseBlock(nbtMap.get(new IntTriple(x, y, z)));
+        }
+        return state.toBaseBlock();
     }
 
     private BaseBlock toBaseBlock(BlockState state, int i) {
@@ -240,21 +293,28 @@ public BaseBlock getFullBlock(int index) {
 
     @Override
     public BlockState getBlock(int index) {
-        int combinedID = getOrdinal(index);
-        return BlockState.getFromOrdinal(combinedID);
+        int y = index / getArea();
+        int newI = index - y * getArea();
+        int z = newI / getWidth();
+        int x = newI - z * getWidth();
+        return getBlock(x, y, z);
     }
 
     @Override
     public BlockState getBlock(int x, int y, int z) {
-        return getBlock(getIndex(x, y, z));
+        return BlockState.getFromOrdinal(getOrdinal(x, y, z));
     }
 
+    /**
+     * Get the approximate number of bytes used to store blocks.
+     */
     public int size() {
-        saveOrdinals();
         int total = 0;
-        for (byte[] array : states) {
-            if (array != null) {
-                total += array.length;
+        for (int i = 0; i < uniform.length; i++) {
+            if (openSections[i] != null) {
+                total += openSections[i].length << 1;
+            } else if (indices[i] != null) {
+                total += (palettes[i].length << 1) + (indices[i].getLength() << 3);
             }
         }
         return total;
@@ -272,27 +332,27 @@ public boolean setTile(int x, int y, int z, CompoundTag tag) {
 
     @Override
     public <B extends BlockStateHolder<B>> boolean setBlock(int x, int y, int z, B block) {
-        return setBlock(getIndex(x, y, z), block);
-    }
-
-    @Override
-    public <B extends BlockStateHolder<B>> boolean setBlock(int index, B block) {
         int ordinal = block.getOrdinal();
         if (ordinal == 0) {
             ordinal = 1;
         }
-        setOrdinal(index, ordinal);
+        setOrdinal(x, y, z, ordinal);
         boolean hasNbt = block instanceof BaseBlock && block.hasNbtData();
         if (hasNbt) {
-            int y = index / getArea();
-            int newI = index - y * getArea();
-            int z = newI / getWidth();
-            int x = newI - z * getWidth();
             setTile(x, y, z, block.getNbtData());
         }
         return true;
     }
 
+    @Override
+    public <B extends BlockStateHolder<B>> boolean setBlock(int index, B block) {
+        int y = index / getArea();
+        int newI = index - y * getArea();
+        int z = newI / getWidth();
+        int x = newI - z * getWidth();
+        return setBlock(x, y, z, block);
+    }
+
     @Nullable
     @Override
     public Entity createEntity(Location location, BaseEntity entity) {
@@ -0,0 +1,332 @@
+package com.fastasyncworldedit.core.extent.clipboard;
+
+import com.fastasyncworldedit.core.Fawe;
+import com.fastasyncworldedit.core.extent.processor.ProcessorScope;
+import com.fastasyncworldedit.core.queue.IBatchProcessor;
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.fastasyncworldedit.core.queue.IChunkCache;
+import com.fastasyncworldedit.core.queue.IChunkGet;
+import com.fastasyncworldedit.core.queue.IChunkSet;
+import com.fastasyncworldedit.core.util.MathMan;
+import com.fastasyncworldedit.core.wrappers.WorldWrapper;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.world.World;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A copy-on-write clipboard of a region of a world. Creating it only records the chunks of the region, the blocks,
+ * biomes and block entities of a chunk section are copied when they are first read from the clipboard, or before an
+ * edit changes them, whichever comes first. The clipboard keeps showing the world as it was when it was created, while
+ * only holding the sections that have been read or edited since.
+ * <p>
+ * Edits are seen through the {@link #createProcessor(World) processor} that edit sessions placing chunks on the same
+ * world add. Changes made to the world by other means, and entities, are read as they are when the clipboard is read.
+ */
+public class WorldSnapshotClipboard extends ReadOnlyClipboard {
+
+    private static final Set<WorldSnapshotClipboard> OPEN = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private final World world;
+    private final boolean hasEntities;
+    private final boolean hasBiomes;
+    private final int minSection;
+    private final int maxSection;
+    private final LongOpenHashSet chunks;
+    private final Long2ObjectOpenHashMap<ChunkSnapshot> snapshots = new Long2ObjectOpenHashMap<>();
+    private volatile ChunkSnapshot lastSnapshot;
+    private IChunkCache<IChunkGet> cache;
+
+    /**
+     * Create a new snapshot of a region of a world.
+     *
+     * @param world       the world to copy from
+     * @param region      the region to copy
+     * @param hasEntities if entities should be copied
+     * @param hasBiomes   if biomes should be copied
+     */
+    public WorldSnapshotClipboard(World world, Region region, boolean hasEntities, boolean hasBiomes) {
+        super(region);
+        this.world = WorldWrapper.unwrap(world);
+        this.hasEntities = hasEntities;
+        this.hasBiomes = hasBiomes;
+        this.minSection = Math.max(region.getMinimumY(), world.getMinY()) >> 4;
+        this.maxSection = Math.min(region.getMaximumY(), world.getMaxY()) >> 4;
+        Set<BlockVector2> regionChunks = region.getChunks();
+        this.chunks = new LongOpenHashSet(regionChunks.size());
+        for (BlockVector2 chunk : regionChunks) {
+            chunks.add(MathMan.pairInt(chunk.getX(), chunk.getZ()));
+        }
+        synchronized (OPEN) {
+            OPEN.add(this);
+        }
+    }
+
+    /**
+     * Create a processor that copies the chunk sections an edit changes into the open snapshots of the given world,
+     * before the edit is applied.
+     *
+     * @param world the world edited
+     * @return the processor
+     */
+    public static IBatchProcessor createProcessor(World world) {
+        return new SnapshotProcessor(WorldWrapper.unwrap(world));
+    }
+
+    private IChunkGet getChunk(int chunkX, int chunkZ) {
+        IChunkCache<IChunkGet> cache = this.cache;
+        if (cache == null) {
+            this.cache = cache = Fawe.instance().getQueueHandler().getOrCreateWorldCache(world);
+        }
+        return cache.get(chunkX, chunkZ);
+    }
+
+    @Nullable
+    private ChunkSnapshot getSnapshot(int chunkX, int chunkZ) {
+        ChunkSnapshot snapshot = lastSnapshot;
+        if (snapshot != null && snapshot.chunkX == chunkX && snapshot.chunkZ == chunkZ) {
+            return snapshot;
+        }
+        long pair = MathMan.pairInt(chunkX, chunkZ);
+        if (!chunks.contains(pair)) {
+            return null;
+        }
+        synchronized (snapshots) {
+            snapshot = snapshots.get(pair);
+            if (snapshot == null) {
+                snapshots.put(pair, snapshot = new ChunkSnapshot(chunkX, chunkZ));
+            }
+        }
+        return lastSnapshot = snapshot;
+    }
+
+    private boolean isSection(int layer) {
+        return layer >= minSection && layer <= maxSection;
+    }
+
+    @Override
+    public BlockState getBlock(int x, int y, int z) {
+        int layer = y >> 4;
+        ChunkSnapshot snapshot;
+        if (!isSection(layer) || (snapshot = getSnapshot(x >> 4, z >> 4)) == null) {
+            return BlockTypes.AIR.getDefaultState();
+        }
+        char ordinal = snapshot.getBlocks(layer)[(y & 15) << 8 | (z & 15) << 4 | (x & 15)];
+        if (ordinal == BlockTypesCache.ReservedIDs.__RESERVED__) {
+            return BlockTypes.AIR.getDefaultState();
+        }
+        return BlockTypesCache.states[ordinal];
+    }
+
+    @Override
+    public BaseBlock getFullBlock(int x, int y, int z) {
+        BlockState state = getBlock(x, y, z);
+        if (!state.getMaterial().hasContainer()) {
+            return state.toBaseBlock();
+        }
+        ChunkSnapshot snapshot = getSnapshot(x >> 4, z >> 4);
+        CompoundTag tag = snapshot.getTiles().get(BlockVector3.at(x & 15, y, z & 15));
+        if (tag == null) {
+            return state.toBaseBlock();
+        }
+        return state.toBaseBlock(tag);
+    }
+
+    @Override
+    public BiomeType getBiomeType(int x, int y, int z) {
+        int layer = y >> 4;
+        ChunkSnapshot snapshot;
+        // Biomes are not copied
+        if (!hasBiomes || !isSection(layer) || (snapshot = getSnapshot(x >> 4, z >> 4)) == null) {
+            return null;
+        }
+        return snapshot.getBiomes(layer)[(y & 15) >> 2 << 4 | (z & 15) >> 2 << 2 | (x & 15) >> 2];
+    }
+
+    @Override
+    public BiomeType getBiome(BlockVector3 position) {
+        return getBiomeType(position.getX(), position.getY(), position.getZ());
+    }
+
+    @Override
+    public List<? extends Entity> getEntities() {
+        if (!hasEntities) {
+            return new ArrayList<>();
+        }
+        return world.getEntities(getRegion());
+    }
+
+    @Override
+    public boolean hasBiomes() {
+        return hasBiomes;
+    }
+
+    @Override
+    public void close() {
+        synchronized (OPEN) {
+            OPEN.remove(this);
+        }
+        synchronized (snapshots) {
+            snapshots.clear();
+        }
+        lastSnapshot = null;
+    }
+
+    /**
+     * The sections of a chunk copied so far. Each part is copied at most once, by whoever needs it first.
+     */
+    private final class ChunkSnapshot {
+
+        private final int chunkX;
+        private final int chunkZ;
+        private final AtomicReferenceArray<char[]> blocks;
+        private final AtomicReferenceArray<BiomeType[]> biomes;
+        private final AtomicReference<Map<BlockVector3, CompoundTag>> tiles = new AtomicReference<>();
+
+        private ChunkSnapshot(int chunkX, int chunkZ) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.blocks = new AtomicReferenceArray<>(maxSection - minSection + 1);
+            this.biomes = new AtomicReferenceArray<>(hasBiomes ? maxSection - minSection + 1 : 0);
+        }
+
+        private char[] getBlocks(int layer) {
+            char[] section = blocks.get(layer - minSection);
+            if (section == null) {
+                copyBlocks(getChunk(chunkX, chunkZ), layer);
+                section = blocks.get(layer - minSection);
+            }
+            return section;
+        }
+
+        private BiomeType[] getBiomes(int layer) {
+            BiomeType[] section = biomes.get(layer - minSection);
+            if (section == null) {
+                copyBiomes(getChunk(chunkX, chunkZ), layer);
+                section = biomes.get(layer - minSection);
+            }
+            return section;
+        }
+
+        private Map<BlockVector3, CompoundTag> getTiles() {
+            Map<BlockVector3, CompoundTag> map = tiles.get();
+            if (map == null) {
+                copyTiles(getChunk(chunkX, chunkZ));
+                map = tiles.get();
+            }
+            return map;
+        }
+
+        private void copyBlocks(IChunkGet get, int layer) {
+            if (blocks.get(layer - minSection) == null) {
+                blocks.compareAndSet(layer - minSection, null, get.load(layer).clone());
+            }
+        }
+
+        private void copyBiomes(IChunkGet get, int layer) {
+            if (biomes.get(layer - minSection) != null) {
+                return;
+            }
+            BiomeType[] section = new BiomeType[64];
+            int y = layer << 4;
+            for (int i = 0; i < 64; i++) {
+                section[i] = get.getBiomeType((i & 3) << 2, y + ((i >> 4) << 2), ((i >> 2) & 3) << 2);
+            }
+            biomes.compareAndSet(layer - minSection, null, section);
+        }
+
+        private void copyTiles(IChunkGet get) {
+            if (tiles.get() != null) {
+                return;
+            }
+            Map<BlockVector3, CompoundTag> chunkTiles = get.getTiles();
+            Map<BlockVector3, CompoundTag> map = new HashMap<>(chunkTiles.size());
+            for (Map.Entry<BlockVector3, CompoundTag> entry : chunkTiles.entrySet()) {
+                BlockVector3 pos = entry.getKey();
+                map.put(BlockVector3.at(pos.getX() & 15, pos.getY(), pos.getZ() & 15), entry.getValue());
+            }
+            tiles.compareAndSet(null, map);
+        }
+
+    }
+
+    /**
+     * Copies what an edit is about to change into the open snapshots of a world. The chunk given to
+     * {@link #processSet(IChunk, IChunkGet, IChunkSet)} still holds the world as it was before the edit.
+     */
+    private static final class SnapshotProcessor implements IBatchProcessor {
+
+        private final World world;
+
+        private SnapshotProcessor(World world) {
+            this.world = world;
+        }
+
+        @Override
+        public IChunkSet processSet(IChunk chunk, IChunkGet get, IChunkSet set) {
+            WorldSnapshotClipboard[] open;
+            synchronized (OPEN) {
+                if (OPEN.isEmpty()) {
+                    return set;
+                }
+                open = OPEN.toArray(new WorldSnapshotClipboard[0]);
+            }
+            for (WorldSnapshotClipboard clipboard : open) {
+                if (clipboard == null || !clipboard.world.equals(world)) {
+                    continue;
+                }
+                ChunkSnapshot snapshot = clipboard.getSnapshot(chunk.getX(), chunk.getZ());
+                if (snapshot == null) {
+                    continue;
+                }
+                boolean changed = !set.getTiles().isEmpty();
+                for (int layer = clipboard.minSection; layer <= clipboard.maxSection; layer++) {
+                    if (set.hasSection(layer)) {
+                        snapshot.copyBlocks(get, layer);
+                        changed = true;
+                    }
+                    if (clipboard.hasBiomes && set.hasBiomes(layer)) {
+                        snapshot.copyBiomes(get, layer);
+                    }
+                }
+                if (changed) {
+                    snapshot.copyTiles(get);
+                }
+            }
+            return set;
+        }
+
+        @Override
+        public Extent construct(Extent child) {
+            throw new UnsupportedOperationException("Processing only");
+        }
+
+        @Override
+        public ProcessorScope getScope() {
+            return ProcessorScope.READING_SET_BLOCKS;
+        }
+
+    }
+
+}
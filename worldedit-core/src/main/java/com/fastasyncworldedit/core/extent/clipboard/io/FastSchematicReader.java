@@ -12,6 +12,7 @@
 import com.sk89q.jnbt.AdventureNBTConverter;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.IntTag;
+import com.sk89q.jnbt.NBTConstants;
 import com.sk89q.jnbt.NBTInputStream;
 import com.sk89q.jnbt.StringTag;
 import com.sk89q.jnbt.Tag;
@@ -39,7 +40,10 @@
 import net.jpountz.lz4.LZ4BlockOutputStream;
 import org.apache.logging.log4j.Logger;
 
+import javax.annotation.Nullable;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -56,6 +60,9 @@
 public class FastSchematicReader extends NBTSchematicReader {
 
     private static final Logger LOGGER = LogManagerCompat.getLogger();
+    private static final int MAX_VERSION_NAME_LENGTH = 16;
+    // The root compound followed by the data version and version entries
+    private static final int VERSIONS_LENGTH = 128;
     private final NBTInputStream inputStream;
     private final DataFixer fixer;
     private int dataVersion = -1;
@@ -82,6 +89,11 @@ public class FastSchematicReader extends NBTSchematicReader {
     private boolean brokenEntities = false;
     private boolean isWorldEdit = false;
 
+    private Function<BlockVector3, Clipboard> createOutput;
+    private Clipboard output;
+    private int blockIndex;
+    private int varInt;
+    private int varIntOffset;
 
     /**
      * Create a new instance.
@@ -186,11 +198,22 @@ public StreamDelegate createDelegate() {
             }
         });
         StreamDelegate blockData = schematic.add("BlockData");
-        blockData.withInfo((length, type) -> {
+        blockData.withInfo((size, type) -> {
+            // FAWE writes the dimensions and palette first, then the blocks don't need to be buffered
+            if (createOutput != null && palette != null && width > 0 && height > 0 && length > 0) {
+                output = createOutput.apply(BlockVector3.at(width, height, length));
+                return;
+            }
             blocksOut = new FastByteArrayOutputStream();
             blocks = new FaweOutputStream(new LZ4BlockOutputStream(blocksOut));
         });
-        blockData.withInt((index, value) -> blocks.write(value));
+        blockData.withInt((index, value) -> {
+            if (output != null) {
+                setBlock(value);
+            } else {
+                blocks.write(value);
+            }
+        });
 
         StreamDelegate tilesDelegate = schematic.add("BlockEntities");
         tilesDelegate.withInfo((length, type) -> tiles = new ArrayList<>(length));
@@ -233,19 +256,91 @@ private BlockState getBlockState(int id) {
         return BlockTypesCache.states[palette[id]];
     }
 
+    /**
+     * Set the next block of the output while the block data is read, from the next byte of its palette id.
+     */
+    private void setBlock(int value) {
+        if (palette.length >= 128) {
+            varInt |= (value & 127) << varIntOffset;
+            if (value > 127) {
+                varIntOffset += 7;
+                return;
+            }
+            value = varInt;
+            varInt = 0;
+            varIntOffset = 0;
+        }
+        int index = blockIndex++;
+        if (output instanceof LinearClipboard linear) {
+            linear.setBlock(index, getBlockState(value));
+        } else if (index < width * height * length) {
+            int x = index % width;
+            int yz = index / width;
+            output.setBlock(x, yz / length, yz % length, getBlockState(value));
+        }
+    }
+
     private BiomeType getBiomeType(FaweInputStream fis) throws IOException {
         char biomeId = biomePalette[fis.readVarInt()];
         return BiomeTypes.get(biomeId);
     }
 
+    /**
+     * Read the version and data version if they are the first entries of the schematic, as written by FAWE.
+     *
+     * @return if both versions have been read
+     */
+    private boolean readVersions() throws IOException {
+        DataInputStream in = inputStream.getInputStream();
+        if (in.readByte() != NBTConstants.TYPE_COMPOUND || !"Schematic".equals(readName(in))) {
+            return false;
+        }
+        for (int i = 0; i < 2; i++) {
+            if (in.readByte() != NBTConstants.TYPE_INT) {
+                return false;
+            }
+            String name = readName(in);
+            if (name == null) {
+                return false;
+            }
+            int value = in.readInt();
+            if (name.equals("DataVersion")) {
+                dataVersion = value;
+            } else if (name.equals("Version")) {
+                version = value;
+            } else {
+                return false;
+            }
+        }
+        return dataVersion != -1 && version != -1;
+    }
+
+    @Nullable
+    private static String readName(DataInputStream in) throws IOException {
+        int length = in.readUnsignedShort();
+        if (length > MAX_VERSION_NAME_LENGTH) {
+            return null;
+        }
+        byte[] name = new byte[length];
+        in.readFully(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
     @Override
     public Clipboard read(UUID uuid, Function<BlockVector3, Clipboard> createOutput) throws IOException {
+        this.createOutput = createOutput;
         StreamDelegate root = createDelegate();
         StreamDelegate versions = createVersionDelegate();
-        inputStream.mark(Integer.MAX_VALUE);
-        inputStream.readNamedTagLazy(versions);
+        inputStream.mark(VERSIONS_LENGTH);
+        if (!readVersions()) {
+            // The versions are needed to read the palette, so the schematic has to be read twice
+            version = -1;
+            dataVersion = -1;
+            inputStream.reset();
+            inputStream.mark(Integer.MAX_VALUE);
+            inputStream.readNamedTagLazy(versions);
+        }
         inputStream.reset();
-        inputStream.readNamedTagLazy(root);
 
         if (version != 1 && version != 2) {
             throw new IOException("This schematic version is not supported; Version: " + version
@@ -254,6 +349,15 @@ public Clipboard read(UUID uuid, Function<BlockVector3, Clipboard> createOutput)
                     " elsewise the schematic can't be read properly.");
         }
 
+        try {
+            inputStream.readNamedTagLazy(root);
+        } catch (IOException e) {
+            if (output != null) {
+                output.close();
+            }
+            throw e;
+        }
+
         if (blocks != null) {
             blocks.close();
         }
@@ -271,7 +375,7 @@ public Clipboard read(UUID uuid, Function<BlockVector3, Clipboard> createOutput)
             origin = BlockVector3.ZERO;
         }
 
-        Clipboard clipboard = createOutput.apply(dimensions);
+        Clipboard clipboard = output != null ? output : createOutput.apply(dimensions);
 
         if (blocksOut != null && blocksOut.getSize() != 0) {
             try (FaweInputStream fis = new FaweInputStream(new LZ4BlockInputStream(new FastByteArraysInputStream(blocksOut.toByteArrays())))) {
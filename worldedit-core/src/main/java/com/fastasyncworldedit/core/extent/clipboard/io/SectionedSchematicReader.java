@@ -0,0 +1,461 @@
+package com.fastasyncworldedit.core.extent.clipboard.io;
+
+import com.fastasyncworldedit.core.Fawe;
+import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.extent.clipboard.SimpleClipboard;
+import com.fastasyncworldedit.core.internal.io.FaweInputStream;
+import com.fastasyncworldedit.core.util.MainUtil;
+import com.sk89q.jnbt.AdventureNBTConverter;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.IntTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.entity.BaseEntity;
+import com.sk89q.worldedit.extension.input.InputParseException;
+import com.sk89q.worldedit.extension.platform.Capability;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardReader;
+import com.sk89q.worldedit.internal.util.LogManagerCompat;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.Location;
+import com.sk89q.worldedit.world.DataFixer;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import com.sk89q.worldedit.world.biome.BiomeTypes;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+import com.sk89q.worldedit.world.entity.EntityType;
+import com.sk89q.worldedit.world.entity.EntityTypes;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Reads schematics in the sectioned FAWE format written by {@link SectionedSchematicWriter}.
+ * <p>
+ * Sections are decoded in parallel and applied to the clipboard in order. When only a part of the schematic is read,
+ * sections outside of it are skipped in the stream without being decoded.
+ */
+public class SectionedSchematicReader implements ClipboardReader {
+
+    private static final Logger LOGGER = LogManagerCompat.getLogger();
+    private static final int SECTION_BUFFER = 8192;
+
+    private final FaweInputStream inputStream;
+    private final DataFixer fixer;
+    private final Executor executor;
+    private boolean headerRead;
+    private boolean sectionsRead;
+    private int dataVersion = -1;
+    private int width;
+    private int height;
+    private int length;
+    private BlockVector3 min;
+    private BlockVector3 offset;
+    private char[] palette;
+    private BiomeType[] biomePalette;
+    private long[] offsets;
+    private long position;
+
+    /**
+     * Create a new instance.
+     *
+     * @param inputStream the input stream to read from
+     */
+    public SectionedSchematicReader(InputStream inputStream) {
+        this(inputStream, task -> Fawe.instance().getQueueHandler().async(task));
+    }
+
+    /**
+     * Create a new instance decoding sections with the given executor.
+     *
+     * @param inputStream the input stream to read from
+     * @param executor    the executor to decode sections with
+     */
+    SectionedSchematicReader(InputStream inputStream, Executor executor) {
+        checkNotNull(inputStream);
+        checkNotNull(executor);
+        this.inputStream = new FaweInputStream(new BufferedInputStream(inputStream));
+        this.fixer = WorldEdit.getInstance().getPlatformManager().queryCapability(Capability.WORLD_EDITING).getDataFixer();
+        this.executor = executor;
+    }
+
+    private void readHeader() throws IOException {
+        if (headerRead) {
+            return;
+        }
+        headerRead = true;
+        FaweInputStream in = inputStream;
+        if (in.readInt() != SectionedSchematicWriter.MAGIC) {
+            throw new IOException("Not a sectioned FAWE schematic");
+        }
+        int version = in.readUnsignedByte();
+        if (version != SectionedSchematicWriter.VERSION) {
+            throw new IOException("This sectioned schematic version is not supported; Version: " + version);
+        }
+        dataVersion = in.readInt();
+        width = in.readInt();
+        height = in.readInt();
+        length = in.readInt();
+        min = BlockVector3.at(in.readInt(), in.readInt(), in.readInt());
+        offset = BlockVector3.at(in.readInt(), in.readInt(), in.readInt());
+        palette = new char[in.readVarInt()];
+        for (int i = 0; i < palette.length; i++) {
+            String palettePart = fix(in.readUTF());
+            BlockState state;
+            try {
+                state = BlockState.get(palettePart);
+            } catch (InputParseException ignored) {
+                LOGGER.warn("Invalid BlockState in palette: {}. Block will be replaced with air.", palettePart);
+                state = BlockTypes.AIR.getDefaultState();
+            }
+            palette[i] = state.getOrdinalChar();
+        }
+        int biomes = in.readVarInt();
+        if (biomes != 0) {
+            biomePalette = new BiomeType[biomes];
+            for (int i = 0; i < biomes; i++) {
+                String biomePalettePart = fixBiome(in.readUTF());
+                BiomeType biome = BiomeTypes.get(biomePalettePart);
+                if (biome == null) {
+                    LOGGER.warn("Invalid biome in palette: {}. Biome will be replaced with plains.", biomePalettePart);
+                    biome = BiomeTypes.PLAINS;
+                }
+                biomePalette[i] = biome;
+            }
+        }
+        offsets = new long[getSectionsX() * getSectionsY() * getSectionsZ() + 1];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = in.readLong();
+        }
+    }
+
+    private int getSectionsX() {
+        return (width + 15) >> 4;
+    }
+
+    private int getSectionsY() {
+        return (height + 15) >> 4;
+    }
+
+    private int getSectionsZ() {
+        return (length + 15) >> 4;
+    }
+
+    private String fix(String palettePart) {
+        if (fixer == null || dataVersion == -1) {
+            return palettePart;
+        }
+        return fixer.fixUp(DataFixer.FixTypes.BLOCK_STATE, palettePart, dataVersion);
+    }
+
+    private String fixBiome(String biomePalettePart) {
+        if (fixer == null || dataVersion == -1) {
+            return biomePalettePart;
+        }
+        return fixer.fixUp(DataFixer.FixTypes.BIOME, biomePalettePart, dataVersion);
+    }
+
+    private CompoundTag fixBlockEntity(CompoundTag tag) {
+        if (fixer == null || dataVersion == -1) {
+            return tag;
+        }
+        return (CompoundTag) AdventureNBTConverter.fromAdventure(fixer.fixUp(
+                DataFixer.FixTypes.BLOCK_ENTITY,
+                tag.asBinaryTag(),
+                dataVersion
+        ));
+    }
+
+    private CompoundTag fixEntity(CompoundTag tag) {
+        if (fixer == null || dataVersion == -1) {
+            return tag;
+        }
+        return (CompoundTag) AdventureNBTConverter.fromAdventure(fixer.fixUp(
+                DataFixer.FixTypes.ENTITY,
+                tag.asBinaryTag(),
+                dataVersion
+        ));
+    }
+
+    @Override
+    public OptionalInt getDataVersion() {
+        try {
+            readHeader();
+            return OptionalInt.of(dataVersion);
+        } catch (IOException e) {
+            return OptionalInt.empty();
+        }
+    }
+
+    /**
+     * Get the region of the schematic, in the coordinates it was saved at. Only the header of the schematic is read.
+     *
+     * @return the region of the schematic
+     * @throws IOException thrown on I/O error
+     */
+    public Region getRegion() throws IOException {
+        readHeader();
+        return new CuboidRegion(min, min.add(width - 1, height - 1, length - 1));
+    }
+
+    @Override
+    public Clipboard read(UUID uuid, Function<BlockVector3, Clipboard> createOutput) throws IOException {
+        return read(getRegion(), createOutput);
+    }
+
+    /**
+     * Read the part of the schematic within the given region. Only the sections intersecting the region are decoded.
+     * The schematic can only be read once.
+     *
+     * @param region       the region to read, in the coordinates the schematic was saved at
+     * @param createOutput creates the clipboard to read to from its dimensions
+     * @return the read clipboard, with the origin of the schematic
+     * @throws IOException thrown on I/O error
+     */
+    public Clipboard read(Region region, Function<BlockVector3, Clipboard> createOutput) throws IOException {
+        readHeader();
+        checkState(!sectionsRead, "The schematic has already been read");
+        sectionsRead = true;
+        BlockVector3 max = min.add(width - 1, height - 1, length - 1);
+        BlockVector3 from = region.getMinimumPoint().getMaximum(min).subtract(min);
+        BlockVector3 to = region.getMaximumPoint().getMinimum(max).subtract(min);
+        if (from.getX() > to.getX() || from.getY() > to.getY() || from.getZ() > to.getZ()) {
+            throw new IllegalArgumentException("The region does not intersect the schematic");
+        }
+        Clipboard clipboard = createOutput.apply(to.subtract(from).add(BlockVector3.ONE));
+        try {
+            readSections(clipboard, from, to);
+        } catch (IOException | RuntimeException e) {
+            clipboard.close();
+            throw e;
+        }
+        BlockVector3 readMin = min.add(from);
+        clipboard.setOrigin(min.subtract(offset).subtract(readMin));
+        if (clipboard instanceof SimpleClipboard && !readMin.equals(BlockVector3.ZERO)) {
+            clipboard = new BlockArrayClipboard((SimpleClipboard) clipboard, readMin);
+        }
+        return clipboard;
+    }
+
+    private void readSections(Clipboard clipboard, BlockVector3 from, BlockVector3 to) throws IOException {
+        int window = Math.max(2, Settings.settings().QUEUE.PARALLEL_THREADS * 2);
+        ArrayDeque<Future<Section>> pending = new ArrayDeque<>(window);
+        int sectionsX = getSectionsX();
+        int sectionsZ = getSectionsZ();
+        // Sections are stored ordered y, z, x, so this reads the stream forwards
+        for (int sectionY = from.getY() >> 4; sectionY <= to.getY() >> 4; sectionY++) {
+            for (int sectionZ = from.getZ() >> 4; sectionZ <= to.getZ() >> 4; sectionZ++) {
+                for (int sectionX = from.getX() >> 4; sectionX <= to.getX() >> 4; sectionX++) {
+                    int index = (sectionY * sectionsZ + sectionZ) * sectionsX + sectionX;
+                    long start = offsets[index];
+                    long end = offsets[index + 1];
+                    if (start == end) {
+                        // nothing but air
+                        continue;
+                    }
+                    skip(start - position);
+                    byte[] bytes = new byte[Math.toIntExact(end - start)];
+                    inputStream.readFully(bytes);
+                    position = end;
+                    int x = sectionX << 4;
+                    int y = sectionY << 4;
+                    int z = sectionZ << 4;
+                    FutureTask<Section> task = new FutureTask<>(() -> decode(bytes, x, y, z));
+                    executor.execute(task);
+                    pending.add(task);
+                    if (pending.size() >= window) {
+                        apply(clipboard, get(pending.poll()), from, to);
+                    }
+                }
+            }
+        }
+        while (!pending.isEmpty()) {
+            apply(clipboard, get(pending.poll()), from, to);
+        }
+    }
+
+    private void skip(long bytes) throws IOException {
+        while (bytes > 0) {
+            long skipped = inputStream.skip(bytes);
+            if (skipped <= 0) {
+                if (inputStream.read() == -1) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            bytes -= skipped;
+        }
+    }
+
+    private static Section get(Future<Section> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Could not decode section", e.getCause());
+        }
+    }
+
+    private Section decode(byte[] bytes, int x, int y, int z) throws IOException {
+        Section section = new Section(x, y, z, Math.min(16, width - x), Math.min(16, height - y), Math.min(16, length - z));
+        try (FaweInputStream in = MainUtil.getCompressedIS(new ByteArrayInputStream(bytes), SECTION_BUFFER)) {
+            char[] blocks = section.blocks;
+            for (int i = 0; i < blocks.length; i++) {
+                int id = in.readVarInt();
+                if (id >= palette.length) {
+                    throw new IOException("Invalid block palette index: " + id);
+                }
+                blocks[i] = palette[id];
+            }
+            if (biomePalette != null) {
+                section.biomes = new BiomeType[section.width * section.length];
+                for (int i = 0; i < section.biomes.length; i++) {
+                    int id = in.readVarInt();
+                    if (id >= biomePalette.length) {
+                        throw new IOException("Invalid biome palette index: " + id);
+                    }
+                    section.biomes[i] = biomePalette[id];
+                }
+            }
+            int tiles = in.readVarInt();
+            section.tileIndices = new short[tiles];
+            section.tiles = new ArrayList<>(tiles);
+            for (int i = 0; i < tiles; i++) {
+                section.tileIndices[i] = in.readShort();
+                section.tiles.add((CompoundTag) in.readNBT().getTag());
+            }
+            int entities = in.readVarInt();
+            section.entities = new ArrayList<>(entities);
+            for (int i = 0; i < entities; i++) {
+                section.entities.add((CompoundTag) in.readNBT().getTag());
+            }
+        }
+        return section;
+    }
+
+    private void apply(Clipboard clipboard, Section section, BlockVector3 from, BlockVector3 to) {
+        int fromX = from.getX();
+        int fromY = from.getY();
+        int fromZ = from.getZ();
+        int minX = Math.max(section.x, fromX);
+        int minY = Math.max(section.y, fromY);
+        int minZ = Math.max(section.z, fromZ);
+        int maxX = Math.min(section.x + section.width - 1, to.getX());
+        int maxY = Math.min(section.y + section.height - 1, to.getY());
+        int maxZ = Math.min(section.z + section.length - 1, to.getZ());
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                int index = ((y - section.y) * section.length + z - section.z) * section.width - section.x;
+                for (int x = minX; x <= maxX; x++) {
+                    clipboard.setBlock(x - fromX, y - fromY, z - fromZ, BlockTypesCache.states[section.blocks[index + x]]);
+                }
+            }
+        }
+        if (section.biomes != null) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int x = minX; x <= maxX; x++) {
+                    BiomeType biome = section.biomes[(z - section.z) * section.width + x - section.x];
+                    for (int y = minY; y <= maxY; y++) {
+                        clipboard.setBiome(x - fromX, y - fromY, z - fromZ, biome);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < section.tileIndices.length; i++) {
+            int index = section.tileIndices[i];
+            int x = section.x + (index & 15);
+            int y = section.y + (index >> 8 & 15);
+            int z = section.z + (index >> 4 & 15);
+            if (x < minX || x > maxX || y < minY || y > maxY || z < minZ || z > maxZ) {
+                continue;
+            }
+            Map<String, Tag> values = new HashMap<>(section.tiles.get(i).getValue());
+            values.put("x", new IntTag(x - fromX));
+            values.put("y", new IntTag(y - fromY));
+            values.put("z", new IntTag(z - fromZ));
+            clipboard.setTile(x - fromX, y - fromY, z - fromZ, fixBlockEntity(new CompoundTag(values)));
+        }
+        for (CompoundTag entity : section.entities) {
+            applyEntity(clipboard, fixEntity(entity), from, to);
+        }
+    }
+
+    private void applyEntity(Clipboard clipboard, CompoundTag entity, BlockVector3 from, BlockVector3 to) {
+        String id = entity.getString("id");
+        EntityType type = EntityTypes.parse(id);
+        if (type == null) {
+            LOGGER.error("Invalid entity: {}", id);
+            return;
+        }
+        Location location = entity.getEntityLocation(clipboard);
+        // Entities outside of the schematic belong to the nearest section
+        int x = Math.max(0, Math.min(width - 1, location.getBlockX()));
+        int y = Math.max(0, Math.min(height - 1, location.getBlockY()));
+        int z = Math.max(0, Math.min(length - 1, location.getBlockZ()));
+        if (x < from.getX() || x > to.getX() || y < from.getY() || y > to.getY() || z < from.getZ() || z > to.getZ()) {
+            return;
+        }
+        clipboard.createEntity(location.setPosition(location.subtract(from.toVector3())), new BaseEntity(type, entity));
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+
+    private static final class Section {
+
+        private final int x;
+        private final int y;
+        private final int z;
+        private final int width;
+        private final int height;
+        private final int length;
+        private final char[] blocks;
+        private BiomeType[] biomes;
+        private short[] tileIndices;
+        private List<CompoundTag> tiles;
+        private List<CompoundTag> entities;
+
+        private Section(int x, int y, int z, int width, int height, int length) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.width = width;
+            this.height = height;
+            this.length = length;
+            this.blocks = new char[width * height * length];
+        }
+
+    }
+
+}
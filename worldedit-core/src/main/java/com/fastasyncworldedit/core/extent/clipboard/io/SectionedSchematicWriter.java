@@ -0,0 +1,321 @@
+package com.fastasyncworldedit.core.extent.clipboard.io;
+
+import com.fastasyncworldedit.core.internal.io.FastByteArrayOutputStream;
+import com.fastasyncworldedit.core.internal.io.FaweOutputStream;
+import com.fastasyncworldedit.core.math.MutableBlockVector3;
+import com.fastasyncworldedit.core.util.IOUtil;
+import com.fastasyncworldedit.core.util.MainUtil;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.entity.BaseEntity;
+import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.extension.platform.Capability;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardWriter;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.math.Vector3;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.Location;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import com.sk89q.worldedit.world.biome.BiomeTypes;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Writes schematics in the sectioned FAWE format, which can be read in part and decoded in parallel.
+ * <p>
+ * The schematic is split into 16x16x16 sections, ordered y, z, x, and clipped to the dimensions of the schematic.
+ * Every section is compressed on its own with {@link MainUtil#getCompressedOS(OutputStream, int, int)}, and contains
+ * its blocks, biomes, block entities and the entities located in it. A header with the dimensions, the global block
+ * and biome palettes and a table of the offsets of all sections precedes the sections:
+ * <pre>
+ * int     magic, {@link #MAGIC}
+ * byte    format version, {@link #VERSION}
+ * int     data version
+ * int[3]  width, height, length
+ * int[3]  minimum point
+ * int[3]  offset of the minimum point from the origin
+ * varint  block palette size, followed by the block states
+ * varint  biome palette size, 0 if there are no biomes, followed by the biome ids
+ * long[]  offsets of the sections from the end of the table, one more than there are sections
+ * </pre>
+ * Sections without anything but air are empty. A section holds the block palette indices as varints, the biome
+ * palette indices of each column at the bottom of the section as varints, the number of block entities as varint
+ * followed by the index of each block entity in the section as short and its NBT, and the number of entities as
+ * varint followed by their NBT. Entity positions are relative to the minimum point.
+ */
+public class SectionedSchematicWriter implements ClipboardWriter {
+
+    static final int MAGIC = 0x46415753;
+    static final int VERSION = 1;
+    private static final int DEFAULT_COMPRESSION = 4;
+    private static final int SECTION_BUFFER = 8192;
+
+    private final DataOutputStream outputStream;
+    private int compression = DEFAULT_COMPRESSION;
+
+    /**
+     * Create a new schematic writer.
+     *
+     * @param outputStream the output stream to write to
+     */
+    public SectionedSchematicWriter(OutputStream outputStream) {
+        checkNotNull(outputStream);
+        this.outputStream = new DataOutputStream(new BufferedOutputStream(outputStream));
+    }
+
+    /**
+     * Set the compression of the sections, as for {@link MainUtil#getCompressedOS(OutputStream, int, int)}.
+     *
+     * @param compression the compression level from 0 to 9
+     */
+    public void setCompression(int compression) {
+        checkArgument(compression >= 0 && compression <= 9, "Compression level must be between 0 and 9");
+        this.compression = compression;
+    }
+
+    @Override
+    public void write(Clipboard clipboard) throws IOException {
+        clipboard.flush();
+        Region region = clipboard.getRegion();
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 offset = min.subtract(clipboard.getOrigin());
+        int width = region.getWidth();
+        int height = region.getHeight();
+        int length = region.getLength();
+        int sectionsX = (width + 15) >> 4;
+        int sectionsY = (height + 15) >> 4;
+        int sectionsZ = (length + 15) >> 4;
+
+        Palettes palettes = new Palettes(clipboard.hasBiomes());
+        Int2ObjectOpenHashMap<List<CompoundTag>> entities = getEntities(clipboard, min, sectionsX, sectionsY, sectionsZ);
+        byte[][] sections = new byte[sectionsX * sectionsY * sectionsZ][];
+        for (int sectionY = 0, index = 0; sectionY < sectionsY; sectionY++) {
+            for (int sectionZ = 0; sectionZ < sectionsZ; sectionZ++) {
+                for (int sectionX = 0; sectionX < sectionsX; sectionX++, index++) {
+                    sections[index] = writeSection(
+                            clipboard,
+                            palettes,
+                            entities.get(index),
+                            min.add(sectionX << 4, sectionY << 4, sectionZ << 4),
+                            Math.min(16, width - (sectionX << 4)),
+                            Math.min(16, height - (sectionY << 4)),
+                            Math.min(16, length - (sectionZ << 4))
+                    );
+                }
+            }
+        }
+
+        DataOutputStream out = outputStream;
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(WorldEdit.getInstance().getPlatformManager().queryCapability(Capability.WORLD_EDITING).getDataVersion());
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeInt(length);
+        out.writeInt(min.getX());
+        out.writeInt(min.getY());
+        out.writeInt(min.getZ());
+        out.writeInt(offset.getX());
+        out.writeInt(offset.getY());
+        out.writeInt(offset.getZ());
+        palettes.write(out);
+        long position = 0;
+        out.writeLong(position);
+        for (byte[] section : sections) {
+            position += section.length;
+            out.writeLong(position);
+        }
+        for (byte[] section : sections) {
+            out.write(section);
+        }
+        out.flush();
+    }
+
+    private Int2ObjectOpenHashMap<List<CompoundTag>> getEntities(
+            Clipboard clipboard,
+            BlockVector3 min,
+            int sectionsX,
+            int sectionsY,
+            int sectionsZ
+    ) {
+        Int2ObjectOpenHashMap<List<CompoundTag>> entities = new Int2ObjectOpenHashMap<>();
+        for (Entity entity : clipboard.getEntities()) {
+            BaseEntity state = entity.getState();
+            if (state == null) {
+                continue;
+            }
+            Map<String, Tag> values = new HashMap<>();
+            CompoundTag rawTag = state.getNbtData();
+            if (rawTag != null) {
+                values.putAll(rawTag.getValue());
+            }
+            Location location = entity.getLocation();
+            Vector3 position = location.toVector().subtract(min.toVector3());
+            values.put("id", new StringTag(state.getType().getId()));
+            values.put("Pos", writeVector(position));
+            values.put("Rotation", writeRotation(location));
+            int sectionX = Math.max(0, Math.min(sectionsX - 1, (int) Math.floor(position.getX()) >> 4));
+            int sectionY = Math.max(0, Math.min(sectionsY - 1, (int) Math.floor(position.getY()) >> 4));
+            int sectionZ = Math.max(0, Math.min(sectionsZ - 1, (int) Math.floor(position.getZ()) >> 4));
+            int index = (sectionY * sectionsZ + sectionZ) * sectionsX + sectionX;
+            entities.computeIfAbsent(index, k -> new ArrayList<>()).add(new CompoundTag(values));
+        }
+        return entities;
+    }
+
+    private byte[] writeSection(
+            Clipboard clipboard,
+            Palettes palettes,
+            List<CompoundTag> entities,
+            BlockVector3 sectionMin,
+            int width,
+            int height,
+            int length
+    ) throws IOException {
+        int[] blocks = new int[width * height * length];
+        List<CompoundTag> tiles = new ArrayList<>();
+        short[] tileIndices = new short[16];
+        boolean empty = !palettes.hasBiomes() && entities == null;
+        int minX = sectionMin.getX();
+        int minY = sectionMin.getY();
+        int minZ = sectionMin.getZ();
+        for (int y = 0, index = 0; y < height; y++) {
+            for (int z = 0; z < length; z++) {
+                for (int x = 0; x < width; x++, index++) {
+                    BaseBlock block = clipboard.getFullBlock(minX + x, minY + y, minZ + z);
+                    CompoundTag nbt = block.getNbtData();
+                    if (nbt != null) {
+                        Map<String, Tag> values = new HashMap<>(nbt.getValue());
+                        // Positions are implied by the index
+                        values.remove("x");
+                        values.remove("y");
+                        values.remove("z");
+                        values.put("id", new StringTag(block.getNbtId()));
+                        if (tiles.size() == tileIndices.length) {
+                            tileIndices = Arrays.copyOf(tileIndices, tileIndices.length << 1);
+                        }
+                        tileIndices[tiles.size()] = (short) ((y << 8) | (z << 4) | x);
+                        tiles.add(new CompoundTag(values));
+                    }
+                    int ordinal = block.getOrdinal();
+                    if (ordinal == BlockTypesCache.ReservedIDs.__RESERVED__) {
+                        ordinal = BlockTypes.AIR.getDefaultState().getOrdinal();
+                    }
+                    empty &= BlockTypesCache.states[ordinal].getBlockType().getMaterial().isAir();
+                    blocks[index] = palettes.getBlockIndex(ordinal);
+                }
+            }
+        }
+        if (empty && tiles.isEmpty()) {
+            return new byte[0];
+        }
+        FastByteArrayOutputStream bytes = new FastByteArrayOutputStream();
+        try (FaweOutputStream out = MainUtil.getCompressedOS(bytes, compression, SECTION_BUFFER)) {
+            for (int block : blocks) {
+                out.writeVarInt(block);
+            }
+            if (palettes.hasBiomes()) {
+                MutableBlockVector3 mutable = new MutableBlockVector3();
+                for (int z = 0; z < length; z++) {
+                    for (int x = 0; x < width; x++) {
+                        BiomeType biome = clipboard.getBiome(mutable.setComponents(minX + x, minY, minZ + z));
+                        out.writeVarInt(palettes.getBiomeIndex(biome));
+                    }
+                }
+            }
+            out.writeVarInt(tiles.size());
+            for (int i = 0; i < tiles.size(); i++) {
+                out.writeShort(tileIndices[i]);
+                out.writeNBT("", tiles.get(i));
+            }
+            if (entities == null) {
+                out.writeVarInt(0);
+            } else {
+                out.writeVarInt(entities.size());
+                for (CompoundTag entity : entities) {
+                    out.writeNBT("", entity);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public void close() throws IOException {
+        outputStream.close();
+    }
+
+    /**
+     * The block and biome palettes, built while the sections are written.
+     */
+    private static final class Palettes {
+
+        private final int[] blockIndices = new int[BlockTypesCache.states.length];
+        private final List<String> blocks = new ArrayList<>();
+        private final int[] biomeIndices;
+        private final List<String> biomes = new ArrayList<>();
+
+        private Palettes(boolean hasBiomes) {
+            Arrays.fill(blockIndices, -1);
+            if (hasBiomes) {
+                biomeIndices = new int[BiomeTypes.getMaxId() + 1];
+                Arrays.fill(biomeIndices, -1);
+            } else {
+                biomeIndices = null;
+            }
+        }
+
+        private boolean hasBiomes() {
+            return biomeIndices != null;
+        }
+
+        private int getBlockIndex(int ordinal) {
+            int index = blockIndices[ordinal];
+            if (index == -1) {
+                blockIndices[ordinal] = index = blocks.size();
+                blocks.add(BlockTypesCache.states[ordinal].getAsString());
+            }
+            return index;
+        }
+
+        private int getBiomeIndex(BiomeType biome) {
+            int index = biomeIndices[biome.getInternalId()];
+            if (index == -1) {
+                biomeIndices[biome.getInternalId()] = index = biomes.size();
+                biomes.add(biome.getId());
+            }
+            return index;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            IOUtil.writeVarInt(out, blocks.size());
+            for (String block : blocks) {
+                out.writeUTF(block);
+            }
+            IOUtil.writeVarInt(out, biomes.size());
+            for (String biome : biomes) {
+                out.writeUTF(biome);
+            }
+        }
+
+    }
+
+}
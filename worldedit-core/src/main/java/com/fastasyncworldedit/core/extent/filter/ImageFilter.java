@@ -0,0 +1,142 @@
+package com.fastasyncworldedit.core.extent.filter;
+
+import com.fastasyncworldedit.core.extent.filter.block.FilterBlock;
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.fastasyncworldedit.core.util.TextureUtil;
+import com.fastasyncworldedit.core.util.image.ImageUtil;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+
+import javax.annotation.Nullable;
+import java.awt.image.BufferedImage;
+
+/**
+ * Places the block closest in color to each pixel of an image on a flat layer, with the x and y of the image along
+ * the x and z axes. When applied to a queue, the pixels of each chunk are resolved and set as one tile, so the chunks
+ * of the image are rendered in parallel. The pixels are read from the raster of the image once, up front.
+ * <p>
+ * The texture util used must be safe to use from several threads.
+ */
+public class ImageFilter extends ForkedFilter<ImageFilter> {
+
+    private final int[] pixels;
+    private final int width;
+    private final int height;
+    private final int minX;
+    private final int minZ;
+    private final int y;
+    private final TextureUtil textureUtil;
+    private long affected;
+
+    /**
+     * Create a new filter. Apply it to {@link #getRegion()}.
+     *
+     * @param image       the image to place
+     * @param origin      the position of the top left pixel of the image
+     * @param textureUtil the texture util to look up blocks by color
+     */
+    public ImageFilter(BufferedImage image, BlockVector3 origin, TextureUtil textureUtil) {
+        super(null);
+        this.pixels = ImageUtil.getPixels(image);
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        this.minX = origin.getX();
+        this.minZ = origin.getZ();
+        this.y = origin.getY();
+        this.textureUtil = textureUtil;
+    }
+
+    private ImageFilter(ImageFilter root) {
+        super(root);
+        this.pixels = root.pixels;
+        this.width = root.width;
+        this.height = root.height;
+        this.minX = root.minX;
+        this.minZ = root.minZ;
+        this.y = root.y;
+        this.textureUtil = root.textureUtil;
+    }
+
+    @Override
+    public ImageFilter init() {
+        return new ImageFilter(this);
+    }
+
+    @Override
+    public void join(ImageFilter filter) {
+        this.affected += filter.affected;
+    }
+
+    /**
+     * Get the region covered by the image.
+     *
+     * @return the region
+     */
+    public CuboidRegion getRegion() {
+        return new CuboidRegion(
+                BlockVector3.at(minX, y, minZ),
+                BlockVector3.at(minX + width - 1, y, minZ + height - 1)
+        );
+    }
+
+    /**
+     * Get the number of pixels placed as blocks.
+     *
+     * @return the number of blocks set
+     */
+    public long getAffected() {
+        return affected;
+    }
+
+    // Not memoized, as a randomizing texture util gives different blocks for the same color
+    @Nullable
+    private BlockState getBlock(int color) {
+        BlockType type = textureUtil.getNearestBlock(color);
+        return type == null ? null : type.getDefaultState();
+    }
+
+    @Override
+    public <T extends IChunk> T applyChunk(T chunk, @Nullable Region region) {
+        if (y < chunk.getMinSectionPosition() << 4 || y > (chunk.getMaxSectionPosition() << 4) + 15) {
+            return null;
+        }
+        int bx = chunk.getX() << 4;
+        int bz = chunk.getZ() << 4;
+        int fromX = Math.max(0, bx - minX);
+        int toX = Math.min(width, bx + 16 - minX);
+        int fromZ = Math.max(0, bz - minZ);
+        int toZ = Math.min(height, bz + 16 - minZ);
+        for (int z = fromZ; z < toZ; z++) {
+            int index = z * width;
+            int localZ = minZ + z - bz;
+            for (int x = fromX; x < toX; x++) {
+                BlockState block = getBlock(pixels[index + x]);
+                if (block != null) {
+                    chunk.setBlock(minX + x - bx, y, localZ, block);
+                    affected++;
+                }
+            }
+        }
+        // The blocks are set per chunk, there is nothing left to do per block
+        return null;
+    }
+
+    @Override
+    public void applyBlock(FilterBlock block) {
+        // Used when the extent is not a queue
+        int x = block.getX() - minX;
+        int z = block.getZ() - minZ;
+        if (block.getY() != y || x < 0 || x >= width || z < 0 || z >= height) {
+            return;
+        }
+        BlockState state = getBlock(pixels[z * width + x]);
+        if (state != null) {
+            block.setBlock(state);
+            affected++;
+        }
+    }
+
+}
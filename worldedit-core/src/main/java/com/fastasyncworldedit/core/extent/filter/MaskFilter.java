@@ -2,11 +2,14 @@
 
 import com.fastasyncworldedit.core.extent.filter.block.DelegateFilter;
 import com.fastasyncworldedit.core.extent.filter.block.FilterBlock;
+import com.fastasyncworldedit.core.function.mask.ABlockMask;
 import com.fastasyncworldedit.core.queue.Filter;
 import com.sk89q.worldedit.function.mask.AbstractExtentMask;
 import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.pattern.Pattern;
 
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * Filter with an attached Mask used for deciding whether a block is eligible for being applied to.
@@ -15,8 +18,13 @@
  */
 public class MaskFilter<T extends Filter> extends DelegateFilter<T> {
 
+    private static final long[] NO_BITS = new long[64];
+    private static final char[] NO_BLOCKS = new char[0];
+
     private final Mask mask;
     private final AtomicInteger changes;
+    private final boolean sectionPattern;
+    private final long[] sectionBits = new long[64];
 
     public MaskFilter(T other, Mask root) {
         this(other, root, new AtomicInteger());
@@ -26,6 +34,8 @@ public MaskFilter(T other, Mask root, AtomicInteger changes) {
         super(other);
         this.mask = root;
         this.changes = changes;
+        // Nothing is written without any bits set
+        this.sectionPattern = other instanceof Pattern pattern && pattern.applySection(NO_BITS, NO_BLOCKS);
     }
 
     @Override
@@ -41,6 +51,31 @@ public void applyBlock(FilterBlock block) {
         }
     }
 
+    /**
+     * Apply the filter to a whole chunk section at once, if both the mask and the pattern only depend on the block
+     * ordinals.
+     *
+     * @param get the block ordinals of the section
+     * @param set supplier for the block ordinals to write to, only called if any block passes the mask
+     * @return false if the section has to be filtered block by block, nothing was changed then
+     */
+    public boolean applySection(char[] get, Supplier<char[]> set) {
+        if (!sectionPattern || !(mask instanceof ABlockMask blockMask)) {
+            return false;
+        }
+        long[] bits = sectionBits;
+        blockMask.testSection(get, bits);
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        if (count != 0) {
+            ((Pattern) getParent()).applySection(bits, set.get());
+            this.changes.addAndGet(count);
+        }
+        return true;
+    }
+
     /**
      * Get the number of blocks which passed the Mask test and were applied to
      *
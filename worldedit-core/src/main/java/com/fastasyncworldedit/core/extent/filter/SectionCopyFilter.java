@@ -0,0 +1,191 @@
+package com.fastasyncworldedit.core.extent.filter;
+
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.fastasyncworldedit.core.queue.IChunkGet;
+import com.fastasyncworldedit.core.queue.implementation.chunk.ChunkHolder;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * Copies blocks from a region of the world into the chunks the filter is applied to, one chunk section at a time.
+ * The translation must be a multiple of 16 on every axis so that each destination section maps onto exactly one source
+ * section. Sections entirely within the source region (and mask region) are copied as a whole with a single array copy,
+ * sections on the border are copied block by block.
+ * <p>
+ * The source is read from the {@link IChunkGet}s of the queue the destination chunk belongs to, so source and
+ * destination must not overlap. These hold the blocks of the world as loaded, without the changes of the queue: blocks
+ * set in the source but not yet flushed to the world are not seen, and the blocks they replace are copied instead.
+ * Callers must only use this filter when no changes to the source are pending, e.g. at the start of an edit.
+ */
+public class SectionCopyFilter extends ForkedFilter<SectionCopyFilter> {
+
+    private final CuboidRegion source;
+    private final Region mask;
+    private final int translateX;
+    private final int translateY;
+    private final int translateZ;
+    private final boolean copyBiomes;
+    private long affected;
+    private long affectedBiomes;
+
+    /**
+     * Create a new filter. Apply it to the source region translated by the given translation.
+     *
+     * @param source      the region to copy from
+     * @param mask        an additional region source positions must be in, or null
+     * @param translation the translation from source to destination, each component a multiple of 16
+     * @param copyBiomes  if biomes should be copied
+     */
+    public SectionCopyFilter(CuboidRegion source, @Nullable Region mask, BlockVector3 translation, boolean copyBiomes) {
+        super(null);
+        if (((translation.getX() | translation.getY() | translation.getZ()) & 15) != 0) {
+            throw new IllegalArgumentException("Translation must be section aligned: " + translation);
+        }
+        this.source = source;
+        this.mask = mask;
+        this.translateX = translation.getX();
+        this.translateY = translation.getY();
+        this.translateZ = translation.getZ();
+        this.copyBiomes = copyBiomes;
+    }
+
+    private SectionCopyFilter(SectionCopyFilter root) {
+        super(root);
+        this.source = root.source;
+        this.mask = root.mask;
+        this.translateX = root.translateX;
+        this.translateY = root.translateY;
+        this.translateZ = root.translateZ;
+        this.copyBiomes = root.copyBiomes;
+    }
+
+    @Override
+    public SectionCopyFilter init() {
+        return new SectionCopyFilter(this);
+    }
+
+    @Override
+    public void join(SectionCopyFilter filter) {
+        this.affected += filter.affected;
+        this.affectedBiomes += filter.affectedBiomes;
+    }
+
+    private boolean contains(int x, int y, int z) {
+        return source.contains(x, y, z) && (mask == null || mask.contains(x, y, z));
+    }
+
+    private boolean containsSection(int bx, int by, int bz) {
+        int tx = bx + 15;
+        int ty = by + 15;
+        int tz = bz + 15;
+        // Checking the corners is only sufficient for cuboids
+        return source.containsEntireCuboid(bx, tx, by, ty, bz, tz)
+                && (mask == null || (mask instanceof CuboidRegion && mask.containsEntireCuboid(bx, tx, by, ty, bz, tz)));
+    }
+
+    @Override
+    public <T extends IChunk> T applyChunk(T chunk, @Nullable Region region) {
+        if (!(chunk instanceof ChunkHolder<?> holder)) {
+            throw new IllegalStateException("Section copies require a queued chunk, got " + chunk.getClass().getName());
+        }
+        int sectionX = translateX >> 4;
+        int sectionY = translateY >> 4;
+        int sectionZ = translateZ >> 4;
+        int sourceChunkX = chunk.getX() - sectionX;
+        int sourceChunkZ = chunk.getZ() - sectionZ;
+        int bx = sourceChunkX << 4;
+        int bz = sourceChunkZ << 4;
+        if (bx > source.getMaximumX() || bx + 15 < source.getMinimumX() || bz > source.getMaximumZ() || bz + 15 < source.getMinimumZ()) {
+            return null;
+        }
+        // The world's blocks, pending sets of the source chunk are not included
+        IChunkGet get = holder.getExtent().getCachedGet(sourceChunkX, sourceChunkZ);
+
+        int minLayer = Math.max(source.getMinimumY() >> 4, get.getMinSectionPosition());
+        minLayer = Math.max(minLayer, chunk.getMinSectionPosition() - sectionY);
+        int maxLayer = Math.min(source.getMaximumY() >> 4, get.getMaxSectionPosition());
+        maxLayer = Math.min(maxLayer, chunk.getMaxSectionPosition() - sectionY);
+
+        for (int layer = minLayer; layer <= maxLayer; layer++) {
+            int by = layer << 4;
+            char[] blocks = get.load(layer);
+            if (containsSection(bx, by, bz)) {
+                char[] copy = new char[4096];
+                System.arraycopy(blocks, 0, copy, 0, 4096);
+                chunk.setBlocks(layer + sectionY, copy);
+                affected += 4096;
+            } else {
+                int index = 0;
+                for (int y = 0; y < 16; y++) {
+                    int yy = by + y;
+                    for (int z = 0; z < 16; z++) {
+                        int zz = bz + z;
+                        for (int x = 0; x < 16; x++, index++) {
+                            char ordinal = blocks[index];
+                            if (ordinal != BlockTypesCache.ReservedIDs.__RESERVED__ && contains(bx + x, yy, zz)) {
+                                chunk.setBlock(x, yy + translateY, z, BlockState.getFromOrdinal(ordinal));
+                                affected++;
+                            }
+                        }
+                    }
+                }
+            }
+            if (copyBiomes) {
+                // Biomes are stored per 4x4x4 cell
+                for (int y = 0; y < 16; y += 4) {
+                    int yy = by + y;
+                    for (int z = 0; z < 16; z += 4) {
+                        for (int x = 0; x < 16; x += 4) {
+                            if (!contains(bx + x, yy, bz + z)) {
+                                continue;
+                            }
+                            BiomeType biome = get.getBiomeType(x, yy, z);
+                            if (biome != null) {
+                                chunk.setBiome(x, yy + translateY, z, biome);
+                                affectedBiomes++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        if (minLayer <= maxLayer) {
+            int minY = minLayer << 4;
+            int maxY = (maxLayer << 4) + 15;
+            for (Map.Entry<BlockVector3, CompoundTag> entry : get.getTiles().entrySet()) {
+                BlockVector3 pos = entry.getKey();
+                int y = pos.getY();
+                if (y < minY || y > maxY || !contains(pos.getX(), y, pos.getZ())) {
+                    continue;
+                }
+                chunk.setTile(pos.getX() & 15, y + translateY, pos.getZ() & 15, entry.getValue());
+            }
+        }
+        // Nothing left to do per block
+        return null;
+    }
+
+    /**
+     * Get the number of blocks copied.
+     */
+    public long getAffected() {
+        return affected;
+    }
+
+    /**
+     * Get the number of biome cells copied.
+     */
+    public long getAffectedBiomes() {
+        return affectedBiomes;
+    }
+
+}
@@ -0,0 +1,229 @@
+package com.fastasyncworldedit.core.extent.filter;
+
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.fastasyncworldedit.core.queue.IQueueExtent;
+import com.fastasyncworldedit.core.queue.implementation.ParallelQueueExtent;
+import com.fastasyncworldedit.core.world.storage.ChunkSource;
+import com.fastasyncworldedit.core.world.storage.SectionedChunk;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.entity.BaseEntity;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.nbt.CompoundBinaryTag;
+import com.sk89q.worldedit.world.DataException;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import com.sk89q.worldedit.world.chunk.Chunk;
+import com.sk89q.worldedit.world.storage.MissingChunkException;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Restores the chunks the filter is applied to from a {@link ChunkSource}. Chunks are loaded and restored in parallel
+ * when applied to a {@link ParallelQueueExtent}. Sections of {@link SectionedChunk}s that are entirely within a cuboid
+ * region are set as a whole, everything else is restored block by block.
+ * <p>
+ * Entities are only collected, so that they can be created on the calling thread after the filter was applied.
+ */
+public class SnapshotRestoreFilter extends ForkedFilter<SnapshotRestoreFilter> {
+
+    private final ChunkSource source;
+    private final Region region;
+    private final boolean restoreBiomes;
+    private final boolean restoreEntities;
+    private final List<BlockVector2> missingChunks;
+    private final List<BlockVector2> errorChunks;
+    private final List<BaseEntity> entities;
+    private final AtomicReference<String> lastErrorMessage;
+
+    /**
+     * Create a new filter.
+     *
+     * @param source          the chunks to restore from
+     * @param region          the region to restore
+     * @param restoreBiomes   if biomes should be restored
+     * @param restoreEntities if entities should be collected
+     */
+    public SnapshotRestoreFilter(ChunkSource source, Region region, boolean restoreBiomes, boolean restoreEntities) {
+        super(null);
+        this.source = source;
+        this.region = region;
+        this.restoreBiomes = restoreBiomes;
+        this.restoreEntities = restoreEntities;
+        this.missingChunks = Collections.synchronizedList(new ArrayList<>());
+        this.errorChunks = Collections.synchronizedList(new ArrayList<>());
+        this.entities = Collections.synchronizedList(new ArrayList<>());
+        this.lastErrorMessage = new AtomicReference<>();
+    }
+
+    private SnapshotRestoreFilter(SnapshotRestoreFilter root) {
+        super(root);
+        this.source = root.source;
+        this.region = root.region;
+        this.restoreBiomes = root.restoreBiomes;
+        this.restoreEntities = root.restoreEntities;
+        this.missingChunks = root.missingChunks;
+        this.errorChunks = root.errorChunks;
+        this.entities = root.entities;
+        this.lastErrorMessage = root.lastErrorMessage;
+    }
+
+    /**
+     * Get the queue an edit session writes to, if nothing but edit sessions sit between the two. Writing to the queue
+     * directly would otherwise bypass extents such as masks.
+     *
+     * @param editSession the edit session
+     * @return the queue, or null if there is none or other extents would be bypassed
+     */
+    @Nullable
+    public static Extent getQueue(EditSession editSession) {
+        Extent queue = editSession;
+        while (queue instanceof EditSession session) {
+            queue = session.getExtent();
+        }
+        if (queue instanceof ParallelQueueExtent || queue instanceof IQueueExtent) {
+            return queue;
+        }
+        return null;
+    }
+
+    @Override
+    public SnapshotRestoreFilter init() {
+        return new SnapshotRestoreFilter(this);
+    }
+
+    @Override
+    public void join(SnapshotRestoreFilter filter) {
+        // All state is shared with the root
+    }
+
+    @Override
+    public <T extends IChunk> T applyChunk(T chunk, @Nullable Region region) {
+        BlockVector2 chunkPos = BlockVector2.at(chunk.getX(), chunk.getZ());
+        Chunk stored;
+        try {
+            stored = source.getChunk(chunkPos);
+        } catch (MissingChunkException e) {
+            missingChunks.add(chunkPos);
+            return null;
+        } catch (IOException | DataException e) {
+            errorChunks.add(chunkPos);
+            lastErrorMessage.set(e.getMessage());
+            return null;
+        }
+
+        int bx = chunk.getX() << 4;
+        int bz = chunk.getZ() << 4;
+        int minLayer = Math.max(this.region.getMinimumY() >> 4, chunk.getMinSectionPosition());
+        int maxLayer = Math.min(this.region.getMaximumY() >> 4, chunk.getMaxSectionPosition());
+        boolean cuboid = this.region instanceof CuboidRegion;
+        Map<BlockVector3, CompoundBinaryTag> tiles = null;
+
+        for (int layer = minLayer; layer <= maxLayer; layer++) {
+            int by = layer << 4;
+            if (stored instanceof SectionedChunk sectioned && cuboid
+                    && this.region.containsEntireCuboid(bx, bx + 15, by, by + 15, bz, bz + 15)) {
+                chunk.setBlocks(layer, sectioned.getSectionOrdinals(layer));
+                try {
+                    if (tiles == null) {
+                        tiles = sectioned.getTileEntities();
+                    }
+                    for (Map.Entry<BlockVector3, CompoundBinaryTag> entry : tiles.entrySet()) {
+                        BlockVector3 pos = entry.getKey();
+                        if (pos.getY() >> 4 == layer) {
+                            chunk.setTile(pos.getX() & 15, pos.getY(), pos.getZ() & 15, new CompoundTag(entry.getValue()));
+                        }
+                    }
+                } catch (DataException e) {
+                    // this is a workaround: just ignore for now
+                }
+            } else {
+                for (int y = 0; y < 16; y++) {
+                    int yy = by + y;
+                    for (int z = 0; z < 16; z++) {
+                        for (int x = 0; x < 16; x++) {
+                            if (!this.region.contains(bx + x, yy, bz + z)) {
+                                continue;
+                            }
+                            try {
+                                chunk.setBlock(x, yy, z, stored.getBlock(BlockVector3.at(bx + x, yy, bz + z)));
+                            } catch (DataException e) {
+                                // this is a workaround: just ignore for now
+                            }
+                        }
+                    }
+                }
+            }
+            if (restoreBiomes) {
+                // Biomes are stored per 4x4x4 cell
+                for (int y = 0; y < 16; y += 4) {
+                    int yy = by + y;
+                    for (int z = 0; z < 16; z += 4) {
+                        for (int x = 0; x < 16; x += 4) {
+                            if (!this.region.contains(bx + x, yy, bz + z)) {
+                                continue;
+                            }
+                            try {
+                                BiomeType biome = stored.getBiome(BlockVector3.at(bx + x, yy, bz + z));
+                                if (biome != null) {
+                                    chunk.setBiome(x, yy, z, biome);
+                                }
+                            } catch (DataException e) {
+                                // this is a workaround: just ignore for now
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        if (restoreEntities) {
+            try {
+                entities.addAll(stored.getEntities());
+            } catch (DataException e) {
+                // this is a workaround: just ignore for now
+            }
+        }
+        // Nothing left to do per block
+        return null;
+    }
+
+    /**
+     * Get the chunks that were not present in the source.
+     */
+    public List<BlockVector2> getMissingChunks() {
+        return missingChunks;
+    }
+
+    /**
+     * Get the chunks that could not be loaded for other reasons.
+     */
+    public List<BlockVector2> getErrorChunks() {
+        return errorChunks;
+    }
+
+    /**
+     * Get the entities of all restored chunks, if entities are restored.
+     */
+    public List<BaseEntity> getEntities() {
+        return entities;
+    }
+
+    /**
+     * Get the last error message, or null if no chunk failed to load.
+     */
+    @Nullable
+    public String getLastErrorMessage() {
+        return lastErrorMessage.get();
+    }
+
+}
@@ -1,12 +1,10 @@
 package com.fastasyncworldedit.core.extent.filter.block;
 
 import com.fastasyncworldedit.core.FaweCache;
+import com.fastasyncworldedit.core.extent.filter.MaskFilter;
 import com.fastasyncworldedit.core.queue.Filter;
-import com.fastasyncworldedit.core.queue.FilterBlockMask;
 import com.fastasyncworldedit.core.queue.IBlocks;
-import com.fastasyncworldedit.core.queue.IChunkGet;
 import com.fastasyncworldedit.core.queue.IChunkSet;
-import com.fastasyncworldedit.core.queue.implementation.Flood;
 import com.fastasyncworldedit.core.queue.implementation.blocks.CharGetBlocks;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.WorldEditException;
@@ -87,32 +85,6 @@ public synchronized final ChunkFilterBlock initLayer(IBlocks iget, IChunkSet ise
         return this;
     }
 
-    @Override
-    public synchronized void flood(
-            IChunkGet iget, IChunkSet iset, int layer, Flood flood,
-            FilterBlockMask mask
-    ) {
-        final int maxDepth = flood.getMaxDepth();
-        final boolean checkDepth = maxDepth < Character.MAX_VALUE;
-        if (initLayer(iget, iset, layer) != null) { // TODO replace with hasSection
-            while ((index = flood.poll()) != -1) {
-                x = index & 15;
-                z = index >> 4 & 15;
-                y = index >> 8 & 15;
-
-                if (mask.applyBlock(this)) {
-                    int depth = index >> 12;
-
-                    if (checkDepth && depth > maxDepth) {
-                        continue;
-                    }
-
-                    flood.apply(x, y, z, depth);
-                }
-            }
-        }
-    }
-
     @Override
     public synchronized void filter(Filter filter, int x, int y, int z) {
         this.x = x;
@@ -170,6 +142,9 @@ public synchronized final void filter(Filter filter, Region region) {
 
     @Override
     public synchronized final void filter(Filter filter) {
+        if (filter instanceof MaskFilter<?> maskFilter && maskFilter.applySection(getArr, this::getOrCreateSetArray)) {
+            return;
+        }
         for (y = 0, index = 0; y < 16; y++) {
             for (z = 0; z < 16; z++) {
                 for (x = 0; x < 16; x++, index++) {
@@ -375,11 +350,33 @@ public char getOrdinalChar(Extent orDefault) {
     }
 
     //Set delegate
+    private char[] getOrCreateSetArray() {
+        if (setArr == null) {
+            initSet();
+        }
+        return setArr;
+    }
+
     private SetDelegate initSet() {
         setArr = set.load(layer);
         return delegate = FULL;
     }
 
+    @Override
+    public int getNearestSurfaceTerrainBlock(
+            int x,
+            int z,
+            int y,
+            int minY,
+            int maxY,
+            int failedMin,
+            int failedMax,
+            boolean ignoreAir
+    ) {
+        // The queue reads the same blocks, and caches the columns
+        return getExtent().getNearestSurfaceTerrainBlock(x, z, y, minY, maxY, failedMin, failedMax, ignoreAir);
+    }
+
     @Override
     public BiomeType getBiomeType(int x, int y, int z) {
         if (x >> 4 == chunkX && z >> 4 == chunkZ) {
@@ -1,12 +1,10 @@
 package com.fastasyncworldedit.core.extent.filter.block;
 
 import com.fastasyncworldedit.core.queue.Filter;
-import com.fastasyncworldedit.core.queue.FilterBlockMask;
 import com.fastasyncworldedit.core.queue.IBlocks;
 import com.fastasyncworldedit.core.queue.IChunk;
 import com.fastasyncworldedit.core.queue.IChunkGet;
 import com.fastasyncworldedit.core.queue.IChunkSet;
-import com.fastasyncworldedit.core.queue.implementation.Flood;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.regions.Region;
 
@@ -32,12 +30,6 @@ public ChunkFilterBlock(Extent extent) {
      */
     public abstract ChunkFilterBlock initLayer(IBlocks iget, IChunkSet iset, int layer);
 
-    public abstract void flood(
-            IChunkGet iget, IChunkSet iset, int layer,
-            Flood flood, FilterBlockMask mask
-    );
-
-
     /**
      * Filter a single block.
      */
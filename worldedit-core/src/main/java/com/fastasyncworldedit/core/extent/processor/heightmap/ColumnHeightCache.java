@@ -0,0 +1,317 @@
+package com.fastasyncworldedit.core.extent.processor.heightmap;
+
+import com.fastasyncworldedit.core.extent.processor.ProcessorScope;
+import com.fastasyncworldedit.core.queue.IBatchProcessor;
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.fastasyncworldedit.core.queue.IChunkGet;
+import com.fastasyncworldedit.core.queue.IChunkSet;
+import com.fastasyncworldedit.core.queue.IQueueChunk;
+import com.fastasyncworldedit.core.queue.IQueueExtent;
+import com.fastasyncworldedit.core.util.MathMan;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Caches which blocks of each column are movement blockers, so that the nearest terrain surface of a column can be
+ * found without reading the column block by block. Terrain brushes and masks look up the same columns many times over.
+ * <p>
+ * The cache is filled section by section from the chunks of the queue a lookup is made through. Sections above the
+ * {@link HeightMapType#WORLD_SURFACE} height map of the chunk are known to be air and are not loaded at all. As a batch
+ * processor, the cache applies the blocks set by the edit to the sections it has already cached when a chunk is
+ * processed, so it must be added once to the processor shared by all queues of the edit it is used for.
+ * <p>
+ * Lookups and processing are safe from any thread.
+ */
+public class ColumnHeightCache implements IBatchProcessor {
+
+    // Each cached section is a bitmap per plane and column, with bit y set for the block at y of the column
+    private static final int COLUMNS = 256;
+    private static final int BLOCKER = 0;
+    private static final int OPEN = COLUMNS;
+    private static final int TYPE_BLOCKER = COLUMNS * 2;
+    private static final char[] AIR_SECTION = new char[COLUMNS * 3];
+
+    static {
+        Arrays.fill(AIR_SECTION, OPEN, OPEN + COLUMNS, (char) 0xFFFF);
+    }
+
+    private final int minY;
+    private final int minSection;
+    private final int maxSection;
+    private final byte[] flags;
+    private final Long2ObjectOpenHashMap<Columns> chunks = new Long2ObjectOpenHashMap<>();
+
+    /**
+     * Create a new cache for a world with the given height.
+     *
+     * @param minY the minimum y of the world
+     * @param maxY the maximum y of the world
+     */
+    public ColumnHeightCache(int minY, int maxY) {
+        this(minY, maxY, Flags.FLAGS);
+    }
+
+    ColumnHeightCache(int minY, int maxY, byte[] flags) {
+        this.minY = minY;
+        this.minSection = minY >> 4;
+        this.maxSection = maxY >> 4;
+        this.flags = flags;
+    }
+
+    /**
+     * Drop all cached columns.
+     */
+    public void clear() {
+        synchronized (chunks) {
+            chunks.clear();
+        }
+    }
+
+    /**
+     * Gets y value for the nearest block that is considered the surface of the terrain, with the same result as
+     * {@link Extent#getNearestSurfaceTerrainBlock(int, int, int, int, int, int, int, boolean)} on the queue.
+     *
+     * @param queue     the queue to read uncached chunks from
+     * @param x         column x
+     * @param z         column z
+     * @param y         start y
+     * @param minY      minimum y height to consider. Inclusive, at least the minimum y of the queue.
+     * @param maxY      maximum y height to consider. Inclusive, at most the maximum y of the queue.
+     * @param failedMin if nothing found, the minimum y value to return if returning min
+     * @param failedMax if nothing found, the maximum y value to return if returning max
+     * @param ignoreAir if air at the final value if no block found should be considered for return, else return -1
+     * @return The y value of the nearest terrain block
+     */
+    public int getNearestSurfaceTerrainBlock(
+            IQueueExtent<IQueueChunk> queue,
+            int x,
+            int z,
+            int y,
+            int minY,
+            int maxY,
+            int failedMin,
+            int failedMax,
+            boolean ignoreAir
+    ) {
+        Columns columns = getColumns(x >> 4, z >> 4);
+        int column = ((z & 15) << 4) | (x & 15);
+        y = Math.max(minY, Math.min(maxY, y));
+        int clearanceAbove = maxY - y;
+        int clearanceBelow = y - minY;
+        int clearance = Math.min(clearanceAbove, clearanceBelow);
+        boolean state = !test(queue, columns, TYPE_BLOCKER + column, y);
+        // Looking for a movement blocker when starting outside the terrain, for anything else otherwise
+        int plane = (state ? BLOCKER : OPEN) + column;
+        int offset = state ? 0 : 1;
+        for (int d = 0; d <= clearance; d++) {
+            int y1 = y + d;
+            if (test(queue, columns, plane, y1)) {
+                return y1 - offset;
+            }
+            int y2 = y - d;
+            if (test(queue, columns, plane, y2)) {
+                return y2 + offset;
+            }
+        }
+        if (clearanceAbove != clearanceBelow) {
+            if (clearanceAbove < clearanceBelow) {
+                for (int layer = y - clearance - 1; layer >= minY; layer--) {
+                    if (test(queue, columns, plane, layer)) {
+                        return layer + offset;
+                    }
+                }
+            } else {
+                for (int layer = y + clearance + 1; layer <= maxY; layer++) {
+                    if (test(queue, columns, plane, layer)) {
+                        return layer - offset;
+                    }
+                }
+            }
+        }
+        int result = state ? failedMin : failedMax;
+        if (result > minY && !ignoreAir) {
+            return queue.getBlock(x, result, z).getBlockType().getMaterial().isAir() ? -1 : result;
+        }
+        return result;
+    }
+
+    private boolean test(IQueueExtent<IQueueChunk> queue, Columns columns, int index, int y) {
+        return (getSection(queue, columns, y >> 4)[index] & (1 << (y & 15))) != 0;
+    }
+
+    private Columns getColumns(int chunkX, int chunkZ) {
+        long pair = MathMan.pairInt(chunkX, chunkZ);
+        synchronized (chunks) {
+            Columns columns = chunks.get(pair);
+            if (columns == null) {
+                chunks.put(pair, columns = new Columns(chunkX, chunkZ, maxSection - minSection + 1));
+            }
+            return columns;
+        }
+    }
+
+    private char[] getSection(IQueueExtent<IQueueChunk> queue, Columns columns, int layer) {
+        int index = layer - minSection;
+        char[] section = columns.sections.get(index);
+        if (section != null) {
+            return section;
+        }
+        IQueueChunk chunk = queue.getOrCreateChunk(columns.chunkX, columns.chunkZ);
+        if (columns.surface == Integer.MIN_VALUE) {
+            columns.surface = getSurface(chunk);
+        }
+        if (layer << 4 >= columns.surface) {
+            section = AIR_SECTION;
+        } else {
+            section = new char[COLUMNS * 3];
+            apply(section, chunk.load(layer), false, flags);
+        }
+        // The chunk may have been processed in the meantime
+        if (!columns.sections.compareAndSet(index, null, section)) {
+            section = columns.sections.get(index);
+        }
+        return section;
+    }
+
+    /**
+     * Get the lowest y from which on the chunk only contains air according to the server, or
+     * {@link Integer#MAX_VALUE} if unknown.
+     */
+    private int getSurface(IChunkGet chunk) {
+        int[] heights = chunk.getHeightMap(HeightMapType.WORLD_SURFACE);
+        if (heights == null || heights.length < COLUMNS) {
+            return Integer.MAX_VALUE;
+        }
+        int max = 0;
+        for (int i = 0; i < COLUMNS; i++) {
+            max = Math.max(max, heights[i]);
+        }
+        // height maps are normalized to start at 1 above the minimum y
+        return minY + max;
+    }
+
+    /**
+     * Write the blocks of a section to its bitmaps.
+     *
+     * @param section  the bitmaps
+     * @param blocks   the block ordinals of the section
+     * @param skipZero if ordinal 0 means the block is unchanged, as in set sections
+     * @param flags    the movement blocking flags by block ordinal
+     */
+    private static void apply(char[] section, char[] blocks, boolean skipZero, byte[] flags) {
+        for (int index = 0; index < 4096; index++) {
+            char ordinal = blocks[index];
+            if (skipZero && ordinal == BlockTypesCache.ReservedIDs.__RESERVED__) {
+                continue;
+            }
+            int flag = ordinal < flags.length ? flags[ordinal] : 0;
+            int column = index & 255;
+            int bit = 1 << (index >> 8);
+            section[BLOCKER + column] = (char) ((flag & Flags.BLOCKER) != 0 ? section[BLOCKER + column] | bit :
+                    section[BLOCKER + column] & ~bit);
+            section[OPEN + column] = (char) ((flag & Flags.OPEN) != 0 ? section[OPEN + column] | bit :
+                    section[OPEN + column] & ~bit);
+            section[TYPE_BLOCKER + column] = (char) ((flag & Flags.TYPE_BLOCKER) != 0 ? section[TYPE_BLOCKER + column] | bit :
+                    section[TYPE_BLOCKER + column] & ~bit);
+        }
+    }
+
+    @Override
+    public IChunkSet processSet(IChunk chunk, IChunkGet get, IChunkSet set) {
+        Columns columns;
+        synchronized (chunks) {
+            columns = chunks.get(MathMan.pairInt(chunk.getX(), chunk.getZ()));
+        }
+        if (columns == null) {
+            // Never looked up, it is read from the updated chunk if needed
+            return set;
+        }
+        for (int layer = minSection; layer <= maxSection; layer++) {
+            char[] blocks = set.loadIfPresent(layer);
+            if (blocks == null) {
+                continue;
+            }
+            int index = layer - minSection;
+            // The chunk may not be applied to the world yet when the section is looked up again, so build it now
+            char[] before = get.hasSection(layer) ? get.load(layer) : null;
+            while (true) {
+                char[] current = columns.sections.get(index);
+                char[] updated;
+                if (current != null) {
+                    updated = current.clone();
+                } else {
+                    updated = before == null ? AIR_SECTION.clone() : new char[COLUMNS * 3];
+                    if (before != null) {
+                        apply(updated, before, false, flags);
+                    }
+                }
+                apply(updated, blocks, true, flags);
+                if (columns.sections.compareAndSet(index, current, updated)) {
+                    break;
+                }
+            }
+        }
+        return set;
+    }
+
+    @Nullable
+    @Override
+    public Extent construct(Extent child) {
+        throw new UnsupportedOperationException("Processing only");
+    }
+
+    @Override
+    public ProcessorScope getScope() {
+        return ProcessorScope.READING_SET_BLOCKS;
+    }
+
+    private static final class Columns {
+
+        private final int chunkX;
+        private final int chunkZ;
+        private final AtomicReferenceArray<char[]> sections;
+        // the same for every thread computing it
+        private volatile int surface = Integer.MIN_VALUE;
+
+        private Columns(int chunkX, int chunkZ, int layers) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.sections = new AtomicReferenceArray<>(layers);
+        }
+
+    }
+
+    /**
+     * Movement blocking flags by block ordinal, as used by
+     * {@link Extent#getNearestSurfaceTerrainBlock(int, int, int, int, int, int, int, boolean)}.
+     */
+    static final class Flags {
+
+        static final byte BLOCKER = 1;
+        static final byte OPEN = 2;
+        static final byte TYPE_BLOCKER = 4;
+        private static final byte[] FLAGS;
+
+        static {
+            FLAGS = new byte[BlockTypesCache.states.length];
+            for (int i = 0; i < FLAGS.length; i++) {
+                BlockState state = BlockTypesCache.states[i];
+                if (state == null || state.getBlockType() == BlockTypes.__RESERVED__) {
+                    continue;
+                }
+                boolean blocker = state.getMaterial().isMovementBlocker();
+                FLAGS[i] = (byte) ((blocker ? BLOCKER : OPEN)
+                        | (state.getBlockType().getMaterial().isMovementBlocker() ? TYPE_BLOCKER : 0));
+            }
+        }
+
+    }
+
+}
@@ -6,9 +6,11 @@
 import com.fastasyncworldedit.core.math.MutableBlockVector3;
 import com.fastasyncworldedit.core.queue.IQueueChunk;
 import com.fastasyncworldedit.core.queue.IQueueExtent;
+import com.fastasyncworldedit.core.queue.implementation.SingleThreadQueueExtent;
 import com.fastasyncworldedit.core.queue.implementation.chunk.ChunkHolder;
 import com.fastasyncworldedit.core.util.MathMan;
 import com.fastasyncworldedit.core.util.TaskManager;
+import com.fastasyncworldedit.core.util.metrics.PipelineMetrics;
 import com.fastasyncworldedit.core.util.task.RunnableVal;
 import com.sk89q.worldedit.registry.state.DirectionalProperty;
 import com.sk89q.worldedit.registry.state.EnumProperty;
@@ -22,6 +24,7 @@
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -31,13 +34,18 @@
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
 
 @SuppressWarnings("rawtypes")
 public class NMSRelighter implements Relighter {
 
     private static final int DISPATCH_SIZE = 64;
+    // Tiles of 2x2 chunks for block light and 8x8 chunks (the dispatch size) for sky light when relighting in parallel
+    private static final int BLOCK_TILE_SHIFT = 1;
+    private static final int SKY_TILE_SHIFT = 3;
     private static final DirectionalProperty stairDirection;
     private static final EnumProperty stairHalf;
     private static final EnumProperty stairShape;
@@ -57,13 +65,15 @@ public class NMSRelighter implements Relighter {
     private final Map<Long, Integer> chunksToSend;
     private final ConcurrentLinkedQueue<RelightSkyEntry> extendSkyToRelight = new ConcurrentLinkedQueue<>();
     private final Map<Long, long[][][] /* z y x */> lightQueue;
-    private final AtomicBoolean lightLock = new AtomicBoolean(false);
+    private final AtomicBoolean lightLock;
     private final ConcurrentHashMap<Long, long[][][]> concurrentLightQueue;
     private final RelightMode relightMode;
     private final int maxY;
     private final int minY;
     private final ReentrantLock lightingLock;
     private final AtomicBoolean finished = new AtomicBoolean(false);
+    // The tile a relighter forked for parallel relighting is restricted to, null otherwise
+    private final RelightTile tile;
     private boolean removeFirst;
 
     public NMSRelighter(IQueueExtent<IQueueChunk> queue) {
@@ -80,6 +90,27 @@ public NMSRelighter(IQueueExtent<IQueueChunk> queue, RelightMode relightMode) {
         this.minY = queue.getMinY();
         this.relightMode = relightMode != null ? relightMode : RelightMode.valueOf(Settings.settings().LIGHTING.MODE);
         this.lightingLock = new ReentrantLock();
+        this.lightLock = new AtomicBoolean(false);
+        this.tile = null;
+    }
+
+    /**
+     * Fork a relighter that only accesses the chunks of the given tile. Block light updates are queued in a light queue of
+     * its own, merged into the light queue of its parent once the tile is relit.
+     */
+    private NMSRelighter(NMSRelighter parent, RelightTile tile) {
+        this.queue = parent.queue;
+        this.skyToRelight = parent.skyToRelight;
+        this.lightQueue = new Long2ObjectOpenHashMap<>(12);
+        this.chunksToSend = parent.chunksToSend;
+        this.concurrentLightQueue = new ConcurrentHashMap<>(12);
+        this.maxY = parent.maxY;
+        this.minY = parent.minY;
+        this.relightMode = parent.relightMode;
+        this.lightingLock = parent.lightingLock;
+        this.lightLock = new AtomicBoolean(false);
+        this.removeFirst = parent.removeFirst;
+        this.tile = tile;
     }
 
     @Override
@@ -104,6 +135,24 @@ public synchronized void removeAndRelight(boolean sky) {
         removeFirst = false;
     }
 
+    private ChunkHolder<?> getChunk(int chunkX, int chunkZ) {
+        if (tile != null) {
+            return tile.getChunk(chunkX, chunkZ);
+        }
+        ChunkHolder<?> chunk = (ChunkHolder<?>) queue.getOrCreateChunk(chunkX, chunkZ);
+        if (!chunk.isInit()) {
+            chunk.init(queue, chunkX, chunkZ);
+        }
+        return chunk;
+    }
+
+    private BlockState getBlock(int x, int y, int z) {
+        if (tile != null) {
+            return tile.getChunk(x >> 4, z >> 4).getBlock(x & 15, y, z & 15);
+        }
+        return queue.getBlock(x, y, z);
+    }
+
     /**
      * Utility method to reduce duplicated code to ensure values are written to long[][][] without NPEs
      *
@@ -137,19 +186,71 @@ public void addLightUpdate(int x, int y, int z) {
                         this.lightQueue.put(index, currentMap);
                     }
                     set(x & 15, y, z & 15, currentMap);
-                    this.lightQueue.putAll(concurrentLightQueue);
-                    concurrentLightQueue.clear();
+                    drainConcurrentLightQueue();
                 } finally {
                     lightLock.set(false);
                 }
             }
         } else {
-            long[][][] currentMap = concurrentLightQueue.get(index);
-            if (currentMap == null) {
-                currentMap = new long[16][][];
-                this.concurrentLightQueue.put(index, currentMap);
+            // Atomic with the removal of the map when it is drained, so no update is set on a drained map
+            concurrentLightQueue.compute(index, (key, currentMap) -> {
+                if (currentMap == null) {
+                    currentMap = new long[16][][];
+                }
+                set(x & 15, y, z & 15, currentMap);
+                return currentMap;
+            });
+        }
+    }
+
+    /**
+     * Move the updates added while the light lock was held elsewhere to the light queue. Must be called holding the light
+     * lock.
+     */
+    private void drainConcurrentLightQueue() {
+        for (Long index : concurrentLightQueue.keySet()) {
+            long[][][] map = concurrentLightQueue.remove(index);
+            if (map != null) {
+                mergeLightUpdates(index, map);
+            }
+        }
+    }
+
+    /**
+     * Add light updates to the light queue, keeping the updates already queued for the chunk.
+     *
+     * @param index the chunk
+     * @param map   the light updates of the chunk
+     */
+    private void mergeLightUpdates(long index, long[][][] map) {
+        long[][][] currentMap = lightQueue.get(index);
+        if (currentMap == null) {
+            lightQueue.put(index, map);
+            return;
+        }
+        for (int z = 0; z < 16; z++) {
+            long[][] m1 = map[z];
+            if (m1 == null) {
+                continue;
+            }
+            if (currentMap[z] == null) {
+                currentMap[z] = m1;
+                continue;
+            }
+            for (int x = 0; x < 16; x++) {
+                long[] m2 = m1[x];
+                if (m2 == null) {
+                    continue;
+                }
+                long[] current = currentMap[z][x];
+                if (current == null) {
+                    currentMap[z][x] = m2;
+                    continue;
+                }
+                for (int i = 0; i < m2.length; i++) {
+                    current[i] |= m2[i];
+                }
             }
-            set(x & 15, y, z & 15, currentMap);
         }
     }
 
@@ -191,10 +292,7 @@ public synchronized void removeLighting() {
             long pair = entry.getKey();
             Integer existing = chunksToSend.get(pair);
             chunksToSend.put(pair, chunk.bitmask | (existing != null ? existing : 0));
-            ChunkHolder<?> iChunk = (ChunkHolder<?>) queue.getOrCreateChunk(chunk.x, chunk.z);
-            if (!iChunk.isInit()) {
-                iChunk.init(queue, chunk.x, chunk.z);
-            }
+            ChunkHolder<?> iChunk = getChunk(chunk.x, chunk.z);
             for (int i = minY >> 4; i <= maxY >> 4; i++) {
                 iChunk.removeSectionLighting(i, true);
             }
@@ -224,10 +322,7 @@ public void updateBlockLight(Map<Long, long[][][]> map) {
             int chunkZ = MathMan.unpairIntY(index);
             int bx = chunkX << 4;
             int bz = chunkZ << 4;
-            ChunkHolder<?> iChunk = (ChunkHolder<?>) queue.getOrCreateChunk(chunkX, chunkZ);
-            if (!iChunk.isInit()) {
-                iChunk.init(queue, chunkX, chunkZ);
-            }
+            ChunkHolder<?> iChunk = getChunk(chunkX, chunkZ);
             for (int lz = 0; lz < blocks.length; lz++) {
                 long[][] m1 = blocks[lz];
                 if (m1 == null) {
@@ -268,7 +363,15 @@ public void updateBlockLight(Map<Long, long[][][]> map) {
             }
             iter.remove();
         }
+        propagateBlockLight(lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+    }
 
+    private void propagateBlockLight(
+            Queue<Object[]> lightRemovalQueue,
+            Queue<MutableBlockVector3> lightPropagationQueue,
+            Map<MutableBlockVector3, Object> removalVisited,
+            Map<MutableBlockVector3, Object> visited
+    ) {
         while (!lightRemovalQueue.isEmpty()) {
             Object[] val = lightRemovalQueue.poll();
             MutableBlockVector3 node = (MutableBlockVector3) val[0];
@@ -342,12 +445,9 @@ public void updateBlockLight(Map<Long, long[][][]> map) {
 
         while (!lightPropagationQueue.isEmpty()) {
             MutableBlockVector3 node = lightPropagationQueue.poll();
-            ChunkHolder<?> iChunk = (ChunkHolder<?>) queue.getOrCreateChunk(node.getX() >> 4, node.getZ() >> 4);
-            if (!iChunk.isInit()) {
-                iChunk.init(queue, node.getX() >> 4, node.getZ() >> 4);
-            }
+            ChunkHolder<?> iChunk = getChunk(node.getX() >> 4, node.getZ() >> 4);
             int lightLevel = iChunk.getEmittedLight(node.getX() & 15, node.getY(), node.getZ() & 15);
-            BlockState state = this.queue.getBlock(node.getX(), node.getY(), node.getZ());
+            BlockState state = getBlock(node.getX(), node.getY(), node.getZ());
             String id = state.getBlockType().getId().toLowerCase(Locale.ROOT);
             if (lightLevel <= 1) {
                 continue;
@@ -394,7 +494,7 @@ private void computeStair(
                     && !shape.equals("inner_right")) || (direction == Direction.EAST && shape.contains("outer")))) {
                 break east;
             }
-            BlockState state = this.queue.getBlock(x + 1, y, z);
+            BlockState state = getBlock(x + 1, y, z);
             if (!(checkStairEast(state) && isStairOrTrueTop(state, top) && isSlabOrTrueValue(state, top ? "top" : "bottom"))) {
                 break east;
             }
@@ -447,7 +547,7 @@ private void computeStair(
                     && !shape.equals("inner_right")) || (direction == Direction.WEST && shape.contains("outer")))) {
                 break west;
             }
-            BlockState state = this.queue.getBlock(x - 1, y, z);
+            BlockState state = getBlock(x - 1, y, z);
             if (!(checkStairWest(state) && isStairOrTrueTop(state, top) && isSlabOrTrueValue(state, top ? "top" : "bottom"))) {
                 break west;
             }
@@ -500,7 +600,7 @@ private void computeStair(
                     && !shape.equals("inner_right")) || (direction == Direction.SOUTH && shape.contains("outer")))) {
                 break south;
             }
-            BlockState state = this.queue.getBlock(x, y, z + 1);
+            BlockState state = getBlock(x, y, z + 1);
             if (!(checkStairSouth(state) && isStairOrTrueTop(state, top) && isSlabOrTrueValue(state, top ? "top" : "bottom"))) {
                 break south;
             }
@@ -553,7 +653,7 @@ private void computeStair(
                     && !shape.equals("inner_right")) || (direction == Direction.NORTH && shape.contains("outer")))) {
                 break north;
             }
-            BlockState state = this.queue.getBlock(x, y, z - 1);
+            BlockState state = getBlock(x, y, z - 1);
             if (!(checkStairNorth(state) && isStairOrTrueTop(state, top) && isSlabOrTrueValue(state, top ? "top" : "bottom"))) {
                 break north;
             }
@@ -614,28 +714,28 @@ private void computeSlab(
     ) {
         {
             // Block East
-            BlockState state = this.queue.getBlock(x + 1, y, z);
+            BlockState state = getBlock(x + 1, y, z);
             if (checkStairEast(state) && isStairOrTrueTop(state, top) && isSlabOrTrueValue(state, top ? "top" : "bottom")) {
                 this.computeSpreadBlockLight(x + 1, y, z, currentLight, queue, visited);
             }
         }
         {
             // Block West
-            BlockState state = this.queue.getBlock(x - 1, y, z);
+            BlockState state = getBlock(x - 1, y, z);
             if (checkStairWest(state) && isStairOrTrueTop(state, top) && isSlabOrTrueValue(state, top ? "top" : "bottom")) {
                 this.computeSpreadBlockLight(x - 1, y, z, currentLight, queue, visited);
             }
         }
         {
             // Block South
-            BlockState state = this.queue.getBlock(x, y, z + 1);
+            BlockState state = getBlock(x, y, z + 1);
             if (checkStairSouth(state) && isStairOrTrueTop(state, top) && isSlabOrTrueValue(state, top ? "top" : "bottom")) {
                 this.computeSpreadBlockLight(x, y, z + 1, currentLight, queue, visited);
             }
         }
         {
             // Block North
-            BlockState state = this.queue.getBlock(x, y, z - 1);
+            BlockState state = getBlock(x, y, z - 1);
             if (checkStairNorth(state) && isStairOrTrueTop(state, top) && isSlabOrTrueValue(state, top ? "top" : "bottom")) {
                 this.computeSpreadBlockLight(x, y, z - 1, currentLight, queue, visited);
             }
@@ -652,11 +752,11 @@ private void computeUpDown(
             Map<MutableBlockVector3, Object> visited,
             boolean top
     ) {
-        BlockState state = this.queue.getBlock(x, y - 1, z);
+        BlockState state = getBlock(x, y - 1, z);
         if (y > 0 && top && isSlabOrTrueValue(state, "bottom") && isStairOrTrueTop(state, false)) {
             this.computeSpreadBlockLight(x, y - 1, z, currentLight, queue, visited);
         }
-        state = this.queue.getBlock(x, y + 1, z);
+        state = getBlock(x, y + 1, z);
         if (y < maxY && !top && isSlabOrTrueValue(state, "top") && isStairOrTrueTop(state, true)) {
             this.computeSpreadBlockLight(x, y + 1, z, currentLight, queue, visited);
         }
@@ -672,37 +772,37 @@ private void computeNormal(
     ) {
         {
             // Block East
-            BlockState state = this.queue.getBlock(x + 1, y, z);
+            BlockState state = getBlock(x + 1, y, z);
             if (checkStairEast(state) && (isSlabOrTrueValue(state, "top") || isSlabOrTrueValue(state, "bottom"))) {
                 this.computeSpreadBlockLight(x + 1, y, z, currentLight, queue, visited);
             }
         }
         {
             // Block West
-            BlockState state = this.queue.getBlock(x - 1, y, z);
+            BlockState state = getBlock(x - 1, y, z);
             if (checkStairWest(state) && (isSlabOrTrueValue(state, "top") || isSlabOrTrueValue(state, "bottom"))) {
                 this.computeSpreadBlockLight(x - 1, y, z, currentLight, queue, visited);
             }
         }
         {
             // Block South
-            BlockState state = this.queue.getBlock(x, y, z + 1);
+            BlockState state = getBlock(x, y, z + 1);
             if (checkStairSouth(state) && (isSlabOrTrueValue(state, "top") || isSlabOrTrueValue(state, "bottom"))) {
                 this.computeSpreadBlockLight(x, y, z + 1, currentLight, queue, visited);
             }
         }
         {
             // Block North
-            BlockState state = this.queue.getBlock(x, y, z - 1);
+            BlockState state = getBlock(x, y, z - 1);
             if (checkStairNorth(state) && (isSlabOrTrueValue(state, "top") || isSlabOrTrueValue(state, "bottom"))) {
                 this.computeSpreadBlockLight(x, y, z - 1, currentLight, queue, visited);
             }
         }
-        BlockState state = this.queue.getBlock(x, y - 1, z);
+        BlockState state = getBlock(x, y - 1, z);
         if (y > 0 && isSlabOrTrueValue(state, "bottom") && isStairOrTrueTop(state, false)) {
             this.computeSpreadBlockLight(x, y - 1, z, currentLight, queue, visited);
         }
-        state = this.queue.getBlock(x, y + 1, z);
+        state = getBlock(x, y + 1, z);
         if (y < maxY && isSlabOrTrueValue(state, "top") && isStairOrTrueTop(state, false)) {
             this.computeSpreadBlockLight(x, y + 1, z, currentLight, queue, visited);
         }
@@ -806,10 +906,11 @@ private void computeRemoveBlockLight(
             Map<MutableBlockVector3, Object> visited,
             Map<MutableBlockVector3, Object> spreadVisited
     ) {
-        ChunkHolder<?> iChunk = (ChunkHolder<?>) this.queue.getOrCreateChunk(x >> 4, z >> 4);
-        if (!iChunk.isInit()) {
-            iChunk.init(this.queue, x >> 4, z >> 4);
+        if (tile != null && !tile.canUpdate(x, z)) {
+            tile.removals.add(new int[]{x, y, z, currentLight});
+            return;
         }
+        ChunkHolder<?> iChunk = getChunk(x >> 4, z >> 4);
         int current = iChunk.getEmittedLight(x & 15, y, z & 15);
         if (current != 0 && current < currentLight) {
             iChunk.setBlockLight(x, y, z, 0);
@@ -839,14 +940,15 @@ private void computeSpreadBlockLight(
             Queue<MutableBlockVector3> queue,
             Map<MutableBlockVector3, Object> visited
     ) {
-        BlockMaterial material = this.queue.getBlock(x, y, z).getMaterial();
+        if (tile != null && !tile.canUpdate(x, z)) {
+            tile.spreads.add(new int[]{x, y, z, currentLight});
+            return;
+        }
+        BlockMaterial material = getBlock(x, y, z).getMaterial();
         boolean solidNeedsLight = (!material.isSolid() || !material.isFullCube()) && material.getLightOpacity() > 0 && material.getLightValue() == 0;
         currentLight = !solidNeedsLight ? currentLight - Math.max(1, material.getLightOpacity()) : currentLight - 1;
         if (currentLight > 0) {
-            ChunkHolder<?> iChunk = (ChunkHolder<?>) this.queue.getOrCreateChunk(x >> 4, z >> 4);
-            if (!iChunk.isInit()) {
-                iChunk.init(this.queue, x >> 4, z >> 4);
-            }
+            ChunkHolder<?> iChunk = getChunk(x >> 4, z >> 4);
             int current = iChunk.getEmittedLight(x & 15, y, z & 15);
             if (currentLight > current) {
                 iChunk.setBlockLight(x & 15, y, z & 15, currentLight);
@@ -865,6 +967,7 @@ public void fixLightingSafe(boolean sky) {
         if (isEmpty()) {
             return;
         }
+        final long start = PipelineMetrics.start();
         if (sky) {
             fixSkyLighting();
         } else {
@@ -880,6 +983,7 @@ public void fixLightingSafe(boolean sky) {
         }
         fixBlockLighting();
         sendChunks();
+        PipelineMetrics.RELIGHT.recordSince(start);
     }
 
     public void fixBlockLighting() {
@@ -892,7 +996,12 @@ public void fixBlockLighting() {
                 }
             }
             try {
-                updateBlockLight(this.lightQueue);
+                drainConcurrentLightQueue();
+                if (isParallel()) {
+                    updateBlockLightParallel(this.lightQueue);
+                } else {
+                    updateBlockLight(this.lightQueue);
+                }
             } finally {
                 lightLock.set(false);
             }
@@ -970,7 +1079,9 @@ public synchronized void fixSkyLighting() {
         }
         Collections.sort(chunksList);
         int size = chunksList.size();
-        if (size > DISPATCH_SIZE) {
+        if (isParallel()) {
+            fixSkyLightingParallel(chunksList);
+        } else if (size > DISPATCH_SIZE) {
             int amount = (size + DISPATCH_SIZE - 1) / DISPATCH_SIZE;
             for (int i = 0; i < amount; i++) {
                 int start = i * DISPATCH_SIZE;
@@ -983,6 +1094,122 @@ public synchronized void fixSkyLighting() {
         }
     }
 
+    private boolean isParallel() {
+        return relightMode == RelightMode.PARALLEL && tile == null && queue instanceof SingleThreadQueueExtent
+                && Settings.settings().QUEUE.PARALLEL_THREADS > 1;
+    }
+
+    private void fixSkyLightingParallel(List<RelightSkyEntry> sorted) {
+        Long2ObjectOpenHashMap<RelightTile> tiles = new Long2ObjectOpenHashMap<>();
+        for (RelightSkyEntry chunk : sorted) {
+            // Entries stay sorted within their tile
+            getTile(tiles, chunk.x, chunk.z, SKY_TILE_SHIFT).skyEntries.add(chunk);
+        }
+        relightTiles(tiles.values(), (relighter, tile) -> relighter.fixSkyLighting(tile.skyEntries));
+    }
+
+    private void updateBlockLightParallel(Map<Long, long[][][]> map) {
+        if (map.isEmpty()) {
+            return;
+        }
+        // Make sure BlockTypes is initialised before any worker checks block characteristics
+        BlockTypes.STONE.getMaterial();
+
+        Long2ObjectOpenHashMap<RelightTile> tiles = new Long2ObjectOpenHashMap<>();
+        Iterator<Map.Entry<Long, long[][][]>> iter = map.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<Long, long[][][]> entry = iter.next();
+            long index = entry.getKey();
+            int chunkX = MathMan.unpairIntX(index);
+            int chunkZ = MathMan.unpairIntY(index);
+            getTile(tiles, chunkX, chunkZ, BLOCK_TILE_SHIFT).blockLight.put(index, entry.getValue());
+            iter.remove();
+        }
+        relightTiles(tiles.values(), (relighter, tile) -> relighter.updateBlockLight(tile.blockLight));
+
+        // Second pass: continue the updates that would have left the halo of their tile
+        Queue<MutableBlockVector3> lightPropagationQueue = new ArrayDeque<>(32);
+        Queue<Object[]> lightRemovalQueue = new ArrayDeque<>(32);
+        Map<MutableBlockVector3, Object> visited = new HashMap<>(32);
+        Map<MutableBlockVector3, Object> removalVisited = new HashMap<>(32);
+        for (RelightTile tile : tiles.values()) {
+            for (int[] update : tile.removals) {
+                computeRemoveBlockLight(
+                        update[0],
+                        update[1],
+                        update[2],
+                        update[3],
+                        lightRemovalQueue,
+                        lightPropagationQueue,
+                        removalVisited,
+                        visited
+                );
+            }
+            for (int[] update : tile.spreads) {
+                computeSpreadBlockLight(update[0], update[1], update[2], update[3], lightPropagationQueue, visited);
+            }
+        }
+        propagateBlockLight(lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+    }
+
+    private static RelightTile getTile(Long2ObjectOpenHashMap<RelightTile> tiles, int chunkX, int chunkZ, int shift) {
+        int tileX = chunkX >> shift;
+        int tileZ = chunkZ >> shift;
+        long pair = MathMan.pairInt(tileX, tileZ);
+        RelightTile tile = tiles.get(pair);
+        if (tile == null) {
+            tiles.put(pair, tile = new RelightTile(tileX, tileZ, shift));
+        }
+        return tile;
+    }
+
+    /**
+     * Relight tiles on the {@link com.fastasyncworldedit.core.queue.implementation.QueueHandler} fork join pool. Tiles
+     * are split into four phases by the parity of their position, so tiles relit at the same time are at least one tile
+     * apart and their one chunk halos never overlap.
+     */
+    private void relightTiles(Collection<RelightTile> tiles, BiConsumer<NMSRelighter, RelightTile> action) {
+        List<List<RelightTile>> phases = new ArrayList<>(4);
+        for (int i = 0; i < 4; i++) {
+            phases.add(new ArrayList<>());
+        }
+        for (RelightTile tile : tiles) {
+            phases.get(((tile.tileX & 1) << 1) | (tile.tileZ & 1)).add(tile);
+        }
+        // Workers hold on to the chunks of their tile, so the queue must not submit chunks in the meantime
+        SingleThreadQueueExtent single = (SingleThreadQueueExtent) queue;
+        boolean submitting = single.isSubmissionEnabled();
+        single.disableQueue();
+        try {
+            for (List<RelightTile> phase : phases) {
+                List<ForkJoinTask<?>> tasks = new ArrayList<>(phase.size());
+                List<NMSRelighter> relighters = new ArrayList<>(phase.size());
+                for (RelightTile tile : phase) {
+                    tile.load(this);
+                    NMSRelighter relighter = new NMSRelighter(this, tile);
+                    relighters.add(relighter);
+                    tasks.add(Fawe.instance().getQueueHandler().submit(() -> action.accept(relighter, tile)));
+                }
+                for (ForkJoinTask<?> task : tasks) {
+                    task.join();
+                }
+                for (RelightTile tile : phase) {
+                    tile.chunks.clear();
+                }
+                // A fork is only used by its own task, so all its updates are in its light queue
+                synchronized (lightQueue) {
+                    for (NMSRelighter relighter : relighters) {
+                        relighter.lightQueue.forEach(this::mergeLightUpdates);
+                    }
+                }
+            }
+        } finally {
+            if (submitting) {
+                single.enableQueue();
+            }
+        }
+    }
+
     public void fill(byte[] mask, ChunkHolder<?> iChunk, int y, byte reason) {
         if (y >= 16) {
             Arrays.fill(mask, (byte) 15);
@@ -1028,16 +1255,13 @@ private void fixSkyLighting(List<RelightSkyEntry> sorted) {
                 byte[] mask = chunk.mask;
                 int bx = chunk.x << 4;
                 int bz = chunk.z << 4;
-                ChunkHolder<?> iChunk = (ChunkHolder<?>) queue.getOrCreateChunk(chunk.x, chunk.z);
+                ChunkHolder<?> iChunk = getChunk(chunk.x, chunk.z);
                 if (chunk.fix[layer] != SkipReason.NONE) {
                     if ((y & 15) == 0 && layer != 0 && chunk.fix[layer - 1] == SkipReason.NONE) {
                         fill(mask, iChunk, y, chunk.fix[layer]);
                     }
                     continue;
                 }
-                if (!iChunk.isInit()) {
-                    iChunk.init(queue, chunk.x, chunk.z);
-                }
                 chunk.smooth = false;
 
                 if (remove && (y & 15) == 15 && chunkSet.contains(chunk.x, 0, chunk.z)) {
@@ -1130,21 +1354,12 @@ private void fixSkyLighting(List<RelightSkyEntry> sorted) {
 
     public void smoothSkyLight(RelightSkyEntry chunk, int y, boolean direction) {
         byte[] mask = chunk.mask;
-        ChunkHolder<?> iChunk = (ChunkHolder<?>) queue.getOrCreateChunk(chunk.x, chunk.z);
+        ChunkHolder<?> iChunk = getChunk(chunk.x, chunk.z);
         ChunkHolder<?> iChunkx;
         ChunkHolder<?> iChunkz;
-        if (!iChunk.isInit()) {
-            iChunk.init(queue, chunk.x, chunk.z);
-        }
         if (direction) {
-            iChunkx = (ChunkHolder<?>) queue.getOrCreateChunk(chunk.x - 1, chunk.z);
-            iChunkz = (ChunkHolder<?>) queue.getOrCreateChunk(chunk.x, chunk.z - 1);
-            if (!iChunkx.isInit()) {
-                iChunkx.init(queue, chunk.x - 1, chunk.z);
-            }
-            if (!iChunkz.isInit()) {
-                iChunkz.init(queue, chunk.x, chunk.z - 1);
-            }
+            iChunkx = getChunk(chunk.x - 1, chunk.z);
+            iChunkz = getChunk(chunk.x, chunk.z - 1);
             for (int j = 0; j < 256; j++) {
                 int x = j & 15;
                 int z = j >> 4;
@@ -1183,14 +1398,8 @@ public void smoothSkyLight(RelightSkyEntry chunk, int y, boolean direction) {
                 }
             }
         } else {
-            iChunkx = (ChunkHolder<?>) queue.getOrCreateChunk(chunk.x + 1, chunk.z);
-            iChunkz = (ChunkHolder<?>) queue.getOrCreateChunk(chunk.x, chunk.z + 1);
-            if (!iChunkx.isInit()) {
-                iChunkx.init(queue, chunk.x - 1, chunk.z);
-            }
-            if (!iChunkz.isInit()) {
-                iChunkz.init(queue, chunk.x, chunk.z - 1);
-            }
+            iChunkx = getChunk(chunk.x + 1, chunk.z);
+            iChunkz = getChunk(chunk.x, chunk.z + 1);
             for (int j = 255; j >= 0; j--) {
                 int x = j & 15;
                 int z = j >> 4;
@@ -1231,6 +1440,58 @@ public void smoothSkyLight(RelightSkyEntry chunk, int y, boolean direction) {
         }
     }
 
+    /**
+     * A square group of chunks relit by a single worker. The worker may read and write the chunks of the tile and of a
+     * one chunk halo around it. Block light updates that would reach the outermost blocks of the halo are collected
+     * instead, to be continued once all tiles are done.
+     */
+    private static final class RelightTile {
+
+        private final int tileX;
+        private final int tileZ;
+        private final int minChunkX;
+        private final int minChunkZ;
+        private final int maxChunkX;
+        private final int maxChunkZ;
+        private final Long2ObjectOpenHashMap<ChunkHolder<?>> chunks = new Long2ObjectOpenHashMap<>();
+        private final List<RelightSkyEntry> skyEntries = new ArrayList<>();
+        private final Map<Long, long[][][]> blockLight = new Long2ObjectOpenHashMap<>();
+        private final List<int[]> removals = new ArrayList<>();
+        private final List<int[]> spreads = new ArrayList<>();
+
+        private RelightTile(int tileX, int tileZ, int shift) {
+            this.tileX = tileX;
+            this.tileZ = tileZ;
+            this.minChunkX = (tileX << shift) - 1;
+            this.minChunkZ = (tileZ << shift) - 1;
+            this.maxChunkX = ((tileX + 1) << shift);
+            this.maxChunkZ = ((tileZ + 1) << shift);
+        }
+
+        // Get the chunks of the tile and its halo from the queue, on the thread owning the queue
+        private void load(NMSRelighter parent) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                    chunks.put(MathMan.pairInt(chunkX, chunkZ), parent.getChunk(chunkX, chunkZ));
+                }
+            }
+        }
+
+        private ChunkHolder<?> getChunk(int chunkX, int chunkZ) {
+            ChunkHolder<?> chunk = chunks.get(MathMan.pairInt(chunkX, chunkZ));
+            if (chunk == null) {
+                throw new IllegalStateException("Chunk " + chunkX + "," + chunkZ + " is outside of the relight tile");
+            }
+            return chunk;
+        }
+
+        // Neighbouring blocks are read when updating a block, so it must not be on the edge of the halo
+        private boolean canUpdate(int x, int z) {
+            return x > minChunkX << 4 && x < (maxChunkX << 4) + 15 && z > minChunkZ << 4 && z < (maxChunkZ << 4) + 15;
+        }
+
+    }
+
     private static class RelightSkyEntry implements Comparable<RelightSkyEntry> {
 
         public final int x;
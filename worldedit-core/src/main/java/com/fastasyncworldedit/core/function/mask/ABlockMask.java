@@ -10,6 +10,8 @@
 import com.sk89q.worldedit.world.block.BlockType;
 import com.sk89q.worldedit.world.block.BlockTypesCache;
 
+import static com.sk89q.worldedit.world.block.BlockTypesCache.states;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -31,6 +33,22 @@ public boolean test(BlockVector3 vector) {
 
     public abstract boolean test(BlockState state);
 
+    /**
+     * Test all blocks of a chunk section at once.
+     *
+     * @param ordinals the 4096 block ordinals of the section
+     * @param bits     the 64 words to write the result to, bit {@code i} is set if block {@code i} matches
+     */
+    public void testSection(char[] ordinals, long[] bits) {
+        for (int word = 0, index = 0; word < 64; word++) {
+            long value = 0;
+            for (int bit = 0; bit < 64; bit++, index++) {
+                value |= (test(states[ordinals[index]]) ? 1L : 0L) << bit;
+            }
+            bits[word] = value;
+        }
+    }
+
     @Override
     public String toString() {
         List<String> strings = new ArrayList<>();
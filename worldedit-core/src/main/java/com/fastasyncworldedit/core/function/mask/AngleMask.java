@@ -7,8 +7,6 @@
 import com.sk89q.worldedit.function.mask.SolidBlockMask;
 import com.sk89q.worldedit.math.BlockVector3;
 
-import java.util.Arrays;
-
 public class AngleMask extends AbstractExtentMask implements ResettableMask {
 
     protected static double ADJACENT_MOD = 0.5;
@@ -22,9 +20,6 @@ public class AngleMask extends AbstractExtentMask implements ResettableMask {
     protected final int maxY;
     protected final int minY;
     protected final int distance;
-    protected transient int cacheBotX = Integer.MIN_VALUE;
-    protected transient int cacheBotZ = Integer.MIN_VALUE;
-    protected transient short[] cacheHeights;
     protected transient int lastY;
     protected transient int lastX = Integer.MIN_VALUE;
     protected transient int lastZ = Integer.MIN_VALUE;
@@ -44,40 +39,17 @@ public AngleMask(Extent extent, double min, double max, boolean overlay, int dis
 
     @Override
     public void reset() {
-        cacheBotX = Integer.MIN_VALUE;
-        cacheBotZ = Integer.MIN_VALUE;
         lastX = Integer.MIN_VALUE;
         lastY = Integer.MIN_VALUE;
         lastZ = Integer.MIN_VALUE;
-        if (cacheHeights != null) {
-            Arrays.fill(cacheHeights, (byte) 0);
-        }
     }
 
+    /**
+     * Get the nearest surface of a column, starting from the height last found. Heights are cached per column by the
+     * queue of the edit.
+     */
     protected int getHeight(Extent extent, int x, int y, int z) {
-        int rx = x - cacheBotX + 16;
-        int rz = z - cacheBotZ + 16;
-        int index;
-        if (((rx & 0xFF) != rx || (rz & 0xFF) != rz)) {
-            cacheBotX = x - 16;
-            cacheBotZ = z - 16;
-            rx = x - cacheBotX + 16;
-            rz = z - cacheBotZ + 16;
-            index = rx + (rz << 8);
-            if (cacheHeights == null) {
-                cacheHeights = new short[65536];
-                Arrays.fill(cacheHeights, (short) minY);
-            } else {
-                Arrays.fill(cacheHeights, (short) minY);
-            }
-        } else {
-            index = rx + (rz << 8);
-        }
-        int result = cacheHeights[index];
-        if (y > result) {
-            cacheHeights[index] = (byte) (result = lastY = extent.getNearestSurfaceTerrainBlock(x, z, lastY, minY, maxY));
-        }
-        return result;
+        return lastY = extent.getNearestSurfaceTerrainBlock(x, z, lastY, minY, maxY);
     }
 
     protected boolean testSlope(Extent extent, int x, int y, int z) {
@@ -39,6 +39,18 @@ public final boolean test(BlockState state) {
         return state.getOrdinalChar() == ordinal;
     }
 
+    @Override
+    public void testSection(char[] ordinals, long[] bits) {
+        final char ordinal = this.ordinal;
+        for (int word = 0, index = 0; word < 64; word++) {
+            long value = 0;
+            for (int bit = 0; bit < 64; bit++, index++) {
+                value |= (ordinals[index] == ordinal ? 1L : 0L) << bit;
+            }
+            bits[word] = value;
+        }
+    }
+
     @Override
     public Mask inverse() {
         return new InverseSingleBlockStateMask(getExtent(), BlockState.getFromOrdinal(ordinal));
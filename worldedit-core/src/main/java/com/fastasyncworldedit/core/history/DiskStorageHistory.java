@@ -4,25 +4,55 @@
 import com.fastasyncworldedit.core.configuration.Settings;
 import com.fastasyncworldedit.core.database.DBHandler;
 import com.fastasyncworldedit.core.database.RollbackDatabase;
+import com.fastasyncworldedit.core.history.change.MutableBlockChange;
 import com.fastasyncworldedit.core.history.changeset.FaweStreamChangeSet;
 import com.fastasyncworldedit.core.history.changeset.SimpleChangeSetSummary;
+import com.fastasyncworldedit.core.internal.io.FastByteArrayOutputStream;
 import com.fastasyncworldedit.core.internal.io.FaweInputStream;
 import com.fastasyncworldedit.core.internal.io.FaweOutputStream;
 import com.fastasyncworldedit.core.math.IntPair;
+import com.fastasyncworldedit.core.queue.Filter;
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.fastasyncworldedit.core.queue.IQueueExtent;
+import com.fastasyncworldedit.core.queue.implementation.ParallelQueueExtent;
+import com.fastasyncworldedit.core.util.ExtentTraverser;
 import com.fastasyncworldedit.core.util.MainUtil;
+import com.fastasyncworldedit.core.util.MathMan;
 import com.sk89q.jnbt.NBTInputStream;
 import com.sk89q.jnbt.NBTOutputStream;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.extension.platform.Actor;
+import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.function.operation.ChangeSetExecutor;
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.world.World;
-
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -37,6 +67,15 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
 
     private static final Map<String, Map<UUID, Integer>> NEXT_INDEX = new ConcurrentHashMap<>();
 
+    /**
+     * Version of block files which store the changes of each chunk in a separately compressed frame.
+     */
+    public static final int CHUNKED_VERSION = 2;
+    private static final int CHUNKED_HEADER_SIZE = 18;
+    private static final int INDEX_ENTRY_SIZE = 36;
+    // Frames hold a single chunk so they don't need the full buffer
+    private static final int FRAME_BUFFER_SIZE = 65536;
+
     private UUID uuid;
     private File bdFile;
     private File bioFile;
@@ -49,12 +88,34 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
      * Block data
      *
      * [header]
-     * {int origin x, int origin z}
+     * {byte mode, byte version, int origin x, int origin z, long index position}
+     *
+     * [frames]...
+     * Each frame is compressed on its own and holds consecutive changes within one chunk
+     * { short rel x, short rel z, unsigned byte y, short combinedFrom, short combinedTo }...
      *
-     * [contents]...
-     * { short rel x, short rel z, unsigned byte y, short combinedFrom, short combinedTo }
+     * [index]
+     * {int frame count}
+     * { int chunk x, int chunk z, long position, int length, int changes, int last x, int last y, int last z }...
+     * The last position is the (origin relative) position before the frame, which the first change is relative to.
      */
+    private RandomAccessFile rafBD;
+    private FastByteArrayOutputStream frameBD;
     private FaweOutputStream osBD;
+    private FastByteArrayOutputStream indexBD;
+    private FaweOutputStream osIndexBD;
+    private long framePosition;
+    private int frameCount;
+    private int frameChunkX;
+    private int frameChunkZ;
+    private int frameChanges;
+    private int frameLastX;
+    private int frameLastY;
+    private int frameLastZ;
+    private int lastX;
+    private int lastY;
+    private int lastZ;
+    private ChunkIndex chunkIndex;
     // biome
     private FaweOutputStream osBIO;
     // NBT From
@@ -232,8 +293,7 @@ public void close() throws IOException {
         synchronized (this) {
             try {
                 if (osBD != null) {
-                    osBD.close();
-                    osBD = null;
+                    closeBlockFile();
                 }
                 if (osBIO != null) {
                     osBIO.close();
@@ -297,15 +357,99 @@ public long getSizeOnDisk() {
 
     @Override
     public FaweOutputStream getBlockOS(int x, int y, int z) throws IOException {
-        if (osBD != null) {
-            return osBD;
+        if (osBD == null) {
+            synchronized (this) {
+                if (osBD == null) {
+                    bdFile.getParentFile().mkdirs();
+                    bdFile.createNewFile();
+                    FastByteArrayOutputStream header = new FastByteArrayOutputStream(CHUNKED_HEADER_SIZE);
+                    writeHeader(header, x, y, z);
+                    rafBD = new RandomAccessFile(bdFile, "rw");
+                    rafBD.setLength(0);
+                    header.writeTo(rafBD);
+                    framePosition = CHUNKED_HEADER_SIZE;
+                    frameBD = new FastByteArrayOutputStream(FRAME_BUFFER_SIZE);
+                    indexBD = new FastByteArrayOutputStream(1024);
+                    osIndexBD = new FaweOutputStream(indexBD);
+                    osBD = new FaweOutputStream(frameBD);
+                }
+            }
         }
-        synchronized (this) {
-            bdFile.getParentFile().mkdirs();
-            bdFile.createNewFile();
-            osBD = getCompressedOS(new FileOutputStream(bdFile));
-            writeHeader(osBD, x, y, z);
-            return osBD;
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        if (frameChanges == 0 || chunkX != frameChunkX || chunkZ != frameChunkZ) {
+            if (frameChanges != 0) {
+                writeFrame();
+            }
+            frameChunkX = chunkX;
+            frameChunkZ = chunkZ;
+            frameLastX = lastX;
+            frameLastY = lastY;
+            frameLastZ = lastZ;
+        }
+        frameChanges++;
+        lastX = x - getOriginX();
+        lastY = y;
+        lastZ = z - getOriginZ();
+        return osBD;
+    }
+
+    @Override
+    public void writeHeader(OutputStream os, int x, int y, int z) throws IOException {
+        FaweOutputStream out = new FaweOutputStream(os);
+        // The mode is always below 10, unlike the compression byte legacy files start with
+        out.write(getMode());
+        out.write(CHUNKED_VERSION);
+        out.writeInt(x);
+        out.writeInt(z);
+        // Index position, written on close
+        out.writeLong(0);
+        out.flush();
+        setOrigin(x, z);
+        setupStreamDelegates(getMode());
+    }
+
+    // Compress the buffered changes of the current chunk and append them to the file
+    private void writeFrame() throws IOException {
+        osBD.flush();
+        FastByteArrayOutputStream compressed = new FastByteArrayOutputStream(FRAME_BUFFER_SIZE);
+        try (FaweOutputStream out = getCompressedOS(compressed, FRAME_BUFFER_SIZE)) {
+            frameBD.writeTo(out);
+        }
+        compressed.writeTo(rafBD);
+        int length = compressed.getSize();
+        osIndexBD.writeInt(frameChunkX);
+        osIndexBD.writeInt(frameChunkZ);
+        osIndexBD.writeLong(framePosition);
+        osIndexBD.writeInt(length);
+        osIndexBD.writeInt(frameChanges);
+        osIndexBD.writeInt(frameLastX);
+        osIndexBD.writeInt(frameLastY);
+        osIndexBD.writeInt(frameLastZ);
+        framePosition += length;
+        frameCount++;
+        frameChanges = 0;
+        frameBD.reset();
+    }
+
+    private void closeBlockFile() throws IOException {
+        try {
+            if (frameChanges != 0) {
+                writeFrame();
+            }
+            osIndexBD.flush();
+            rafBD.seek(framePosition);
+            rafBD.writeInt(frameCount);
+            indexBD.writeTo(rafBD);
+            rafBD.seek(10);
+            rafBD.writeLong(framePosition);
+        } finally {
+            rafBD.close();
+            rafBD = null;
+            osBD = null;
+            frameBD = null;
+            osIndexBD = null;
+            indexBD = null;
         }
     }
 
@@ -371,11 +515,354 @@ public FaweInputStream getBlockIS() throws IOException {
         if (!bdFile.exists()) {
             return null;
         }
+        ChunkIndex index = getChunkIndex();
+        if (index != null) {
+            return new FaweInputStream(new FrameInputStream(index));
+        }
         FaweInputStream is = MainUtil.getCompressedIS(new FileInputStream(bdFile));
         readHeader(is);
         return is;
     }
 
+    /**
+     * Check whether the block changes are stored per chunk, allowing them to be replayed with
+     * {@link #replayBlocks(Extent, boolean)}. Files written before the chunk index was added are not. Closes this
+     * history if it is still open.
+     */
+    public boolean isChunked() {
+        try {
+            close();
+            return bdFile.exists() && getChunkIndex() != null;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Set the block changes of this history in the given extent. If the extent is backed by a queue, each chunk's
+     * changes are read and placed on their own, and in parallel when possible, so only a bounded number of chunks is
+     * held in memory. Tiles, entities and biomes are not included.
+     *
+     * @param extent the extent to set the blocks in
+     * @param redo   true to set the blocks to their new state, false to their previous state
+     */
+    public void replayBlocks(Extent extent, boolean redo) throws IOException {
+        ChunkIndex index = getChunkIndex();
+        ExtentTraverser<ParallelQueueExtent> parallel = new ExtentTraverser<>(extent).find(ParallelQueueExtent.class);
+        Extent queue = parallel != null ? parallel.get() : null;
+        if (queue == null) {
+            ExtentTraverser<IQueueExtent> single = new ExtentTraverser<>(extent).find(IQueueExtent.class);
+            queue = single != null ? single.get() : null;
+        }
+        if (index == null) {
+            Iterator<MutableBlockChange> iterator = getBlockIterator(redo);
+            while (iterator.hasNext()) {
+                MutableBlockChange change = iterator.next();
+                extent.setBlock(change.x, change.y, change.z, BlockState.getFromOrdinal(change.ordinal));
+            }
+            return;
+        }
+        if (queue == null) {
+            try (FileChannel channel = FileChannel.open(bdFile.toPath(), StandardOpenOption.READ)) {
+                for (IntArrayList frames : index.byChunk.values()) {
+                    replayFrames(channel, index, frames, redo, extent::setBlock);
+                }
+            }
+            return;
+        }
+        if (index.byChunk.isEmpty()) {
+            return;
+        }
+        Set<BlockVector2> chunks = new HashSet<>(index.byChunk.size());
+        int minX = Integer.MAX_VALUE;
+        int minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxZ = Integer.MIN_VALUE;
+        for (long pair : index.byChunk.keySet()) {
+            int chunkX = MathMan.unpairIntX(pair);
+            int chunkZ = MathMan.unpairIntY(pair);
+            chunks.add(BlockVector2.at(chunkX, chunkZ));
+            minX = Math.min(minX, chunkX);
+            minZ = Math.min(minZ, chunkZ);
+            maxX = Math.max(maxX, chunkX);
+            maxZ = Math.max(maxZ, chunkZ);
+        }
+        World world = getWorld();
+        // Only visit the chunks with changes rather than every chunk within the bounds
+        Region region = new CuboidRegion(
+                world,
+                BlockVector3.at(minX << 4, world.getMinY(), minZ << 4),
+                BlockVector3.at((maxX << 4) + 15, world.getMaxY(), (maxZ << 4) + 15)
+        ) {
+            @Override
+            public Set<BlockVector2> getChunks() {
+                return chunks;
+            }
+        };
+        // Positional reads on a shared channel are safe across the queue's threads
+        try (FileChannel channel = FileChannel.open(bdFile.toPath(), StandardOpenOption.READ)) {
+            queue.apply(region, new ReplayFilter(index, channel, redo), false);
+        }
+    }
+
+    private synchronized ChunkIndex getChunkIndex() throws IOException {
+        if (chunkIndex != null) {
+            return chunkIndex;
+        }
+        if (osBD != null) {
+            throw new IllegalStateException("Block changes are still being written");
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(bdFile, "r")) {
+            if (raf.length() < CHUNKED_HEADER_SIZE) {
+                return null;
+            }
+            int mode = raf.read();
+            if (mode >= 10) {
+                // Legacy file, starting with the compression level
+                return null;
+            }
+            int version = raf.read();
+            if (version != CHUNKED_VERSION) {
+                throw new UnsupportedOperationException(String.format("Version %s history not supported!", version));
+            }
+            int originX = raf.readInt();
+            int originZ = raf.readInt();
+            long indexPosition = raf.readLong();
+            if (indexPosition == 0) {
+                throw new IOException("History file " + bdFile + " was not closed properly");
+            }
+            raf.seek(indexPosition);
+            int count = raf.readInt();
+            byte[] entries = new byte[count * INDEX_ENTRY_SIZE];
+            raf.readFully(entries);
+            setOrigin(originX, originZ);
+            setupStreamDelegates(mode);
+            return chunkIndex = new ChunkIndex(mode, count, entries);
+        }
+    }
+
+    /**
+     * The frames of a block file and the chunks they belong to.
+     */
+    private static final class ChunkIndex {
+
+        private final int mode;
+        private final int[] chunkX;
+        private final int[] chunkZ;
+        private final long[] position;
+        private final int[] length;
+        private final int[] changes;
+        private final int[] lastX;
+        private final int[] lastY;
+        private final int[] lastZ;
+        private final Long2ObjectOpenHashMap<IntArrayList> byChunk = new Long2ObjectOpenHashMap<>();
+
+        private ChunkIndex(int mode, int count, byte[] entries) throws IOException {
+            this.mode = mode;
+            this.chunkX = new int[count];
+            this.chunkZ = new int[count];
+            this.position = new long[count];
+            this.length = new int[count];
+            this.changes = new int[count];
+            this.lastX = new int[count];
+            this.lastY = new int[count];
+            this.lastZ = new int[count];
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(entries));
+            for (int i = 0; i < count; i++) {
+                chunkX[i] = in.readInt();
+                chunkZ[i] = in.readInt();
+                position[i] = in.readLong();
+                length[i] = in.readInt();
+                changes[i] = in.readInt();
+                lastX[i] = in.readInt();
+                lastY[i] = in.readInt();
+                lastZ[i] = in.readInt();
+                byChunk.computeIfAbsent(MathMan.pairInt(chunkX[i], chunkZ[i]), k -> new IntArrayList(1)).add(i);
+            }
+        }
+
+        private int size() {
+            return position.length;
+        }
+
+    }
+
+    // Read and decompress a single frame, safe to call from multiple threads
+    private FaweInputStream openFrame(FileChannel channel, ChunkIndex index, int frame) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(index.length[frame]);
+        long position = index.position[frame];
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        return MainUtil.getCompressedIS(new ByteArrayInputStream(buffer.array()), FRAME_BUFFER_SIZE);
+    }
+
+    /**
+     * Reads all frames one after another, as if they were a single stream.
+     */
+    private final class FrameInputStream extends InputStream {
+
+        private final ChunkIndex index;
+        private final RandomAccessFile raf;
+        private FaweInputStream current;
+        private int frame;
+
+        private FrameInputStream(ChunkIndex index) throws IOException {
+            this.index = index;
+            this.raf = new RandomAccessFile(bdFile, "r");
+        }
+
+        private boolean next() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+            if (frame >= index.size()) {
+                return false;
+            }
+            current = openFrame(raf.getChannel(), index, frame++);
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            while (current != null || next()) {
+                int value = current.read();
+                if (value != -1) {
+                    return value;
+                }
+                if (!next()) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (current != null || next()) {
+                int read = current.read(b, off, len);
+                if (read > 0) {
+                    return read;
+                }
+                if (!next()) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+            raf.close();
+        }
+
+    }
+
+    /**
+     * Receives the changes of a chunk as they are replayed.
+     */
+    @FunctionalInterface
+    private interface ChangeSink {
+
+        void setBlock(int x, int y, int z, BlockState block);
+
+    }
+
+    /**
+     * Set the changes of the given frames of one chunk. Changes are written oldest first, so when undoing, the frames
+     * are replayed newest first and the changes of each frame are buffered and set in reverse. A block changed several
+     * times thereby ends up in its oldest state.
+     */
+    private void replayFrames(FileChannel channel, ChunkIndex index, IntArrayList frames, boolean redo, ChangeSink sink)
+            throws IOException {
+        int originX = getOriginX();
+        int originZ = getOriginZ();
+        FaweStreamPositionDelegate positions = createPositionDelegate(index.mode);
+        FaweStreamIdDelegate ids = createIdDelegate(index.mode);
+        MutableBlockChange change = new MutableBlockChange(0, 0, 0, BlockTypesCache.ReservedIDs.AIR);
+        // x, y, z and ordinal of each change of the frame, when undoing
+        int[] buffer = IntArrays.EMPTY_ARRAY;
+        for (int i = 0; i < frames.size(); i++) {
+            int frame = frames.getInt(redo ? i : frames.size() - 1 - i);
+            int changes = index.changes[frame];
+            if (!redo && buffer.length < changes * 4) {
+                buffer = new int[changes * 4];
+            }
+            positions.setPosition(index.lastX[frame], index.lastY[frame], index.lastZ[frame]);
+            try (FaweInputStream is = openFrame(channel, index, frame)) {
+                for (int j = 0; j < changes; j++) {
+                    int x = positions.readX(is) + originX;
+                    int y = positions.readY(is);
+                    int z = positions.readZ(is) + originZ;
+                    ids.readCombined(is, change, redo);
+                    if (redo) {
+                        sink.setBlock(x, y, z, BlockState.getFromOrdinal(change.ordinal));
+                    } else {
+                        int offset = j * 4;
+                        buffer[offset] = x;
+                        buffer[offset + 1] = y;
+                        buffer[offset + 2] = z;
+                        buffer[offset + 3] = change.ordinal;
+                    }
+                }
+            }
+            if (!redo) {
+                for (int offset = (changes - 1) * 4; offset >= 0; offset -= 4) {
+                    sink.setBlock(buffer[offset], buffer[offset + 1], buffer[offset + 2],
+                            BlockState.getFromOrdinal(buffer[offset + 3])
+                    );
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the changes of each chunk it is applied to.
+     */
+    private final class ReplayFilter implements Filter {
+
+        private final ChunkIndex index;
+        private final FileChannel channel;
+        private final boolean redo;
+
+        private ReplayFilter(ChunkIndex index, FileChannel channel, boolean redo) {
+            this.index = index;
+            this.channel = channel;
+            this.redo = redo;
+        }
+
+        @Override
+        public boolean appliesChunk(int chunkX, int chunkZ) {
+            return index.byChunk.containsKey(MathMan.pairInt(chunkX, chunkZ));
+        }
+
+        @Override
+        public <T extends IChunk> T applyChunk(T chunk, @Nullable Region region) {
+            IntArrayList frames = index.byChunk.get(MathMan.pairInt(chunk.getX(), chunk.getZ()));
+            if (frames == null) {
+                return null;
+            }
+            try {
+                replayFrames(channel, index, frames, redo, (x, y, z, block) -> chunk.setBlock(x & 15, y, z & 15, block));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return null;
+        }
+
+    }
+
     @Override
     public FaweInputStream getBiomeIS() throws IOException {
         if (!bioFile.exists()) {
@@ -428,6 +915,13 @@ public IntPair readHeader() {
         int ox = getOriginX();
         int oz = getOriginZ();
         if (ox == 0 && oz == 0 && bdFile.exists()) {
+            try {
+                if (getChunkIndex() != null) {
+                    return new IntPair(getOriginX(), getOriginZ());
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
             try (FileInputStream fis = new FileInputStream(bdFile)) {
                 final FaweInputStream gis = MainUtil.getCompressedIS(fis);
                 // skip mode
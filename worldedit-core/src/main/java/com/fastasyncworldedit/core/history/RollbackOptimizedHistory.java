@@ -3,10 +3,13 @@
 import com.fastasyncworldedit.core.database.DBHandler;
 import com.fastasyncworldedit.core.database.RollbackDatabase;
 import com.fastasyncworldedit.core.history.changeset.SimpleChangeSetSummary;
+import com.fastasyncworldedit.core.util.MathMan;
 import com.sk89q.worldedit.internal.util.LogManagerCompat;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.world.World;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
@@ -26,6 +29,9 @@ public class RollbackOptimizedHistory extends DiskStorageHistory {
     private int minZ;
     private int maxZ;
     private String command;
+    // Chunks with block changes, as pairs of the chunk coordinates
+    private final LongOpenHashSet chunks = new LongOpenHashSet();
+    private long lastChunk = Long.MIN_VALUE;
 
     public RollbackOptimizedHistory(World world, UUID uuid, int index) {
         super(world, uuid, index);
@@ -108,6 +114,10 @@ public void close() throws IOException {
     @Override
     public void add(int x, int y, int z, int combinedFrom, int combinedTo) {
         super.add(x, y, z, combinedFrom, combinedTo);
+        long chunk = MathMan.pairInt(x >> 4, z >> 4);
+        if (chunk != lastChunk) {
+            chunks.add(lastChunk = chunk);
+        }
         if (x < minX) {
             minX = x;
         } else if (x > maxX) {
@@ -136,6 +146,14 @@ public void writeHeader(OutputStream os, int x, int y, int z) throws IOException
         super.writeHeader(os, x, y, z);
     }
 
+    /**
+     * Get the chunks with block changes recorded by this history, as pairs of the chunk coordinates
+     * ({@link MathMan#pairInt(int, int)}). Empty for histories loaded from the database.
+     */
+    public LongSet getChunks() {
+        return chunks;
+    }
+
     public BlockVector3 getMinimumPoint() {
         return BlockVector3.at(minX, minY, minZ);
     }
@@ -77,6 +77,11 @@ public interface FaweStreamPositionDelegate {
 
         int readZ(FaweInputStream in) throws IOException;
 
+        /**
+         * Set the last position, which the next position is written or read relative to.
+         */
+        void setPosition(int x, int y, int z);
+
     }
 
     public interface FaweStreamIdDelegate {
@@ -91,8 +96,20 @@ public interface FaweStreamIdDelegate {
 
     protected void setupStreamDelegates(int mode) {
         this.mode = mode;
+        this.idDel = createIdDelegate(mode);
+        this.posDel = createPositionDelegate(mode);
+    }
+
+    protected int getMode() {
+        return mode;
+    }
+
+    /**
+     * Create a new id delegate for the given mode, independent of the one used by this change set.
+     */
+    protected FaweStreamIdDelegate createIdDelegate(int mode) {
         if (mode == 3 || mode == 4) {
-            idDel = new FaweStreamIdDelegate() {
+            return new FaweStreamIdDelegate() {
                 @Override
                 public void writeChange(FaweOutputStream stream, int combinedFrom, int combinedTo) throws IOException {
                     stream.writeVarInt(combinedFrom);
@@ -117,7 +134,7 @@ public void readCombined(FaweInputStream is, MutableFullBlockChange change) thro
                 }
             };
         } else {
-            idDel = new FaweStreamIdDelegate() {
+            return new FaweStreamIdDelegate() {
                 @Override
                 public void writeChange(FaweOutputStream stream, int combinedFrom, int to) throws IOException {
                     stream.writeVarInt(combinedFrom);
@@ -137,8 +154,14 @@ public void readCombined(FaweInputStream is, MutableFullBlockChange change) thro
                 }
             };
         }
+    }
+
+    /**
+     * Create a new position delegate for the given mode, independent of the one used by this change set.
+     */
+    protected FaweStreamPositionDelegate createPositionDelegate(int mode) {
         if (mode == 1 || mode == 4) { // small
-            posDel = new FaweStreamPositionDelegate() {
+            return new FaweStreamPositionDelegate() {
                 int lx;
                 int ly;
                 int lz;
@@ -181,9 +204,16 @@ public int readY(FaweInputStream in) {
                 public int readZ(FaweInputStream in) throws IOException {
                     return lz = lz + ((((buffer[2] & 0xFF) + ((MathMan.unpair16y(buffer[3])) << 8)) << 20) >> 20);
                 }
+
+                @Override
+                public void setPosition(int x, int y, int z) {
+                    lx = x;
+                    ly = y;
+                    lz = z;
+                }
             };
         } else {
-            posDel = new FaweStreamPositionDelegate() {
+            return new FaweStreamPositionDelegate() {
                 final byte[] buffer = new byte[6];
                 int lx;
                 int ly;
@@ -217,6 +247,13 @@ public int readY(FaweInputStream is) throws IOException {
                 public int readZ(FaweInputStream is) throws IOException {
                     return lz = (lz + (buffer[2] & 0xFF) + (buffer[3] << 8));
                 }
+
+                @Override
+                public void setPosition(int x, int y, int z) {
+                    lx = x;
+                    ly = y;
+                    lz = z;
+                }
             };
         }
     }
@@ -255,6 +292,10 @@ public FaweOutputStream getCompressedOS(OutputStream os) throws IOException {
         return MainUtil.getCompressedOS(os, compression);
     }
 
+    public FaweOutputStream getCompressedOS(OutputStream os, int buffer) throws IOException {
+        return MainUtil.getCompressedOS(os, compression, buffer);
+    }
+
     @Override
     public boolean isEmpty() {
         if (blockSize > 0) {
@@ -687,6 +728,16 @@ public void remove() {
 
     @Override
     public Iterator<Change> getIterator(final boolean dir) {
+        return getIterator(dir, true);
+    }
+
+    /**
+     * Get an iterator over the changes of this change set.
+     *
+     * @param dir    true to iterate the changes to redo them, false to undo
+     * @param blocks false to leave out block changes, e.g. when they are replayed separately
+     */
+    public Iterator<Change> getIterator(final boolean dir, final boolean blocks) {
         try {
             close();
             final Iterator<MutableTileChange> tileCreate = getTileIterator(getTileCreateIS(), true);
@@ -695,7 +746,7 @@ public Iterator<Change> getIterator(final boolean dir) {
             final Iterator<MutableEntityChange> entityCreate = getEntityIterator(getEntityCreateIS(), true);
             final Iterator<MutableEntityChange> entityRemove = getEntityIterator(getEntityRemoveIS(), false);
 
-            final Iterator<MutableBlockChange> blockChange = getBlockIterator(dir);
+            final Iterator<MutableBlockChange> blockChange = blocks ? getBlockIterator(dir) : Collections.emptyIterator();
 
             final Iterator<MutableBiomeChange> biomeChange = getBiomeIterator(dir);
 
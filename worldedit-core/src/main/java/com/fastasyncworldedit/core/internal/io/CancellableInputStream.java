@@ -0,0 +1,110 @@
+package com.fastasyncworldedit.core.internal.io;
+
+import javax.annotation.Nullable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * Counts the bytes read from the wrapped stream, and fails any further read once it has been cancelled, so that e.g.
+ * loading a schematic can be followed and cancelled from another thread. Marks are not supported, as they would make
+ * the count meaningless.
+ */
+public class CancellableInputStream extends FilterInputStream {
+
+    private volatile boolean cancelled;
+    // only written by the thread reading the stream
+    private volatile long count;
+    private Runnable progressListener;
+
+    public CancellableInputStream(InputStream in) {
+        super(in);
+    }
+
+    private void checkCancelled() throws InterruptedIOException {
+        if (cancelled) {
+            throw new InterruptedIOException("Reading was cancelled");
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkCancelled();
+        int b = in.read();
+        if (b != -1) {
+            count++;
+            progress();
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkCancelled();
+        int read = in.read(b, off, len);
+        if (read > 0) {
+            count += read;
+            progress();
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        checkCancelled();
+        long skipped = in.skip(n);
+        count += skipped;
+        return skipped;
+    }
+
+    private void progress() {
+        if (progressListener != null) {
+            progressListener.run();
+        }
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * Get the number of bytes read so far.
+     *
+     * @return the number of bytes read
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Set a listener to be called by the reading thread after each read. Must be set before reading starts.
+     *
+     * @param progressListener the listener, or null
+     */
+    public void setProgressListener(@Nullable Runnable progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Cancel reading. Any further read fails with an {@link InterruptedIOException}. May be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+}
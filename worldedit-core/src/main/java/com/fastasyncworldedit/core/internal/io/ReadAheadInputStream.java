@@ -0,0 +1,186 @@
+package com.fastasyncworldedit.core.internal.io;
+
+import com.fastasyncworldedit.core.util.TaskManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a stream ahead on another thread, so that the wrapped stream, e.g. one that inflates compressed data, is read
+ * while the data read before is decoded. The wrapped stream is read in blocks, of which only a bounded number is held.
+ * <p>
+ * The thread reading ahead is started by the first read. It stops at the end of the wrapped stream, when this stream
+ * is closed or {@link #cancel() cancelled}, or when no block has been taken for {@link #STALL_TIMEOUT_MS} because
+ * this stream is not read anymore.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+    private static final byte[] END = new byte[0];
+    private static final long POLL_MS = 50;
+    private static final long STALL_TIMEOUT_MS = 60_000;
+
+    private final InputStream source;
+    private final int blockSize;
+    private final BlockingQueue<byte[]> blocks;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private volatile boolean closed;
+    private volatile IOException failure;
+    private boolean started;
+    private boolean ended;
+    private byte[] current = END;
+    private int position;
+
+    /**
+     * Create a new stream reading ahead up to 8 blocks of 64KiB.
+     *
+     * @param source the stream to read ahead
+     */
+    public ReadAheadInputStream(InputStream source) {
+        this(source, 1 << 16, 8);
+    }
+
+    /**
+     * Create a new stream reading ahead.
+     *
+     * @param source    the stream to read ahead
+     * @param blockSize the size of the blocks read from the wrapped stream
+     * @param blocks    the maximum number of blocks read ahead
+     */
+    public ReadAheadInputStream(InputStream source, int blockSize, int blocks) {
+        this.source = source;
+        this.blockSize = blockSize;
+        this.blocks = new ArrayBlockingQueue<>(blocks + 1);
+    }
+
+    private void produce() {
+        try {
+            while (!closed) {
+                byte[] buffer = new byte[blockSize];
+                int length = source.readNBytes(buffer, 0, blockSize);
+                if (length != 0 && !put(length == blockSize ? buffer : Arrays.copyOf(buffer, length))) {
+                    return;
+                }
+                if (length != blockSize) {
+                    put(END);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+            try {
+                put(END);
+            } catch (InterruptedException ignored) {
+            }
+        } catch (InterruptedException ignored) {
+        } finally {
+            finished.countDown();
+        }
+    }
+
+    private boolean put(byte[] block) throws InterruptedException {
+        long waited = 0;
+        while (!blocks.offer(block, POLL_MS, TimeUnit.MILLISECONDS)) {
+            waited += POLL_MS;
+            if (closed || waited >= STALL_TIMEOUT_MS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean fill() throws IOException {
+        if (position < current.length) {
+            return true;
+        }
+        if (ended) {
+            return false;
+        }
+        if (!started) {
+            started = true;
+            TaskManager.taskManager().async(this::produce);
+        }
+        byte[] block;
+        try {
+            do {
+                if (closed) {
+                    throw new InterruptedIOException("Reading ahead was cancelled");
+                }
+                boolean done = finished.getCount() == 0;
+                block = blocks.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (block == null && done) {
+                    throw new IOException("Reading ahead stopped before the end of the stream");
+                }
+            } while (block == null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        if (block == END) {
+            ended = true;
+            if (failure != null) {
+                throw failure;
+            }
+            return false;
+        }
+        current = block;
+        position = 0;
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return current[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int length = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, length);
+        position += length;
+        return length;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    /**
+     * Stop reading ahead. Any further read fails with an {@link InterruptedIOException}. May be called from any thread.
+     */
+    public void cancel() {
+        closed = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        cancel();
+        if (started) {
+            try {
+                // The wrapped stream must not be closed while it is still read from
+                finished.await(STALL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        source.close();
+    }
+
+}
@@ -99,6 +99,11 @@ public void THROW_MAX_BLOCKSTATES(int amt) {
 
             public void THROW_MAX_ENTITIES(int amt) {
             }
+
+            @Override
+            public boolean reserve(long changes, int blockStates) {
+                return true;
+            }
         };
         MAX.SPEED_REDUCTION = 0;
         MAX.INVENTORY_MODE = 0;
@@ -120,6 +125,24 @@ public void THROW_MAX_ENTITIES(int amt) {
         MAX.REMAP_PROPERTIES = null;
     }
 
+    /**
+     * Take a number of changes and block states from this limit at once, if there are enough of both left. Nothing is
+     * taken otherwise. Safe to call from several threads at once, as long as the limit is not changed by other means
+     * at the same time.
+     *
+     * @param changes     the number of changes
+     * @param blockStates the number of block states
+     * @return if there were enough changes and block states left
+     */
+    public synchronized boolean reserve(long changes, int blockStates) {
+        if (MAX_CHANGES < changes || MAX_BLOCKSTATES < blockStates) {
+            return false;
+        }
+        MAX_CHANGES -= changes;
+        MAX_BLOCKSTATES -= blockStates;
+        return true;
+    }
+
     public boolean MAX_CHANGES() {
         return MAX_CHANGES-- > 0;
     }
@@ -8,6 +8,7 @@ public final class BitArrayUnstretched {
     private final int bitsPerEntry;
     private final int maxSeqLocIndex;
     private final int emptyBitCount;
+    private final int blocksPerLong;
     private final long mask;
     private final int longLen;
 
@@ -16,7 +17,7 @@ public BitArrayUnstretched(int bitsPerEntry, int arraySize, long[] buffer) {
         this.mask = (1L << bitsPerEntry) - 1L;
         this.emptyBitCount = 64 % bitsPerEntry;
         this.maxSeqLocIndex = 64 - (bitsPerEntry + emptyBitCount);
-        final int blocksPerLong = MathMan.floorZero((double) 64 / bitsPerEntry);
+        this.blocksPerLong = MathMan.floorZero((double) 64 / bitsPerEntry);
         this.longLen = MathMan.ceilZero((float) arraySize / blocksPerLong);
         if (buffer.length < longLen) {
             this.data = new long[longLen];
@@ -30,7 +31,7 @@ public BitArrayUnstretched(int bitsPerEntry, int arraySize) {
         this.mask = (1L << bitsPerEntry) - 1L;
         this.emptyBitCount = 64 % bitsPerEntry;
         this.maxSeqLocIndex = 64 - bitsPerEntry;
-        final int blocksPerLong = MathMan.floorZero((double) 64 / bitsPerEntry);
+        this.blocksPerLong = MathMan.floorZero((double) 64 / bitsPerEntry);
         this.longLen = MathMan.ceilZero((float) arraySize / blocksPerLong);
         this.data = new long[longLen];
     }
@@ -43,9 +44,9 @@ public void set(int index, int value) {
         if (longLen == 0) {
             return;
         }
-        int bitIndexStart = index * bitsPerEntry + MathMan.floorZero((double) index / longLen) * emptyBitCount;
-        int longIndexStart = bitIndexStart >> 6;
-        int localBitIndexStart = bitIndexStart & 63;
+        // Entries never span two longs, the remaining bits of each long are left empty
+        int longIndexStart = index / blocksPerLong;
+        int localBitIndexStart = (index - longIndexStart * blocksPerLong) * bitsPerEntry;
         this.data[longIndexStart] = this.data[longIndexStart] & ~(mask << localBitIndexStart) | (long) value << localBitIndexStart;
     }
 
@@ -53,11 +54,8 @@ public int get(int index) {
         if (longLen == 0) {
             return 0;
         }
-        int bitIndexStart = index * bitsPerEntry + MathMan.floorZero((double) index / longLen) * emptyBitCount;
-
-        int longIndexStart = bitIndexStart >> 6;
-
-        int localBitIndexStart = bitIndexStart & 63;
+        int longIndexStart = index / blocksPerLong;
+        int localBitIndexStart = (index - longIndexStart * blocksPerLong) * bitsPerEntry;
         return (int) (this.data[longIndexStart] >>> localBitIndexStart & mask);
     }
 
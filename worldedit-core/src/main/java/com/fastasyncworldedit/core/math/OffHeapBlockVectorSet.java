@@ -0,0 +1,299 @@
+package com.fastasyncworldedit.core.math;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMaps;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link BlockVectorSet} for very large sets, e.g. the visited blocks of a huge flood fill.
+ *
+ * <p>
+ * Positions are grouped by 16x16x16 chunk section. Every section that contains at least one position is a 4096 bit
+ * bitmap stored off-heap in direct memory, so the set creates next to no garbage and has no limit on the distance
+ * between positions. The heap only holds a primitive hash map from section key to bitmap slot.
+ * </p>
+ * <p>
+ * Iteration is grouped by section, and ordered y, z, x within a section. {@link #forEachSection(SectionConsumer)}
+ * iterates over the raw bitmaps.
+ * </p>
+ */
+public class OffHeapBlockVectorSet extends BlockVectorSet {
+
+    private static final int SECTION_WORDS = 64;
+    private static final int SLAB_SHIFT = 8;
+    private static final int SLAB_SECTIONS = 1 << SLAB_SHIFT;
+    private static final int SLAB_MASK = SLAB_SECTIONS - 1;
+    private static final long[] EMPTY_SECTION = new long[SECTION_WORDS];
+
+    private final Long2IntOpenHashMap sections = new Long2IntOpenHashMap();
+    private final List<LongBuffer> slabs = new ArrayList<>();
+    private final IntArrayList freeSlots = new IntArrayList();
+    private short[] counts = new short[SLAB_SECTIONS];
+    private int nextSlot;
+    private int size;
+
+    public OffHeapBlockVectorSet() {
+        sections.defaultReturnValue(-1);
+    }
+
+    /**
+     * Create a new set containing the given positions.
+     *
+     * @param vectors the positions to add
+     */
+    public OffHeapBlockVectorSet(Collection<? extends BlockVector3> vectors) {
+        this();
+        addAll(vectors);
+    }
+
+    private static long key(int sectionX, int sectionY, int sectionZ) {
+        return ((long) (sectionX & 0x3FFFFF) << 42) | ((long) (sectionZ & 0x3FFFFF) << 20) | (sectionY & 0xFFFFF);
+    }
+
+    private static int keyX(long key) {
+        return (int) (key >> 42);
+    }
+
+    private static int keyY(long key) {
+        return (int) (key << 44 >> 44);
+    }
+
+    private static int keyZ(long key) {
+        return (int) (key << 22 >> 42);
+    }
+
+    private static int index(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    private LongBuffer slab(int slot) {
+        return slabs.get(slot >> SLAB_SHIFT);
+    }
+
+    private static int offset(int slot) {
+        return (slot & SLAB_MASK) << 6;
+    }
+
+    private int allocate() {
+        if (!freeSlots.isEmpty()) {
+            // freed slots have been cleared by removing their last position
+            return freeSlots.popInt();
+        }
+        int slot = nextSlot++;
+        if (slot >> SLAB_SHIFT == slabs.size()) {
+            slabs.add(ByteBuffer
+                    .allocateDirect(SLAB_SECTIONS * SECTION_WORDS * Long.BYTES)
+                    .order(ByteOrder.nativeOrder())
+                    .asLongBuffer());
+        }
+        if (slot == counts.length) {
+            counts = Arrays.copyOf(counts, counts.length << 1);
+        }
+        return slot;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public BlockVector3 get(int index) {
+        if (index < 0 || index >= size) {
+            return null;
+        }
+        Iterator<BlockVector3> iterator = iterator();
+        for (int i = 0; i < index; i++) {
+            iterator.next();
+        }
+        return iterator.next().toImmutable();
+    }
+
+    @Override
+    public boolean contains(int x, int y, int z) {
+        int slot = sections.get(key(x >> 4, y >> 4, z >> 4));
+        if (slot == -1) {
+            return false;
+        }
+        int index = index(x, y, z);
+        return (slab(slot).get(offset(slot) + (index >> 6)) & (1L << index)) != 0;
+    }
+
+    @Override
+    public boolean add(int x, int y, int z) {
+        long key = key(x >> 4, y >> 4, z >> 4);
+        int slot = sections.get(key);
+        if (slot == -1) {
+            slot = allocate();
+            sections.put(key, slot);
+        }
+        int index = index(x, y, z);
+        LongBuffer slab = slab(slot);
+        int word = offset(slot) + (index >> 6);
+        long bits = slab.get(word);
+        long bit = 1L << index;
+        if ((bits & bit) != 0) {
+            return false;
+        }
+        slab.put(word, bits | bit);
+        counts[slot]++;
+        size++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(int x, int y, int z) {
+        long key = key(x >> 4, y >> 4, z >> 4);
+        int slot = sections.get(key);
+        if (slot == -1 || !clearBit(slot, index(x, y, z))) {
+            return false;
+        }
+        if (counts[slot] == 0) {
+            sections.remove(key);
+            freeSlots.add(slot);
+        }
+        return true;
+    }
+
+    private boolean clearBit(int slot, int index) {
+        LongBuffer slab = slab(slot);
+        int word = offset(slot) + (index >> 6);
+        long bits = slab.get(word);
+        long bit = 1L << index;
+        if ((bits & bit) == 0) {
+            return false;
+        }
+        slab.put(word, bits & ~bit);
+        counts[slot]--;
+        size--;
+        return true;
+    }
+
+    /**
+     * Clear the set. The off-heap memory is kept for reuse, it is only released once the set is garbage collected.
+     */
+    @Override
+    public void clear() {
+        for (Long2IntMap.Entry entry : Long2IntMaps.fastIterable(sections)) {
+            int slot = entry.getIntValue();
+            slab(slot).put(offset(slot), EMPTY_SECTION);
+            counts[slot] = 0;
+        }
+        sections.clear();
+        freeSlots.clear();
+        nextSlot = 0;
+        size = 0;
+    }
+
+    /**
+     * Iterate over all sections that contain at least one position.
+     *
+     * @param consumer the consumer, the bitmap passed to it is reused between calls
+     */
+    public void forEachSection(SectionConsumer consumer) {
+        long[] words = new long[SECTION_WORDS];
+        for (Long2IntMap.Entry entry : Long2IntMaps.fastIterable(sections)) {
+            long key = entry.getLongKey();
+            int slot = entry.getIntValue();
+            slab(slot).get(offset(slot), words);
+            consumer.accept(keyX(key), keyY(key), keyZ(key), words);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Iterator<BlockVector3> iterator() {
+        final ObjectIterator<Long2IntMap.Entry> entries = Long2IntMaps.fastIterator(sections);
+        return new Iterator<>() {
+            final long[] words = new long[SECTION_WORDS];
+            final MutableBlockVector3 mutable = new MutableBlockVector3();
+            int slot = -1;
+            int blockX;
+            int blockY;
+            int blockZ;
+            int word = SECTION_WORDS - 1;
+            long remaining;
+            int last = -1;
+
+            @Override
+            public boolean hasNext() {
+                while (remaining == 0) {
+                    if (++word >= SECTION_WORDS) {
+                        if (!entries.hasNext()) {
+                            return false;
+                        }
+                        Long2IntMap.Entry entry = entries.next();
+                        long key = entry.getLongKey();
+                        slot = entry.getIntValue();
+                        blockX = keyX(key) << 4;
+                        blockY = keyY(key) << 4;
+                        blockZ = keyZ(key) << 4;
+                        slab(slot).get(offset(slot), words);
+                        word = 0;
+                    }
+                    remaining = words[word];
+                }
+                return true;
+            }
+
+            @Override
+            public BlockVector3 next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("End of iterator");
+                }
+                int index = (word << 6) | Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                last = index;
+                return mutable.setComponents(
+                        blockX + (index & 15),
+                        blockY + (index >> 8),
+                        blockZ + ((index >> 4) & 15)
+                );
+            }
+
+            @Override
+            public void remove() {
+                if (last == -1) {
+                    throw new IllegalStateException();
+                }
+                clearBit(slot, last);
+                last = -1;
+                if (counts[slot] == 0) {
+                    entries.remove();
+                    freeSlots.add(slot);
+                }
+            }
+        };
+    }
+
+    /**
+     * Receives the bitmap of a section. Bit {@code y << 8 | z << 4 | x} of the bitmap is set if the set contains the
+     * position at the section relative coordinates x, y, z.
+     */
+    @FunctionalInterface
+    public interface SectionConsumer {
+
+        void accept(int sectionX, int sectionY, int sectionZ, long[] bits);
+
+    }
+
+}
@@ -54,15 +54,6 @@ default IChunk getRoot() {
      */
     void filterBlocks(Filter filter, ChunkFilterBlock block, @Nullable Region region, boolean full);
 
-//    /**
-//     * Flood through all the blocks in the chunk
-//     * TODO not implemented
-//     * @param flood
-//     * @param mask
-//     * @param block
-//     */
-//    void flood(Flood flood, FilterBlockMask mask, ChunkFilterBlock block);
-
     @Override
     default IChunk reset() {
         return this;
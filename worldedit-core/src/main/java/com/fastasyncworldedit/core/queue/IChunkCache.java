@@ -10,6 +10,15 @@
 
     T get(@Range(from = 0, to = 15) int chunkX, @Range(from = 0, to = 15) int chunkZ);
 
+    /**
+     * Check if the chunk at the given position is currently held by this cache, without creating it.
+     *
+     * @return if the chunk is cached
+     */
+    default boolean isCached(int chunkX, int chunkZ) {
+        return false;
+    }
+
     @Override
     default boolean trim(boolean aggressive) {
         return false;
@@ -0,0 +1,224 @@
+package com.fastasyncworldedit.core.queue.implementation;
+
+import com.fastasyncworldedit.core.queue.IChunkCache;
+import com.fastasyncworldedit.core.queue.IChunkGet;
+import com.fastasyncworldedit.core.util.MathMan;
+import com.sk89q.worldedit.math.BlockVector2;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Hands out the chunks of an operation to a fixed number of workers. Chunks are grouped into square tiles which are
+ * ordered along a Z-order curve, so each worker operates on a spatially coherent area. Every worker owns a lock-free
+ * deque of tiles and takes from its head; once it runs dry it steals from the tail of the other workers' deques.
+ * <p>
+ * Chunks within a tile whose {@link IChunkGet} is already held by the world cache are processed first.
+ */
+public class ChunkTileScheduler {
+
+    /**
+     * Returned by {@link Worker#next()} when no chunks are left.
+     */
+    public static final long NONE = Long.MAX_VALUE;
+
+    private static final int TILE_SHIFT = 2;
+
+    private final Worker[] workers;
+    private final IChunkCache<IChunkGet> cache;
+    private final int tileCount;
+
+    /**
+     * Create a new scheduler.
+     *
+     * @param chunks  the chunks to schedule
+     * @param workers the number of workers that will pull from this scheduler
+     * @param cache   the world's chunk cache used to prefer already loaded chunks, may be null
+     */
+    public ChunkTileScheduler(Collection<BlockVector2> chunks, int workers, IChunkCache<IChunkGet> cache) {
+        this.cache = cache;
+        this.workers = new Worker[Math.max(1, workers)];
+        for (int i = 0; i < this.workers.length; i++) {
+            this.workers[i] = new Worker(i);
+        }
+        List<long[]> tiles = createTiles(chunks);
+        this.tileCount = tiles.size();
+        // Give each worker a contiguous run of tiles so that neighbouring tiles stay on the same thread
+        int perWorker = tileCount / this.workers.length;
+        int remainder = tileCount % this.workers.length;
+        int index = 0;
+        for (int i = 0; i < this.workers.length; i++) {
+            int amount = perWorker + (i < remainder ? 1 : 0);
+            for (int j = 0; j < amount; j++) {
+                this.workers[i].tiles.addLast(tiles.get(index++));
+            }
+        }
+    }
+
+    private static List<long[]> createTiles(Collection<BlockVector2> chunks) {
+        Long2ObjectOpenHashMap<LongArrayList> byTile = new Long2ObjectOpenHashMap<>();
+        for (BlockVector2 chunk : chunks) {
+            int chunkX = chunk.getX();
+            int chunkZ = chunk.getZ();
+            long tile = MathMan.pairInt(chunkX >> TILE_SHIFT, chunkZ >> TILE_SHIFT);
+            LongArrayList list = byTile.get(tile);
+            if (list == null) {
+                byTile.put(tile, list = new LongArrayList(1 << (TILE_SHIFT << 1)));
+            }
+            list.add(MathMan.pairInt(chunkX, chunkZ));
+        }
+        long[] keys = byTile.keySet().toLongArray();
+        long[] order = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = interleave(MathMan.unpairIntX(keys[i]), MathMan.unpairIntY(keys[i]));
+        }
+        Integer[] indices = new Integer[keys.length];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = i;
+        }
+        Arrays.sort(indices, (a, b) -> Long.compareUnsigned(order[a], order[b]));
+        List<long[]> tiles = new ArrayList<>(keys.length);
+        for (Integer i : indices) {
+            tiles.add(byTile.get(keys[i]).toLongArray());
+        }
+        return tiles;
+    }
+
+    // Z-order (morton) code of the tile position, flipping the sign bit so negative coordinates sort first
+    private static long interleave(int x, int z) {
+        return spread(x ^ Integer.MIN_VALUE) | (spread(z ^ Integer.MIN_VALUE) << 1);
+    }
+
+    private static long spread(int value) {
+        long v = value & 0xFFFFFFFFL;
+        v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v << 2)) & 0x3333333333333333L;
+        v = (v | (v << 1)) & 0x5555555555555555L;
+        return v;
+    }
+
+    /**
+     * Get the worker with the given index. Each worker must only be used by a single thread.
+     *
+     * @param index index of the worker, from 0 (inclusive) to the number of workers (exclusive)
+     * @return the worker
+     */
+    public Worker getWorker(int index) {
+        return workers[index];
+    }
+
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    public int getTileCount() {
+        return tileCount;
+    }
+
+    /**
+     * Log the throughput of every worker.
+     *
+     * @param logger logger to output to
+     */
+    public void report(Logger logger) {
+        for (Worker worker : workers) {
+            double seconds = worker.nanos / 1e9;
+            logger.info(String.format(
+                    "Worker %d: %d chunks (%d tiles, %d stolen) in %.3fs - %.1f chunks/s",
+                    worker.index,
+                    worker.chunks,
+                    worker.tilesTaken,
+                    worker.tilesStolen,
+                    seconds,
+                    seconds > 0 ? worker.chunks / seconds : 0
+            ));
+        }
+    }
+
+    public final class Worker {
+
+        private final ConcurrentLinkedDeque<long[]> tiles = new ConcurrentLinkedDeque<>();
+        private final int index;
+        private long[] current;
+        private int position;
+        private long start;
+        private long nanos;
+        private int chunks;
+        private int tilesTaken;
+        private int tilesStolen;
+
+        private Worker(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Get the next chunk to process, as a pair of the chunk coordinates ({@link MathMan#pairInt(int, int)}).
+         *
+         * @return the chunk pair or {@link #NONE} if every chunk has been handed out
+         */
+        public long next() {
+            if (start == 0) {
+                start = System.nanoTime();
+            }
+            if (current == null || position >= current.length) {
+                current = take();
+                position = 0;
+                if (current == null) {
+                    nanos = System.nanoTime() - start;
+                    return NONE;
+                }
+            }
+            chunks++;
+            return current[position++];
+        }
+
+        private long[] take() {
+            long[] tile = tiles.pollFirst();
+            if (tile == null) {
+                // Steal from the tail of the other workers, i.e. the tiles furthest away from where they currently are
+                for (int i = 1; i < workers.length && tile == null; i++) {
+                    tile = workers[(index + i) % workers.length].tiles.pollLast();
+                }
+                if (tile == null) {
+                    return null;
+                }
+                tilesStolen++;
+            }
+            tilesTaken++;
+            if (cache != null) {
+                preferCached(tile);
+            }
+            return tile;
+        }
+
+        // Move the chunks that are already cached to the front of the tile
+        private void preferCached(long[] tile) {
+            int cached = 0;
+            for (int i = 0; i < tile.length; i++) {
+                long pair = tile[i];
+                if (cache.isCached(MathMan.unpairIntX(pair), MathMan.unpairIntY(pair))) {
+                    tile[i] = tile[cached];
+                    tile[cached++] = pair;
+                }
+            }
+        }
+
+        public int getChunks() {
+            return chunks;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+    }
+
+}
@@ -1,197 +1,503 @@
 package com.fastasyncworldedit.core.queue.implementation;
 
 import com.fastasyncworldedit.core.Fawe;
-import com.fastasyncworldedit.core.queue.IQueueChunk;
+import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.function.mask.ABlockMask;
+import com.fastasyncworldedit.core.math.BlockVectorSet;
+import com.fastasyncworldedit.core.math.MutableBlockVector3;
+import com.fastasyncworldedit.core.queue.IChunk;
 import com.fastasyncworldedit.core.queue.IQueueExtent;
+import com.fastasyncworldedit.core.queue.implementation.chunk.ChunkHolder;
 import com.fastasyncworldedit.core.util.MathMan;
-import com.sk89q.worldedit.util.Direction;
-import com.sk89q.worldedit.world.World;
-import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.function.RegionFunction;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
 
+/**
+ * Breadth first flood fill that keeps its frontier and visited positions per chunk section. Each level of the search is
+ * processed one section at a time, in chunk order, so that consecutive positions share their chunk and the visited
+ * bitmaps of neighbouring sections are looked up once per section instead of once per position.
+ * <p>
+ * If the positions to visit are decided by a block mask alone, large levels test the mask against the raw block data
+ * of the sections, splitting the sections of the level between several threads. Positions with blocks pending to be
+ * set, and sections without block data, are still tested through the {@link VisitTest}.
+ */
 public class Flood {
 
+    private static final int PARALLEL_LEVEL_SIZE = 4096;
+
+    private final BlockVector3[] directions;
     private final int maxBranch;
-    private final int maxDepth;
-    private final Direction[] directions;
-    private final Long2ObjectLinkedOpenHashMap<long[][]> chunkVisits;
-    private final Long2ObjectLinkedOpenHashMap<int[][]> chunkQueues;
-    private int[] queue;
-    private long[] visit;
-    private final int[][] queues;
-    private final long[][] visits;
-    private int chunkX;
-    private int chunkYLayer;
-    private int chunkZ;
-    private final ConcurrentLinkedQueue<int[]> queuePool = new ConcurrentLinkedQueue<>();
-    private final int minSectionPosition;
-    private final int maxSectionPosition;
-    private final int sectionCount;
-
-    public Flood(int maxBranch, int maxDepth, Direction[] directions, int minSectionPosition, int maxSectionPosition) {
-        this.maxBranch = maxBranch;
-        this.maxDepth = maxDepth;
+    private final int minY;
+    private final int maxY;
+    private final Long2ObjectOpenHashMap<Section> sections = new Long2ObjectOpenHashMap<>();
+    private final List<Section> frontier = new ArrayList<>();
+    private final MutableBlockVector3 from = new MutableBlockVector3();
+    private final MutableBlockVector3 to = new MutableBlockVector3();
+    private final boolean adjacentDirections;
+    private ABlockMask blockMask;
+    private IQueueExtent<? extends IChunk> rawQueue;
+
+    /**
+     * Create a new flood fill.
+     *
+     * @param directions the directions to visit from each position
+     * @param maxBranch  the maximum number of new positions queued from each position
+     * @param minY       minimum y value to visit. Inclusive.
+     * @param maxY       maximum y value to visit. Inclusive.
+     */
+    public Flood(BlockVector3[] directions, int maxBranch, int minY, int maxY) {
         this.directions = directions;
-        this.minSectionPosition = minSectionPosition;
-        this.maxSectionPosition = maxSectionPosition;
-        this.sectionCount = maxSectionPosition - minSectionPosition + 1;
+        this.maxBranch = maxBranch;
+        this.minY = minY;
+        this.maxY = maxY;
+        // The raw data of sections further away than the adjacent ones is not loaded
+        this.adjacentDirections = Arrays.stream(directions).allMatch(direction ->
+                Math.abs(direction.getX()) <= 1 && Math.abs(direction.getY()) <= 1 && Math.abs(direction.getZ()) <= 1);
+    }
 
-        this.queues = new int[27][];
-        this.visits = new long[27][];
+    /**
+     * Test the given mask against the raw block data of the queue rather than through {@link VisitTest}. Only valid if
+     * the visit test is exactly the mask, and the mask reads the blocks of the queue.
+     *
+     * @param mask  the block mask
+     * @param queue the queue to read block data from
+     */
+    public void setBlockMask(ABlockMask mask, IQueueExtent<? extends IChunk> queue) {
+        this.blockMask = mask;
+        this.rawQueue = queue;
+    }
+
+    private static long key(int sectionX, int sectionY, int sectionZ) {
+        return MathMan.tripleWorldCoord(sectionX, sectionY, sectionZ);
+    }
 
-        this.chunkVisits = new Long2ObjectLinkedOpenHashMap<>();
-        this.chunkQueues = new Long2ObjectLinkedOpenHashMap<>();
+    private static int index(int x, int y, int z) {
+        return (x & 15) | ((z & 15) << 4) | ((y & 15) << 8);
     }
 
-    public synchronized void run(World world) {
-        QueueHandler queueHandler = Fawe.instance().getQueueHandler();
-        IQueueExtent<IQueueChunk> fq = queueHandler.getQueue(world);
-        while (!chunkQueues.isEmpty()) {
-            long firstKey = chunkQueues.firstLongKey();
-            int x = MathMan.unpairIntX(firstKey);
-            int z = MathMan.unpairIntY(firstKey);
-            int[][] chunkQueue = chunkQueues.get(firstKey);
-            // apply
+    private Section getOrCreate(int sectionX, int sectionY, int sectionZ) {
+        long key = key(sectionX, sectionY, sectionZ);
+        Section section = sections.get(key);
+        if (section == null) {
+            sections.put(key, section = new Section(key, sectionX, sectionY, sectionZ));
         }
+        return section;
     }
 
-    private void init(int chunkX, int chunkYLayer, int chunkZ) {
-        this.chunkX = chunkX;
-        this.chunkYLayer = chunkYLayer;
-        this.chunkZ = chunkZ;
+    private void queue(Section section, int index) {
+        section.push(index);
+        if (!section.queued) {
+            section.queued = true;
+            frontier.add(section);
+        }
     }
 
+    /**
+     * Queue a position to be visited in the next level, unless it has been visited already.
+     */
     public void start(int x, int y, int z) {
-        push(x, y, z, 0);
+        Section section = getOrCreate(x >> 4, y >> 4, z >> 4);
+        int index = index(x, y, z);
+        if (!section.getAndSet(index)) {
+            queue(section, index);
+        }
     }
 
-    private void push(int x, int y, int z, int depth) {
-        int chunkX = x >> 4;
-        int chunkZ = z >> 4;
-        long pair = MathMan.pairInt(chunkX, chunkZ);
-        int layer = (y >> 4) - minSectionPosition;
-        int[] section = getOrCreateQueue(pair, layer);
-        int val = (x & 15) + ((z & 15) << 4) + ((y & 15) << 8) + (depth << 12);
-        push(section, val);
+    /**
+     * Mark a position as visited without queueing it.
+     */
+    public void markVisited(int x, int y, int z) {
+        getOrCreate(x >> 4, y >> 4, z >> 4).getAndSet(index(x, y, z));
     }
 
-    private int[] getOrCreateQueue(long pair, int layer) {
-        int[][] arrs = chunkQueues.get(pair);
-        if (arrs == null) {
-            chunkQueues.put(pair, arrs = new int[sectionCount][]);
+    public boolean isVisited(int x, int y, int z) {
+        Section section = sections.get(key(x >> 4, y >> 4, z >> 4));
+        return section != null && section.get(index(x, y, z));
+    }
+
+    /**
+     * Add all visited positions to a set.
+     */
+    public void getVisited(BlockVectorSet set) {
+        for (Section section : sections.values()) {
+            long[] bits = section.visited;
+            for (int word = 0; word < bits.length; word++) {
+                long remaining = bits[word];
+                while (remaining != 0) {
+                    int index = (word << 6) | Long.numberOfTrailingZeros(remaining);
+                    remaining &= remaining - 1;
+                    set.add(section.blockX + (index & 15), section.blockY + (index >> 8), section.blockZ + ((index >> 4) & 15));
+                }
+            }
         }
-        int[] section = arrs[layer];
-        if (section == null) {
-            arrs[layer] = section = newQueue();
+    }
+
+    /**
+     * Returns whether there are positions queued for the next level.
+     */
+    public boolean hasNext() {
+        return !frontier.isEmpty();
+    }
+
+    /**
+     * Request the chunks of the next level to be loaded ahead of time.
+     *
+     * @param queue the queue to load the chunks with
+     * @param limit the maximum number of chunks to request
+     */
+    public void preload(SingleThreadQueueExtent queue, int limit) {
+        LongOpenHashSet chunks = new LongOpenHashSet();
+        for (Section section : frontier) {
+            if (chunks.add(MathMan.pairInt(section.sectionX, section.sectionZ))) {
+                queue.addChunkLoad(section.sectionX, section.sectionZ);
+                if (chunks.size() >= limit) {
+                    return;
+                }
+            }
         }
-        return section;
     }
 
-    private int[] newQueue() {
-        int[] arr = queuePool.poll();
-        if (arr != null) {
-            arr[0] = 2;
-            arr[1] = 2;
-            return arr;
+    /**
+     * Visit all positions queued for this level, and queue the visitable neighbours of each for the next level.
+     *
+     * @param function the function to apply to each visited position
+     * @param test     decides whether a neighbour should be visited
+     * @return the number of positions the function returned true for
+     * @throws WorldEditException thrown by the function
+     */
+    public int next(RegionFunction function, VisitTest test) throws WorldEditException {
+        Section[] level = frontier.toArray(new Section[0]);
+        frontier.clear();
+        // Sorting by key groups the sections of a chunk together, and chunks by row
+        Arrays.sort(level, Comparator.comparingLong(section -> section.key));
+        int positions = 0;
+        for (Section section : level) {
+            section.swap();
+            positions += section.currentSize;
         }
-        return new int[4096];
+        if (blockMask != null && adjacentDirections && maxBranch == Integer.MAX_VALUE && positions >= PARALLEL_LEVEL_SIZE
+                && Settings.settings().QUEUE.PARALLEL_THREADS > 1) {
+            return nextRaw(level, function, test);
+        }
+        int affected = 0;
+        Section[] neighbours = new Section[27];
+        for (Section section : level) {
+            Arrays.fill(neighbours, null);
+            int[] queue = section.current;
+            for (int i = 0; i < section.currentSize; i++) {
+                int index = queue[i];
+                int x = section.blockX + (index & 15);
+                int y = section.blockY + (index >> 8);
+                int z = section.blockZ + ((index >> 4) & 15);
+                from.setComponents(x, y, z);
+                if (function.apply(from)) {
+                    affected++;
+                }
+                for (int d = 0, j = 0; d < directions.length && j < maxBranch; d++) {
+                    BlockVector3 direction = directions[d];
+                    int ty = y + direction.getY();
+                    if (ty < minY || ty > maxY) {
+                        continue;
+                    }
+                    int tx = x + direction.getX();
+                    int tz = z + direction.getZ();
+                    Section target = getNeighbour(section, neighbours, tx >> 4, ty >> 4, tz >> 4);
+                    int targetIndex = index(tx, ty, tz);
+                    if (!target.get(targetIndex) && test.test(from, to.setComponents(tx, ty, tz))) {
+                        j++;
+                        target.set(targetIndex);
+                        queue(target, targetIndex);
+                    }
+                }
+            }
+        }
+        return affected;
     }
 
-    public int poll() {
-        int index = queue[0];
-        if (index == queue[1]) {
-            return -1;
+    private Section getNeighbour(Section section, Section[] neighbours, int sectionX, int sectionY, int sectionZ) {
+        int dx = sectionX - section.sectionX;
+        int dy = sectionY - section.sectionY;
+        int dz = sectionZ - section.sectionZ;
+        if (dx == 0 && dy == 0 && dz == 0) {
+            return section;
+        }
+        if (dx < -1 || dx > 1 || dy < -1 || dy > 1 || dz < -1 || dz > 1) {
+            return getOrCreate(sectionX, sectionY, sectionZ);
+        }
+        int cacheIndex = (dx + 1) * 9 + (dy + 1) * 3 + dz + 1;
+        Section neighbour = neighbours[cacheIndex];
+        if (neighbour == null) {
+            neighbours[cacheIndex] = neighbour = getOrCreate(sectionX, sectionY, sectionZ);
         }
-        queue[0] = index + 1;
-        return queue[index];
+        return neighbour;
     }
 
-    private void push(int[] queue, int val) {
-        int indexStart = queue[0];
-        int indexEnd = queue[1];
-        push(indexStart, indexEnd, queue, val);
+    /**
+     * Like {@link #next(RegionFunction, VisitTest)}, but tests the block mask against the raw block data of the sections
+     * on several threads. The mask only reads blocks that have not been visited, which the function does not change, so
+     * the function can be applied to the whole level first. Positions the raw data may be outdated for are left to the
+     * visit test.
+     */
+    private int nextRaw(Section[] level, RegionFunction function, VisitTest test) throws WorldEditException {
+        int affected = 0;
+        for (Section section : level) {
+            int[] queue = section.current;
+            for (int i = 0; i < section.currentSize; i++) {
+                int index = queue[i];
+                from.setComponents(
+                        section.blockX + (index & 15),
+                        section.blockY + (index >> 8),
+                        section.blockZ + ((index >> 4) & 15)
+                );
+                if (function.apply(from)) {
+                    affected++;
+                }
+            }
+        }
+
+        // Create every section the level can reach and load its blocks, the workers then only read
+        int minSection = minY >> 4;
+        int maxSection = maxY >> 4;
+        Long2ObjectOpenHashMap<IChunk> chunks = new Long2ObjectOpenHashMap<>();
+        List<Section> loaded = new ArrayList<>();
+        for (Section section : level) {
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    int chunkX = section.sectionX + dx;
+                    int chunkZ = section.sectionZ + dz;
+                    for (int dy = -1; dy <= 1; dy++) {
+                        int sectionY = section.sectionY + dy;
+                        if (sectionY < minSection || sectionY > maxSection) {
+                            continue;
+                        }
+                        Section neighbour = getOrCreate(chunkX, sectionY, chunkZ);
+                        if (neighbour.blocks == null) {
+                            long pair = MathMan.pairInt(chunkX, chunkZ);
+                            IChunk chunk = chunks.get(pair);
+                            if (chunk == null) {
+                                chunks.put(pair, chunk = rawQueue.getOrCreateChunk(chunkX, chunkZ));
+                            }
+                            load(neighbour, chunk, sectionY);
+                            loaded.add(neighbour);
+                        }
+                    }
+                }
+            }
+        }
+
+        int threads = Math.min(Settings.settings().QUEUE.PARALLEL_THREADS, level.length);
+        Worker[] workers = new Worker[threads];
+        ForkJoinTask<?>[] tasks = new ForkJoinTask[threads];
+        for (int i = 0; i < threads; i++) {
+            Worker worker = workers[i] = new Worker(level, level.length * i / threads, level.length * (i + 1) / threads);
+            tasks[i] = submit(worker);
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        // Workers may find the same position, the first one queues it
+        for (Worker worker : workers) {
+            for (int i = 0; i < worker.targets.size(); i++) {
+                Section target = worker.targets.get(i);
+                int index = worker.indices.getInt(i);
+                if (!target.getAndSet(index)) {
+                    queue(target, index);
+                }
+            }
+            IntArrayList deferred = worker.deferred;
+            for (int i = 0; i < deferred.size(); i += 6) {
+                from.setComponents(deferred.getInt(i), deferred.getInt(i + 1), deferred.getInt(i + 2));
+                int tx = deferred.getInt(i + 3);
+                int ty = deferred.getInt(i + 4);
+                int tz = deferred.getInt(i + 5);
+                Section target = sections.get(key(tx >> 4, ty >> 4, tz >> 4));
+                int index = index(tx, ty, tz);
+                if (!target.get(index) && test.test(from, to.setComponents(tx, ty, tz))) {
+                    target.set(index);
+                    queue(target, index);
+                }
+            }
+        }
+        // Chunks may be flushed and reloaded before the next level
+        for (Section section : loaded) {
+            section.blocks = null;
+            section.pending = null;
+        }
+        return affected;
     }
 
-    private void push(int indexStart, int indexEnd, int[] queue, int val) {
-        if (indexStart > 2) {
-            queue[0] = --indexStart;
-            queue[indexStart] = val;
+    /**
+     * Load the block data of a section for the workers. Blocks pending to be set are not part of it, so where there are
+     * any the workers use the visit test instead.
+     */
+    private static void load(Section section, IChunk chunk, int sectionY) {
+        if (chunk.isEmpty()) {
+            section.blocks = chunk.load(sectionY);
+        } else if (chunk instanceof ChunkHolder<?> holder) {
+            section.blocks = chunk.load(sectionY);
+            section.pending = holder.getOrCreateSet().loadIfPresent(sectionY);
         } else {
-            queue[indexEnd] = val;
-            queue[0] = ++indexEnd;
+            // Unknown where the pending blocks are
+            section.blocks = null;
         }
     }
 
-    public Direction[] getDirections() {
-        return directions;
+    /**
+     * Submit a task testing part of a level.
+     */
+    ForkJoinTask<?> submit(Runnable task) {
+        return Fawe.instance().getQueueHandler().submit(task);
     }
 
-    public int getMaxBranch() {
-        return maxBranch;
-    }
+    private final class Worker implements Runnable {
 
-    public int getMaxDepth() {
-        return maxDepth;
-    }
+        private final Section[] level;
+        private final int start;
+        private final int end;
+        private final List<Section> targets = new ArrayList<>();
+        private final IntArrayList indices = new IntArrayList();
+        // Coordinates of the positions and neighbours left to the visit test, six per neighbour
+        private final IntArrayList deferred = new IntArrayList();
 
-    public void apply(int x, int y, int z, int depth) {
-        for (int i = 0, j = 0; i < directions.length && j < maxBranch; i++) {
-            final Direction dir = directions[i];
-            final int ty = y + dir.getBlockY();
-            final int tx = x + dir.getBlockX();
-            final int tz = z + dir.getBlockZ();
+        private Worker(Section[] level, int start, int end) {
+            this.level = level;
+            this.start = start;
+            this.end = end;
+        }
 
-            int index;
-            long[] visit;
-            int[] queue;
-            final int or = tx | ty | tz;
-            if (or > 15 || or < 0) {
-                visit = this.visit;
-                queue = this.queue;
-                index = tx + (tz << 4) + (ty << 8);
-            } else {
-                int nextX = tx >> 4;
-                int nextY = ty >> 4;
-                int nextZ = tz >> 4;
-                int sectionIndex = nextX + nextZ * 3 + nextZ * 9 + 13;
-                visit = visits[sectionIndex];
-                queue = queues[sectionIndex];
-                if (visit == null || queue == null) {
-                    long pair = MathMan.pairInt(this.chunkX + nextX, this.chunkZ + nextZ);
-                    int layer = this.chunkYLayer + nextY;
-                    if (layer < minSectionPosition || layer > maxSectionPosition) {
-                        continue;
+        @Override
+        public void run() {
+            for (int s = start; s < end; s++) {
+                Section section = level[s];
+                int[] queue = section.current;
+                for (int i = 0; i < section.currentSize; i++) {
+                    int index = queue[i];
+                    int x = section.blockX + (index & 15);
+                    int y = section.blockY + (index >> 8);
+                    int z = section.blockZ + ((index >> 4) & 15);
+                    for (BlockVector3 direction : directions) {
+                        int ty = y + direction.getY();
+                        if (ty < minY || ty > maxY) {
+                            continue;
+                        }
+                        int tx = x + direction.getX();
+                        int tz = z + direction.getZ();
+                        Section target = sections.get(key(tx >> 4, ty >> 4, tz >> 4));
+                        int targetIndex = index(tx, ty, tz);
+                        if (target.get(targetIndex)) {
+                            continue;
+                        }
+                        char[] blocks = target.blocks;
+                        char[] pending = target.pending;
+                        if (blocks == null
+                                || (pending != null && pending[targetIndex] != BlockTypesCache.ReservedIDs.__RESERVED__)) {
+                            deferred.add(x);
+                            deferred.add(y);
+                            deferred.add(z);
+                            deferred.add(tx);
+                            deferred.add(ty);
+                            deferred.add(tz);
+                            continue;
+                        }
+                        // The same state the chunk returns for the position
+                        if (blockMask.test(BlockTypesCache.states[blocks[targetIndex]])) {
+                            targets.add(target);
+                            indices.add(targetIndex);
+                        }
                     }
-                    queues[sectionIndex] = queue = getOrCreateQueue(pair, layer);
                 }
-                index = (tx & 15) + ((tz & 15) << 4) + ((ty & 15) << 8);
-            }
-            if (!getAndSet(visit, index)) {
-                j++;
-                push(queue, index + (depth << 12));
             }
         }
+
     }
 
-    public void set(long[] bits, int i) {
-        bits[i >> 6] |= 1L << (i & 0x3F);
+    /**
+     * Decides whether the flood should continue from one position to a neighbouring one.
+     */
+    @FunctionalInterface
+    public interface VisitTest {
+
+        boolean test(BlockVector3 from, BlockVector3 to);
+
     }
 
-    public final boolean getAndSet(long[] bits, int i) {
-        int index = i >> 6;
-        long offset = 1L << (i & 0x3F);
-        long val = bits[index];
-        if ((val & offset) != 0) {
-            return true;
-        } else {
-            bits[index] |= offset;
+    private static final class Section {
+
+        private final long key;
+        private final int sectionX;
+        private final int sectionY;
+        private final int sectionZ;
+        private final int blockX;
+        private final int blockY;
+        private final int blockZ;
+        private final long[] visited = new long[64];
+        private int[] current = new int[16];
+        private int currentSize;
+        private int[] next = new int[16];
+        private int nextSize;
+        private boolean queued;
+        private char[] blocks;
+        private char[] pending;
+
+        private Section(long key, int sectionX, int sectionY, int sectionZ) {
+            this.key = key;
+            this.sectionX = sectionX;
+            this.sectionY = sectionY;
+            this.sectionZ = sectionZ;
+            this.blockX = sectionX << 4;
+            this.blockY = sectionY << 4;
+            this.blockZ = sectionZ << 4;
+        }
+
+        private boolean get(int index) {
+            return (visited[index >> 6] & (1L << index)) != 0;
+        }
+
+        private void set(int index) {
+            visited[index >> 6] |= 1L << index;
+        }
+
+        private boolean getAndSet(int index) {
+            long bit = 1L << index;
+            long bits = visited[index >> 6];
+            if ((bits & bit) != 0) {
+                return true;
+            }
+            visited[index >> 6] = bits | bit;
             return false;
         }
-    }
 
-    public boolean get(long[] bits, int i) {
-        return (bits[i >> 6] & 1L << (i & 0x3F)) != 0;
+        private void push(int index) {
+            if (nextSize == next.length) {
+                // A position is only queued once, so a level never holds more than a section's worth
+                next = Arrays.copyOf(next, Math.min(next.length << 1, 4096));
+            }
+            next[nextSize++] = index;
+        }
+
+        /**
+         * Make the positions queued for the next level the current ones.
+         */
+        private void swap() {
+            int[] tmp = current;
+            current = next;
+            currentSize = nextSize;
+            next = tmp;
+            nextSize = 0;
+            queued = false;
+        }
+
     }
 
 }
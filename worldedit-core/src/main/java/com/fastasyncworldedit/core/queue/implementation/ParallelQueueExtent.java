@@ -12,11 +12,13 @@
 import com.fastasyncworldedit.core.extent.filter.block.ChunkFilterBlock;
 import com.fastasyncworldedit.core.extent.processor.BatchProcessorHolder;
 import com.fastasyncworldedit.core.extent.processor.MultiBatchProcessor;
+import com.fastasyncworldedit.core.extent.processor.heightmap.ColumnHeightCache;
 import com.fastasyncworldedit.core.function.mask.BlockMaskBuilder;
 import com.fastasyncworldedit.core.internal.exception.FaweException;
 import com.fastasyncworldedit.core.queue.Filter;
 import com.fastasyncworldedit.core.queue.IQueueChunk;
 import com.fastasyncworldedit.core.queue.IQueueExtent;
+import com.fastasyncworldedit.core.util.MathMan;
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
 import com.sk89q.worldedit.function.mask.BlockMask;
@@ -50,6 +52,8 @@ public class ParallelQueueExtent extends PassthroughExtent {
     private final QueueHandler handler;
     private final BatchProcessorHolder processor;
     private final BatchProcessorHolder postProcessor;
+    // Shared by all queues of the edit, registered once in the shared processor
+    private ColumnHeightCache heightCache;
     // Array for lazy avoidance of concurrent modification exceptions and needless overcomplication of code (synchronisation is
     // not very important)
     private final boolean[] faweExceptionReasonsUsed = new boolean[FaweException.Type.values().length];
@@ -71,6 +75,29 @@ public ParallelQueueExtent(QueueHandler handler, World world, boolean fastmode)
             ((MultiBatchProcessor) this.postProcessor.getProcessor()).setFaweExceptionArray(faweExceptionReasonsUsed);
         }
         this.fastmode = fastmode;
+        this.heightCache = new ColumnHeightCache(world.getMinY(), world.getMaxY());
+        this.processor.join(heightCache);
+        setHeightCache(getExtent(), heightCache);
+    }
+
+    private static void setHeightCache(IQueueExtent<IQueueChunk> queue, ColumnHeightCache heightCache) {
+        if (queue instanceof SingleThreadQueueExtent) {
+            ((SingleThreadQueueExtent) queue).setHeightCache(heightCache);
+        }
+    }
+
+    /**
+     * Remove the column height cache from the edit and drop its columns. Called when the edit session is closed, surface
+     * lookups read the columns block by block afterwards.
+     */
+    public void closeHeightCache() {
+        if (heightCache == null) {
+            return;
+        }
+        processor.remove(ColumnHeightCache.class);
+        setHeightCache(getExtent(), null);
+        heightCache.clear();
+        heightCache = null;
     }
 
     @Override
@@ -91,7 +118,9 @@ public boolean cancel() {
 
     @SuppressWarnings("rawtypes")
     private IQueueExtent<IQueueChunk> getNewQueue() {
-        return handler.getQueue(world, this.processor, this.postProcessor);
+        IQueueExtent<IQueueChunk> queue = handler.getQueue(world, this.processor, this.postProcessor);
+        setHeightCache(queue, heightCache);
+        return queue;
     }
 
     @Override
@@ -107,9 +136,12 @@ public <T extends Filter> T apply(Region region, T filter, boolean full) {
             BlockVector2 pos = chunksIter.next();
             getExtent().apply(null, filter, region, pos.getX(), pos.getZ(), full);
         } else {
+            // Split the chunks into tiles which the tasks take from and steal from each other
+            final ChunkTileScheduler scheduler = new ChunkTileScheduler(chunks, size, handler.getOrCreateWorldCache(world));
             final ForkJoinTask[] tasks = IntStream.range(0, size).mapToObj(i -> handler.submit(() -> {
                 try {
                     final Filter newFilter = filter.fork();
+                    final ChunkTileScheduler.Worker worker = scheduler.getWorker(i);
                     // Create a chunk that we will reuse/reset for each operation
                     final SingleThreadQueueExtent queue = (SingleThreadQueueExtent) getNewQueue();
                     queue.setFastMode(fastmode);
@@ -118,19 +150,11 @@ public <T extends Filter> T apply(Region region, T filter, boolean full) {
                         try {
                             ChunkFilterBlock block = null;
 
-                            while (true) {
-                                // Get the next chunk posWeakChunk
-                                final int chunkX;
-                                final int chunkZ;
-                                synchronized (chunksIter) {
-                                    if (!chunksIter.hasNext()) {
-                                        break;
-                                    }
-                                    final BlockVector2 pos = chunksIter.next();
-                                    chunkX = pos.getX();
-                                    chunkZ = pos.getZ();
-                                }
-                                block = queue.apply(block, newFilter, region, chunkX, chunkZ, full);
+                            long pair;
+                            while ((pair = worker.next()) != ChunkTileScheduler.NONE) {
+                                block = queue.apply(block, newFilter, region, MathMan.unpairIntX(pair),
+                                        MathMan.unpairIntY(pair), full
+                                );
                             }
                             queue.flush();
                         } catch (Throwable t) {
@@ -162,6 +186,9 @@ public <T extends Filter> T apply(Region region, T filter, boolean full) {
                     task.quietlyJoin();
                 }
             }
+            if (Settings.settings().ENABLED_COMPONENTS.DEBUG) {
+                scheduler.report(LOGGER);
+            }
             filter.join();
         }
         return filter;
@@ -0,0 +1,161 @@
+package com.fastasyncworldedit.core.queue.implementation;
+
+import com.fastasyncworldedit.core.Fawe;
+import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.util.MemUtil;
+import com.sk89q.worldedit.internal.util.LogManagerCompat;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tunes how many chunks a queue holds before submitting them, how many submitted chunks it lets be in flight, and how
+ * many chunks are preloaded ahead of an edit, starting from the {@link Settings.QUEUE} values.
+ * <p>
+ * The values are updated once a second from the ticks per second of the server, the free heap and the time it takes
+ * to apply a chunk. Low ticks per second or slower chunks reduce the chunks in flight and the preloading, while a heap
+ * close to {@link Settings#MAX_MEMORY_PERCENT} reduces the chunks held by each queue. Both are increased again step by
+ * step while the server keeps up and the queue executor has threads to spare. Queues read the current values each
+ * time they decide, so every edit follows the load of the whole server.
+ * <p>
+ * Decisions are logged when {@link Settings.ENABLED_COMPONENTS#DEBUG} is enabled.
+ */
+public class QueueController {
+
+    private static final Logger LOGGER = LogManagerCompat.getLogger();
+
+    private static final int INTERVAL_TICKS = 20;
+    private static final double MIN_SCALE = 0.125;
+    private static final double MAX_SCALE = 4;
+    private static final double STEP = 0.25;
+    // Latency has to exceed the long term average by this much to count as congestion
+    private static final double CONGESTION = 2;
+
+    private final QueueHandler handler;
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAdder latencyCount = new LongAdder();
+    private int ticks;
+    private double averageLatency;
+    private double batchScale = 1;
+    private double flightScale = 1;
+    private volatile int targetSize = -1;
+    private volatile int maxInFlight = -1;
+    private volatile int preloadChunks = -1;
+
+    QueueController(QueueHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Record the time it took to apply a chunk. May be called from any thread.
+     *
+     * @param nanos the time taken in nanoseconds
+     */
+    public void recordChunk(long nanos) {
+        latencyNanos.add(nanos);
+        latencyCount.increment();
+    }
+
+    /**
+     * Get the number of chunks a queue may hold before it starts submitting them.
+     *
+     * @return the target size
+     */
+    public int getTargetSize() {
+        int size = targetSize;
+        return size == -1 ? Settings.settings().QUEUE.TARGET_SIZE : size;
+    }
+
+    /**
+     * Get the number of submitted chunks a queue may have in flight before it waits for them.
+     *
+     * @return the in-flight limit
+     */
+    public int getMaxInFlight() {
+        int size = maxInFlight;
+        return size == -1 ? Settings.settings().QUEUE.TARGET_SIZE : size;
+    }
+
+    /**
+     * Get the number of chunks to preload ahead of an edit.
+     *
+     * @return the preload count
+     */
+    public int getPreloadChunks() {
+        int count = preloadChunks;
+        return count == -1 ? Settings.settings().QUEUE.PRELOAD_CHUNK_COUNT : count;
+    }
+
+    /**
+     * Update the values, called every tick from the main thread.
+     */
+    void tick() {
+        if (++ticks < INTERVAL_TICKS) {
+            return;
+        }
+        ticks = 0;
+        Settings.QUEUE settings = Settings.settings().QUEUE;
+        if (!settings.ADAPTIVE) {
+            targetSize = maxInFlight = preloadChunks = -1;
+            return;
+        }
+        long count = latencyCount.sumThenReset();
+        long nanos = latencyNanos.sumThenReset();
+        double latency = count == 0 ? 0 : (double) nanos / count;
+        double tps = Fawe.instance().getTimer().getTPS();
+        double targetTPS = 18 - Math.max(settings.EXTRA_TIME_MS * 0.05, 0);
+        double free = (double) MemUtil.getFreeBytes() / Runtime.getRuntime().maxMemory();
+        double minFree = (100 - Settings.settings().MAX_MEMORY_PERCENT) / 100d;
+
+        boolean congested = count != 0 && averageLatency != 0 && latency > averageLatency * CONGESTION;
+        if (count != 0) {
+            averageLatency = averageLatency == 0 ? latency : averageLatency * 0.9 + latency * 0.1;
+        }
+        if (tps < targetTPS) {
+            flightScale = Math.max(MIN_SCALE, flightScale * 0.5);
+        } else if (congested) {
+            flightScale = Math.max(MIN_SCALE, flightScale * 0.8);
+        } else if (count != 0 && handler.isUnderutilized()) {
+            flightScale = Math.min(MAX_SCALE, flightScale + STEP);
+        }
+        if (MemUtil.isMemoryLimited() || free < minFree * 1.5) {
+            batchScale = Math.max(MIN_SCALE, batchScale * 0.5);
+        } else if (free > minFree * 3 && count != 0) {
+            batchScale = Math.min(MAX_SCALE, batchScale + STEP);
+        }
+
+        int threads = settings.PARALLEL_THREADS;
+        int maxSize = Math.max(threads, settings.TARGET_SIZE * (int) MAX_SCALE);
+        int newTargetSize = clamp((int) Math.round(settings.TARGET_SIZE * batchScale), threads, maxSize);
+        int newMaxInFlight = clamp((int) Math.round(settings.TARGET_SIZE * flightScale), threads, maxSize);
+        // Preloading is bounded by the configured count, as that is sized to the memory of the server
+        int newPreloadChunks = settings.PRELOAD_CHUNK_COUNT <= 1 ? settings.PRELOAD_CHUNK_COUNT : clamp(
+                (int) Math.round(settings.PRELOAD_CHUNK_COUNT * Math.min(batchScale, flightScale)),
+                2,
+                settings.PRELOAD_CHUNK_COUNT
+        );
+        boolean changed = newTargetSize != targetSize || newMaxInFlight != maxInFlight || newPreloadChunks != preloadChunks;
+        targetSize = newTargetSize;
+        maxInFlight = newMaxInFlight;
+        preloadChunks = newPreloadChunks;
+        if (changed && Settings.settings().ENABLED_COMPONENTS.DEBUG) {
+            LOGGER.info(String.format(
+                    "Queue controller: %.1f TPS, %.0f%% heap free, %.2fms per chunk (%.2fms average)%s - target size %d, "
+                            + "in flight %d, preload %d",
+                    tps,
+                    free * 100,
+                    latency / 1e6,
+                    averageLatency / 1e6,
+                    congested ? ", congested" : "",
+                    newTargetSize,
+                    newMaxInFlight,
+                    newPreloadChunks
+            ));
+        }
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+}
@@ -14,6 +14,7 @@
 import com.fastasyncworldedit.core.util.MemUtil;
 import com.fastasyncworldedit.core.util.TaskManager;
 import com.fastasyncworldedit.core.util.collection.CleanableThreadLocal;
+import com.fastasyncworldedit.core.util.metrics.PipelineMetrics;
 import com.fastasyncworldedit.core.wrappers.WorldWrapper;
 import com.google.common.util.concurrent.Futures;
 import com.sk89q.worldedit.world.World;
@@ -39,6 +40,9 @@
 @SuppressWarnings({"unchecked", "rawtypes"})
 public abstract class QueueHandler implements Trimable, Runnable {
 
+    // The time is only checked between tasks, so finishing within a millisecond of the budget is expected
+    private static final long SYNC_BUDGET_TOLERANCE_MS = 1;
+
     private final ForkJoinPool forkJoinPoolPrimary = new ForkJoinPool();
     private final ForkJoinPool forkJoinPoolSecondary = new ForkJoinPool();
     private final ThreadPoolExecutor blockingExecutor = FaweCache.INSTANCE.newBlockingExecutor();
@@ -54,18 +58,30 @@ public abstract class QueueHandler implements Trimable, Runnable {
     private long last;
     private long allocate = 50;
     private double targetTPS = 18;
+    private final QueueController controller = new QueueController(this);
 
     public QueueHandler() {
         TaskManager.taskManager().repeat(this, 1);
     }
 
+    /**
+     * Get the controller tuning the queue sizes to the load of the server.
+     */
+    public QueueController getController() {
+        return controller;
+    }
+
     @Override
     public void run() {
         if (!Fawe.isMainThread()) {
             throw new IllegalStateException("Not main thread");
         }
+        controller.tick();
         if (!syncTasks.isEmpty()) {
             long currentAllocate = getAllocate();
+            if (PipelineMetrics.isEnabled()) {
+                PipelineMetrics.SYNC_QUEUE_DEPTH.record(syncTasks.size());
+            }
 
             if (!MemUtil.isMemoryFree()) {
                 // TODO reduce mem usage
@@ -120,10 +136,21 @@ private void operate(Queue<FutureTask> queue, long start, long currentAllocate)
                 }
             }
             if (task != null) {
+                final long taskStart = PipelineMetrics.start();
                 task.run();
+                PipelineMetrics.SYNC_TASK.recordSince(taskStart);
                 wait = true;
             }
         } while (System.currentTimeMillis() - start < currentAllocate);
+        if (PipelineMetrics.isEnabled()) {
+            long overrun = System.currentTimeMillis() - start - currentAllocate;
+            if (overrun > 0) {
+                PipelineMetrics.SYNC_BUDGET_OVERRUN.record(overrun);
+                if (overrun > SYNC_BUDGET_TOLERANCE_MS) {
+                    PipelineMetrics.SYNC_BUDGET_EXCEEDED.increment();
+                }
+            }
+        }
     }
 
     public <T extends Future<T>> void complete(Future<T> task) {
@@ -233,7 +260,14 @@ public <T extends Future<T>> T submit(IQueueChunk<T> chunk) {
 //        if (MemUtil.isMemoryFree()) { TODO NOT IMPLEMENTED - optimize this
 //            return (T) forkJoinPoolSecondary.submit(chunk);
 //        }
-        return (T) blockingExecutor.submit(chunk);
+        return (T) blockingExecutor.submit(() -> {
+            final long start = System.nanoTime();
+            try {
+                return chunk.call();
+            } finally {
+                controller.recordChunk(System.nanoTime() - start);
+            }
+        });
     }
 
     /**
@@ -8,6 +8,7 @@
 import com.fastasyncworldedit.core.extent.processor.EmptyBatchProcessor;
 import com.fastasyncworldedit.core.extent.processor.ExtentBatchProcessorHolder;
 import com.fastasyncworldedit.core.extent.processor.ProcessorScope;
+import com.fastasyncworldedit.core.extent.processor.heightmap.ColumnHeightCache;
 import com.fastasyncworldedit.core.internal.exception.FaweException;
 import com.fastasyncworldedit.core.queue.IChunk;
 import com.fastasyncworldedit.core.queue.IChunkCache;
@@ -20,6 +21,7 @@
 import com.fastasyncworldedit.core.queue.implementation.chunk.NullChunk;
 import com.fastasyncworldedit.core.util.MathMan;
 import com.fastasyncworldedit.core.util.MemUtil;
+import com.fastasyncworldedit.core.util.metrics.PipelineMetrics;
 import com.fastasyncworldedit.core.wrappers.WorldWrapper;
 import com.google.common.util.concurrent.Futures;
 import com.sk89q.worldedit.EditSession;
@@ -32,6 +34,7 @@
 import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
 import org.apache.logging.log4j.Logger;
 
+import javax.annotation.Nullable;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -71,6 +74,7 @@ public class SingleThreadQueueExtent extends ExtentBatchProcessorHolder implemen
     private boolean[] faweExceptionReasonsUsed = new boolean[FaweException.Type.values().length];
     private int lastException = Integer.MIN_VALUE;
     private int exceptionCount = 0;
+    private ColumnHeightCache heightCache;
 
     public SingleThreadQueueExtent() {
     }
@@ -104,6 +108,13 @@ public void disableQueue() {
         enabledQueue = false;
     }
 
+    /**
+     * If chunks are submitted to the {@link QueueHandler} once the queue grows larger than its target size.
+     */
+    public boolean isSubmissionEnabled() {
+        return enabledQueue;
+    }
+
     @Override
     public IChunkGet getCachedGet(int chunkX, int chunkZ) {
         return cacheGet.get(chunkX, chunkZ);
@@ -124,6 +135,16 @@ public void setFastMode(boolean fastmode) {
         this.fastmode = fastmode;
     }
 
+    /**
+     * Set the column height cache surface lookups are made through. The cache must be added to the processor of the
+     * queue. Queues of a parallel edit share the cache of the edit.
+     *
+     * @param heightCache the cache, or null to read the columns block by block
+     */
+    public void setHeightCache(@Nullable ColumnHeightCache heightCache) {
+        this.heightCache = heightCache;
+    }
+
     @Override
     public int getMinY() {
         return minY;
@@ -166,6 +187,7 @@ protected synchronized void reset() {
         this.lastPair = Long.MAX_VALUE;
         this.currentThread = null;
         this.initialized = false;
+        this.heightCache = null;
         this.setProcessor(EmptyBatchProcessor.getInstance());
         this.setPostProcessor(EmptyBatchProcessor.getInstance());
         this.world = null;
@@ -237,6 +259,7 @@ private <V extends Future<V>> V submitUnchecked(IQueueChunk chunk) {
             Future result = Futures.immediateFuture(null);
             return (V) result;
         }
+        PipelineMetrics.CHUNKS_SUBMITTED.increment();
 
         if (Fawe.isMainThread()) {
             V result = (V) chunk.call();
@@ -306,13 +329,13 @@ public final IQueueChunk getOrCreateChunk(int x, int z) {
             }
             final int size = chunks.size();
             final boolean lowMem = MemUtil.isMemoryLimited();
+            final QueueHandler handler = Fawe.instance().getQueueHandler();
             // If queueing is enabled AND either of the following
             //  - memory is low & queue size > num threads + 8
             //  - queue size > target size and primary queue has less than num threads submissions
-            if (enabledQueue && ((lowMem && size > Settings.settings().QUEUE.PARALLEL_THREADS + 8) || (size > Settings.settings().QUEUE.TARGET_SIZE && Fawe
-                    .instance()
-                    .getQueueHandler()
-                    .isUnderutilized()))) {
+            if (enabledQueue && ((lowMem && size > Settings.settings().QUEUE.PARALLEL_THREADS + 8) || (size > handler
+                    .getController()
+                    .getTargetSize() && handler.isUnderutilized()))) {
                 chunk = chunks.removeFirst();
                 final Future future = submitUnchecked(chunk);
                 if (future != null && !future.isDone()) {
@@ -320,7 +343,7 @@ public final IQueueChunk getOrCreateChunk(int x, int z) {
                     if (lowMem) {
                         targetSize = Settings.settings().QUEUE.PARALLEL_THREADS + 8;
                     } else {
-                        targetSize = Settings.settings().QUEUE.TARGET_SIZE;
+                        targetSize = handler.getController().getMaxInFlight();
                     }
                     pollSubmissions(targetSize, lowMem);
                     submissions.add(future);
@@ -353,15 +376,16 @@ public void addChunkLoad(int cx, int cz) {
     }
 
     /**
-     * Define a region to be "preloaded" to the number of chunks provided by {@link Settings.QUEUE#PRELOAD_CHUNK_COUNT}
+     * Define a region to be "preloaded" to the number of chunks provided by {@link QueueController#getPreloadChunks()}
      *
      * @param region region of chunks
      */
     public void preload(Region region) {
         if (Settings.settings().QUEUE.PRELOAD_CHUNK_COUNT > 1) {
             int loadCount = 0;
+            int preload = Fawe.instance().getQueueHandler().getController().getPreloadChunks();
             for (BlockVector2 from : region.getChunks()) {
-                if (loadCount >= Settings.settings().QUEUE.PRELOAD_CHUNK_COUNT) {
+                if (loadCount >= preload) {
                     break;
                 }
                 loadCount++;
@@ -377,6 +401,7 @@ public ChunkHolder create(boolean isFull) {
 
     private void pollSubmissions(int targetSize, boolean aggressive) {
         final int overflow = submissions.size() - targetSize;
+        PipelineMetrics.SUBMISSION_QUEUE_DEPTH.record(submissions.size());
         if (aggressive) {
             if (targetSize == 0) {
                 while (!submissions.isEmpty()) {
@@ -430,10 +455,12 @@ private void pollSubmissions(int targetSize, boolean aggressive) {
 
     private void iterateSubmissions() {
         Future first = submissions.poll();
+        final long start = PipelineMetrics.start();
         try {
             while (first != null) {
                 first = (Future) first.get();
             }
+            PipelineMetrics.SUBMISSION_STALL.recordSince(start);
         } catch (FaweException e) {
             Fawe.handleFaweException(faweExceptionReasonsUsed, e, LOGGER);
         } catch (ExecutionException | InterruptedException e) {
@@ -480,6 +507,24 @@ public synchronized void flush() {
         pollSubmissions(0, true);
     }
 
+    @Override
+    public int getNearestSurfaceTerrainBlock(
+            int x,
+            int z,
+            int y,
+            int minY,
+            int maxY,
+            int failedMin,
+            int failedMax,
+            boolean ignoreAir
+    ) {
+        ColumnHeightCache heightCache = this.heightCache;
+        if (heightCache == null || minY < this.minY || maxY > this.maxY) {
+            return IQueueExtent.super.getNearestSurfaceTerrainBlock(x, z, y, minY, maxY, failedMin, failedMax, ignoreAir);
+        }
+        return heightCache.getNearestSurfaceTerrainBlock(this, x, z, y, minY, maxY, failedMin, failedMax, ignoreAir);
+    }
+
     @Override
     public ChunkFilterBlock initFilterBlock() {
         return new CharFilterBlock(this);
@@ -39,6 +39,12 @@ public synchronized T get(int x, int z) {
         return blocks;
     }
 
+    @Override
+    public synchronized boolean isCached(int x, int z) {
+        final WeakReference<T> ref = getCache.get(MathMan.pairInt(x, z));
+        return ref != null && ref.get() != null;
+    }
+
     public T newChunk(int chunkX, int chunkZ) {
         return delegate.get(chunkX, chunkZ);
     }
@@ -12,6 +12,7 @@
 import com.fastasyncworldedit.core.queue.IQueueChunk;
 import com.fastasyncworldedit.core.queue.IQueueExtent;
 import com.fastasyncworldedit.core.queue.Pool;
+import com.fastasyncworldedit.core.util.metrics.PipelineMetrics;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.Region;
@@ -1002,16 +1003,24 @@ public synchronized T call() {
     @Override
     public synchronized T call(IChunkSet set, Runnable finalize) {
         if (set != null) {
+            final long start = PipelineMetrics.start();
             IChunkGet get = getOrCreateGet();
+            PipelineMetrics.CHUNK_LOAD.recordSince(start);
             boolean postProcess = !(getExtent().getPostProcessor() instanceof EmptyBatchProcessor);
             get.setCreateCopy(postProcess);
+            final long processStart = PipelineMetrics.start();
             set = getExtent().processSet(this, get, set);
+            PipelineMetrics.PROCESS_SET.recordSince(processStart);
+            if (set != null && PipelineMetrics.isEnabled()) {
+                PipelineMetrics.SECTIONS_SUBMITTED.add(Integer.bitCount(set.getBitMask()));
+            }
             try {
                 return get.call(set, finalize);
             } finally {
                 if (postProcess) {
                     getExtent().postProcess(this, get.getCopy(), set);
                 }
+                PipelineMetrics.CHUNK_CALL.recordSince(start);
             }
         }
         return null;
@@ -1,7 +1,6 @@
 package com.fastasyncworldedit.core.queue.implementation.preloader;
 
 import com.fastasyncworldedit.core.Fawe;
-import com.fastasyncworldedit.core.configuration.Settings;
 import com.fastasyncworldedit.core.util.FaweTimer;
 import com.fastasyncworldedit.core.util.TaskManager;
 import com.fastasyncworldedit.core.util.collection.MutablePair;
@@ -77,7 +76,7 @@ public void update(@Nonnull Actor actor, @Nonnull World world) {
                 existing.setKey(world);
                 existing.setValue(ImmutableSet.copyOf(Iterables.limit(
                         region.getChunks(),
-                        Settings.settings().QUEUE.PRELOAD_CHUNK_COUNT
+                        Fawe.instance().getQueueHandler().getController().getPreloadChunks()
                 )));
             }
             synchronized (update) {
@@ -1,23 +1,27 @@
 package com.fastasyncworldedit.core.util;
 
 import com.sk89q.worldedit.world.block.BlockType;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 
 import java.io.FileNotFoundException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Remembers the results of looking up colors, which can be done from any number of threads.
+ */
 public class CachedTextureUtil extends DelegateTextureUtil {
 
     private final TextureUtil parent;
-    private final transient Int2ObjectOpenHashMap<BlockType> colorBlockMap;
-    private final transient Int2ObjectOpenHashMap<Integer> colorBiomeMap;
-    private final transient Int2ObjectOpenHashMap<BlockType[]> colorLayerMap;
+    private final transient Map<Integer, BlockType> colorBlockMap;
+    private final transient Map<Integer, Integer> colorBiomeMap;
+    private final transient Map<Integer, BlockType[]> colorLayerMap;
 
     public CachedTextureUtil(TextureUtil parent) throws FileNotFoundException {
         super(parent);
         this.parent = parent;
-        this.colorBlockMap = new Int2ObjectOpenHashMap<>();
-        this.colorLayerMap = new Int2ObjectOpenHashMap<>();
-        this.colorBiomeMap = new Int2ObjectOpenHashMap<>();
+        this.colorBlockMap = new ConcurrentHashMap<>();
+        this.colorLayerMap = new ConcurrentHashMap<>();
+        this.colorBiomeMap = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -28,7 +32,7 @@ public BlockType[] getNearestLayer(int color) {
         }
         closest = parent.getNearestLayer(color);
         if (closest != null) {
-            colorLayerMap.put(color, closest.clone());
+            colorLayerMap.put(color, closest);
         }
         return closest;
     }
@@ -41,7 +45,7 @@ public BiomeColor getNearestBiome(int color) {
         }
         BiomeColor result = parent.getNearestBiome(color);
         if (result != null) {
-            colorBiomeMap.put(color, (Integer) result.id);
+            colorBiomeMap.put(color, result.id);
         }
         return result;
     }
@@ -0,0 +1,189 @@
+package com.fastasyncworldedit.core.util;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
+/**
+ * Finds the color closest to another color by {@link TextureUtil#colorDistance(int, int)} among a fixed set of colors,
+ * without comparing it to every color of the set. Only colors with the same alpha as the color looked up are
+ * considered, as with the linear searches of {@link TextureUtil}, and ties are resolved the same way, towards the
+ * first of the colors.
+ * <p>
+ * The colors of each alpha are held in a k-d tree over red, green and blue. The color distance is never smaller than
+ * twice the squared red difference plus four times the squared green difference plus twice the squared blue
+ * difference, which bounds the distance to the colors on the other side of a split. The index is immutable and can be
+ * used from any number of threads.
+ */
+final class ColorIndex {
+
+    private static final int RED = 0;
+    private static final int GREEN = 1;
+    private static final int BLUE = 2;
+    private static final int[] WEIGHTS = {2, 4, 2};
+
+    private final Tree[] trees = new Tree[256];
+
+    /**
+     * Create an index over the given colors.
+     *
+     * @param colors the colors, as ARGB
+     */
+    ColorIndex(int[] colors) {
+        int[] counts = new int[256];
+        for (int color : colors) {
+            counts[color >>> 24]++;
+        }
+        for (int alpha = 0; alpha < 256; alpha++) {
+            if (counts[alpha] != 0) {
+                trees[alpha] = new Tree(counts[alpha]);
+                counts[alpha] = 0;
+            }
+        }
+        for (int i = 0; i < colors.length; i++) {
+            int alpha = colors[i] >>> 24;
+            trees[alpha].indices[counts[alpha]++] = i;
+        }
+        for (Tree tree : trees) {
+            if (tree != null) {
+                tree.build(colors);
+            }
+        }
+    }
+
+    /**
+     * Get the index of the color closest to the given color, with the same alpha.
+     *
+     * @param color   the color to look up
+     * @param exclude if the color itself should be skipped
+     * @return the index of the closest color in the indexed colors, or -1 if there is none with the same alpha
+     */
+    int nearest(int color, boolean exclude) {
+        Tree tree = trees[color >>> 24];
+        if (tree == null) {
+            return -1;
+        }
+        Query query = new Query(color, exclude);
+        tree.search(query, 0, tree.colors.length, 0);
+        return query.bestIndex == Integer.MAX_VALUE ? -1 : query.bestIndex;
+    }
+
+    private static int component(int color, int axis) {
+        return (color >> (16 - (axis << 3))) & 0xFF;
+    }
+
+    private static final class Query {
+
+        private final int color;
+        private final boolean exclude;
+        private final int red;
+        private final int green;
+        private final int blue;
+        // The part of the bound contributed by each axis
+        private final long[] offsets = new long[3];
+        private long best = Long.MAX_VALUE;
+        private int bestIndex = Integer.MAX_VALUE;
+
+        private Query(int color, boolean exclude) {
+            this.color = color;
+            this.exclude = exclude;
+            this.red = (color >> 16) & 0xFF;
+            this.green = (color >> 8) & 0xFF;
+            this.blue = color & 0xFF;
+        }
+
+    }
+
+    /**
+     * A k-d tree stored in arrays, where the node of a range is its middle and its children the ranges either side.
+     */
+    private static final class Tree {
+
+        private final int[] indices;
+        private final int[] colors;
+        private final byte[] axes;
+
+        private Tree(int size) {
+            this.indices = new int[size];
+            this.colors = new int[size];
+            this.axes = new byte[size];
+        }
+
+        private void build(int[] source) {
+            build(source, 0, indices.length);
+            for (int i = 0; i < indices.length; i++) {
+                colors[i] = source[indices[i]];
+            }
+        }
+
+        private void build(int[] source, int from, int to) {
+            if (to - from <= 1) {
+                return;
+            }
+            int axis = RED;
+            long widest = -1;
+            for (int candidate = RED; candidate <= BLUE; candidate++) {
+                int min = 255;
+                int max = 0;
+                for (int i = from; i < to; i++) {
+                    int value = component(source[indices[i]], candidate);
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+                long width = (long) WEIGHTS[candidate] * (max - min) * (max - min);
+                if (width > widest) {
+                    widest = width;
+                    axis = candidate;
+                }
+            }
+            final int sortAxis = axis;
+            IntArrays.quickSort(indices, from, to, (a, b) -> {
+                int compare = Integer.compare(component(source[a], sortAxis), component(source[b], sortAxis));
+                return compare != 0 ? compare : Integer.compare(a, b);
+            });
+            int middle = (from + to) >>> 1;
+            axes[middle] = (byte) axis;
+            build(source, from, middle);
+            build(source, middle + 1, to);
+        }
+
+        private void search(Query query, int from, int to, long bound) {
+            int middle = (from + to) >>> 1;
+            int color = colors[middle];
+            if (!query.exclude || color != query.color) {
+                long distance = TextureUtil.colorDistance(query.red, query.green, query.blue, color);
+                int index = indices[middle];
+                if (distance < query.best || (distance == query.best && index < query.bestIndex)) {
+                    query.best = distance;
+                    query.bestIndex = index;
+                }
+            }
+            int axis = axes[middle];
+            int value = axis == RED ? query.red : axis == GREEN ? query.green : query.blue;
+            int difference = value - component(color, axis);
+            boolean lower = difference < 0;
+            if (lower ? middle > from : middle + 1 < to) {
+                if (lower) {
+                    search(query, from, middle, bound);
+                } else {
+                    search(query, middle + 1, to, bound);
+                }
+            }
+            if (lower ? middle + 1 < to : middle > from) {
+                long previous = query.offsets[axis];
+                long offset = (long) WEIGHTS[axis] * difference * difference;
+                long farBound = bound - previous + offset;
+                // Equal bounds are searched too, as they may hold an earlier color at the same distance
+                if (farBound <= query.best) {
+                    query.offsets[axis] = offset;
+                    if (lower) {
+                        search(query, middle + 1, to, farBound);
+                    } else {
+                        search(query, from, middle, farBound);
+                    }
+                    query.offsets[axis] = previous;
+                }
+            }
+        }
+
+    }
+
+}
@@ -220,6 +220,8 @@ public static FaweOutputStream getCompressedOS(OutputStream os, int amount) thro
     private static final LZ4Factory FACTORY = LZ4Factory.fastestInstance();
     private static final LZ4Compressor COMPRESSOR = FACTORY.fastCompressor();
     private static final LZ4FastDecompressor DECOMPRESSOR = FACTORY.fastDecompressor();
+    // Zstandard frames start with 0x28 0xB5 0x2F 0xFD
+    private static final int ZSTD_MAGIC = 0xFD2FB528;
 
     public static int getMaxCompressedLength(int size) {
         return COMPRESSOR.maxCompressedLength(size);
@@ -330,6 +332,22 @@ public static FaweInputStream getCompressedIS(InputStream is, int buffer) throws
         return new FaweInputStream(new FastBufferedInputStream(is));
     }
 
+    /**
+     * Get a stream inflating the given stream, which is either GZIP or Zstandard compressed as told by its magic number.
+     *
+     * @param is the compressed stream, which has to support marks
+     * @return the inflated stream
+     */
+    public static InputStream getInflatingIS(InputStream is) throws IOException {
+        is.mark(4);
+        int magic = is.read() | is.read() << 8 | is.read() << 16 | is.read() << 24;
+        is.reset();
+        if (magic == ZSTD_MAGIC) {
+            return new ZstdInputStream(is);
+        }
+        return new GZIPInputStream(is);
+    }
+
     public static URL upload(UUID uuid, String file, String extension, @Nonnull final RunnableVal<OutputStream> writeTask) {
         return upload(Settings.settings().WEB.URL, uuid != null, uuid != null ? uuid.toString() : null, file, extension, writeTask);
     }
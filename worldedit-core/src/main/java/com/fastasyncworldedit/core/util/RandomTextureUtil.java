@@ -1,21 +1,26 @@
 package com.fastasyncworldedit.core.util;
 
 import com.sk89q.worldedit.world.block.BlockType;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 
 import java.io.FileNotFoundException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Randomly offsets the colors looked up by the difference between the previous lookup of the color and its result, so
+ * that areas of one color are filled with a mix of the closest blocks. Lookups can be done from any number of threads.
+ */
 public class RandomTextureUtil extends CachedTextureUtil {
 
     public RandomTextureUtil(TextureUtil parent) throws FileNotFoundException {
         super(parent);
     }
 
-    private int index;
-    private final int[] biomeMixBuffer = new int[3];
-    private final Int2ObjectOpenHashMap<Integer> offsets = new Int2ObjectOpenHashMap<>();
-    private final Int2ObjectOpenHashMap<int[]> biomeMixes = new Int2ObjectOpenHashMap<>();
+    private final AtomicInteger index = new AtomicInteger();
+    private final Map<Integer, Integer> offsets = new ConcurrentHashMap<>();
+    private final Map<Integer, int[]> biomeMixes = new ConcurrentHashMap<>();
 
     protected int addRandomColor(int c1, int c2) {
         int red1 = (c1 >> 16) & 0xFF;
@@ -41,21 +46,25 @@ private int random(int i) {
         }
     }
 
-    @Override
-    public boolean getIsBlockCloserThanBiome(char[] blockAndBiomeIdOutput, int color, int biomePriority) {
-        BlockType block = getNearestBlock(color);
-        int[] mix = biomeMixes.getOrDefault(color, null);
+    private int[] getMix(int color) {
+        int[] mix = biomeMixes.get(color);
         if (mix == null) {
-            int average = getBiomeMix(biomeMixBuffer, color);
             mix = new int[4];
-            System.arraycopy(biomeMixBuffer, 0, mix, 0, 3);
-            mix[3] = average;
+            mix[3] = getBiomeMix(mix, color);
             biomeMixes.put(color, mix);
         }
-        if (++index > 2) {
-            index = 0;
-        }
-        int biomeId = mix[index];
+        return mix;
+    }
+
+    private int nextIndex() {
+        return index.updateAndGet(i -> i >= 2 ? 0 : i + 1);
+    }
+
+    @Override
+    public boolean getIsBlockCloserThanBiome(char[] blockAndBiomeIdOutput, int color, int biomePriority) {
+        BlockType block = getNearestBlock(color);
+        int[] mix = getMix(color);
+        int biomeId = mix[nextIndex()];
         int biomeAvColor = mix[3];
         int blockColor = getColor(block);
         blockAndBiomeIdOutput[0] = block.getDefaultState().getOrdinalChar();
@@ -66,24 +75,14 @@ public boolean getIsBlockCloserThanBiome(char[] blockAndBiomeIdOutput, int color
 
     @Override
     public BiomeColor getNearestBiome(int color) {
-        int[] mix = biomeMixes.getOrDefault(color, null);
-        if (mix == null) {
-            int average = getBiomeMix(biomeMixBuffer, color);
-            mix = new int[4];
-            System.arraycopy(biomeMixBuffer, 0, mix, 0, 3);
-            mix[3] = average;
-            biomeMixes.put(color, mix);
-        }
-        if (++index > 2) {
-            index = 0;
-        }
-        int biomeId = mix[index];
+        int[] mix = getMix(color);
+        int biomeId = mix[nextIndex()];
         return getBiome(biomeId);
     }
 
     @Override
     public BlockType getNearestBlock(int color) {
-        int offsetColor = offsets.getOrDefault((Object) color, 0);
+        int offsetColor = offsets.getOrDefault(color, 0);
         if (offsetColor != 0) {
             offsetColor = addRandomColor(color, offsetColor);
         } else {
@@ -97,7 +96,7 @@ public BlockType getNearestBlock(int color) {
         byte dr = (byte) (((color >> 16) & 0xFF) - ((newColor >> 16) & 0xFF));
         byte dg = (byte) (((color >> 8) & 0xFF) - ((newColor >> 8) & 0xFF));
         byte db = (byte) (((color >> 0) & 0xFF) - ((newColor >> 0) & 0xFF));
-        offsets.put(color, (Integer) ((dr << 16) + (dg << 8) + (db << 0)));
+        offsets.put(color, (dr << 16) + (dg << 8) + (db << 0));
         return res;
     }
 
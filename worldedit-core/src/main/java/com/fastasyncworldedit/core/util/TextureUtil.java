@@ -321,7 +321,6 @@ public class TextureUtil implements TextureHolder {
             new BiomeColor(253, "Unknown Biome", 0.8f, 0.4f, 0x92BD59, 0x77AB2F),
             new BiomeColor(254, "Unknown Biome", 0.8f, 0.4f, 0x92BD59, 0x77AB2F),
             new BiomeColor(255, "Unknown Biome", 0.8f, 0.4f, 0x92BD59, 0x77AB2F)};
-    private final BlockType[] layerBuffer = new BlockType[2];
     protected int[] blockColors = new int[BlockTypes.size()];
     protected long[] blockDistance = new long[BlockTypes.size()];
     protected long[] distances;
@@ -331,6 +330,9 @@ public class TextureUtil implements TextureHolder {
     protected int[][] validLayerBlocks;
     protected int[] validMixBiomeColors;
     protected long[] validMixBiomeIds;
+    private ColorIndex blockIndex;
+    private ColorIndex layerIndex;
+    private ColorIndex mixBiomeIndex;
     /**
      * https://github.com/erich666/Mineways/blob/master/Win/biomes.cpp
      */
@@ -436,7 +438,7 @@ protected static long colorDistance(int c1, int c2) {
         return colorDistance(red1, green1, blue1, c2);
     }
 
-    private static long colorDistance(int red1, int green1, int blue1, int c2) {
+    static long colorDistance(int red1, int green1, int blue1, int c2) {
         int red2 = (c2 >> 16) & 0xFF;
         int green2 = (c2 >> 8) & 0xFF;
         int blue2 = (c2) & 0xFF;
@@ -567,26 +569,11 @@ public TextureUtil getTextureUtil() {
      * @return matching block
      */
     public BlockType getNearestBlock(int color) {
-        long min = Long.MAX_VALUE;
-        int closest = 0;
-        int red1 = (color >> 16) & 0xFF;
-        int green1 = (color >> 8) & 0xFF;
-        int blue1 = (color) & 0xFF;
-        int alpha = (color >> 24) & 0xFF;
-        for (int i = 0; i < validColors.length; i++) {
-            int other = validColors[i];
-            if (((other >> 24) & 0xFF) == alpha) {
-                long distance = colorDistance(red1, green1, blue1, other);
-                if (distance < min) {
-                    min = distance;
-                    closest = validBlockIds[i];
-                }
-            }
-        }
-        if (min == Long.MAX_VALUE) {
+        int index = blockIndex.nearest(color, false);
+        if (index == -1) {
             return null;
         }
-        return BlockTypes.get(closest);
+        return BlockTypes.get(validBlockIds[index]);
     }
 
     /**
@@ -596,51 +583,23 @@ public BlockType getNearestBlock(int color) {
      * @return matching block
      */
     public BlockType getNextNearestBlock(int color) {
-        long min = Long.MAX_VALUE;
-        int closest = 0;
-        int red1 = (color >> 16) & 0xFF;
-        int green1 = (color >> 8) & 0xFF;
-        int blue1 = (color) & 0xFF;
-        int alpha = (color >> 24) & 0xFF;
-        for (int i = 0; i < validColors.length; i++) {
-            int other = validColors[i];
-            if (other != color && ((other >> 24) & 0xFF) == alpha) {
-                long distance = colorDistance(red1, green1, blue1, other);
-                if (distance < min) {
-                    min = distance;
-                    closest = validBlockIds[i];
-                }
-            }
-        }
-        if (min == Long.MAX_VALUE) {
+        int index = blockIndex.nearest(color, true);
+        if (index == -1) {
             return null;
         }
-        return BlockTypes.get(closest);
+        return BlockTypes.get(validBlockIds[index]);
     }
 
     /**
      * Returns the block combined ids as an array.
      */
     public BlockType[] getNearestLayer(int color) {
-        int[] closest = null;
-        long min = Long.MAX_VALUE;
-        int red1 = (color >> 16) & 0xFF;
-        int green1 = (color >> 8) & 0xFF;
-        int blue1 = (color) & 0xFF;
-        int alpha = (color >> 24) & 0xFF;
-        for (int i = 0; i < validLayerColors.length; i++) {
-            int other = validLayerColors[i];
-            if (((other >> 24) & 0xFF) == alpha) {
-                long distance = colorDistance(red1, green1, blue1, other);
-                if (distance < min) {
-                    min = distance;
-                    closest = validLayerBlocks[i];
-                }
-            }
+        int index = layerIndex.nearest(color, false);
+        if (index == -1) {
+            return null;
         }
-        layerBuffer[0] = BlockTypes.get(closest[0]);
-        layerBuffer[1] = BlockTypes.get(closest[1]);
-        return layerBuffer;
+        int[] closest = validLayerBlocks[index];
+        return new BlockType[]{BlockTypes.get(closest[0]), BlockTypes.get(closest[1])};
     }
 
     /**
@@ -728,21 +687,10 @@ protected boolean getIsBlockCloserThanBiome(char[] blockAndBiomeIdOutput, int co
     protected int getBiomeMix(int[] biomeIdsOutput, int color) {
         long closest = Long.MAX_VALUE;
         int closestAverage = Integer.MAX_VALUE;
-        long min = Long.MAX_VALUE;
-        int red1 = (color >> 16) & 0xFF;
-        int green1 = (color >> 8) & 0xFF;
-        int blue1 = (color) & 0xFF;
-        int alpha = (color >> 24) & 0xFF;
-        for (int i = 0; i < validMixBiomeColors.length; i++) {
-            int other = validMixBiomeColors[i];
-            if (((other >> 24) & 0xFF) == alpha) {
-                long distance = colorDistance(red1, green1, blue1, other);
-                if (distance < min) {
-                    min = distance;
-                    closest = validMixBiomeIds[i];
-                    closestAverage = other;
-                }
-            }
+        int index = mixBiomeIndex.nearest(color, false);
+        if (index != -1) {
+            closest = validMixBiomeIds[index];
+            closestAverage = validMixBiomeColors[index];
         }
         biomeIdsOutput[0] = (int) ((closest) & 0xFF);
         biomeIdsOutput[1] = (int) ((closest >> 8) & 0xFF);
@@ -1041,6 +989,9 @@ protected void calculateLayerArrays() {
             validLayerColors[index] = entry.getIntKey();
             validLayerBlocks[index++] = entry.getValue();
         }
+        this.blockIndex = new ColorIndex(validColors);
+        this.layerIndex = new ColorIndex(validLayerColors);
+        this.mixBiomeIndex = new ColorIndex(validMixBiomeColors != null ? validMixBiomeColors : new int[0]);
     }
 
     protected BlockType getNearestBlock(BlockType block, boolean darker) {
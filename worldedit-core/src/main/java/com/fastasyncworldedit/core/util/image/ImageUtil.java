@@ -146,6 +146,24 @@ public static void scaleAlpha(BufferedImage image, double alphaScale) {
         }
     }
 
+    /**
+     * Get the ARGB colors of all pixels of an image, row by row. The data buffer of the image is returned as it is if it
+     * already holds ARGB colors, so the array must not be modified.
+     *
+     * @param image the image
+     * @return the colors of the pixels
+     */
+    public static int[] getPixels(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (image.getType() == BufferedImage.TYPE_INT_ARGB && image.getRaster().getDataBuffer() instanceof DataBufferInt buffer
+                && image.getRaster().getSampleModelTranslateX() == 0 && image.getRaster().getSampleModelTranslateY() == 0
+                && buffer.getData().length == width * height) {
+            return buffer.getData();
+        }
+        return image.getRGB(0, 0, width, height, null, 0, width);
+    }
+
     public static int getColor(BufferedImage image) {
         int width = image.getWidth();
         int height = image.getHeight();
@@ -0,0 +1,37 @@
+package com.fastasyncworldedit.core.util.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free monotonically increasing counter.
+ */
+public final class Counter extends Metric {
+
+    private final LongAdder value = new LongAdder();
+
+    Counter(String name, String help) {
+        super(name, help);
+    }
+
+    public void increment() {
+        if (PipelineMetrics.isEnabled()) {
+            value.increment();
+        }
+    }
+
+    public void add(long amount) {
+        if (PipelineMetrics.isEnabled()) {
+            value.add(amount);
+        }
+    }
+
+    public long get() {
+        return value.sum();
+    }
+
+    @Override
+    public void reset() {
+        value.reset();
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.fastasyncworldedit.core.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram with power-of-two buckets. Bucket {@code i} counts values {@code v} with
+ * {@code 2^(i-1) <= v < 2^i}, bucket 0 counts values {@code <= 0}.
+ */
+public final class Histogram extends Metric {
+
+    public static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+    private final String unit;
+
+    Histogram(String name, String help, String unit) {
+        super(name, help);
+        this.unit = unit;
+    }
+
+    /**
+     * Unit of the recorded values, e.g. {@code "ns"}.
+     */
+    public String getUnit() {
+        return unit;
+    }
+
+    public void record(long value) {
+        if (!PipelineMetrics.isEnabled()) {
+            return;
+        }
+        buckets.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Record the nanoseconds elapsed since the given {@link PipelineMetrics#start()} value.
+     *
+     * @param start value returned by {@link PipelineMetrics#start()}
+     */
+    public void recordSince(long start) {
+        if (start != 0) {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    private static int bucket(long value) {
+        return value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * Inclusive upper bound of the values counted by the given bucket.
+     */
+    public static long upperBound(int bucket) {
+        return bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    public long getBucket(int bucket) {
+        return buckets.get(bucket);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) getSum() / count;
+    }
+
+    /**
+     * Get an upper bound estimate of the given quantile.
+     *
+     * @param quantile quantile between 0 and 1
+     * @return upper bound of the bucket containing the quantile
+     */
+    public long getQuantile(double quantile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+}
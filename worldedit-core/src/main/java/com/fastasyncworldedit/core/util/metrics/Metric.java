@@ -0,0 +1,35 @@
+package com.fastasyncworldedit.core.util.metrics;
+
+/**
+ * A named metric recorded by {@link PipelineMetrics}.
+ */
+public abstract class Metric {
+
+    private final String name;
+    private final String help;
+
+    Metric(String name, String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    /**
+     * Name of the metric, in snake case.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Short description of what is measured.
+     */
+    public String getHelp() {
+        return help;
+    }
+
+    /**
+     * Clear all recorded values.
+     */
+    public abstract void reset();
+
+}
@@ -0,0 +1,19 @@
+package com.fastasyncworldedit.core.util.metrics;
+
+import java.io.IOException;
+
+/**
+ * Writes the current state of the {@link PipelineMetrics} somewhere, e.g. a file read by a monitoring system.
+ * Register with {@link PipelineMetrics#registerExporter(MetricsExporter)}.
+ */
+public interface MetricsExporter {
+
+    /**
+     * Export the given metrics. Called periodically from an async thread.
+     *
+     * @param metrics the metrics to export
+     * @throws IOException if the metrics could not be written
+     */
+    void export(PipelineMetrics metrics) throws IOException;
+
+}
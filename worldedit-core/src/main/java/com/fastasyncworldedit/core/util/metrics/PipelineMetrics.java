@@ -0,0 +1,181 @@
+package com.fastasyncworldedit.core.util.metrics;
+
+import com.fastasyncworldedit.core.Fawe;
+import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.util.TaskManager;
+import com.sk89q.worldedit.internal.util.LogManagerCompat;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Counters and histograms describing where edits spend their time, from loading chunks to placing them on the main
+ * thread. Recording is only done when {@link Settings.QUEUE.METRICS#ENABLED} is set.
+ * <p>
+ * Timings are recorded as:
+ * <pre>{@code
+ * long start = PipelineMetrics.start();
+ * // ...
+ * PipelineMetrics.CHUNK_CALL.recordSince(start);
+ * }</pre>
+ */
+public final class PipelineMetrics {
+
+    private static final Logger LOGGER = LogManagerCompat.getLogger();
+
+    private static final List<Metric> METRICS = new ArrayList<>();
+
+    public static final Counter CHUNKS_SUBMITTED = counter(
+            "chunks_submitted_total",
+            "Chunks submitted by a queue for processing and placement"
+    );
+    public static final Counter SECTIONS_SUBMITTED = counter(
+            "sections_submitted_total",
+            "Chunk sections (16x16x16 blocks) with changes submitted for placement"
+    );
+    public static final Histogram SUBMISSION_STALL = histogram(
+            "submission_stall_nanoseconds",
+            "Time a queue blocked waiting for submitted chunks to complete",
+            "ns"
+    );
+    public static final Histogram SUBMISSION_QUEUE_DEPTH = histogram(
+            "submission_queue_depth",
+            "Number of in-flight chunk submissions of a queue when polled",
+            "chunks"
+    );
+    public static final Histogram CHUNK_LOAD = histogram(
+            "chunk_load_nanoseconds",
+            "Time to obtain the IChunkGet of a chunk",
+            "ns"
+    );
+    public static final Histogram PROCESS_SET = histogram(
+            "process_set_nanoseconds",
+            "Time spent in the IBatchProcessor chain for a chunk (history, limits, masks)",
+            "ns"
+    );
+    public static final Histogram CHUNK_CALL = histogram(
+            "chunk_call_nanoseconds",
+            "Time to apply a chunk's changes, including processing",
+            "ns"
+    );
+    public static final Histogram SYNC_TASK = histogram(
+            "sync_task_nanoseconds",
+            "Duration of each task run on the main thread by the queue handler",
+            "ns"
+    );
+    public static final Histogram SYNC_QUEUE_DEPTH = histogram(
+            "sync_queue_depth",
+            "Number of tasks waiting for the main thread each tick",
+            "tasks"
+    );
+    public static final Histogram SYNC_BUDGET_OVERRUN = histogram(
+            "sync_budget_overrun_milliseconds",
+            "Time main thread tasks ran past the allocated time, in ticks where they did",
+            "ms"
+    );
+    public static final Counter SYNC_BUDGET_EXCEEDED = counter(
+            "sync_budget_exceeded_total",
+            "Ticks in which main thread tasks ran more than a millisecond past the allocated time"
+    );
+    public static final Histogram RELIGHT = histogram(
+            "relight_nanoseconds",
+            "Time to relight a batch of chunks",
+            "ns"
+    );
+
+    private static final List<MetricsExporter> EXPORTERS = new CopyOnWriteArrayList<>();
+    private static final PipelineMetrics INSTANCE = new PipelineMetrics();
+    private static volatile long lastReset = System.nanoTime();
+
+    private PipelineMetrics() {
+    }
+
+    private static Counter counter(String name, String help) {
+        Counter counter = new Counter(name, help);
+        METRICS.add(counter);
+        return counter;
+    }
+
+    private static Histogram histogram(String name, String help, String unit) {
+        Histogram histogram = new Histogram(name, help, unit);
+        METRICS.add(histogram);
+        return histogram;
+    }
+
+    public static PipelineMetrics metrics() {
+        return INSTANCE;
+    }
+
+    public static boolean isEnabled() {
+        return Settings.settings().QUEUE.METRICS.ENABLED;
+    }
+
+    /**
+     * Get the start time for a timing, to be passed to {@link Histogram#recordSince(long)}.
+     *
+     * @return the current nano time, or 0 if metrics are disabled
+     */
+    public static long start() {
+        return isEnabled() ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Get all metrics, in registration order.
+     */
+    public List<Metric> getMetrics() {
+        return Collections.unmodifiableList(METRICS);
+    }
+
+    /**
+     * Get the nanoseconds since the metrics were last reset.
+     */
+    public long getElapsedNanos() {
+        return System.nanoTime() - lastReset;
+    }
+
+    public synchronized void reset() {
+        for (Metric metric : METRICS) {
+            metric.reset();
+        }
+        lastReset = System.nanoTime();
+    }
+
+    public static void registerExporter(MetricsExporter exporter) {
+        EXPORTERS.add(exporter);
+    }
+
+    public static void unregisterExporter(MetricsExporter exporter) {
+        EXPORTERS.remove(exporter);
+    }
+
+    /**
+     * Run all registered exporters.
+     */
+    public void export() {
+        for (MetricsExporter exporter : EXPORTERS) {
+            try {
+                exporter.export(this);
+            } catch (Throwable e) {
+                LOGGER.error("Could not export metrics with {}", exporter.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    /**
+     * Register the configured file exporter and schedule exports. Called once on startup.
+     */
+    public static void setupExport() {
+        Settings.QUEUE.METRICS settings = Settings.settings().QUEUE.METRICS;
+        if (settings.EXPORT_INTERVAL <= 0 || settings.EXPORT_FILE == null || settings.EXPORT_FILE.isEmpty()) {
+            return;
+        }
+        File file = new File(Fawe.platform().getDirectory(), settings.EXPORT_FILE);
+        registerExporter(new PrometheusFileExporter(file.toPath()));
+        TaskManager.taskManager().repeatAsync(() -> metrics().export(), settings.EXPORT_INTERVAL * 20);
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.fastasyncworldedit.core.util.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+/**
+ * Writes the metrics to a file in the Prometheus text exposition format, to be picked up by e.g. the node exporter's
+ * textfile collector.
+ */
+public class PrometheusFileExporter implements MetricsExporter {
+
+    private static final String PREFIX = "fawe_";
+
+    private final Path file;
+
+    public PrometheusFileExporter(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void export(PipelineMetrics metrics) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        // Write to a temporary file first so readers never see a partially written file
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Metric metric : metrics.getMetrics()) {
+                String name = PREFIX + metric.getName();
+                writer.write("# HELP " + name + " " + metric.getHelp() + "\n");
+                if (metric instanceof Counter counter) {
+                    writer.write("# TYPE " + name + " counter\n");
+                    writer.write(name + " " + counter.get() + "\n");
+                } else if (metric instanceof Histogram histogram) {
+                    writer.write("# TYPE " + name + " histogram\n");
+                    long cumulative = 0;
+                    for (int i = 0; i < Histogram.BUCKETS - 1; i++) {
+                        long bucket = histogram.getBucket(i);
+                        if (bucket == 0 && cumulative == 0) {
+                            continue;
+                        }
+                        cumulative += bucket;
+                        writer.write(String.format(
+                                Locale.ROOT,
+                                "%s_bucket{le=\"%d\"} %d\n",
+                                name,
+                                Histogram.upperBound(i),
+                                cumulative
+                        ));
+                    }
+                    writer.write(name + "_bucket{le=\"+Inf\"} " + histogram.getCount() + "\n");
+                    writer.write(name + "_sum " + histogram.getSum() + "\n");
+                    writer.write(name + "_count " + histogram.getCount() + "\n");
+                }
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
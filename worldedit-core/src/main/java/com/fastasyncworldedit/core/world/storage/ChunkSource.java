@@ -0,0 +1,26 @@
+package com.fastasyncworldedit.core.world.storage;
+
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.world.DataException;
+import com.sk89q.worldedit.world.chunk.Chunk;
+
+import java.io.IOException;
+
+/**
+ * A source of stored chunks that may be read from several threads at once.
+ */
+@FunctionalInterface
+public interface ChunkSource {
+
+    /**
+     * Load the chunk at the given position.
+     *
+     * @param position the chunk position
+     * @return the chunk
+     * @throws com.sk89q.worldedit.world.storage.MissingChunkException if the chunk is not stored
+     * @throws DataException                                          if the chunk data is invalid
+     * @throws IOException                                            if the chunk could not be read
+     */
+    Chunk getChunk(BlockVector2 position) throws DataException, IOException;
+
+}
@@ -0,0 +1,119 @@
+package com.fastasyncworldedit.core.world.storage;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.world.DataException;
+import com.sk89q.worldedit.world.chunk.Chunk;
+import com.sk89q.worldedit.world.storage.ChunkStoreHelper;
+import com.sk89q.worldedit.world.storage.MissingChunkException;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Loads chunks from a folder of region files. Each region file is opened once as a {@link MappedRegionFile} and shared
+ * by all threads loading chunks from it. Current chunks are decoded with the {@link StreamingChunkDecoder}.
+ */
+public class MappedRegionChunkSource implements ChunkSource {
+
+    private final Path regionFolder;
+    @Nullable
+    private final Path entitiesFolder;
+    private final Map<Path, Optional<MappedRegionFile>> regions = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new chunk source.
+     *
+     * @param regionFolder   the folder containing the region files
+     * @param entitiesFolder the folder containing the 1.17+ entity region files, or null to not load entities
+     */
+    public MappedRegionChunkSource(Path regionFolder, @Nullable Path entitiesFolder) {
+        this.regionFolder = regionFolder;
+        this.entitiesFolder = entitiesFolder;
+    }
+
+    @Nullable
+    private MappedRegionFile getRegion(Path folder, BlockVector2 position) throws IOException {
+        String name = "r." + (position.getX() >> 5) + "." + (position.getZ() >> 5);
+        Path file = folder.resolve(name + ".mca");
+        try {
+            return regions.computeIfAbsent(file, path -> {
+                Path existing = path;
+                if (!Files.exists(existing)) {
+                    // Try mcr as well
+                    existing = existing.resolveSibling(name + ".mcr");
+                    if (!Files.exists(existing)) {
+                        return Optional.empty();
+                    }
+                }
+                try {
+                    return Optional.of(new MappedRegionFile(existing));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).orElse(null);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Nullable
+    private InputStream openChunk(Path folder, BlockVector2 position) throws DataException, IOException {
+        MappedRegionFile region = getRegion(folder, position);
+        if (region == null) {
+            return null;
+        }
+        return region.getChunkInputStream(position.getX(), position.getZ());
+    }
+
+    @Nullable
+    private CompoundTag readTag(Path folder, BlockVector2 position) throws DataException, IOException {
+        InputStream stream = openChunk(folder, position);
+        if (stream == null) {
+            return null;
+        }
+        return ChunkStoreHelper.readCompoundTag(() -> stream);
+    }
+
+    @Override
+    public Chunk getChunk(BlockVector2 position) throws DataException, IOException {
+        InputStream stream = openChunk(regionFolder, position);
+        if (stream == null) {
+            throw new MissingChunkException();
+        }
+        Supplier<CompoundTag> entities = () -> {
+            if (entitiesFolder == null) {
+                return null;
+            }
+            try {
+                return readTag(entitiesFolder, position);
+            } catch (DataException | IOException e) {
+                return null;
+            }
+        };
+        try (stream) {
+            Chunk chunk = StreamingChunkDecoder.decode(stream, () -> {
+                CompoundTag tag = entities.get();
+                return tag == null ? null : tag.asBinaryTag();
+            });
+            if (chunk != null) {
+                return chunk;
+            }
+        }
+        // Older chunks have to be read as a whole to be passed through the data fixer
+        CompoundTag rootTag = readTag(regionFolder, position);
+        if (rootTag == null) {
+            throw new MissingChunkException();
+        }
+        return ChunkStoreHelper.getChunk(rootTag, entities);
+    }
+
+}
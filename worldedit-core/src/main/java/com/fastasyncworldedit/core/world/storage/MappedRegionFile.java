@@ -0,0 +1,115 @@
+package com.fastasyncworldedit.core.world.storage;
+
+import com.sk89q.worldedit.world.DataException;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Read-only view of a region file that can be read from several threads at once. Unlike
+ * {@link com.sk89q.worldedit.world.storage.McRegionReader}, the file is not streamed: files on the default file system
+ * are memory mapped, files anywhere else (e.g. in a zip snapshot) are read into memory once.
+ */
+public class MappedRegionFile {
+
+    private static final int VERSION_GZIP = 1;
+    private static final int VERSION_DEFLATE = 2;
+    private static final int VERSION_NONE = 3;
+    private static final int SECTOR_BYTES = 4096;
+
+    private final Path path;
+    private final ByteBuffer buffer;
+    private final int[] offsets = new int[1024];
+
+    /**
+     * Open a region file.
+     *
+     * @param path the path of the region file
+     * @throws IOException if the file cannot be read
+     */
+    public MappedRegionFile(Path path) throws IOException {
+        this.path = path;
+        if (path.getFileSystem() == FileSystems.getDefault()) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                // The mapping stays valid after the channel is closed
+                this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        } else {
+            this.buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        }
+        if (buffer.capacity() >= SECTOR_BYTES) {
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = buffer.getInt(i << 2);
+            }
+        }
+    }
+
+    /**
+     * Get the path of the region file.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns whether the file contains a chunk.
+     *
+     * @param chunkX the chunk X coordinate, only the lowest 5 bits are used
+     * @param chunkZ the chunk Z coordinate, only the lowest 5 bits are used
+     * @return true if the chunk is present
+     */
+    public boolean hasChunk(int chunkX, int chunkZ) {
+        return offsets[(chunkX & 31) | ((chunkZ & 31) << 5)] != 0;
+    }
+
+    /**
+     * Get the uncompressed data of a chunk. Safe to call from several threads.
+     *
+     * @param chunkX the chunk X coordinate, only the lowest 5 bits are used
+     * @param chunkZ the chunk Z coordinate, only the lowest 5 bits are used
+     * @return an input stream of the uncompressed NBT, or null if the chunk is not present
+     * @throws DataException if the chunk data is invalid
+     */
+    @Nullable
+    public InputStream getChunkInputStream(int chunkX, int chunkZ) throws DataException {
+        int offset = offsets[(chunkX & 31) | ((chunkZ & 31) << 5)];
+        if (offset == 0) {
+            return null;
+        }
+        long start = (long) (offset >>> 8) * SECTOR_BYTES;
+        int sectors = offset & 0xFF;
+        if (start + 5 > buffer.capacity()) {
+            throw new DataException("Region file " + path + " is truncated at chunk " + chunkX + "," + chunkZ);
+        }
+        int length = buffer.getInt((int) start);
+        if (length <= 1 || length > SECTOR_BYTES * sectors || start + 4 + length > buffer.capacity()) {
+            throw new DataException("Chunk at " + chunkX + "," + chunkZ + " in " + path + " has an invalid length of " + length);
+        }
+        byte version = buffer.get((int) start + 4);
+        byte[] data = new byte[length - 1];
+        // Absolute bulk reads do not touch the position, so concurrent readers don't interfere
+        buffer.get((int) start + 5, data);
+        try {
+            return switch (version) {
+                case VERSION_GZIP -> new GZIPInputStream(new ByteArrayInputStream(data));
+                case VERSION_DEFLATE -> new InflaterInputStream(new ByteArrayInputStream(data));
+                case VERSION_NONE -> new ByteArrayInputStream(data);
+                default -> throw new DataException("Chunk at " + chunkX + "," + chunkZ + " in " + path
+                        + " has an unsupported version of " + version);
+            };
+        } catch (IOException e) {
+            throw new DataException("Chunk at " + chunkX + "," + chunkZ + " in " + path + " is corrupt: " + e.getMessage());
+        }
+    }
+
+}
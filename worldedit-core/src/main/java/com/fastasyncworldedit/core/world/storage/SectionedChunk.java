@@ -0,0 +1,32 @@
+package com.fastasyncworldedit.core.world.storage;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.util.nbt.CompoundBinaryTag;
+import com.sk89q.worldedit.world.DataException;
+import com.sk89q.worldedit.world.chunk.Chunk;
+
+import java.util.Map;
+
+/**
+ * A stored chunk whose blocks can be read a whole section at a time.
+ */
+public interface SectionedChunk extends Chunk {
+
+    /**
+     * Get the block ordinals of a section, indexed {@code y << 8 | z << 4 | x}. Sections that are not stored are
+     * filled with air.
+     *
+     * @param layer the section layer
+     * @return an array of 4096 block ordinals the caller may modify
+     */
+    char[] getSectionOrdinals(int layer);
+
+    /**
+     * Get the tile entities of this chunk keyed by their world position.
+     *
+     * @return the tile entities
+     * @throws DataException thrown if there is a data error
+     */
+    Map<BlockVector3, CompoundBinaryTag> getTileEntities() throws DataException;
+
+}
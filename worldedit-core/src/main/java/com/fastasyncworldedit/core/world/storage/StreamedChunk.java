@@ -0,0 +1,134 @@
+package com.fastasyncworldedit.core.world.storage;
+
+import com.fastasyncworldedit.core.FaweCache;
+import com.fastasyncworldedit.core.util.NbtUtils;
+import com.sk89q.worldedit.entity.BaseEntity;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.util.concurrency.LazyReference;
+import com.sk89q.worldedit.util.nbt.BinaryTag;
+import com.sk89q.worldedit.util.nbt.BinaryTagTypes;
+import com.sk89q.worldedit.util.nbt.CompoundBinaryTag;
+import com.sk89q.worldedit.util.nbt.ListBinaryTag;
+import com.sk89q.worldedit.world.DataException;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+import com.sk89q.worldedit.world.entity.EntityTypes;
+import com.sk89q.worldedit.world.storage.InvalidFormatException;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A chunk decoded by {@link StreamingChunkDecoder}. Sections are kept as block ordinals, sections with a single block
+ * are stored as an array of length 1.
+ */
+class StreamedChunk implements SectionedChunk {
+
+    private final Int2ObjectOpenHashMap<char[]> blocks;
+    private final Int2ObjectOpenHashMap<BiomeType[]> biomes;
+    private final List<Map<String, Object>> rawTiles;
+    private final Supplier<CompoundBinaryTag> entityTagSupplier;
+    private Map<BlockVector3, CompoundBinaryTag> tileEntities;
+    private List<BaseEntity> entities;
+
+    StreamedChunk(
+            Int2ObjectOpenHashMap<char[]> blocks,
+            Int2ObjectOpenHashMap<BiomeType[]> biomes,
+            List<Map<String, Object>> rawTiles,
+            Supplier<CompoundBinaryTag> entityTagSupplier
+    ) {
+        this.blocks = blocks;
+        this.biomes = biomes;
+        this.rawTiles = rawTiles;
+        this.entityTagSupplier = entityTagSupplier;
+    }
+
+    @Override
+    public char[] getSectionOrdinals(int layer) {
+        char[] section = blocks.get(layer);
+        if (section == null) {
+            char[] ordinals = new char[4096];
+            Arrays.fill(ordinals, (char) BlockTypesCache.ReservedIDs.AIR);
+            return ordinals;
+        }
+        if (section.length == 1) {
+            char[] ordinals = new char[4096];
+            Arrays.fill(ordinals, section[0]);
+            return ordinals;
+        }
+        return section.clone();
+    }
+
+    @Override
+    public Map<BlockVector3, CompoundBinaryTag> getTileEntities() throws DataException {
+        if (tileEntities == null) {
+            tileEntities = new HashMap<>(rawTiles.size());
+            for (Map<String, Object> raw : rawTiles) {
+                if (!(raw.get("x") instanceof Number x) || !(raw.get("y") instanceof Number y)
+                        || !(raw.get("z") instanceof Number z)) {
+                    throw new InvalidFormatException("Invalid position in block_entities");
+                }
+                BlockVector3 vec = BlockVector3.at(x.intValue(), y.intValue(), z.intValue());
+                tileEntities.put(vec, FaweCache.INSTANCE.asTag(raw).asBinaryTag());
+            }
+        }
+        return tileEntities;
+    }
+
+    @Override
+    public BaseBlock getBlock(BlockVector3 position) throws DataException {
+        char[] section = blocks.get(position.getY() >> 4);
+        if (section == null) {
+            return BlockTypesCache.states[BlockTypesCache.ReservedIDs.AIR].toBaseBlock();
+        }
+        int index = section.length == 1 ? 0 : ((position.getY() & 15) << 8) | ((position.getZ() & 15) << 4) | (position.getX() & 15);
+        BlockState state = BlockState.getFromOrdinal(section[index]);
+        CompoundBinaryTag tileEntity = getTileEntities().get(position);
+        if (tileEntity != null) {
+            return state.toBaseBlock(tileEntity);
+        }
+        return state.toBaseBlock();
+    }
+
+    @Override
+    public BiomeType getBiome(BlockVector3 position) {
+        BiomeType[] sectionBiomes = biomes.get(position.getY() >> 4);
+        if (sectionBiomes == null) {
+            return null;
+        }
+        if (sectionBiomes.length == 1) {
+            return sectionBiomes[0];
+        }
+        int x = (position.getX() & 15) >> 2;
+        int y = (position.getY() & 15) >> 2;
+        int z = (position.getZ() & 15) >> 2;
+        return sectionBiomes[y << 4 | z << 2 | x];
+    }
+
+    @Override
+    public List<BaseEntity> getEntities() throws DataException {
+        if (entities == null) {
+            entities = new ArrayList<>();
+            CompoundBinaryTag entityTag;
+            if (entityTagSupplier == null || (entityTag = entityTagSupplier.get()) == null) {
+                return entities;
+            }
+            ListBinaryTag tags = NbtUtils.getChildTag(entityTag, "Entities", BinaryTagTypes.LIST);
+            for (BinaryTag tag : tags) {
+                if (!(tag instanceof CompoundBinaryTag t)) {
+                    throw new InvalidFormatException("CompoundTag expected in Entities");
+                }
+                entities.add(new BaseEntity(EntityTypes.get(t.getString("id")), LazyReference.computed(t)));
+            }
+        }
+        return entities;
+    }
+
+}
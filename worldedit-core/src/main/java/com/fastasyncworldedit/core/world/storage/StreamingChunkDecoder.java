@@ -0,0 +1,269 @@
+package com.fastasyncworldedit.core.world.storage;
+
+import com.fastasyncworldedit.core.jnbt.streamer.StreamDelegate;
+import com.fastasyncworldedit.core.jnbt.streamer.ValueReader;
+import com.fastasyncworldedit.core.util.MathMan;
+import com.sk89q.jnbt.NBTConstants;
+import com.sk89q.jnbt.NBTInputStream;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.extension.platform.Capability;
+import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.internal.Constants;
+import com.sk89q.worldedit.registry.state.Property;
+import com.sk89q.worldedit.util.nbt.CompoundBinaryTag;
+import com.sk89q.worldedit.world.DataException;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.storage.InvalidFormatException;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+import javax.annotation.Nullable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Decodes 1.18+ chunk NBT straight into block ordinal sections, without building a tag tree for the whole chunk. Only
+ * the block and biome palettes and packed data of each section and the block entities are read, everything else is
+ * skipped in the stream.
+ * <p>
+ * Chunks of an older data version than the platform's are not decoded, as they have to be passed through the
+ * {@link com.sk89q.worldedit.world.DataFixer} as a whole tag.
+ */
+public final class StreamingChunkDecoder {
+
+    /**
+     * Block ordinals by palette entry, shared by all decoders. Keys are the block id followed by its properties.
+     */
+    private static final Map<String, Character> PALETTE_CACHE = new ConcurrentHashMap<>();
+    /**
+     * Block data is stored with at least this many bits per entry, biome data with as few as the palette needs.
+     */
+    private static final int MIN_BLOCK_BITS = 4;
+
+    private int dataVersion = -1;
+    private final List<RawSection> sections = new ArrayList<>();
+    private final List<Map<String, Object>> tiles = new ArrayList<>();
+    private RawSection current;
+
+    private StreamingChunkDecoder() {
+    }
+
+    /**
+     * Decode a chunk.
+     *
+     * @param stream    the uncompressed chunk NBT
+     * @param entityTag supplier for the entity compound tag found in the entities folder mca files
+     * @return the chunk, or null if the chunk has to be read as a tag instead
+     * @throws IOException   if the stream could not be read
+     * @throws DataException if the chunk data is invalid
+     */
+    @Nullable
+    public static SectionedChunk decode(InputStream stream, Supplier<CompoundBinaryTag> entityTag) throws IOException,
+            DataException {
+        StreamingChunkDecoder decoder = new StreamingChunkDecoder();
+        DataInputStream dis = stream instanceof DataInputStream ? (DataInputStream) stream : new DataInputStream(stream);
+        if (dis.readByte() != NBTConstants.TYPE_COMPOUND) {
+            throw new InvalidFormatException("CompoundTag expected for chunk");
+        }
+        dis.skipBytes(dis.readUnsignedShort());
+        // Read the payload directly rather than through readNamedTagLazy, which swallows errors
+        new NBTInputStream(dis).readTagPayloadLazy(NBTConstants.TYPE_COMPOUND, 0, decoder.createDelegate());
+        if (!decoder.isCurrent()) {
+            return null;
+        }
+        return decoder.build(entityTag);
+    }
+
+    @SuppressWarnings("unchecked")
+    private StreamDelegate createDelegate() {
+        StreamDelegate chunk = new StreamDelegate();
+        chunk.add("DataVersion").withInt((i, v) -> dataVersion = v);
+
+        StreamDelegate section = chunk.add("sections").add();
+        // Called at the start of each section compound
+        section.withInfo((length, type) -> sections.add(current = new RawSection()));
+        section.add("Y").withInt((i, v) -> current.y = v);
+        StreamDelegate blockStates = section.add("block_states");
+        blockStates.add("palette").withValue((ValueReader<List<Object>>) (i, v) -> current.blockPalette = v);
+        blockStates.add("data").withValue((ValueReader<long[]>) (i, v) -> current.blockData = v);
+        StreamDelegate biomes = section.add("biomes");
+        biomes.add("palette").withValue((ValueReader<List<Object>>) (i, v) -> current.biomePalette = v);
+        biomes.add("data").withValue((ValueReader<long[]>) (i, v) -> current.biomeData = v);
+
+        chunk.add("block_entities").withElem((ValueReader<Map<String, Object>>) (i, v) -> tiles.add(v));
+        return chunk;
+    }
+
+    private boolean isCurrent() {
+        if (dataVersion < Constants.DATA_VERSION_MC_1_18) {
+            return false;
+        }
+        Platform platform = WorldEdit.getInstance().getPlatformManager().queryCapability(Capability.WORLD_EDITING);
+        return dataVersion >= platform.getDataVersion() || platform.getDataFixer() == null;
+    }
+
+    private SectionedChunk build(Supplier<CompoundBinaryTag> entityTag) throws InvalidFormatException {
+        Int2ObjectOpenHashMap<char[]> blocks = new Int2ObjectOpenHashMap<>(sections.size());
+        Int2ObjectOpenHashMap<BiomeType[]> biomes = new Int2ObjectOpenHashMap<>(sections.size());
+        for (RawSection section : sections) {
+            // null for sections outside of the world limits
+            if (section.blockPalette != null && !section.blockPalette.isEmpty()) {
+                char[] palette = new char[section.blockPalette.size()];
+                for (int i = 0; i < palette.length; i++) {
+                    palette[i] = getOrdinal(section.blockPalette.get(i));
+                }
+                if (palette.length == 1) {
+                    // the same block everywhere
+                    blocks.put(section.y, palette);
+                } else {
+                    char[] ordinals = new char[4096];
+                    unpack(section.blockData, Math.max(MIN_BLOCK_BITS, bitsFor(palette.length)), palette, ordinals);
+                    blocks.put(section.y, ordinals);
+                }
+            }
+            if (section.biomePalette != null && !section.biomePalette.isEmpty()) {
+                BiomeType[] palette = new BiomeType[section.biomePalette.size()];
+                for (int i = 0; i < palette.length; i++) {
+                    String id = (String) section.biomePalette.get(i);
+                    BiomeType type = BiomeType.REGISTRY.get(id);
+                    if (type == null) {
+                        throw new InvalidFormatException("Invalid biome type: " + id);
+                    }
+                    palette[i] = type;
+                }
+                if (palette.length == 1) {
+                    biomes.put(section.y, palette);
+                } else {
+                    if (section.biomeData == null || section.biomeData.length == 0) {
+                        throw new InvalidFormatException("Biome data not present.");
+                    }
+                    BiomeType[] cells = new BiomeType[64];
+                    unpack(section.biomeData, bitsFor(palette.length), palette, cells);
+                    biomes.put(section.y, cells);
+                }
+            }
+        }
+        return new StreamedChunk(blocks, biomes, tiles, entityTag);
+    }
+
+    /**
+     * Get the ordinal of a block palette entry.
+     */
+    @SuppressWarnings("unchecked")
+    private static char getOrdinal(Object rawEntry) throws InvalidFormatException {
+        Map<String, Object> entry = (Map<String, Object>) rawEntry;
+        String name = (String) entry.get("Name");
+        Map<String, Object> properties = (Map<String, Object>) entry.get("Properties");
+        String key;
+        if (properties == null || properties.isEmpty()) {
+            key = name;
+        } else {
+            StringBuilder builder = new StringBuilder(name).append('[');
+            for (Map.Entry<String, Object> property : properties.entrySet()) {
+                builder.append(property.getKey()).append('=').append(property.getValue()).append(',');
+            }
+            builder.setCharAt(builder.length() - 1, ']');
+            key = builder.toString();
+        }
+        Character ordinal = PALETTE_CACHE.get(key);
+        if (ordinal == null) {
+            ordinal = resolve(name, properties).getOrdinalChar();
+            PALETTE_CACHE.put(key, ordinal);
+        }
+        return ordinal;
+    }
+
+    private static BlockState resolve(String name, @Nullable Map<String, Object> properties) throws InvalidFormatException {
+        BlockType type = BlockTypes.get(name);
+        if (type == null) {
+            throw new InvalidFormatException("Invalid block type: " + name);
+        }
+        BlockState blockState = type.getDefaultState();
+        if (properties == null) {
+            return blockState;
+        }
+        for (Property<?> property : blockState.getStates().keySet()) {
+            Object value = properties.get(property.getName());
+            if (value != null) {
+                try {
+                    blockState = getBlockStateWith(blockState, property, value.toString());
+                } catch (IllegalArgumentException e) {
+                    throw new InvalidFormatException("Invalid block state for " + type.getId() + ", "
+                            + property.getName() + ": " + value);
+                }
+            }
+        }
+        return blockState;
+    }
+
+    private static <T> BlockState getBlockStateWith(BlockState source, Property<T> property, String value) {
+        return source.with(property, property.getValueFor(value));
+    }
+
+    /**
+     * Get the number of bits palette indices are stored with, as the data length does not tell them apart for biomes.
+     */
+    private static int bitsFor(int paletteSize) {
+        return MathMan.log2nlz(paletteSize - 1);
+    }
+
+    /**
+     * Unpack palette indices that do not span multiple longs, as stored since 1.16.
+     */
+    private static void unpack(long[] data, int bits, char[] palette, char[] out) throws InvalidFormatException {
+        int perLong = 64 / bits;
+        if (data == null || data.length < (out.length + perLong - 1) / perLong) {
+            throw new InvalidFormatException("Block state data not present.");
+        }
+        long mask = (1L << bits) - 1;
+        int index = 0;
+        for (long word : data) {
+            for (int i = 0; i < perLong && index < out.length; i++, index++) {
+                int id = (int) (word & mask);
+                if (id >= palette.length) {
+                    throw new InvalidFormatException("Invalid block state table entry: " + id);
+                }
+                out[index] = palette[id];
+                word >>>= bits;
+            }
+        }
+    }
+
+    private static <T> void unpack(long[] data, int bits, T[] palette, T[] out) throws InvalidFormatException {
+        int perLong = 64 / bits;
+        if (data.length < (out.length + perLong - 1) / perLong) {
+            throw new InvalidFormatException("Biome data not present.");
+        }
+        long mask = (1L << bits) - 1;
+        int index = 0;
+        for (long word : data) {
+            for (int i = 0; i < perLong && index < out.length; i++, index++) {
+                int id = (int) (word & mask);
+                if (id >= palette.length) {
+                    throw new InvalidFormatException("Invalid biome table entry: " + id);
+                }
+                out[index] = palette[id];
+                word >>>= bits;
+            }
+        }
+    }
+
+    private static final class RawSection {
+
+        private int y;
+        private List<Object> blockPalette;
+        private long[] blockData;
+        private List<Object> biomePalette;
+        private long[] biomeData;
+
+    }
+
+}
@@ -26,6 +26,7 @@
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -64,6 +65,10 @@ public NBTInputStream(DataInputStream dis) {
         this.is = dis;
     }
 
+    public DataInputStream getInputStream() {
+        return is;
+    }
+
     public void mark(int mark) {
         is.mark(mark);
     }
@@ -112,6 +117,9 @@ public void readNamedTagLazy(StreamDelegate scope) throws IOException {
             } else {
                 readTagPayloadLazy(type, 0);
             }
+        } catch (InterruptedIOException e) {
+            // Reading was cancelled, not failed
+            throw e;
         } catch (Throwable e) {
             e.printStackTrace();
         }
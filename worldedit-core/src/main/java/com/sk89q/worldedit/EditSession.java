@@ -51,6 +51,7 @@
 import com.fastasyncworldedit.core.math.MutableBlockVector3;
 import com.fastasyncworldedit.core.math.MutableVector3;
 import com.fastasyncworldedit.core.math.random.SimplexNoise;
+import com.fastasyncworldedit.core.queue.implementation.ParallelQueueExtent;
 import com.fastasyncworldedit.core.queue.implementation.preloader.Preloader;
 import com.fastasyncworldedit.core.util.ExtentTraverser;
 import com.fastasyncworldedit.core.util.MaskTraverser;
@@ -1212,6 +1213,12 @@ public void setSize(int size) {
     @Override
     public void close() {
         flushQueue();
+        //FAWE start
+        ParallelQueueExtent parallel = new ExtentTraverser<>(getExtent()).findAndGet(ParallelQueueExtent.class);
+        if (parallel != null) {
+            parallel.closeHeightCache();
+        }
+        //FAWE end
         dumpTracingInformation();
     }
 
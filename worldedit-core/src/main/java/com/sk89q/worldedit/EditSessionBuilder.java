@@ -32,6 +32,7 @@
 import com.fastasyncworldedit.core.extent.SingleRegionExtent;
 import com.fastasyncworldedit.core.extent.SlowExtent;
 import com.fastasyncworldedit.core.extent.StripNBTExtent;
+import com.fastasyncworldedit.core.extent.clipboard.WorldSnapshotClipboard;
 import com.fastasyncworldedit.core.extent.processor.heightmap.HeightmapProcessor;
 import com.fastasyncworldedit.core.extent.processor.lighting.NullRelighter;
 import com.fastasyncworldedit.core.extent.processor.lighting.RelightMode;
@@ -50,6 +51,7 @@
 import com.fastasyncworldedit.core.queue.IQueueExtent;
 import com.fastasyncworldedit.core.queue.implementation.ParallelQueueExtent;
 import com.fastasyncworldedit.core.regions.RegionWrapper;
+import com.fastasyncworldedit.core.util.ExtentTraverser;
 import com.fastasyncworldedit.core.util.MemUtil;
 import com.fastasyncworldedit.core.util.Permission;
 import com.fastasyncworldedit.core.wrappers.WorldWrapper;
@@ -71,8 +73,13 @@
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
@@ -102,6 +109,7 @@ public final class EditSessionBuilder {
     private Extent extent;
     private boolean compiled;
     private boolean wrapped;
+    private final Map<Extent, EditSession.Stage> stageExtents = new IdentityHashMap<>();
 
     private @Nullable
     World world;
@@ -423,6 +431,7 @@ public EditSessionBuilder compile() {
 
         compiled = true;
         wrapped = false;
+        stageExtents.clear();
         if (event == null) {
             event = new EditSessionEvent(world, actor, -1, null);
         }
@@ -478,6 +487,7 @@ public EditSessionBuilder compile() {
                 wnaMode = true;
                 extent = world;
             }
+            final Extent base = extent;
             if (combineStages == null) {
                 combineStages =
                         // If it's enabled in the settings
@@ -545,12 +555,14 @@ public EditSessionBuilder compile() {
                     }
                 }
             }
+            // Every position is allowed if one of the regions is global, there is nothing to check for each block
+            boolean allowAll = allowedRegions != null && Arrays.stream(allowedRegions).anyMatch(Region::isGlobal);
             FaweRegionExtent regionExtent = null;
             if (disallowedRegions != null) { // Always use MultiRegionExtent if we have blacklist regions
                 regionExtent = new MultiRegionExtent(this.extent, this.limit, allowedRegions, disallowedRegions);
             } else if (allowedRegions == null) {
                 allowedRegions = new Region[]{RegionWrapper.GLOBAL()};
-            } else {
+            } else if (!allowAll) {
                 if (allowedRegions.length == 0) {
                     regionExtent = new NullExtent(this.extent, FaweCache.NO_REGION);
                 } else {
@@ -561,6 +573,11 @@ public EditSessionBuilder compile() {
                     }
                 }
             }
+            // Blocks set outside the regions are removed from each chunk instead, reads are still checked for each block
+            if (placeChunks && regionExtent != null && !(regionExtent instanceof NullExtent)) {
+                regionExtent.setWritesProcessed(true);
+                extent.addProcessor(regionExtent);
+            }
             // There's no need to do the below (and it'll also just be a pain to implement) if we're not placing chunks
             if (placeChunks) {
                 if (((relightMode != null && relightMode != RelightMode.NONE) || (relightMode == null && Settings.settings().LIGHTING.MODE > 0))) {
@@ -570,6 +587,7 @@ public EditSessionBuilder compile() {
                     extent.addProcessor(new RelightProcessor(relighter));
                 }
                 extent.addProcessor(new HeightmapProcessor(world.getMinY(), world.getMaxY()));
+                extent.addProcessor(WorldSnapshotClipboard.createProcessor(world));
                 IBatchProcessor platformProcessor = WorldEdit
                         .getInstance()
                         .getPlatformManager()
@@ -589,10 +607,13 @@ public EditSessionBuilder compile() {
             } else {
                 relighter = NullRelighter.INSTANCE;
             }
-            if (limit != null && !limit.isUnlimited() && regionExtent != null) {
-                this.extent = new LimitExtent(regionExtent, limit);
-            } else if (limit != null && !limit.isUnlimited()) {
-                this.extent = new LimitExtent(this.extent, limit);
+            if (limit != null && !limit.isUnlimited()) {
+                boolean countChunks = placeChunks && Settings.settings().QUEUE.COUNT_LIMIT_PER_CHUNK;
+                LimitExtent limitExtent = new LimitExtent(regionExtent != null ? regionExtent : this.extent, limit, countChunks);
+                if (countChunks) {
+                    extent.addProcessor(limitExtent);
+                }
+                this.extent = limitExtent;
             } else if (regionExtent != null) {
                 this.extent = regionExtent;
             }
@@ -621,10 +642,46 @@ public EditSessionBuilder compile() {
                 }
             }
             this.extent = wrapExtent(this.extent, eventBus, event, EditSession.Stage.BEFORE_HISTORY);
+            if (placeChunks && Settings.settings().ENABLED_COMPONENTS.DEBUG) {
+                logUnfoldedExtents(base);
+            }
         }
         return this;
     }
 
+    /**
+     * Log the extents left between the edit session and the queue, that every block set or read goes through. Everything
+     * that can be applied to whole chunks is added to the queue as a processor instead.
+     */
+    private void logUnfoldedExtents(Extent base) {
+        List<String> unfolded = new ArrayList<>();
+        ExtentTraverser<Extent> traverser = new ExtentTraverser<>(this.extent);
+        while (traverser != null && traverser.get() != base) {
+            Extent current = traverser.get();
+            String reason;
+            if (stageExtents.containsKey(current)) {
+                reason = "added for the " + stageExtents.get(current) + " stage";
+            } else if (current instanceof LimitExtent) {
+                reason = "counts the blocks of the limit";
+            } else if (current instanceof FaweRegionExtent regionExtent) {
+                reason = regionExtent.isWritesProcessed()
+                        ? "keeps reads inside the allowed regions, writes are trimmed for each chunk"
+                        : "keeps reads and writes inside the allowed regions";
+            } else if (current instanceof HistoryExtent) {
+                reason = "history is not combined with placing chunks";
+            } else if (current instanceof SlowExtent) {
+                reason = "speed reduction";
+            } else {
+                reason = "third party extent";
+            }
+            unfolded.add(current.getClass().getSimpleName() + " (" + reason + ")");
+            traverser = traverser.next();
+        }
+        if (!unfolded.isEmpty()) {
+            LOGGER.debug("Extents applied to each block of the edit: {}", String.join(", ", unfolded));
+        }
+    }
+
     /**
      * Get the relight engine to be used
      */
@@ -700,6 +757,18 @@ public Extent getExtent() {
         return extent != null ? extent : world;
     }
 
+    /**
+     * Remember the extents between the given ones as added for the given stage, for {@link #logUnfoldedExtents(Extent)}.
+     */
+    private Extent rememberStage(Extent added, Extent extent, EditSession.Stage stage) {
+        ExtentTraverser<Extent> traverser = new ExtentTraverser<>(added);
+        while (traverser != null && traverser.get() != extent) {
+            stageExtents.put(traverser.get(), stage);
+            traverser = traverser.next();
+        }
+        return added;
+    }
+
     /**
      * Fire an {@link EditSessionEvent}. Fired after each stage of preparation, allows other plugins to add/alter extents.
      */
@@ -713,18 +782,18 @@ private Extent wrapExtent(
         event.setExtent(extent);
         eventBus.post(event);
         if (event.isCancelled()) {
-            return new NullExtent(extent, FaweCache.MANUAL);
+            return rememberStage(new NullExtent(extent, FaweCache.MANUAL), extent, stage);
         }
         final Extent toReturn = event.getExtent();
         if (toReturn instanceof com.sk89q.worldedit.extent.NullExtent) {
-            return new NullExtent(toReturn, FaweCache.MANUAL);
+            return rememberStage(new NullExtent(toReturn, FaweCache.MANUAL), extent, stage);
         }
         if (toReturn != extent) {
             String className = toReturn.getClass().getName().toLowerCase(Locale.ROOT);
             for (String allowed : Settings.settings().EXTENT.ALLOWED_PLUGINS) {
                 if (className.contains(allowed.toLowerCase(Locale.ROOT))) {
                     this.wrapped = true;
-                    return toReturn;
+                    return rememberStage(toReturn, extent, stage);
                 }
             }
             if (Settings.settings().EXTENT.DEBUG) {
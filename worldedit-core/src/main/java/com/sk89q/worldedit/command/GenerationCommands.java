@@ -21,6 +21,7 @@
 
 import com.fastasyncworldedit.core.Fawe;
 import com.fastasyncworldedit.core.configuration.Caption;
+import com.fastasyncworldedit.core.extent.filter.ImageFilter;
 import com.fastasyncworldedit.core.function.generator.CavesGen;
 import com.fastasyncworldedit.core.util.MainUtil;
 import com.fastasyncworldedit.core.util.MaskTraverser;
@@ -594,24 +595,13 @@ public void image(
             );
         }
 
-        BlockVector3 pos1 = session.getPlacementPosition(actor);
-        BlockVector3 pos2 = pos1.add(image.getWidth() - 1, 0, image.getHeight() - 1);
-        CuboidRegion region = new CuboidRegion(pos1, pos2);
-        int[] count = new int[1];
-        final BufferedImage finalImage = image;
-        RegionVisitor visitor = new RegionVisitor(region, pos -> {
-            int x = pos.getBlockX() - pos1.getBlockX();
-            int z = pos.getBlockZ() - pos1.getBlockZ();
-            int color = finalImage.getRGB(x, z);
-            BlockType block = tu.getNearestBlock(color);
-            count[0]++;
-            if (block != null) {
-                return editSession.setBlock(pos, block.getDefaultState());
-            }
-            return false;
-        }, editSession);
-        Operations.completeBlindly(visitor);
-        actor.print(Caption.of("fawe.worldedit.visitor.visitor.block", editSession.getBlockChangeCount()));
+        // Chunks of the image are resolved and placed in parallel
+        ImageFilter filter = new ImageFilter(image, session.getPlacementPosition(actor), tu);
+        editSession.apply(filter.getRegion(), filter, true);
+        filter.join();
+        // Blocks set straight into the chunks are not counted by the edit session
+        editSession.setSize((int) filter.getAffected());
+        actor.print(Caption.of("fawe.worldedit.visitor.visitor.block", filter.getAffected()));
     }
 
     @Command(name = "/ore", desc = "Generates ores")
@@ -25,7 +25,10 @@
 import com.fastasyncworldedit.core.extent.clipboard.MultiClipboardHolder;
 import com.fastasyncworldedit.core.extent.clipboard.URIClipboardHolder;
 import com.fastasyncworldedit.core.extent.clipboard.io.schematic.MinecraftStructure;
+import com.fastasyncworldedit.core.internal.io.CancellableInputStream;
 import com.fastasyncworldedit.core.util.MainUtil;
+import com.fastasyncworldedit.core.util.progress.ChatProgressTracker;
+import com.fastasyncworldedit.core.util.progress.DefaultProgressTracker;
 import com.google.common.base.Function;
 import com.google.common.collect.Multimap;
 import com.sk89q.worldedit.LocalConfiguration;
@@ -36,6 +39,7 @@
 import com.sk89q.worldedit.command.util.AsyncCommandBuilder;
 import com.sk89q.worldedit.command.util.CommandPermissions;
 import com.sk89q.worldedit.command.util.CommandPermissionsConditionGenerator;
+import com.sk89q.worldedit.entity.Player;
 import com.sk89q.worldedit.extension.platform.Actor;
 import com.sk89q.worldedit.extension.platform.Capability;
 import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
@@ -48,6 +52,7 @@
 import com.sk89q.worldedit.internal.util.LogManagerCompat;
 import com.sk89q.worldedit.math.transform.Transform;
 import com.sk89q.worldedit.session.ClipboardHolder;
+import com.sk89q.worldedit.session.request.Request;
 import com.sk89q.worldedit.util.formatting.component.ErrorFormat;
 import com.sk89q.worldedit.util.formatting.component.PaginationBox;
 import com.sk89q.worldedit.util.formatting.component.TextComponentProducer;
@@ -74,6 +79,7 @@
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
@@ -301,6 +307,17 @@ private List<File> getFiles(ClipboardHolder clipboard) {
         }
         return files;
     }
+
+    private static void trackProgress(Player player, String filename, CancellableInputStream in, long size) {
+        ChatProgressTracker tracker = new ChatProgressTracker(player) {
+            @Override
+            public void sendTask() {
+                int percent = (int) Math.min(100, in.getCount() * 100 / size);
+                getPlayer().print(Caption.of("fawe.worldedit.schematic.schematic.loading", filename, percent));
+            }
+        };
+        in.setProgressListener(() -> tracker.accept(DefaultProgressTracker.ProgressType.DISPATCH, 0));
+    }
     //FAWE end
 
     @Command(
@@ -322,6 +339,7 @@ public void load(
         InputStream in = null;
         try {
             URI uri;
+            long size = -1;
             if (formatName.startsWith("url:")) {
                 String t = filename;
                 filename = formatName;
@@ -393,11 +411,26 @@ public void load(
                 }
                 in = new FileInputStream(file);
                 uri = file.toURI();
+                size = file.length();
+            }
+            // Loading can be cancelled with //cancel, and reports its progress if the size is known
+            CancellableInputStream loading = new CancellableInputStream(in);
+            Request request = Request.request();
+            request.setActor(actor);
+            request.setCancelTask(loading::cancel);
+            if (size > 0 && actor instanceof Player player) {
+                trackProgress(player, filename, loading, size);
+            }
+            try {
+                format.hold(actor, uri, loading);
+            } finally {
+                request.setCancelTask(null);
             }
-            format.hold(actor, uri, in);
             actor.print(Caption.of("fawe.worldedit.schematic.schematic.loaded", filename));
         } catch (IllegalArgumentException e) {
             actor.print(Caption.of("worldedit.schematic.unknown-filename", TextComponent.of(filename)));
+        } catch (InterruptedIOException e) {
+            actor.print(Caption.of("fawe.cancel.reason", Caption.of("fawe.cancel.reason.manual")));
         } catch (URISyntaxException | IOException e) {
             actor.print(Caption.of("worldedit.schematic.file-not-exist", TextComponent.of(e.getMessage())));
             LOGGER.warn("Failed to load a saved clipboard", e);
@@ -23,6 +23,10 @@
 import com.fastasyncworldedit.core.FaweVersion;
 import com.fastasyncworldedit.core.configuration.Caption;
 import com.fastasyncworldedit.core.util.UpdateNotification;
+import com.fastasyncworldedit.core.util.metrics.Counter;
+import com.fastasyncworldedit.core.util.metrics.Histogram;
+import com.fastasyncworldedit.core.util.metrics.Metric;
+import com.fastasyncworldedit.core.util.metrics.PipelineMetrics;
 import com.intellectualsites.paster.IncendoPaster;
 import com.sk89q.worldedit.LocalSession;
 import com.sk89q.worldedit.WorldEdit;
@@ -139,6 +143,47 @@ public void threads(Actor actor) throws WorldEditException {
             }
         }
     }
+
+    @Command(
+            name = "metrics",
+            desc = "Print edit pipeline metrics"
+    )
+    @CommandPermissions(value = "worldedit.metrics", queued = false)
+    public void metrics(
+            Actor actor,
+            @Switch(name = 'r', desc = "Reset all metrics after printing")
+                    boolean reset
+    ) throws WorldEditException {
+        PipelineMetrics metrics = PipelineMetrics.metrics();
+        if (!PipelineMetrics.isEnabled()) {
+            actor.printDebug(TextComponent.of("Metrics are disabled, enable them with queue.metrics.enabled in config.yml"));
+        }
+        double seconds = metrics.getElapsedNanos() / 1e9;
+        actor.printDebug(TextComponent.of(String.format("Metrics over the last %.1fs:", seconds)));
+        for (Metric metric : metrics.getMetrics()) {
+            if (metric instanceof Counter counter) {
+                long value = counter.get();
+                actor.printDebug(TextComponent.of(String.format(
+                        "%s: %d (%.1f/s)", metric.getName(), value, seconds > 0 ? value / seconds : 0)));
+            } else if (metric instanceof Histogram histogram) {
+                actor.printDebug(TextComponent.of(String.format(
+                        "%s: count=%d (%.1f/s) mean=%.1f p50=%d p99=%d max=%d %s",
+                        metric.getName(),
+                        histogram.getCount(),
+                        seconds > 0 ? histogram.getCount() / seconds : 0,
+                        histogram.getMean(),
+                        histogram.getQuantile(0.5),
+                        histogram.getQuantile(0.99),
+                        histogram.getMax(),
+                        histogram.getUnit()
+                )));
+            }
+        }
+        if (reset) {
+            metrics.reset();
+            actor.printDebug(TextComponent.of("Metrics reset"));
+        }
+    }
     //FAWE end
 
     @Command(
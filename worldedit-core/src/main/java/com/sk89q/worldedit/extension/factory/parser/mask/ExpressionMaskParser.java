@@ -78,6 +78,8 @@ public Mask parseFromInput(String input, ParserContext context) throws InputPars
         try {
             //FAWE start - richer parsing
             Expression exp = Expression.compile(input, "x", "y", "z");
+            // evaluated for every block, so worth compiling ahead of time
+            exp.optimize();
             //FAWE end
             WorldEditExpressionEnvironment env = new WorldEditExpressionEnvironment(
                     context.requireExtent(), Vector3.ONE, Vector3.ZERO);
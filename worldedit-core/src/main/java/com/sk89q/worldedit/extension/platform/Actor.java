@@ -255,6 +255,11 @@ default int cancel(boolean close) {
                     cancelled++;
                 }
             }
+            Runnable cancelTask = request.getCancelTask();
+            if (cancelTask != null && equals(request.getActor())) {
+                cancelTask.run();
+                cancelled++;
+            }
         }
         return cancelled;
     }
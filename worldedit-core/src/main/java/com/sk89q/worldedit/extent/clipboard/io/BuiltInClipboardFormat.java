@@ -21,9 +21,13 @@
 
 import com.fastasyncworldedit.core.extent.clipboard.io.FastSchematicReader;
 import com.fastasyncworldedit.core.extent.clipboard.io.FastSchematicWriter;
+import com.fastasyncworldedit.core.extent.clipboard.io.SectionedSchematicReader;
+import com.fastasyncworldedit.core.extent.clipboard.io.SectionedSchematicWriter;
 import com.fastasyncworldedit.core.extent.clipboard.io.schematic.MinecraftStructure;
 import com.fastasyncworldedit.core.extent.clipboard.io.schematic.PNGWriter;
+import com.fastasyncworldedit.core.internal.io.ReadAheadInputStream;
 import com.fastasyncworldedit.core.internal.io.ResettableFileInputStream;
+import com.fastasyncworldedit.core.util.MainUtil;
 import com.google.common.collect.ImmutableSet;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.NBTInputStream;
@@ -63,7 +67,9 @@ public ClipboardReader getReader(InputStream inputStream) throws IOException {
                 inputStream = new ResettableFileInputStream((FileInputStream) inputStream);
             }
             BufferedInputStream buffered = new BufferedInputStream(inputStream);
-            NBTInputStream nbtStream = new NBTInputStream(new BufferedInputStream(new GZIPInputStream(buffered)));
+            // Inflate on another thread while the NBT is decoded
+            InputStream inflated = new ReadAheadInputStream(MainUtil.getInflatingIS(buffered));
+            NBTInputStream nbtStream = new NBTInputStream(new BufferedInputStream(inflated));
             return new FastSchematicReader(nbtStream);
         }
 
@@ -178,7 +184,8 @@ public ClipboardReader getReader(InputStream inputStream) throws IOException {
                 inputStream = new ResettableFileInputStream((FileInputStream) inputStream);
             }
             BufferedInputStream buffered = new BufferedInputStream(inputStream);
-            NBTInputStream nbtStream = new NBTInputStream(new BufferedInputStream(new GZIPInputStream(buffered)));
+            InputStream inflated = new ReadAheadInputStream(MainUtil.getInflatingIS(buffered));
+            NBTInputStream nbtStream = new NBTInputStream(new BufferedInputStream(inflated));
             FastSchematicReader reader = new FastSchematicReader(nbtStream);
             reader.setBrokenEntities(true);
             return reader;
@@ -238,6 +245,32 @@ public boolean isFormat(File file) {
         }
     },
 
+    /**
+     * The sectioned FAWE format, which can be read in part and decoded in parallel.
+     */
+    SECTIONED("sectioned", "sections", "fschem") {
+        @Override
+        public String getPrimaryFileExtension() {
+            return "fschem";
+        }
+
+        @Override
+        public ClipboardReader getReader(InputStream inputStream) throws IOException {
+            return new SectionedSchematicReader(inputStream);
+        }
+
+        @Override
+        public ClipboardWriter getWriter(OutputStream outputStream) throws IOException {
+            return new SectionedSchematicWriter(outputStream);
+        }
+
+        @Override
+        public boolean isFormat(File file) {
+            String name = file.getName().toLowerCase(Locale.ROOT);
+            return name.endsWith(".fschem");
+        }
+    },
+
     /**
      * Isometric PNG writer.
      */
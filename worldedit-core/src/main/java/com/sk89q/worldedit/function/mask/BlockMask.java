@@ -208,6 +208,20 @@ public boolean test(BlockVector3 vector) {
         return ordinals[test] || replacesAir() && test == 0;
     }
 
+    @Override
+    public void testSection(char[] ordinals, long[] bits) {
+        final boolean[] table = this.ordinals;
+        final boolean zero = table[0] || replacesAir();
+        for (int word = 0, index = 0; word < 64; word++) {
+            long value = 0;
+            for (int bit = 0; bit < 64; bit++, index++) {
+                char ordinal = ordinals[index];
+                value |= (ordinal == 0 ? zero : table[ordinal]) ? 1L << bit : 0L;
+            }
+            bits[word] = value;
+        }
+    }
+
     @Override
     public boolean replacesAir() {
         return ordinals[1]
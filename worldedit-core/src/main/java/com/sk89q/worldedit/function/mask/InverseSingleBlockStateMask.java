@@ -45,6 +45,20 @@ public final boolean test(BlockState state) {
         return test != ordinal;
     }
 
+    @Override
+    public void testSection(char[] ordinals, long[] bits) {
+        final char ordinal = this.ordinal;
+        final char excluded = isAir ? 0 : ordinal;
+        for (int word = 0, index = 0; word < 64; word++) {
+            long value = 0;
+            for (int bit = 0; bit < 64; bit++, index++) {
+                char test = ordinals[index];
+                value |= (test != ordinal & test != excluded ? 1L : 0L) << bit;
+            }
+            bits[word] = value;
+        }
+    }
+
     @Override
     public Mask inverse() {
         return new SingleBlockStateMask(getExtent(), BlockState.getFromOrdinal(ordinal));
@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.function.operation;
 
+import com.fastasyncworldedit.core.history.DiskStorageHistory;
 import com.fastasyncworldedit.core.history.changeset.AbstractChangeSet;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.extent.inventory.BlockBag;
@@ -26,6 +27,7 @@
 import com.sk89q.worldedit.history.change.Change;
 import com.sk89q.worldedit.history.changeset.ChangeSet;
 
+import java.io.IOException;
 import java.util.Iterator;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -58,6 +60,9 @@ public void perform(Change change, UndoContext context) {
     private final Iterator<Change> iterator;
     private final Type type;
     private final UndoContext context;
+    //FAWE start
+    private final DiskStorageHistory chunkedHistory;
+    //FAWE end
 
     /**
      * Create a new instance.
@@ -74,6 +79,13 @@ private ChangeSetExecutor(ChangeSet changeSet, Type type, UndoContext context, B
 
         this.type = type;
         this.context = context;
+        // Blocks of chunked disk history are replayed chunk by chunk, unless every change needs an inventory check
+        if (changeSet instanceof DiskStorageHistory history && (blockBag == null || inventory <= 0) && history.isChunked()) {
+            chunkedHistory = history;
+            iterator = history.getIterator(type == Type.REDO, false);
+            return;
+        }
+        chunkedHistory = null;
         if (changeSet instanceof AbstractChangeSet) {
             iterator = ((AbstractChangeSet) changeSet).getIterator(blockBag, inventory, type == Type.REDO);
         } else if (type == Type.UNDO) {
@@ -86,6 +98,15 @@ private ChangeSetExecutor(ChangeSet changeSet, Type type, UndoContext context, B
 
     @Override
     public Operation resume(RunContext run) throws WorldEditException {
+        //FAWE start - replay chunked blocks before tiles, entities and biomes
+        if (chunkedHistory != null) {
+            try {
+                chunkedHistory.replayBlocks(context.getExtent(), type == Type.REDO);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        //FAWE end
         while (iterator.hasNext()) {
             Change change = iterator.next();
             //FAWE start - types > individual history step
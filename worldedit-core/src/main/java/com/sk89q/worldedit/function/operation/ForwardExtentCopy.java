@@ -22,16 +22,19 @@
 import com.fastasyncworldedit.core.configuration.Caption;
 import com.fastasyncworldedit.core.extent.BlockTranslateExtent;
 import com.fastasyncworldedit.core.extent.PositionTransformExtent;
+import com.fastasyncworldedit.core.extent.filter.SectionCopyFilter;
 import com.fastasyncworldedit.core.function.RegionMaskTestFunction;
 import com.fastasyncworldedit.core.function.block.BiomeCopy;
 import com.fastasyncworldedit.core.function.block.CombinedBlockCopy;
 import com.fastasyncworldedit.core.function.block.SimpleBlockCopy;
 import com.fastasyncworldedit.core.function.visitor.IntersectRegionFunction;
+import com.fastasyncworldedit.core.queue.IQueueExtent;
 import com.fastasyncworldedit.core.queue.implementation.ParallelQueueExtent;
 import com.fastasyncworldedit.core.util.ExtentTraverser;
 import com.fastasyncworldedit.core.util.MaskTraverser;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.entity.Entity;
 import com.sk89q.worldedit.entity.metadata.EntityProperties;
@@ -42,12 +45,14 @@
 import com.sk89q.worldedit.function.entity.ExtentEntityCopy;
 import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.function.mask.Masks;
+import com.sk89q.worldedit.function.mask.RegionMask;
 import com.sk89q.worldedit.function.visitor.EntityVisitor;
 import com.sk89q.worldedit.function.visitor.RegionVisitor;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.math.transform.AffineTransform;
 import com.sk89q.worldedit.math.transform.Identity;
 import com.sk89q.worldedit.math.transform.Transform;
+import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.regions.FlatRegion;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.formatting.text.Component;
@@ -299,6 +304,12 @@ public Operation resume(RunContext run) throws WorldEditException {
             lastEntityVisitor = null;
         }
 
+        //FAWE start - copy whole sections when the copy is a plain, section aligned translation within a queue
+        if (copySections()) {
+            return null;
+        }
+        //FAWE end
+
         //FAWE start
         Extent finalDest = destination;
         BlockVector3 translation = to.subtract(from);
@@ -450,6 +461,131 @@ public Operation resume(RunContext run) throws WorldEditException {
         return null;
     }
 
+    //FAWE start
+    /**
+     * Copy the region section by section directly between the chunks of the destination's queue, if possible. This is
+     * only done when every repetition translates the region by a multiple of 16 on every axis without overlapping the
+     * source, and nothing but edit sessions sit between the destination and its queue (so no limit, history or region
+     * extents are bypassed).
+     * <p>
+     * The source is read as it is in the world, so blocks set in it by this edit session but not yet flushed are not
+     * copied. Edits that change the source before copying it must flush their queue first.
+     *
+     * @return true if the blocks were copied
+     */
+    private boolean copySections() throws WorldEditException {
+        if (filterFunction != null || source != destination || !(region instanceof CuboidRegion cuboid)) {
+            return false;
+        }
+        Region maskRegion = null;
+        if (sourceMask instanceof RegionMask regionMask) {
+            maskRegion = regionMask.getRegion();
+        } else if (sourceMask != Masks.alwaysTrue()) {
+            return false;
+        }
+        Extent queue = destination;
+        while (queue instanceof EditSession editSession) {
+            queue = editSession.getExtent();
+        }
+        if (!(queue instanceof ParallelQueueExtent) && !(queue instanceof IQueueExtent)) {
+            return false;
+        }
+        BlockVector3 step = getTranslation(transform);
+        if (step == null) {
+            return false;
+        }
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 max = region.getMaximumPoint();
+        BlockVector3[] translations = new BlockVector3[repetitions];
+        BlockVector3 translation = to.subtract(from);
+        for (int i = 0; i < repetitions; i++) {
+            translation = translation.add(step);
+            if (((translation.getX() | translation.getY() | translation.getZ()) & 15) != 0) {
+                return false;
+            }
+            BlockVector3 tMin = min.add(translation);
+            BlockVector3 tMax = max.add(translation);
+            if (tMin.getX() <= max.getX() && tMax.getX() >= min.getX()
+                    && tMin.getY() <= max.getY() && tMax.getY() >= min.getY()
+                    && tMin.getZ() <= max.getZ() && tMax.getZ() >= min.getZ()) {
+                return false;
+            }
+            translations[i] = translation;
+        }
+
+        List<? extends Entity> entities;
+        if (copyingEntities) {
+            entities = source.getEntities(region);
+            entities.removeIf(entity -> {
+                EntityProperties properties = entity.getFacet(EntityProperties.class);
+                return properties != null && !properties.isPasteable();
+            });
+        } else {
+            entities = Collections.emptyList();
+        }
+
+        for (int i = 0; i < repetitions; i++) {
+            BlockVector3 offset = translations[i];
+            SectionCopyFilter filter = new SectionCopyFilter(cuboid, maskRegion, offset, copyingBiomes);
+            CuboidRegion target = new CuboidRegion(min.add(offset), max.add(offset));
+            queue.apply(target, filter, true);
+            filter.join();
+            affectedBlocks += (int) filter.getAffected();
+            affectedBiomeCols += (int) filter.getAffectedBiomes();
+
+            if (!entities.isEmpty()) {
+                ExtentEntityCopy entityCopy = new ExtentEntityCopy(
+                        source,
+                        from.toVector3(),
+                        destination,
+                        to.toVector3(),
+                        currentTransform
+                );
+                entityCopy.setRemoving(removingEntities);
+                EntityVisitor entityVisitor = new EntityVisitor(entities.iterator(), entityCopy);
+                Operations.completeBlindly(entityVisitor);
+                affectedEntities += entityVisitor.getAffected();
+            }
+            currentTransform = currentTransform.combine(transform);
+        }
+
+        // The source removal of a move can only be done once every section has been read
+        if (sourceFunction != null) {
+            RegionFunction remove = sourceFunction;
+            if (sourceMask != Masks.alwaysTrue()) {
+                remove = new RegionMaskingFilter(source, sourceMask, remove);
+            }
+            Operations.completeBlindly(new RegionVisitor(region, remove, queue));
+        }
+        return true;
+    }
+
+    /**
+     * Get the block translation of a transform which does nothing but translate by whole blocks.
+     *
+     * @return the translation, or null if the transform does more than that
+     */
+    private static BlockVector3 getTranslation(Transform transform) {
+        if (transform.isIdentity()) {
+            return BlockVector3.ZERO;
+        }
+        if (!(transform instanceof AffineTransform affine)) {
+            return null;
+        }
+        double[] c = affine.coefficients();
+        for (int i = 0; i < c.length; i++) {
+            if (i % 4 == 3) {
+                if (c[i] != Math.floor(c[i])) {
+                    return null;
+                }
+            } else if (c[i] != (i % 5 == 0 ? 1 : 0)) {
+                return null;
+            }
+        }
+        return BlockVector3.at((int) c[3], (int) c[7], (int) c[11]);
+    }
+    //FAWE end
+
     @Override
     public void cancel() {
     }
@@ -68,4 +68,11 @@ public BaseBlock applyBlock(BlockVector3 position) {
         return block;
     }
 
+    //FAWE start
+    @Override
+    public boolean applySection(long[] bits, char[] set) {
+        return block.applySection(bits, set);
+    }
+    //FAWE end
+
 }
@@ -59,6 +59,18 @@ default void applyBlock(final FilterBlock block) {
         apply(block, block, block);
     }
 
+    /**
+     * Set all blocks of a chunk section whose bit is set at once. Only possible for patterns that place the same block
+     * regardless of the position and the existing block.
+     *
+     * @param bits one bit per block of the section, in y, z, x order
+     * @param set  the block ordinals of the section to write to
+     * @return false if the pattern has to be applied block by block, nothing was written then
+     */
+    default boolean applySection(long[] bits, char[] set) {
+        return false;
+    }
+
     //FAWE end
 
     /**
@@ -19,15 +19,20 @@
 
 package com.sk89q.worldedit.function.visitor;
 
+import com.fastasyncworldedit.core.Fawe;
 import com.fastasyncworldedit.core.configuration.Caption;
 import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.function.mask.ABlockMask;
 import com.fastasyncworldedit.core.math.BlockVectorSet;
 import com.fastasyncworldedit.core.math.MutableBlockVector3;
+import com.fastasyncworldedit.core.math.OffHeapBlockVectorSet;
+import com.fastasyncworldedit.core.queue.implementation.Flood;
 import com.fastasyncworldedit.core.queue.implementation.ParallelQueueExtent;
 import com.fastasyncworldedit.core.queue.implementation.SingleThreadQueueExtent;
 import com.fastasyncworldedit.core.util.ExtentTraverser;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
+import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.extension.platform.Capability;
@@ -40,6 +45,7 @@
 import com.sk89q.worldedit.util.formatting.text.Component;
 import com.sk89q.worldedit.util.formatting.text.TextComponent;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -95,6 +101,9 @@ public abstract class BreadthFirstSearch implements Operation {
     private final SingleThreadQueueExtent singleQueue;
     private BlockVectorSet queue = new BlockVectorSet();
     private BlockVectorSet visited = new BlockVectorSet();
+    private int visitedCount;
+    private boolean customVisited;
+    private Flood flood;
     private BlockVector3[] directions;
     //FAWE end
     protected final int minY;
@@ -228,9 +237,18 @@ public void addDiagonal() {
      * @param position the position
      */
     public void visit(BlockVector3 position) {
+        //FAWE start
+        if (flood != null) {
+            flood.start(position.getBlockX(), position.getBlockY(), position.getBlockZ());
+            return;
+        }
+        //FAWE end
         if (!visited.contains(position)) {
             queue.add(position);
             visited.add(position);
+            //FAWE start
+            visitedCount++;
+            //FAWE end
         }
     }
 
@@ -252,16 +270,66 @@ private void visit(BlockVector3 from, BlockVector3 to) {
     //FAWE start
     public void setVisited(BlockVectorSet set) {
         this.visited = set;
+        this.visitedCount = set.size();
+        this.customVisited = true;
     }
 
+    /**
+     * Get the visited positions. If the search runs on the section flood engine, this is a copy.
+     *
+     * @return the visited positions
+     */
     public BlockVectorSet getVisited() {
+        if (flood != null) {
+            BlockVectorSet set = new BlockVectorSet();
+            flood.getVisited(set);
+            return set;
+        }
         return visited;
     }
 
     public boolean isVisited(BlockVector3 pos) {
+        if (flood != null) {
+            return flood.isVisited(pos.getBlockX(), pos.getBlockY(), pos.getBlockZ());
+        }
         return visited.contains(pos);
     }
 
+    /**
+     * Whether the search can run on the section based {@link Flood} engine. The engine keeps track of the visited
+     * positions itself, so {@link #getVisited()} only returns a copy; searches opt in if nothing relies on the live set.
+     *
+     * @return true if the flood engine can be used
+     */
+    protected boolean useSectionFlood() {
+        return false;
+    }
+
+    /**
+     * Get the mask {@link #isVisitable(BlockVector3, BlockVector3)} is equal to, if it only depends on the block at the
+     * position visited. Such a mask is tested against the raw block data of the sections.
+     *
+     * @return the block mask, or null if there is none
+     */
+    @Nullable
+    protected ABlockMask getBlockMask() {
+        return null;
+    }
+
+    /**
+     * Returns whether the mask reads the blocks of the preloading queue, with no other extents in between.
+     */
+    private boolean readsQueue(ABlockMask mask) {
+        Extent extent = mask.getExtent();
+        while (extent instanceof EditSession session) {
+            extent = session.getExtent();
+        }
+        if (extent instanceof ParallelQueueExtent parallel) {
+            extent = parallel.getExtent();
+        }
+        return extent == singleQueue;
+    }
+
     public void setMaxBranch(int maxBranch) {
         this.maxBranch = maxBranch;
     }
@@ -289,19 +357,30 @@ public int getAffected() {
     @Override
     public Operation resume(RunContext run) throws WorldEditException {
         //FAWE start - directions, visited and preloading
+        if (flood != null || (!customVisited && useSectionFlood())) {
+            return resumeFlood();
+        }
         MutableBlockVector3 mutable = new MutableBlockVector3();
         BlockVector3[] dirs = directions;
         BlockVectorSet tempQueue = new BlockVectorSet();
         BlockVectorSet chunkLoadSet = new BlockVectorSet();
+        int offHeapThreshold = Settings.settings().QUEUE.OFF_HEAP_VISITOR_THRESHOLD;
         for (currentDepth = 0; !queue.isEmpty() && currentDepth <= maxDepth; currentDepth++) {
+            if (offHeapThreshold >= 0 && visitedCount > offHeapThreshold && !(visited instanceof OffHeapBlockVectorSet)) {
+                // Huge fills would otherwise keep millions of bitsets on the heap
+                visited = new OffHeapBlockVectorSet(visited);
+                queue = new OffHeapBlockVectorSet(queue);
+                tempQueue = new OffHeapBlockVectorSet();
+            }
             int loadCount = 0;
             if (singleQueue != null && Settings.settings().QUEUE.PRELOAD_CHUNK_COUNT > 1) {
+                int preload = Fawe.instance().getQueueHandler().getController().getPreloadChunks();
                 int cx = Integer.MIN_VALUE;
                 int cz = Integer.MIN_VALUE;
                 outer:
                 for (BlockVector3 from : queue) {
                     for (BlockVector3 direction : dirs) {
-                        if (loadCount > Settings.settings().QUEUE.PRELOAD_CHUNK_COUNT) {
+                        if (loadCount > preload) {
                             break outer;
                         }
                         int x = from.getBlockX() + direction.getBlockX();
@@ -338,6 +417,7 @@ public Operation resume(RunContext run) throws WorldEditException {
                         if (isVisitable(from, mutable.setComponents(x, y, z))) {
                             j++;
                             visited.add(x, y, z);
+                            visitedCount++;
                             tempQueue.add(x, y, z);
                         }
                     }
@@ -357,6 +437,38 @@ public Operation resume(RunContext run) throws WorldEditException {
     }
 
     //FAWE start
+    private Operation resumeFlood() throws WorldEditException {
+        if (flood == null) {
+            flood = new Flood(directions, maxBranch, minY, maxY);
+            for (BlockVector3 position : queue) {
+                flood.start(position.getBlockX(), position.getBlockY(), position.getBlockZ());
+            }
+            for (BlockVector3 position : visited) {
+                flood.markVisited(position.getBlockX(), position.getBlockY(), position.getBlockZ());
+            }
+            queue.clear();
+            visited.clear();
+            visitedCount = 0;
+            ABlockMask blockMask = getBlockMask();
+            if (blockMask != null && singleQueue != null && readsQueue(blockMask)) {
+                flood.setBlockMask(blockMask, singleQueue);
+            }
+        }
+        int preload = singleQueue != null && Settings.settings().QUEUE.PRELOAD_CHUNK_COUNT > 1
+                ? Fawe.instance().getQueueHandler().getController().getPreloadChunks()
+                : 0;
+        for (currentDepth = 0; flood.hasNext() && currentDepth <= maxDepth; currentDepth++) {
+            if (preload > 1) {
+                flood.preload(singleQueue, preload);
+            }
+            affected += flood.next(function, this::isVisitable);
+            if (currentDepth == maxDepth) {
+                break;
+            }
+        }
+        return null;
+    }
+
     public int getDepth() {
         return currentDepth;
     }
@@ -367,6 +479,8 @@ public void cancel() {
         //FAWE start
         queue.clear();
         visited.clear();
+        visitedCount = 0;
+        flood = null;
         affected = 0;
         //FAWE emd
     }
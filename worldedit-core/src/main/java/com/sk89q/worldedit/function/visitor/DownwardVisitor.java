@@ -106,4 +106,11 @@ protected boolean isVisitable(BlockVector3 from, BlockVector3 to) {
         return (fromY == baseY || to.subtract(from).getBlockY() < 0) && super.isVisitable(from, to);
     }
 
+    //FAWE start
+    @Override
+    protected boolean useSectionFlood() {
+        return getClass() == DownwardVisitor.class;
+    }
+    //FAWE end
+
 }
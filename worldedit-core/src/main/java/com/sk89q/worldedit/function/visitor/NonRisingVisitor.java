@@ -83,6 +83,11 @@ public NonRisingVisitor(Mask mask, RegionFunction function, int depth, int minY,
                 BlockVector3.UNIT_MINUS_Y
         );
     }
+
+    @Override
+    protected boolean useSectionFlood() {
+        return getClass() == NonRisingVisitor.class;
+    }
     //FAWE end
 
 }
@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.function.visitor;
 
+import com.fastasyncworldedit.core.function.mask.ABlockMask;
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.extension.platform.Capability;
 import com.sk89q.worldedit.extent.Extent;
@@ -89,4 +90,21 @@ protected boolean isVisitable(BlockVector3 from, BlockVector3 to) {
         return mask.test(to);
     }
 
+    //FAWE start
+    @Override
+    protected boolean useSectionFlood() {
+        return getClass() == RecursiveVisitor.class;
+    }
+
+    @Override
+    protected ABlockMask getBlockMask() {
+        // Subclasses may add their own conditions to isVisitable
+        if ((getClass() == RecursiveVisitor.class || getClass() == NonRisingVisitor.class)
+                && mask instanceof ABlockMask blockMask) {
+            return blockMask;
+        }
+        return null;
+    }
+    //FAWE end
+
 }
@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.function.visitor;
 
+import com.fastasyncworldedit.core.Fawe;
 import com.fastasyncworldedit.core.configuration.Caption;
 import com.fastasyncworldedit.core.configuration.Settings;
 import com.fastasyncworldedit.core.internal.exception.FaweException;
@@ -107,7 +108,7 @@ public Operation resume(RunContext run) throws WorldEditException {
             int lastTrailChunkZ = Integer.MIN_VALUE;
             int lastLeadChunkX = Integer.MIN_VALUE;
             int lastLeadChunkZ = Integer.MIN_VALUE;
-            int loadingTarget = Settings.settings().QUEUE.PRELOAD_CHUNK_COUNT;
+            int loadingTarget = Fawe.instance().getQueueHandler().getController().getPreloadChunks();
             while (trailIter.hasNext()) {
                 BlockVector3 pt = trailIter.next();
                 apply(pt);
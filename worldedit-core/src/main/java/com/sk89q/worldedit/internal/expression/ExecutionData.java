@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.internal.expression;
 
 import java.time.Instant;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Objects.requireNonNull;
 
@@ -31,16 +32,46 @@ public class ExecutionData {
      */
     public static final ExecutionData CONSTANT_EVALUATOR = new ExecutionData(null, null, Instant.MAX);
 
+    //FAWE start - the clock is only read every few checks
+    private static final int CHECK_INTERVAL_MASK = 15;
+    //FAWE end
+
     private final SlotTable slots;
     private final Functions functions;
     private final Instant deadline;
+    //FAWE start
+    private final long timeoutNanos;
+    private long deadlineNanos;
+    private int checks;
+    //FAWE end
 
     public ExecutionData(SlotTable slots, Functions functions, Instant deadline) {
         this.slots = slots;
         this.functions = functions;
         this.deadline = deadline;
+        //FAWE start
+        this.timeoutNanos = -1;
+        //FAWE end
     }
 
+    //FAWE start
+
+    /**
+     * Create execution data with a time limit that starts when the deadline is first checked, i.e. in the first loop
+     * iteration. Expressions without loops never read the clock.
+     *
+     * @param slots         the slots
+     * @param functions     the functions
+     * @param timeoutMillis the time limit in milliseconds
+     */
+    public ExecutionData(SlotTable slots, Functions functions, int timeoutMillis) {
+        this.slots = slots;
+        this.functions = functions;
+        this.deadline = null;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(timeoutMillis, 0));
+    }
+    //FAWE end
+
     public SlotTable getSlots() {
         return requireNonNull(slots, "Cannot use variables in a constant");
     }
@@ -50,10 +81,30 @@ public Functions getFunctions() {
     }
 
     public Instant getDeadline() {
+        //FAWE start - the deadline of a time limit is fixed on the first check
+        if (deadline == null) {
+            long remaining = checks == 0 ? timeoutNanos : deadlineNanos - System.nanoTime();
+            return Instant.now().plusNanos(remaining);
+        }
+        //FAWE end
         return deadline;
     }
 
     public void checkDeadline() {
+        //FAWE start - only read the clock every few checks, this is called for every loop iteration
+        if ((checks++ & CHECK_INTERVAL_MASK) != 0) {
+            return;
+        }
+        if (deadline == null) {
+            long now = System.nanoTime();
+            if (checks == 1) {
+                deadlineNanos = now + timeoutNanos;
+            } else if (now - deadlineNanos > 0) {
+                throw new ExpressionTimeoutException("Calculations exceeded time limit.");
+            }
+            return;
+        }
+        //FAWE end
         if (Instant.now().isAfter(deadline)) {
             throw new ExpressionTimeoutException("Calculations exceeded time limit.");
         }
@@ -30,8 +30,7 @@
 import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
-import java.time.Instant;
-import java.util.HashSet;
+import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
@@ -70,9 +69,12 @@ public class Expression implements Cloneable {
     private final List<String> providedSlots;
     private final ExpressionParser.AllStatementsContext root;
     private final Functions functions = Functions.create();
-    private final CompiledExpression compiledExpression;
+    //FAWE start - replaced when optimized
+    private CompiledExpression compiledExpression;
+    //FAWE end
     //FAWE start
     private final String initialExpression;
+    private ExpressionCompiler.OptimizedExpression optimized;
     //FAWE end
 
     public static Expression compile(String expression, String... variableNames) throws ExpressionException {
@@ -167,9 +169,10 @@ public double evaluate(double[] values, int timeout) throws EvaluationException
             slot.setValue(values[i]);
         }
 
-        Instant deadline = Instant.now().plusMillis(timeout);
+        //FAWE start - don't read the clock for every evaluation
         // evaluation exceptions are thrown out of this method
-        Double result = compiledExpression.execute(new ExecutionData(slots, functions, deadline));
+        Double result = compiledExpression.execute(new ExecutionData(slots, functions, timeout));
+        //FAWE end
         if (result == null) {
             throw new EvaluationException(-1, "Expression must result in a value");
         }
@@ -177,7 +180,13 @@ public double evaluate(double[] values, int timeout) throws EvaluationException
     }
 
     public void optimize() {
-        // TODO optimizing
+        //FAWE start - fold constants and compile to bytecode where possible
+        if (optimized != null) {
+            return;
+        }
+        this.optimized = new ExpressionCompiler().compileOptimizedExpression(root, functions, slots);
+        this.compiledExpression = optimized.getCompiledExpression();
+        //FAWE end
     }
 
     @Override
@@ -198,8 +207,30 @@ public void setEnvironment(ExpressionEnvironment environment) {
     }
 
     //FAWE start
+    /**
+     * Get the class the optimized expression was compiled into, shared by all copies of the expression.
+     *
+     * @return the class, or {@code null} if the expression is not optimized or compiled into method handles
+     */
+    @Nullable
+    Class<?> getCompiledClass() {
+        return optimized != null && optimized.isCompiledClass() ? compiledExpression.getClass() : null;
+    }
+
     public Expression clone() {
-        return new Expression(initialExpression, new HashSet<>(providedSlots));
+        // keep the order of the variables, values are passed to evaluate in that order
+        Expression expression = new Expression(initialExpression, providedSlots.toArray(new String[0]));
+        if (optimized != null) {
+            // share the compiled class, instead of compiling the same expression again for every copy
+            expression.optimized = new ExpressionCompiler().compileOptimizedCopy(
+                    optimized,
+                    expression.root,
+                    expression.functions,
+                    expression.slots
+            );
+            expression.compiledExpression = expression.optimized.getCompiledExpression();
+        }
+        return expression;
     }
     //FAWE end
 
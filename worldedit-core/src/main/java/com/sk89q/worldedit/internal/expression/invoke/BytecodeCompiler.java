@@ -0,0 +1,1010 @@
+package com.sk89q.worldedit.internal.expression.invoke;
+
+import com.google.common.base.Throwables;
+import com.sk89q.worldedit.antlr.ExpressionParser;
+import com.sk89q.worldedit.internal.expression.CompiledExpression;
+import com.sk89q.worldedit.internal.expression.EvaluationException;
+import com.sk89q.worldedit.internal.expression.ExpressionHelper;
+import com.sk89q.worldedit.internal.expression.Functions;
+import com.sk89q.worldedit.internal.expression.LocalSlot;
+import com.sk89q.worldedit.internal.expression.SlotTable;
+import com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.Code;
+import com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.Label;
+import com.sk89q.worldedit.internal.util.LogManagerCompat;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.sk89q.worldedit.antlr.ExpressionLexer.ASSIGN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.DIVIDE;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.DIVIDE_ASSIGN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.EQUAL;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.GREATER_THAN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.GREATER_THAN_OR_EQUAL;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.INCREMENT;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.LEFT_SHIFT;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.LESS_THAN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.LESS_THAN_OR_EQUAL;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.MINUS;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.MINUS_ASSIGN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.MODULO;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.MODULO_ASSIGN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.NEAR;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.NOT_EQUAL;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.PLUS;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.PLUS_ASSIGN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.POWER_ASSIGN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.RIGHT_SHIFT;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.TIMES;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.TIMES_ASSIGN;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.AALOAD;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.ACC_FINAL;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.ACC_PRIVATE;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.ACC_PUBLIC;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.ACONST_NULL;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.ALOAD;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.ARETURN;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.ASTORE;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.ATHROW;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.D2L;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.DADD;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.DASTORE;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.DCMPG;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.DCMPL;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.DCONST_0;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.DCONST_1;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.DDIV;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.DLOAD;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.DMUL;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.DNEG;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.DREM;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.DSTORE;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.DSUB;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.DUP;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.DUP2;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.GETFIELD;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.GOTO;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.IFEQ;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.IFGE;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.IFGT;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.IFLE;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.IFLT;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.IFNE;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.IF_ICMPLE;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.ILOAD;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.INVOKESPECIAL;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.INVOKESTATIC;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.INVOKEVIRTUAL;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.ISTORE;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.L2D;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.L2I;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.LDC2_W;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.LSHL;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.LSHR;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.LXOR;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.NEWARRAY;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.POP2;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.PUTFIELD;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.RETURN;
+import static com.sk89q.worldedit.internal.expression.invoke.BytecodeWriter.T_DOUBLE;
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Compiles an expression from an AST into a hidden class implementing {@link CompiledExpression}.
+ * <p>
+ * Variables are copied into local {@code double}s on entry and written back before returning, so the JIT can keep
+ * them in registers. Functions are called through their {@link MethodHandle}s, stored in a field of the class.
+ * <p>
+ * Not every expression can be compiled this way: {@code switch} statements, functions taking variables and any use of
+ * a variable that may fail at runtime (e.g. reading it before it is assigned) are left to the
+ * {@link CompilingVisitor}, which reports those errors the way users expect.
+ */
+class BytecodeCompiler {
+
+    private static final Logger LOGGER = LogManagerCompat.getLogger();
+
+    private static final String PACKAGE = "com/sk89q/worldedit/internal/expression/";
+    private static final String CLASS_NAME = PACKAGE + "invoke/BytecodeExpression";
+    private static final String VARIABLE = PACKAGE + "LocalSlot$Variable";
+    private static final String EXECUTION_DATA = PACKAGE + "ExecutionData";
+    private static final String EVALUATION_EXCEPTION = PACKAGE + "EvaluationException";
+    private static final String COMPILER = PACKAGE + "invoke/BytecodeCompiler";
+    private static final String VISITOR = PACKAGE + "invoke/CompilingVisitor";
+    private static final String VARIABLES_DESCRIPTOR = "[L" + VARIABLE + ";";
+    private static final String HANDLE_DESCRIPTOR = "Ljava/lang/invoke/MethodHandle;";
+    private static final String HANDLES_DESCRIPTOR = "[" + HANDLE_DESCRIPTOR;
+
+    // dload/dstore only take a byte as index, the last double starts at 254
+    private static final int MAX_LOCALS = 256;
+    // keeps every jump offset within a signed short
+    private static final int MAX_CODE_SIZE = Short.MAX_VALUE;
+    // functions with more arguments are called with an array
+    private static final int MAX_DIRECT_ARGUMENTS = 3;
+    private static final int MAX_ITERATIONS = 256;
+
+    /**
+     * Compile an expression into a class.
+     *
+     * @param root      the expression
+     * @param functions the functions of the expression
+     * @param slots     the slots of the expression
+     * @param folder    the constant folder to use
+     * @return the compiled class, or {@code null} if the expression uses features not supported by this compiler
+     */
+    @Nullable
+    static CompiledClass compile(
+            ExpressionParser.AllStatementsContext root,
+            Functions functions,
+            SlotTable slots,
+            ConstantFolder folder
+    ) {
+        BytecodeCompiler compiler = new BytecodeCompiler(functions, slots, folder);
+        byte[] bytes;
+        try {
+            bytes = compiler.compile(root);
+        } catch (UnsupportedException e) {
+            return null;
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            MethodHandle constructor = lookup.findConstructor(
+                    lookup.lookupClass(),
+                    methodType(void.class, LocalSlot.Variable[].class, MethodHandle[].class)
+            );
+            return new CompiledClass(constructor, List.copyOf(compiler.variables.keySet()), List.copyOf(compiler.calls));
+        } catch (Throwable t) {
+            LOGGER.warn("Could not compile expression to bytecode, falling back to method handles", t);
+            return null;
+        }
+    }
+
+    /**
+     * An expression compiled into a class. The class only depends on the source of the expression, so every copy of the
+     * expression can use an instance of it, bound to the variables and functions of that copy.
+     */
+    static final class CompiledClass {
+
+        private final MethodHandle constructor;
+        private final List<String> variables;
+        private final List<ExpressionParser.FunctionCallContext> calls;
+
+        private CompiledClass(
+                MethodHandle constructor,
+                List<String> variables,
+                List<ExpressionParser.FunctionCallContext> calls
+        ) {
+            this.constructor = constructor;
+            this.variables = variables;
+            this.calls = calls;
+        }
+
+        /**
+         * Create an instance of the class for a copy of the expression.
+         *
+         * @param functions the functions of the copy
+         * @param slots     the slots of the copy. Variables first assigned by the expression are added to it
+         * @return the compiled expression
+         */
+        CompiledExpression newInstance(Functions functions, SlotTable slots) {
+            LocalSlot.Variable[] variables = new LocalSlot.Variable[this.variables.size()];
+            for (int i = 0; i < variables.length; i++) {
+                variables[i] = slots.initVariable(this.variables.get(i)).orElseThrow();
+            }
+            // functions may keep state, e.g. megabuf, so they are resolved for every copy
+            MethodHandle[] handles = new MethodHandle[calls.size()];
+            for (int i = 0; i < handles.length; i++) {
+                ExpressionParser.FunctionCallContext ctx = calls.get(i);
+                handles[i] = adapt(ExpressionHelper.resolveFunction(functions, ctx), ctx.args.size());
+            }
+            try {
+                return (CompiledExpression) constructor.invoke(variables, handles);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+    }
+
+    private final Functions functions;
+    private final SlotTable slots;
+    private final ConstantFolder folder;
+    private final BytecodeWriter writer = new BytecodeWriter(CLASS_NAME, "java/lang/Object", PACKAGE + "CompiledExpression");
+    private final Code code = new Code(2);
+    // variable name -> local index, also the order of the variables array
+    private final Map<String, Integer> variables = new LinkedHashMap<>();
+    private final Set<String> written = new LinkedHashSet<>();
+    // variables that do not exist yet but have certainly been assigned at the current position
+    private Set<String> assigned = new HashSet<>();
+    // the function called by each handle the class holds
+    private final List<ExpressionParser.FunctionCallContext> calls = new ArrayList<>();
+    private final Deque<Loop> loops = new ArrayDeque<>();
+    private int nextLocal = 2;
+
+    private BytecodeCompiler(Functions functions, SlotTable slots, ConstantFolder folder) {
+        this.functions = functions;
+        this.slots = slots;
+        this.folder = folder;
+    }
+
+    private byte[] compile(ExpressionParser.AllStatementsContext root) {
+        collectVariables(root);
+
+        statement(root.statements(), true);
+        returnValue();
+
+        Code method = new Code(2);
+        int index = 0;
+        for (int local : variables.values()) {
+            loadVariableObject(method, index++);
+            method.invoke(INVOKEVIRTUAL, writer.methodRef(VARIABLE, "getValue", "()D"), 1);
+            method.op(DSTORE, local, 1, -2);
+        }
+        method.append(code);
+        if (method.size() > MAX_CODE_SIZE) {
+            throw new UnsupportedException();
+        }
+
+        writer.addField(ACC_PRIVATE | ACC_FINAL, "variables", VARIABLES_DESCRIPTOR);
+        writer.addField(ACC_PRIVATE | ACC_FINAL, "functions", HANDLES_DESCRIPTOR);
+        writer.addMethod(ACC_PUBLIC, "<init>", "(" + VARIABLES_DESCRIPTOR + HANDLES_DESCRIPTOR + ")V", constructor());
+        writer.addMethod(ACC_PUBLIC, "execute", "(L" + EXECUTION_DATA + ";)Ljava/lang/Double;", method);
+        return writer.toByteArray();
+    }
+
+    private Code constructor() {
+        Code init = new Code(3);
+        init.op(ALOAD, 0, 1, 1);
+        init.invoke(INVOKESPECIAL, writer.methodRef("java/lang/Object", "<init>", "()V"), -1);
+        init.op(ALOAD, 0, 1, 1);
+        init.op(ALOAD, 1, 1, 1);
+        init.op(PUTFIELD, writer.fieldRef(CLASS_NAME, "variables", VARIABLES_DESCRIPTOR), 2, -2);
+        init.op(ALOAD, 0, 1, 1);
+        init.op(ALOAD, 2, 1, 1);
+        init.op(PUTFIELD, writer.fieldRef(CLASS_NAME, "functions", HANDLES_DESCRIPTOR), 2, -2);
+        init.op(RETURN, 0);
+        return init;
+    }
+
+    // ---- variables ----
+
+    private void collectVariables(ParseTree node) {
+        Token token = null;
+        boolean write = false;
+        if (node instanceof ExpressionParser.IdExprContext ctx) {
+            token = ctx.source;
+        } else if (node instanceof ExpressionParser.AssignmentContext ctx) {
+            token = ctx.target;
+            write = true;
+        } else if (node instanceof ExpressionParser.PreCrementExprContext ctx) {
+            token = ctx.target;
+            write = true;
+        } else if (node instanceof ExpressionParser.PostCrementExprContext ctx) {
+            token = ctx.target;
+            write = true;
+        } else if (node instanceof ExpressionParser.SimpleForStatementContext ctx) {
+            token = ctx.counter;
+            write = true;
+        }
+        if (token != null) {
+            String name = token.getText();
+            LocalSlot slot = slots.getSlot(name).orElse(null);
+            if (slot == null || slot instanceof LocalSlot.Variable) {
+                if (!variables.containsKey(name)) {
+                    variables.put(name, allocate(2));
+                }
+                if (write) {
+                    written.add(name);
+                }
+            }
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            collectVariables(node.getChild(i));
+        }
+    }
+
+    private int allocate(int size) {
+        int local = nextLocal;
+        nextLocal += size;
+        if (nextLocal > MAX_LOCALS) {
+            throw new UnsupportedException();
+        }
+        code.useLocals(nextLocal);
+        return local;
+    }
+
+    private void loadVariableObject(Code code, int index) {
+        code.op(ALOAD, 0, 1, 1);
+        code.op(GETFIELD, writer.fieldRef(CLASS_NAME, "variables", VARIABLES_DESCRIPTOR), 2, 0);
+        code.pushInt(index);
+        code.op(AALOAD, -1);
+    }
+
+    /**
+     * Get the local of a variable that is read.
+     */
+    private int readable(Token token) {
+        String name = token.getText();
+        LocalSlot slot = slots.getSlot(name).orElse(null);
+        if (slot == null && !assigned.contains(name)) {
+            // let the method handles report that it is not initialized
+            throw new UnsupportedException();
+        }
+        Integer local = variables.get(name);
+        if (local == null) {
+            throw new UnsupportedException();
+        }
+        return local;
+    }
+
+    /**
+     * Get the local of a variable that is written.
+     */
+    private int writable(Token token, boolean initialize) {
+        String name = token.getText();
+        LocalSlot slot = slots.getSlot(name).orElse(null);
+        if (slot instanceof LocalSlot.Constant || (slot == null && !initialize && !assigned.contains(name))) {
+            throw new UnsupportedException();
+        }
+        return variables.get(name);
+    }
+
+    private void writeBack() {
+        int index = 0;
+        for (Map.Entry<String, Integer> entry : variables.entrySet()) {
+            if (written.contains(entry.getKey())) {
+                loadVariableObject(code, index);
+                code.op(DLOAD, entry.getValue(), 1, 2);
+                code.invoke(INVOKEVIRTUAL, writer.methodRef(VARIABLE, "setValue", "(D)V"), -3);
+            }
+            index++;
+        }
+    }
+
+    /**
+     * Return the nullable {@link Double} on top of the stack.
+     */
+    private void returnValue() {
+        writeBack();
+        code.op(ARETURN, -1);
+    }
+
+    /**
+     * Generate code that might not run. Variables assigned by it are not known to be assigned afterwards.
+     */
+    private void conditionally(Runnable generator) {
+        Set<String> saved = new HashSet<>(assigned);
+        generator.run();
+        assigned = saved;
+    }
+
+    // ---- statements ----
+
+    private static boolean isEmpty(ParseTree node) {
+        if (node instanceof ExpressionParser.EmptyStatementContext) {
+            return true;
+        }
+        if (node instanceof ExpressionParser.StatementContext ctx) {
+            return isEmpty(ctx.getChild(0));
+        }
+        if (node instanceof ExpressionParser.BlockContext ctx) {
+            return isEmpty(ctx.statements());
+        }
+        if (node instanceof ExpressionParser.StatementsContext ctx) {
+            return ctx.statement().stream().allMatch(BytecodeCompiler::isEmpty);
+        }
+        return false;
+    }
+
+    /**
+     * Generate a statement.
+     *
+     * @param node       the statement
+     * @param needResult if the result of the statement, a nullable {@link Double}, should be pushed
+     */
+    private void statement(ParseTree node, boolean needResult) {
+        if (code.getStack() != 0) {
+            throw new IllegalStateException("Statement with non-empty stack");
+        }
+        if (node instanceof ExpressionParser.StatementsContext ctx) {
+            statements(ctx.statement(), needResult);
+        } else if (node instanceof ExpressionParser.StatementContext ctx) {
+            statement(ctx.getChild(0), needResult);
+        } else if (node instanceof ExpressionParser.BlockContext ctx) {
+            statement(ctx.statements(), needResult);
+        } else if (node instanceof ExpressionParser.EmptyStatementContext) {
+            pushNull(needResult);
+        } else if (node instanceof ExpressionParser.ExpressionStatementContext ctx) {
+            expression(ctx.expression());
+            if (needResult) {
+                box();
+            } else {
+                code.op(POP2, -2);
+            }
+        } else if (node instanceof ExpressionParser.IfStatementContext ctx) {
+            ifStatement(ctx, needResult);
+        } else if (node instanceof ExpressionParser.ReturnStatementContext ctx) {
+            expression(ctx.value);
+            box();
+            returnValue();
+            pushNull(needResult);
+        } else if (node instanceof ExpressionParser.WhileStatementContext ctx) {
+            whileStatement(ctx, needResult);
+        } else if (node instanceof ExpressionParser.DoStatementContext ctx) {
+            doStatement(ctx, needResult);
+        } else if (node instanceof ExpressionParser.ForStatementContext ctx) {
+            forStatement(ctx, needResult);
+        } else if (node instanceof ExpressionParser.SimpleForStatementContext ctx) {
+            simpleForStatement(ctx, needResult);
+        } else if (node instanceof ExpressionParser.BreakStatementContext) {
+            code.jump(GOTO, currentLoop().breakLabel, 0);
+            pushNull(needResult);
+        } else if (node instanceof ExpressionParser.ContinueStatementContext) {
+            code.jump(GOTO, currentLoop().continueLabel, 0);
+            pushNull(needResult);
+        } else {
+            throw new UnsupportedException();
+        }
+    }
+
+    private void statements(List<? extends ParseTree> statements, boolean needResult) {
+        // like CompilingVisitor, the result is the one of the last non-empty statement
+        int last = -1;
+        for (int i = 0; i < statements.size(); i++) {
+            if (!isEmpty(statements.get(i))) {
+                last = i;
+            }
+        }
+        if (last < 0) {
+            pushNull(needResult);
+            return;
+        }
+        for (int i = 0; i < last; i++) {
+            statement(statements.get(i), false);
+        }
+        statement(statements.get(last), needResult);
+    }
+
+    private void pushNull(boolean needResult) {
+        if (needResult) {
+            code.op(ACONST_NULL, 1);
+        }
+    }
+
+    private void box() {
+        code.invoke(INVOKESTATIC, writer.methodRef("java/lang/Double", "valueOf", "(D)Ljava/lang/Double;"), -1);
+    }
+
+    private void ifStatement(ExpressionParser.IfStatementContext ctx, boolean needResult) {
+        Label otherwise = code.newLabel();
+        Label end = code.newLabel();
+        jumpIfFalse(ctx.condition, otherwise);
+        conditionally(() -> statement(ctx.trueBranch, needResult));
+        code.jump(GOTO, end, 0);
+        code.mark(otherwise);
+        code.setStack(0);
+        if (ctx.falseBranch != null) {
+            conditionally(() -> statement(ctx.falseBranch, needResult));
+        } else {
+            pushNull(needResult);
+        }
+        code.mark(end);
+    }
+
+    private Loop currentLoop() {
+        Loop loop = loops.peek();
+        if (loop == null) {
+            // the method handles throw the BreakException out of the expression
+            throw new UnsupportedException();
+        }
+        return loop;
+    }
+
+    private Loop startLoop(boolean needResult) {
+        Loop loop = new Loop(code.newLabel(), code.newLabel(), allocate(1), needResult ? allocate(1) : -1);
+        code.pushInt(0);
+        code.op(ISTORE, loop.iterations, 1, -1);
+        if (needResult) {
+            code.op(ACONST_NULL, 1);
+            code.op(ASTORE, loop.result, 1, -1);
+        }
+        return loop;
+    }
+
+    /**
+     * Count an iteration and check the limits, like {@link ExpressionHandles}' loops.
+     */
+    private void iteration(Loop loop, ParserRuleContext body) {
+        Label ok = code.newLabel();
+        code.op(ILOAD, loop.iterations, 1, 1);
+        code.pushInt(MAX_ITERATIONS);
+        code.jump(IF_ICMPLE, ok, -2);
+        code.pushInt(ExpressionHelper.getErrorPosition(body.start));
+        code.invoke(INVOKESTATIC, writer.methodRef(COMPILER, "iterationLimit", "(I)L" + EVALUATION_EXCEPTION + ";"), 0);
+        code.op(ATHROW, -1);
+        code.mark(ok);
+        code.op(ALOAD, 1, 1, 1);
+        code.invoke(INVOKEVIRTUAL, writer.methodRef(EXECUTION_DATA, "checkDeadline", "()V"), -1);
+        code.iinc(loop.iterations, 1);
+    }
+
+    private void body(Loop loop, ParserRuleContext body) {
+        loops.push(loop);
+        statement(body, loop.result >= 0);
+        loops.pop();
+        if (loop.result >= 0) {
+            code.op(ASTORE, loop.result, 1, -1);
+        }
+    }
+
+    private void endLoop(Loop loop, int locals) {
+        code.mark(loop.breakLabel);
+        if (loop.result >= 0) {
+            code.op(ALOAD, loop.result, 1, 1);
+        }
+        nextLocal = locals;
+    }
+
+    private void whileStatement(ExpressionParser.WhileStatementContext ctx, boolean needResult) {
+        int locals = nextLocal;
+        Loop loop = startLoop(needResult);
+        code.mark(loop.continueLabel);
+        jumpIfFalse(ctx.condition, loop.breakLabel);
+        conditionally(() -> {
+            iteration(loop, ctx.body);
+            body(loop, ctx.body);
+        });
+        code.jump(GOTO, loop.continueLabel, 0);
+        endLoop(loop, locals);
+    }
+
+    private void doStatement(ExpressionParser.DoStatementContext ctx, boolean needResult) {
+        int locals = nextLocal;
+        Loop loop = startLoop(needResult);
+        Label start = code.newLabel();
+        code.mark(start);
+        conditionally(() -> {
+            iteration(loop, ctx.body);
+            body(loop, ctx.body);
+            code.mark(loop.continueLabel);
+            jumpIfFalse(ctx.condition, loop.breakLabel);
+        });
+        code.jump(GOTO, start, 0);
+        endLoop(loop, locals);
+    }
+
+    private void forStatement(ExpressionParser.ForStatementContext ctx, boolean needResult) {
+        int locals = nextLocal;
+        expression(ctx.init);
+        code.op(POP2, -2);
+        Loop loop = startLoop(needResult);
+        Label condition = code.newLabel();
+        code.mark(condition);
+        jumpIfFalse(ctx.condition, loop.breakLabel);
+        conditionally(() -> {
+            iteration(loop, ctx.body);
+            body(loop, ctx.body);
+            code.mark(loop.continueLabel);
+            expression(ctx.update);
+            code.op(POP2, -2);
+        });
+        code.jump(GOTO, condition, 0);
+        endLoop(loop, locals);
+    }
+
+    private void simpleForStatement(ExpressionParser.SimpleForStatementContext ctx, boolean needResult) {
+        int locals = nextLocal;
+        expression(ctx.first);
+        int counter = allocate(2);
+        code.op(DSTORE, counter, 1, -2);
+        expression(ctx.last);
+        int last = allocate(2);
+        code.op(DSTORE, last, 1, -2);
+        int variable = writable(ctx.counter, true);
+        assigned.add(ctx.counter.getText());
+
+        Loop loop = startLoop(needResult);
+        Label condition = code.newLabel();
+        code.mark(condition);
+        code.op(DLOAD, counter, 1, 2);
+        code.op(DLOAD, last, 1, 2);
+        code.op(DCMPG, -3);
+        code.jump(IFGT, loop.breakLabel, -1);
+        conditionally(() -> {
+            iteration(loop, ctx.body);
+            code.op(DLOAD, counter, 1, 2);
+            code.op(DSTORE, variable, 1, -2);
+            body(loop, ctx.body);
+        });
+        code.mark(loop.continueLabel);
+        code.op(DLOAD, counter, 1, 2);
+        code.op(DCONST_1, 2);
+        code.op(DADD, -2);
+        code.op(DSTORE, counter, 1, -2);
+        code.jump(GOTO, condition, 0);
+        endLoop(loop, locals);
+    }
+
+    // ---- expressions ----
+
+    /**
+     * Generate an expression, pushing its {@code double} value.
+     */
+    private void expression(ParserRuleContext node) {
+        Double constant = folder.fold(node);
+        if (constant != null) {
+            pushDouble(constant);
+        } else if (node instanceof ExpressionParser.IdExprContext ctx) {
+            code.op(DLOAD, readable(ctx.source), 1, 2);
+        } else if (node instanceof ExpressionParser.AssignmentContext ctx) {
+            assignment(ctx);
+        } else if (node instanceof ExpressionParser.PreCrementExprContext ctx) {
+            int local = writable(ctx.target, false);
+            code.op(DLOAD, local, 1, 2);
+            code.op(DCONST_1, 2);
+            code.op(ctx.op.getType() == INCREMENT ? DADD : DSUB, -2);
+            code.op(DUP2, 2);
+            code.op(DSTORE, local, 1, -2);
+        } else if (node instanceof ExpressionParser.PostCrementExprContext ctx) {
+            int local = writable(ctx.target, false);
+            code.op(DLOAD, local, 1, 2);
+            code.op(DUP2, 2);
+            code.op(DCONST_1, 2);
+            code.op(ctx.op.getType() == INCREMENT ? DADD : DSUB, -2);
+            code.op(DSTORE, local, 1, -2);
+        } else if (node instanceof ExpressionParser.PlusMinusExprContext ctx) {
+            expression(ctx.expr);
+            if (ctx.op.getType() == MINUS) {
+                code.op(DNEG, 0);
+            }
+        } else if (node instanceof ExpressionParser.NotExprContext ctx) {
+            expression(ctx.expr);
+            code.op(DCONST_0, 2);
+            code.op(DCMPL, -3);
+            booleanResult(IFEQ);
+        } else if (node instanceof ExpressionParser.ComplementExprContext ctx) {
+            expression(ctx.expr);
+            code.op(D2L, 0);
+            code.op(LDC2_W, writer.longConstant(-1L), 2, 2);
+            code.op(LXOR, -2);
+            code.op(L2D, 0);
+        } else if (node instanceof ExpressionParser.PostfixExprContext ctx) {
+            expression(ctx.expr);
+            code.invoke(INVOKESTATIC, writer.methodRef(VISITOR, "factorial", "(D)D"), 0);
+        } else if (node instanceof ExpressionParser.TernaryExprContext ctx) {
+            Label otherwise = code.newLabel();
+            Label end = code.newLabel();
+            int stack = code.getStack();
+            jumpIfFalse(ctx.condition, otherwise);
+            conditionally(() -> expression(ctx.trueBranch));
+            code.jump(GOTO, end, 0);
+            code.mark(otherwise);
+            code.setStack(stack);
+            conditionally(() -> expression(ctx.falseBranch));
+            code.mark(end);
+        } else if (node instanceof ExpressionParser.ConditionalAndExprContext ctx) {
+            Label otherwise = code.newLabel();
+            Label end = code.newLabel();
+            int stack = code.getStack();
+            jumpIfFalse(ctx.left, otherwise);
+            conditionally(() -> expression(ctx.right));
+            code.jump(GOTO, end, 0);
+            code.mark(otherwise);
+            code.setStack(stack);
+            code.op(DCONST_0, 2);
+            code.mark(end);
+        } else if (node instanceof ExpressionParser.ConditionalOrExprContext ctx) {
+            Label end = code.newLabel();
+            expression(ctx.left);
+            code.op(DUP2, 2);
+            code.op(DCONST_0, 2);
+            code.op(DCMPL, -3);
+            code.jump(IFNE, end, -1);
+            code.op(POP2, -2);
+            conditionally(() -> expression(ctx.right));
+            code.mark(end);
+        } else if (node instanceof ExpressionParser.PowerExprContext ctx) {
+            expression(ctx.left);
+            expression(ctx.right);
+            code.invoke(INVOKESTATIC, writer.methodRef("java/lang/Math", "pow", "(DD)D"), -2);
+        } else if (node instanceof ExpressionParser.MultiplicativeExprContext ctx) {
+            binary(ctx.left, ctx.right, switch (ctx.op.getType()) {
+                case TIMES -> DMUL;
+                case DIVIDE -> DDIV;
+                case MODULO -> DREM;
+                default -> throw new UnsupportedException();
+            });
+        } else if (node instanceof ExpressionParser.AddExprContext ctx) {
+            binary(ctx.left, ctx.right, switch (ctx.op.getType()) {
+                case PLUS -> DADD;
+                case MINUS -> DSUB;
+                default -> throw new UnsupportedException();
+            });
+        } else if (node instanceof ExpressionParser.ShiftExprContext ctx) {
+            expression(ctx.left);
+            code.op(D2L, 0);
+            expression(ctx.right);
+            code.op(D2L, 0);
+            code.op(L2I, -1);
+            code.op(switch (ctx.op.getType()) {
+                case LEFT_SHIFT -> LSHL;
+                case RIGHT_SHIFT -> LSHR;
+                default -> throw new UnsupportedException();
+            }, -1);
+            code.op(L2D, 0);
+        } else if (node instanceof ExpressionParser.RelationalExprContext ctx) {
+            expression(ctx.left);
+            expression(ctx.right);
+            // dcmpg/dcmpl push the value that makes the comparison false for NaN, as javac does
+            switch (ctx.op.getType()) {
+                case LESS_THAN -> compare(DCMPG, IFLT);
+                case LESS_THAN_OR_EQUAL -> compare(DCMPG, IFLE);
+                case GREATER_THAN -> compare(DCMPL, IFGT);
+                case GREATER_THAN_OR_EQUAL -> compare(DCMPL, IFGE);
+                default -> throw new UnsupportedException();
+            }
+        } else if (node instanceof ExpressionParser.EqualityExprContext ctx) {
+            expression(ctx.left);
+            expression(ctx.right);
+            switch (ctx.op.getType()) {
+                case EQUAL -> compare(DCMPL, IFEQ);
+                case NOT_EQUAL -> compare(DCMPL, IFNE);
+                case NEAR -> {
+                    code.invoke(INVOKESTATIC, writer.methodRef(VISITOR, "almostEqual2sComplement", "(DD)Z"), -3);
+                    booleanResult(IFNE);
+                }
+                default -> throw new UnsupportedException();
+            }
+        } else if (node instanceof ExpressionParser.FunctionCallContext ctx) {
+            functionCall(ctx);
+        } else if (node instanceof ExpressionParser.ConstantExpressionContext ctx) {
+            pushDouble(Double.parseDouble(ctx.getText()));
+        } else {
+            // one of the fall-through rules, e.g. a wrapped expression
+            ParserRuleContext child = onlyChild(node);
+            if (child == null) {
+                throw new UnsupportedException();
+            }
+            expression(child);
+        }
+    }
+
+    @Nullable
+    private static ParserRuleContext onlyChild(ParserRuleContext ctx) {
+        ParserRuleContext only = null;
+        for (int i = 0; i < ctx.getChildCount(); i++) {
+            if (ctx.getChild(i) instanceof ParserRuleContext child) {
+                if (only != null) {
+                    return null;
+                }
+                only = child;
+            }
+        }
+        return only;
+    }
+
+    private void pushDouble(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        if (bits == 0L) {
+            code.op(DCONST_0, 2);
+        } else if (bits == Double.doubleToRawLongBits(1)) {
+            code.op(DCONST_1, 2);
+        } else {
+            code.op(LDC2_W, writer.doubleConstant(value), 2, 2);
+        }
+    }
+
+    private void binary(ParserRuleContext left, ParserRuleContext right, int opcode) {
+        expression(left);
+        expression(right);
+        code.op(opcode, -2);
+    }
+
+    private void compare(int compare, int jumpIfTrue) {
+        code.op(compare, -3);
+        booleanResult(jumpIfTrue);
+    }
+
+    /**
+     * Turn the int on top of the stack into 1 or 0.
+     */
+    private void booleanResult(int jumpIfTrue) {
+        Label isTrue = code.newLabel();
+        Label end = code.newLabel();
+        code.jump(jumpIfTrue, isTrue, -1);
+        int stack = code.getStack();
+        code.op(DCONST_0, 2);
+        code.jump(GOTO, end, 0);
+        code.mark(isTrue);
+        code.setStack(stack);
+        code.op(DCONST_1, 2);
+        code.mark(end);
+    }
+
+    /**
+     * Jump if the value of the expression is false, i.e. zero.
+     */
+    private void jumpIfFalse(ParserRuleContext condition, Label target) {
+        expression(condition);
+        code.op(DCONST_0, 2);
+        code.op(DCMPL, -3);
+        code.jump(IFEQ, target, -1);
+    }
+
+    private void assignment(ExpressionParser.AssignmentContext ctx) {
+        int type = ctx.assignmentOperator().getStart().getType();
+        if (type == ASSIGN) {
+            expression(ctx.expression());
+            int local = writable(ctx.target, true);
+            code.op(DUP2, 2);
+            code.op(DSTORE, local, 1, -2);
+            assigned.add(ctx.target.getText());
+            return;
+        }
+        int local = writable(ctx.target, false);
+        int opcode = switch (type) {
+            case POWER_ASSIGN -> INVOKESTATIC;
+            case TIMES_ASSIGN -> DMUL;
+            case DIVIDE_ASSIGN -> DDIV;
+            case MODULO_ASSIGN -> DREM;
+            case PLUS_ASSIGN -> DADD;
+            case MINUS_ASSIGN -> DSUB;
+            default -> throw new UnsupportedException();
+        };
+        // the argument is evaluated before the variable is read
+        int locals = nextLocal;
+        expression(ctx.expression());
+        int argument = allocate(2);
+        code.op(DSTORE, argument, 1, -2);
+        code.op(DLOAD, local, 1, 2);
+        code.op(DLOAD, argument, 1, 2);
+        if (opcode == INVOKESTATIC) {
+            code.invoke(INVOKESTATIC, writer.methodRef("java/lang/Math", "pow", "(DD)D"), -2);
+        } else {
+            code.op(opcode, -2);
+        }
+        code.op(DUP2, 2);
+        code.op(DSTORE, local, 1, -2);
+        nextLocal = locals;
+    }
+
+    private void functionCall(ExpressionParser.FunctionCallContext ctx) {
+        MethodHandle handle = ExpressionHelper.resolveFunction(functions, ctx);
+        String fnName = ctx.name.getText();
+        MethodType type = handle.type();
+        int count = ctx.args.size();
+        for (int i = 0; i < count; i++) {
+            if (type.parameterType(i) != Double.class
+                    || ExpressionHelper.getArgumentHandleName(fnName, type, i, ctx.args.get(i)) != null) {
+                // functions working on variables need the slot table
+                throw new UnsupportedException();
+            }
+        }
+        int index = calls.size();
+        calls.add(ctx);
+
+        code.op(ALOAD, 0, 1, 1);
+        code.op(GETFIELD, writer.fieldRef(CLASS_NAME, "functions", HANDLES_DESCRIPTOR), 2, 0);
+        code.pushInt(index);
+        code.op(AALOAD, -1);
+        if (count > MAX_DIRECT_ARGUMENTS) {
+            code.pushInt(count);
+            code.op(NEWARRAY, T_DOUBLE, 1, 0);
+            for (int i = 0; i < count; i++) {
+                code.op(DUP, 1);
+                code.pushInt(i);
+                expression(ctx.args.get(i));
+                code.op(DASTORE, -4);
+            }
+            code.invoke(INVOKESTATIC, writer.methodRef(COMPILER, "callArray", "(" + HANDLE_DESCRIPTOR + "[D)D"), 0);
+        } else {
+            for (ExpressionParser.ExpressionContext arg : ctx.args) {
+                expression(arg);
+            }
+            String descriptor = "(" + HANDLE_DESCRIPTOR + "D".repeat(count) + ")D";
+            code.invoke(INVOKESTATIC, writer.methodRef(COMPILER, "call" + count, descriptor), 1 - 2 * count);
+        }
+    }
+
+    private static MethodHandle adapt(MethodHandle handle, int count) {
+        handle = handle.asType(methodType(double.class, Collections.nCopies(count, double.class)));
+        if (count > MAX_DIRECT_ARGUMENTS) {
+            handle = handle.asSpreader(double[].class, count);
+        }
+        return handle;
+    }
+
+    // ---- runtime support, called by the generated classes ----
+
+    static EvaluationException iterationLimit(int position) {
+        return new EvaluationException(position, "Loop exceeded " + MAX_ITERATIONS + " iterations");
+    }
+
+    static double call0(MethodHandle handle) {
+        try {
+            return (double) handle.invokeExact();
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static double call1(MethodHandle handle, double a) {
+        try {
+            return (double) handle.invokeExact(a);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static double call2(MethodHandle handle, double a, double b) {
+        try {
+            return (double) handle.invokeExact(a, b);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static double call3(MethodHandle handle, double a, double b, double c) {
+        try {
+            return (double) handle.invokeExact(a, b, c);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static double callArray(MethodHandle handle, double[] args) {
+        try {
+            return (double) handle.invokeExact(args);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        Throwables.throwIfUnchecked(t);
+        return new RuntimeException(t);
+    }
+
+    private static final class Loop {
+
+        final Label breakLabel;
+        final Label continueLabel;
+        final int iterations;
+        final int result;
+
+        Loop(Label breakLabel, Label continueLabel, int iterations, int result) {
+            this.breakLabel = breakLabel;
+            this.continueLabel = continueLabel;
+            this.iterations = iterations;
+            this.result = result;
+        }
+
+    }
+
+    /**
+     * Thrown when the expression uses something this compiler does not support.
+     */
+    private static final class UnsupportedException extends RuntimeException {
+
+        UnsupportedException() {
+            super(null, null, false, false);
+        }
+
+    }
+
+}
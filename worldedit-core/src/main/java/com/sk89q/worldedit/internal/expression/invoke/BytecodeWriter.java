@@ -0,0 +1,411 @@
+package com.sk89q.worldedit.internal.expression.invoke;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal class file writer for the bytecode expression backend. Only supports what {@link BytecodeCompiler} needs: a
+ * single class with fields and methods, a constant pool and forward/backward jumps.
+ * <p>
+ * Classes are written as version 50 (Java 6) class files so that no stack map frames have to be computed, the JVM
+ * verifies them by type inference instead.
+ */
+class BytecodeWriter {
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    static final int ACONST_NULL = 0x01;
+    static final int ICONST_0 = 0x03;
+    static final int DCONST_0 = 0x0e;
+    static final int DCONST_1 = 0x0f;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC2_W = 0x14;
+    static final int ILOAD = 0x15;
+    static final int DLOAD = 0x18;
+    static final int ALOAD = 0x19;
+    static final int AALOAD = 0x32;
+    static final int ISTORE = 0x36;
+    static final int DSTORE = 0x39;
+    static final int ASTORE = 0x3a;
+    static final int DASTORE = 0x52;
+    static final int POP2 = 0x58;
+    static final int DUP = 0x59;
+    static final int DUP2 = 0x5c;
+    static final int DADD = 0x63;
+    static final int DSUB = 0x67;
+    static final int DMUL = 0x6b;
+    static final int DDIV = 0x6f;
+    static final int DREM = 0x73;
+    static final int DNEG = 0x77;
+    static final int LSHL = 0x79;
+    static final int LSHR = 0x7b;
+    static final int LXOR = 0x83;
+    static final int IINC = 0x84;
+    static final int L2I = 0x88;
+    static final int L2D = 0x8a;
+    static final int D2L = 0x8f;
+    static final int DCMPL = 0x97;
+    static final int DCMPG = 0x98;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IFLT = 0x9b;
+    static final int IFGE = 0x9c;
+    static final int IFGT = 0x9d;
+    static final int IFLE = 0x9e;
+    static final int IF_ICMPLE = 0xa4;
+    static final int GOTO = 0xa7;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETFIELD = 0xb4;
+    static final int PUTFIELD = 0xb5;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int NEWARRAY = 0xbc;
+    static final int ATHROW = 0xbf;
+    static final int T_DOUBLE = 7;
+
+    private static final int CLASS_VERSION = 50;
+
+    private final ByteArrayOutputStream constantPool = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(constantPool);
+    private final Map<Object, Integer> constants = new HashMap<>();
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<byte[]> methods = new ArrayList<>();
+    private int poolSize = 1;
+
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+
+    /**
+     * Create a new class.
+     *
+     * @param name       the internal name of the class
+     * @param superName  the internal name of the super class
+     * @param interfaces the internal names of the implemented interfaces
+     */
+    BytecodeWriter(String name, String superName, String... interfaces) {
+        this.thisClass = classRef(name);
+        this.superClass = classRef(superName);
+        this.interfaces = new int[interfaces.length];
+        for (int i = 0; i < interfaces.length; i++) {
+            this.interfaces[i] = classRef(interfaces[i]);
+        }
+    }
+
+    private int constant(Object key, int size, IOWriter writer) {
+        Integer index = constants.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            writer.write(pool);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        int result = poolSize;
+        poolSize += size;
+        constants.put(key, result);
+        return result;
+    }
+
+    int utf8(String value) {
+        return constant(List.of("utf8", value), 1, out -> {
+            out.writeByte(1);
+            out.writeUTF(value);
+        });
+    }
+
+    int classRef(String internalName) {
+        int name = utf8(internalName);
+        return constant(List.of("class", internalName), 1, out -> {
+            out.writeByte(7);
+            out.writeShort(name);
+        });
+    }
+
+    int doubleConstant(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        return constant(List.of("double", bits), 2, out -> {
+            out.writeByte(6);
+            out.writeLong(bits);
+        });
+    }
+
+    int longConstant(long value) {
+        return constant(List.of("long", value), 2, out -> {
+            out.writeByte(5);
+            out.writeLong(value);
+        });
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        return constant(List.of("nat", name, descriptor), 1, out -> {
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(9, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(10, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nat = nameAndType(name, descriptor);
+        return constant(List.of(tag, owner, name, descriptor), 1, out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(nat);
+        });
+    }
+
+    int thisClass() {
+        return thisClass;
+    }
+
+    void addField(int access, String name, String descriptor) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        fields.add(bytes.toByteArray());
+    }
+
+    void addMethod(int access, String name, String descriptor, Code code) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        byte[] instructions = code.toByteArray();
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1);
+            out.writeShort(utf8("Code"));
+            out.writeInt(12 + instructions.length);
+            out.writeShort(code.maxStack);
+            out.writeShort(code.maxLocals);
+            out.writeInt(instructions.length);
+            out.write(instructions);
+            // no exception table, no attributes
+            out.writeShort(0);
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        methods.add(bytes.toByteArray());
+    }
+
+    byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_VERSION);
+            out.writeShort(poolSize);
+            pool.flush();
+            constantPool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for (int index : interfaces) {
+                out.writeShort(index);
+            }
+            out.writeShort(fields.size());
+            for (byte[] field : fields) {
+                out.write(field);
+            }
+            out.writeShort(methods.size());
+            for (byte[] method : methods) {
+                out.write(method);
+            }
+            // no class attributes
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @FunctionalInterface
+    private interface IOWriter {
+
+        void write(DataOutputStream out) throws IOException;
+
+    }
+
+    /**
+     * A jump target within a {@link Code} block.
+     */
+    static final class Label {
+
+        private int position = -1;
+        private final IntArrayList jumps = new IntArrayList();
+
+    }
+
+    /**
+     * The instructions of a method. Tracks the operand stack depth of straight line code; code following an
+     * unconditional jump must reset the depth with {@link #setStack(int)}.
+     */
+    static final class Code {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final List<Label> labels = new ArrayList<>();
+        private int stack;
+        private int maxStack;
+        private int maxLocals;
+
+        Code(int maxLocals) {
+            this.maxLocals = maxLocals;
+        }
+
+        int getStack() {
+            return stack;
+        }
+
+        void setStack(int stack) {
+            this.stack = stack;
+        }
+
+        void useLocals(int maxLocals) {
+            this.maxLocals = Math.max(this.maxLocals, maxLocals);
+        }
+
+        int size() {
+            return bytes.size();
+        }
+
+        private void stack(int delta) {
+            stack += delta;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        /**
+         * Emit an instruction without operands.
+         *
+         * @param opcode     the opcode
+         * @param stackDelta the change in operand stack size, in words
+         */
+        void op(int opcode, int stackDelta) {
+            bytes.write(opcode);
+            stack(stackDelta);
+        }
+
+        void op(int opcode, int operand, int operandSize, int stackDelta) {
+            bytes.write(opcode);
+            if (operandSize == 2) {
+                bytes.write(operand >> 8);
+            }
+            bytes.write(operand);
+            stack(stackDelta);
+        }
+
+        void iinc(int local, int increment) {
+            bytes.write(IINC);
+            bytes.write(local);
+            bytes.write(increment);
+        }
+
+        void pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                op(ICONST_0 + value, 1);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                op(BIPUSH, value, 1, 1);
+            } else {
+                op(SIPUSH, value, 2, 1);
+            }
+        }
+
+        void invoke(int opcode, int methodRef, int stackDelta) {
+            op(opcode, methodRef, 2, stackDelta);
+        }
+
+        Label newLabel() {
+            Label label = new Label();
+            labels.add(label);
+            return label;
+        }
+
+        void mark(Label label) {
+            label.position = bytes.size();
+        }
+
+        /**
+         * Emit a jump instruction to the given label.
+         *
+         * @param opcode     the jump opcode
+         * @param label      the target
+         * @param stackDelta the change in operand stack size, in words
+         */
+        void jump(int opcode, Label label, int stackDelta) {
+            label.jumps.add(bytes.size());
+            bytes.write(opcode);
+            bytes.write(0);
+            bytes.write(0);
+            stack(stackDelta);
+        }
+
+        /**
+         * Append the instructions of another code block. Jumps are relative, so they stay valid when moved.
+         */
+        void append(Code other) {
+            byte[] code = other.toByteArray();
+            bytes.write(code, 0, code.length);
+            maxStack = Math.max(maxStack, stack + other.maxStack);
+            stack += other.stack;
+            maxLocals = Math.max(maxLocals, other.maxLocals);
+        }
+
+        byte[] toByteArray() {
+            byte[] code = bytes.toByteArray();
+            for (Label label : labels) {
+                if (label.jumps.isEmpty()) {
+                    continue;
+                }
+                if (label.position < 0) {
+                    throw new IllegalStateException("Jump to unmarked label");
+                }
+                for (int i = 0; i < label.jumps.size(); i++) {
+                    int at = label.jumps.getInt(i);
+                    int offset = label.position - at;
+                    if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                        throw new IllegalStateException("Jump offset out of range");
+                    }
+                    code[at + 1] = (byte) (offset >> 8);
+                    code[at + 2] = (byte) offset;
+                }
+            }
+            return code;
+        }
+
+    }
+
+}
@@ -87,9 +87,21 @@ class CompilingVisitor extends ExpressionBaseVisitor<MethodHandle> {
      * value passed in. EVERY handle returned from an overridden method must be of the first type.
      */
     private final Functions functions;
+    //FAWE start - constant folding
+    private final ConstantFolder folder;
+    //FAWE end
 
     CompilingVisitor(Functions functions) {
+        //FAWE start
+        this(functions, null);
+    }
+
+    CompilingVisitor(Functions functions, ConstantFolder folder) {
+        //FAWE end
         this.functions = functions;
+        //FAWE start
+        this.folder = folder;
+        //FAWE end
     }
 
     private Token extractToken(ParserRuleContext ctx) {
@@ -102,6 +114,14 @@ private Token extractToken(ParserRuleContext ctx) {
     }
 
     private ExecNode evaluate(ParserRuleContext ctx) {
+        //FAWE start - replace constant sub-expressions by their value
+        if (folder != null) {
+            Double value = folder.fold(ctx);
+            if (value != null) {
+                return new ExecNode(ctx, ExpressionHandles.dropData(MethodHandles.constant(Double.class, value)));
+            }
+        }
+        //FAWE end
         MethodHandle mh = ctx.accept(this);
         if (ctx.parent instanceof ParserRuleContext) {
             checkHandle(mh, (ParserRuleContext) ctx.parent);
@@ -475,7 +495,8 @@ public MethodHandle visitEqualityExpr(ExpressionParser.EqualityExprContext ctx)
     }
 
     // Usable AlmostEqual function, based on http://www.cygnus-software.com/papers/comparingfloats/comparingfloats.htm
-    private static boolean almostEqual2sComplement(double a, double b) {
+    //FAWE start - package-private, used by constant folding and compiled bytecode
+    static boolean almostEqual2sComplement(double a, double b) {
         // Make sure maxUlps is non-negative and small enough that the
         // default NAN won't compare as equal to anything.
         //assert(maxUlps > 0 && maxUlps < 4 * 1024 * 1024); // this is for floats, not doubles
@@ -495,6 +516,7 @@ private static boolean almostEqual2sComplement(double a, double b) {
         final long longDiff = Math.abs(aLong - bLong);
         return longDiff <= 450359963L;
     }
+    //FAWE end
 
     @Override
     public MethodHandle visitPostfixExpr(ExpressionParser.PostfixExprContext ctx) {
@@ -519,7 +541,8 @@ public MethodHandle visitPostfixExpr(ExpressionParser.PostfixExprContext ctx) {
         }
     }
 
-    private static double factorial(double x) throws EvaluationException {
+    //FAWE start - package-private, used by constant folding and compiled bytecode
+    static double factorial(double x) throws EvaluationException {
         final int n = (int) x;
 
         if (n < 0) {
@@ -532,6 +555,7 @@ private static double factorial(double x) throws EvaluationException {
 
         return factorials[n];
     }
+    //FAWE end
 
     @Override
     public MethodHandle visitAssignment(ExpressionParser.AssignmentContext ctx) {
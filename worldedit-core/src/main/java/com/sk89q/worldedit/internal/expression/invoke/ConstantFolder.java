@@ -0,0 +1,293 @@
+package com.sk89q.worldedit.internal.expression.invoke;
+
+import com.google.common.collect.ImmutableSet;
+import com.sk89q.worldedit.antlr.ExpressionBaseVisitor;
+import com.sk89q.worldedit.antlr.ExpressionParser;
+import com.sk89q.worldedit.internal.expression.ExpressionHelper;
+import com.sk89q.worldedit.internal.expression.Functions;
+import com.sk89q.worldedit.internal.expression.LocalSlot;
+import com.sk89q.worldedit.internal.expression.SlotTable;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.RuleNode;
+
+import java.lang.invoke.MethodHandle;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static com.sk89q.worldedit.antlr.ExpressionLexer.DIVIDE;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.EQUAL;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.GREATER_THAN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.GREATER_THAN_OR_EQUAL;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.LEFT_SHIFT;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.LESS_THAN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.LESS_THAN_OR_EQUAL;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.MINUS;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.MODULO;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.NEAR;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.NOT_EQUAL;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.PLUS;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.RIGHT_SHIFT;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.TIMES;
+import static com.sk89q.worldedit.internal.expression.invoke.ExpressionHandles.boolToDouble;
+
+/**
+ * Computes the values of expressions that do not depend on variables, side effects or the environment. A sub-tree
+ * folds if it only consists of literals, constants such as {@code pi}, operators and calls to pure math functions.
+ * <p>
+ * Results are cached per node, so asking for the value of every node of a tree is linear in its size.
+ */
+class ConstantFolder extends ExpressionBaseVisitor<Double> {
+
+    /**
+     * Functions without side effects whose result only depends on their arguments.
+     */
+    private static final Set<String> PURE_FUNCTIONS = ImmutableSet.of(
+            "sin", "cos", "tan", "asin", "acos", "atan",
+            "sinh", "cosh", "tanh", "sqrt", "cbrt", "abs",
+            "ceil", "floor", "rint", "exp", "log", "log10",
+            "ln", "round", "atan2", "min", "max"
+    );
+
+    /**
+     * Nodes that have the value of their only child.
+     */
+    private static final Set<Class<?>> FALLTHROUGH = ImmutableSet.of(
+            ExpressionParser.ExpressionContext.class,
+            ExpressionParser.AssignmentExpressionContext.class,
+            ExpressionParser.CEFallthroughContext.class,
+            ExpressionParser.COFallthroughContext.class,
+            ExpressionParser.CAFallthroughContext.class,
+            ExpressionParser.EqFallthroughContext.class,
+            ExpressionParser.ReFallthroughContext.class,
+            ExpressionParser.ShFallthroughContext.class,
+            ExpressionParser.AdFallthroughContext.class,
+            ExpressionParser.MuFallthroughContext.class,
+            ExpressionParser.PwFallthroughContext.class,
+            ExpressionParser.UaFallthroughContext.class,
+            ExpressionParser.PoFallthroughContext.class,
+            ExpressionParser.FunctionCallExprContext.class,
+            ExpressionParser.ConstantExprContext.class,
+            ExpressionParser.WrappedExprContext.class
+    );
+
+    private final Functions functions;
+    private final SlotTable slots;
+    private final Map<ParseTree, Double> cache = new HashMap<>();
+
+    ConstantFolder(Functions functions, SlotTable slots) {
+        this.functions = functions;
+        this.slots = slots;
+    }
+
+    /**
+     * Get the constant value of a node.
+     *
+     * @param node the node
+     * @return the value, or {@code null} if the node is not constant
+     */
+    Double fold(ParseTree node) {
+        if (cache.containsKey(node)) {
+            return cache.get(node);
+        }
+        Double value = node.accept(this);
+        cache.put(node, value);
+        return value;
+    }
+
+    @Override
+    protected Double defaultResult() {
+        return null;
+    }
+
+    @Override
+    public Double visitChildren(RuleNode node) {
+        if (!FALLTHROUGH.contains(node.getClass())) {
+            return null;
+        }
+        ParseTree only = null;
+        for (int i = 0; i < node.getChildCount(); i++) {
+            ParseTree child = node.getChild(i);
+            if (child instanceof ParserRuleContext) {
+                if (only != null) {
+                    return null;
+                }
+                only = child;
+            }
+        }
+        return only == null ? null : fold(only);
+    }
+
+    @Override
+    public Double visitConstantExpression(ExpressionParser.ConstantExpressionContext ctx) {
+        return Double.parseDouble(ctx.getText());
+    }
+
+    @Override
+    public Double visitIdExpr(ExpressionParser.IdExprContext ctx) {
+        return slots.getSlot(ctx.source.getText())
+                .filter(LocalSlot.Constant.class::isInstance)
+                .map(LocalSlot::getValue)
+                .orElse(null);
+    }
+
+    @Override
+    public Double visitPlusMinusExpr(ExpressionParser.PlusMinusExprContext ctx) {
+        Double value = fold(ctx.expr);
+        if (value == null) {
+            return null;
+        }
+        return ctx.op.getType() == MINUS ? -value : value;
+    }
+
+    @Override
+    public Double visitNotExpr(ExpressionParser.NotExprContext ctx) {
+        Double value = fold(ctx.expr);
+        return value == null ? null : boolToDouble(value == 0);
+    }
+
+    @Override
+    public Double visitComplementExpr(ExpressionParser.ComplementExprContext ctx) {
+        Double value = fold(ctx.expr);
+        return value == null ? null : (double) ~(long) (double) value;
+    }
+
+    @Override
+    public Double visitPostfixExpr(ExpressionParser.PostfixExprContext ctx) {
+        Double value = fold(ctx.expr);
+        return value == null ? null : CompilingVisitor.factorial(value);
+    }
+
+    @Override
+    public Double visitTernaryExpr(ExpressionParser.TernaryExprContext ctx) {
+        Double condition = fold(ctx.condition);
+        if (condition == null) {
+            return null;
+        }
+        return fold(condition != 0 ? ctx.trueBranch : ctx.falseBranch);
+    }
+
+    @Override
+    public Double visitConditionalAndExpr(ExpressionParser.ConditionalAndExprContext ctx) {
+        Double left = fold(ctx.left);
+        if (left == null) {
+            return null;
+        }
+        return left != 0 ? fold(ctx.right) : boolToDouble(false);
+    }
+
+    @Override
+    public Double visitConditionalOrExpr(ExpressionParser.ConditionalOrExprContext ctx) {
+        Double left = fold(ctx.left);
+        if (left == null) {
+            return null;
+        }
+        return left != 0 ? left : fold(ctx.right);
+    }
+
+    @Override
+    public Double visitPowerExpr(ExpressionParser.PowerExprContext ctx) {
+        Double left = fold(ctx.left);
+        Double right = fold(ctx.right);
+        return left == null || right == null ? null : Math.pow(left, right);
+    }
+
+    @Override
+    public Double visitMultiplicativeExpr(ExpressionParser.MultiplicativeExprContext ctx) {
+        Double left = fold(ctx.left);
+        Double right = fold(ctx.right);
+        if (left == null || right == null) {
+            return null;
+        }
+        return switch (ctx.op.getType()) {
+            case TIMES -> left * right;
+            case DIVIDE -> left / right;
+            case MODULO -> left % right;
+            default -> null;
+        };
+    }
+
+    @Override
+    public Double visitAddExpr(ExpressionParser.AddExprContext ctx) {
+        Double left = fold(ctx.left);
+        Double right = fold(ctx.right);
+        if (left == null || right == null) {
+            return null;
+        }
+        return switch (ctx.op.getType()) {
+            case PLUS -> left + right;
+            case MINUS -> left - right;
+            default -> null;
+        };
+    }
+
+    @Override
+    public Double visitShiftExpr(ExpressionParser.ShiftExprContext ctx) {
+        Double left = fold(ctx.left);
+        Double right = fold(ctx.right);
+        if (left == null || right == null) {
+            return null;
+        }
+        long l = (long) (double) left;
+        long r = (long) (double) right;
+        return switch (ctx.op.getType()) {
+            case LEFT_SHIFT -> (double) (l << r);
+            case RIGHT_SHIFT -> (double) (l >> r);
+            default -> null;
+        };
+    }
+
+    @Override
+    public Double visitRelationalExpr(ExpressionParser.RelationalExprContext ctx) {
+        Double left = fold(ctx.left);
+        Double right = fold(ctx.right);
+        if (left == null || right == null) {
+            return null;
+        }
+        double l = left;
+        double r = right;
+        return switch (ctx.op.getType()) {
+            case LESS_THAN -> boolToDouble(l < r);
+            case LESS_THAN_OR_EQUAL -> boolToDouble(l <= r);
+            case GREATER_THAN -> boolToDouble(l > r);
+            case GREATER_THAN_OR_EQUAL -> boolToDouble(l >= r);
+            default -> null;
+        };
+    }
+
+    @Override
+    public Double visitEqualityExpr(ExpressionParser.EqualityExprContext ctx) {
+        Double left = fold(ctx.left);
+        Double right = fold(ctx.right);
+        if (left == null || right == null) {
+            return null;
+        }
+        double l = left;
+        double r = right;
+        return switch (ctx.op.getType()) {
+            case EQUAL -> boolToDouble(l == r);
+            case NOT_EQUAL -> boolToDouble(l != r);
+            case NEAR -> boolToDouble(CompilingVisitor.almostEqual2sComplement(l, r));
+            default -> null;
+        };
+    }
+
+    @Override
+    public Double visitFunctionCall(ExpressionParser.FunctionCallContext ctx) {
+        if (!PURE_FUNCTIONS.contains(ctx.name.getText())) {
+            return null;
+        }
+        Object[] args = new Object[ctx.args.size()];
+        for (int i = 0; i < args.length; i++) {
+            Double arg = fold(ctx.args.get(i));
+            if (arg == null) {
+                return null;
+            }
+            args[i] = arg;
+        }
+        MethodHandle handle = ExpressionHelper.resolveFunction(functions, ctx);
+        return (Double) ExpressionHandles.safeInvoke(handle, h -> h.invokeWithArguments(args));
+    }
+
+}
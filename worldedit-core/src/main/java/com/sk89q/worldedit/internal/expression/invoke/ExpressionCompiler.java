@@ -22,7 +22,9 @@
 import com.sk89q.worldedit.antlr.ExpressionParser;
 import com.sk89q.worldedit.internal.expression.CompiledExpression;
 import com.sk89q.worldedit.internal.expression.Functions;
+import com.sk89q.worldedit.internal.expression.SlotTable;
 
+import javax.annotation.Nullable;
 import java.lang.invoke.LambdaConversionException;
 import java.lang.invoke.LambdaMetafactory;
 import java.lang.invoke.MethodHandle;
@@ -67,7 +69,87 @@ public CompiledExpression compileExpression(
             ExpressionParser.AllStatementsContext root,
             Functions functions
     ) {
-        MethodHandle invokable = root.accept(new CompilingVisitor(functions));
+        //FAWE start
+        return toCompiledExpression(root.accept(new CompilingVisitor(functions)));
+    }
+
+    /**
+     * Compile an expression with constant folding. Expressions supported by the {@link BytecodeCompiler} are compiled
+     * into a class of their own, others into {@link MethodHandle}s.
+     *
+     * @param root      the expression
+     * @param functions the functions of the expression
+     * @param slots     the slots of the expression, variables assigned by the expression may be added
+     * @return the compiled expression
+     */
+    public OptimizedExpression compileOptimizedExpression(
+            ExpressionParser.AllStatementsContext root,
+            Functions functions,
+            SlotTable slots
+    ) {
+        ConstantFolder folder = new ConstantFolder(functions, slots);
+        BytecodeCompiler.CompiledClass compiledClass = BytecodeCompiler.compile(root, functions, slots, folder);
+        if (compiledClass != null) {
+            return new OptimizedExpression(compiledClass.newInstance(functions, slots), compiledClass);
+        }
+        return new OptimizedExpression(toCompiledExpression(root.accept(new CompilingVisitor(functions, folder))), null);
+    }
+
+    /**
+     * Compile a copy of an optimized expression, reusing the class compiled for it if there is one.
+     *
+     * @param original  the optimized expression the copy was made of
+     * @param root      the expression of the copy
+     * @param functions the functions of the copy
+     * @param slots     the slots of the copy, variables assigned by the expression may be added
+     * @return the compiled copy
+     */
+    public OptimizedExpression compileOptimizedCopy(
+            OptimizedExpression original,
+            ExpressionParser.AllStatementsContext root,
+            Functions functions,
+            SlotTable slots
+    ) {
+        if (original.compiledClass == null) {
+            return compileOptimizedExpression(root, functions, slots);
+        }
+        return new OptimizedExpression(original.compiledClass.newInstance(functions, slots), original.compiledClass);
+    }
+
+    /**
+     * An expression compiled with constant folding, and the class it was compiled into if any.
+     */
+    public static final class OptimizedExpression {
+
+        private final CompiledExpression compiledExpression;
+        @Nullable
+        private final BytecodeCompiler.CompiledClass compiledClass;
+
+        private OptimizedExpression(
+                CompiledExpression compiledExpression,
+                @Nullable BytecodeCompiler.CompiledClass compiledClass
+        ) {
+            this.compiledExpression = compiledExpression;
+            this.compiledClass = compiledClass;
+        }
+
+        public CompiledExpression getCompiledExpression() {
+            return compiledExpression;
+        }
+
+        /**
+         * Get if the expression was compiled into a class of its own, instead of {@link MethodHandle}s.
+         *
+         * @return if the expression was compiled into a class
+         */
+        public boolean isCompiledClass() {
+            return compiledClass != null;
+        }
+
+    }
+
+    private CompiledExpression toCompiledExpression(MethodHandle invokable) {
+        //FAWE end
         // catch ReturnExpression and substitute its result
         invokable = MethodHandles.catchException(
                 invokable,
@@ -53,6 +53,8 @@ public final class Request {
     private Actor actor;
     @Nullable
     private Extent extent;
+    @Nullable
+    private volatile Runnable cancelTask;
     //FAWE end
 
     private Request() {
@@ -113,6 +115,26 @@ public Actor getActor() {
     public void setActor(@Nullable Actor actor) {
         this.actor = actor;
     }
+
+    /**
+     * Get the task cancelling the action of this request that does not run in an {@link EditSession}.
+     *
+     * @return the task, which may be null
+     */
+    @Nullable
+    public Runnable getCancelTask() {
+        return cancelTask;
+    }
+
+    /**
+     * Set the task cancelling the action of this request that does not run in an {@link EditSession}, e.g. loading a
+     * schematic. It is run from the thread cancelling the request.
+     *
+     * @param cancelTask the task, which may be null
+     */
+    public void setCancelTask(@Nullable Runnable cancelTask) {
+        this.cancelTask = cancelTask;
+    }
     //FAWE end
 
     /**
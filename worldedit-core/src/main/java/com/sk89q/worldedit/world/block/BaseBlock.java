@@ -261,6 +261,12 @@ public boolean apply(Extent extent, BlockVector3 get, BlockVector3 set) throws W
         return true;
     }
 
+    @Override
+    public boolean applySection(long[] bits, char[] set) {
+        // Blocks with NBT also set a tile entity per block
+        return nbtData == null && blockState.applySection(bits, set);
+    }
+
     @Override
     public void applyTileEntity(OutputExtent output, int x, int y, int z) {
         CompoundTag nbt = getNbtData();
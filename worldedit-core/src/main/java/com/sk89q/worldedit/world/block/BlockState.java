@@ -48,6 +48,7 @@
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -260,6 +261,23 @@ public BaseBlock applyBlock(BlockVector3 position) {
         return this.toBaseBlock();
     }
 
+    @Override
+    public boolean applySection(long[] bits, char[] set) {
+        char ordinal = getOrdinalChar();
+        for (int word = 0; word < bits.length; word++) {
+            long value = bits[word];
+            if (value == -1L) {
+                Arrays.fill(set, word << 6, (word + 1) << 6, ordinal);
+                continue;
+            }
+            while (value != 0) {
+                set[(word << 6) | Long.numberOfTrailingZeros(value)] = ordinal;
+                value &= value - 1;
+            }
+        }
+        return true;
+    }
+
     public Mask toMask() {
         return new SingleBlockStateMask(new NullExtent(), this);
     }
@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.world.chunk;
 
 import com.fastasyncworldedit.core.util.NbtUtils;
+import com.fastasyncworldedit.core.world.storage.SectionedChunk;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.entity.BaseEntity;
 import com.sk89q.worldedit.math.BlockVector3;
@@ -35,12 +36,14 @@
 import com.sk89q.worldedit.world.block.BlockState;
 import com.sk89q.worldedit.world.block.BlockType;
 import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
 import com.sk89q.worldedit.world.entity.EntityTypes;
 import com.sk89q.worldedit.world.storage.InvalidFormatException;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -49,7 +52,9 @@
 /**
  * The chunk format for Minecraft 1.18 and newer
  */
-public class AnvilChunk18 implements Chunk {
+//FAWE start - section restore
+public class AnvilChunk18 implements SectionedChunk {
+//FAWE end
 
     //FAWE start - CBT
     private final CompoundBinaryTag rootTag;
@@ -254,6 +259,32 @@ public BaseBlock getBlock(BlockVector3 position) throws DataException {
         return state.toBaseBlock();
     }
 
+    //FAWE start - section restore
+    @Override
+    public char[] getSectionOrdinals(int layer) {
+        char[] ordinals = new char[4096];
+        BlockState[] sectionBlocks = blocks.get(layer);
+        if (sectionBlocks == null) {
+            Arrays.fill(ordinals, (char) BlockTypesCache.ReservedIDs.AIR);
+        } else if (sectionBlocks.length == 1) {
+            Arrays.fill(ordinals, sectionBlocks[0].getOrdinalChar());
+        } else {
+            for (int i = 0; i < ordinals.length; i++) {
+                ordinals[i] = sectionBlocks[i].getOrdinalChar();
+            }
+        }
+        return ordinals;
+    }
+
+    @Override
+    public Map<BlockVector3, CompoundBinaryTag> getTileEntities() throws DataException {
+        if (tileEntities == null) {
+            populateTileEntities();
+        }
+        return tileEntities;
+    }
+    //FAWE end
+
     @Override
     public BiomeType getBiome(final BlockVector3 position) throws DataException {
         if (biomes == null) {
@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.world.snapshot.experimental;
 
+import com.fastasyncworldedit.core.world.storage.ChunkSource;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.world.DataException;
@@ -54,6 +55,25 @@ default Chunk getChunk(BlockVector3 position) throws DataException, IOException
         return ChunkStoreHelper.getChunk(getChunkTag(position));
     }
 
+    //FAWE start - parallel restore
+    /**
+     * Get a source for the chunks of this snapshot that may be used from several threads at once. By default, reading
+     * chunk tags is serialized.
+     *
+     * @return a chunk source
+     * @throws IOException if the snapshot cannot be read
+     */
+    default ChunkSource getChunkSource() throws IOException {
+        return position -> {
+            CompoundTag tag;
+            synchronized (this) {
+                tag = getChunkTag(position.toBlockVector3());
+            }
+            return ChunkStoreHelper.getChunk(tag);
+        };
+    }
+    //FAWE end
+
     /**
      * Close this snapshot. This releases the IO handles used to load chunk information.
      */
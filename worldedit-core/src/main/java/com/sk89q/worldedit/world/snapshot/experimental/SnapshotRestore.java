@@ -19,6 +19,8 @@
 
 package com.sk89q.worldedit.world.snapshot.experimental;
 
+import com.fastasyncworldedit.core.extent.filter.SnapshotRestoreFilter;
+import com.fastasyncworldedit.core.world.storage.ChunkSource;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.entity.BaseEntity;
@@ -53,6 +55,11 @@ public class SnapshotRestore {
     private final boolean restoreBiomes;
     private final boolean restoreEntities;
     //FAWE end
+    //FAWE start - parallel restore
+    private final Region region;
+    private final boolean parallel;
+    private int chunkCount;
+    //FAWE end
     private ArrayList<BlockVector2> missingChunks;
     private ArrayList<BlockVector2> errorChunks;
     private String lastErrorMessage;
@@ -89,8 +96,13 @@ public SnapshotRestore(
         this.editSession = editSession;
         this.restoreBiomes = restoreBiomes;
         this.restoreEntities = restoreEntities;
+        this.region = region;
+        // Without a mask, whole chunks can be restored in parallel straight into the queue
+        this.parallel = editSession.getMask() == null && SnapshotRestoreFilter.getQueue(editSession) != null;
 
-        if (region instanceof CuboidRegion) {
+        if (parallel) {
+            chunkCount = region.getChunks().size();
+        } else if (region instanceof CuboidRegion) {
             findNeededCuboidChunks(region);
         } else {
             findNeededChunks(region);
@@ -153,6 +165,11 @@ private void checkAndAddBlock(BlockVector3 pos) {
      * @return a number of chunks
      */
     public int getChunksAffected() {
+        //FAWE start - parallel restore
+        if (parallel) {
+            return chunkCount;
+        }
+        //FAWE end
         return neededChunks.size();
     }
 
@@ -166,6 +183,13 @@ public void restore() throws MaxChangedBlocksException {
         missingChunks = new ArrayList<>();
         errorChunks = new ArrayList<>();
 
+        //FAWE start - parallel restore
+        if (parallel) {
+            restoreParallel();
+            return;
+        }
+        //FAWE end
+
         // Now let's start restoring!
         for (Map.Entry<BlockVector2, ArrayList<BlockVector3>> entry : neededChunks.entrySet()) {
             BlockVector2 chunkPos = entry.getKey();
@@ -193,16 +217,7 @@ public void restore() throws MaxChangedBlocksException {
                 if (restoreEntities) {
                     try {
                         for (BaseEntity entity : chunk.getEntities()) {
-                            CompoundBinaryTag tag = entity.getNbtReference().getValue();
-                            ListBinaryTag pos = tag.getList("Pos", BinaryTagTypes.LIST);
-                            ListBinaryTag rotation = tag.getList("Rotation", BinaryTagTypes.LIST);
-                            double x = pos.getDouble(0);
-                            double y = pos.getDouble(1);
-                            double z = pos.getDouble(2);
-                            float yRot = rotation.getFloat(0);
-                            float xRot = rotation.getFloat(1);
-                            Location location = new Location(editSession.getWorld(), x, y, z, yRot, xRot);
-                            editSession.createEntity(location, entity);
+                            createEntity(entity);
                         }
                     } catch (DataException e) {
                         // this is a workaround: just ignore for now
@@ -218,6 +233,47 @@ public void restore() throws MaxChangedBlocksException {
         }
     }
 
+    //FAWE start - biome and entity restore
+    private void createEntity(BaseEntity entity) {
+        CompoundBinaryTag tag = entity.getNbtReference().getValue();
+        ListBinaryTag pos = tag.getList("Pos", BinaryTagTypes.LIST);
+        ListBinaryTag rotation = tag.getList("Rotation", BinaryTagTypes.LIST);
+        double x = pos.getDouble(0);
+        double y = pos.getDouble(1);
+        double z = pos.getDouble(2);
+        float yRot = rotation.getFloat(0);
+        float xRot = rotation.getFloat(1);
+        Location location = new Location(editSession.getWorld(), x, y, z, yRot, xRot);
+        editSession.createEntity(location, entity);
+    }
+    //FAWE end
+
+    //FAWE start - parallel restore
+    /**
+     * Restore all chunks of the region in parallel, reading each region file of the snapshot only once and setting
+     * whole sections where possible.
+     */
+    private void restoreParallel() {
+        ChunkSource source;
+        try {
+            source = snapshot.getChunkSource();
+        } catch (IOException e) {
+            errorChunks.addAll(region.getChunks());
+            lastErrorMessage = e.getMessage();
+            return;
+        }
+        SnapshotRestoreFilter filter = new SnapshotRestoreFilter(source, region, restoreBiomes, restoreEntities);
+        SnapshotRestoreFilter.getQueue(editSession).apply(region, filter, true);
+        filter.join();
+        missingChunks.addAll(filter.getMissingChunks());
+        errorChunks.addAll(filter.getErrorChunks());
+        lastErrorMessage = filter.getLastErrorMessage();
+        for (BaseEntity entity : filter.getEntities()) {
+            createEntity(entity);
+        }
+    }
+    //FAWE end
+
     /**
      * Get a list of the missing chunks. restore() must have been called
      * already.
@@ -19,6 +19,8 @@
 
 package com.sk89q.worldedit.world.snapshot.experimental.fs;
 
+import com.fastasyncworldedit.core.world.storage.ChunkSource;
+import com.fastasyncworldedit.core.world.storage.MappedRegionChunkSource;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
@@ -158,6 +160,18 @@ public CompoundTag getChunkTag(BlockVector3 position) throws DataException, IOEx
         }
     }
 
+    //FAWE start - parallel restore
+    @Override
+    public ChunkSource getChunkSource() throws IOException {
+        Optional<Path> regFolder = getRegionFolder();
+        if (regFolder.isPresent()) {
+            return new MappedRegionChunkSource(regFolder.get(), null);
+        }
+        // Chunk tags are read with a new stream each time, so this is safe to use from several threads
+        return position -> getChunk(position.toBlockVector3());
+    }
+    //FAWE end
+
     @Override
     public void close() throws IOException {
         if (closeCallback != null) {
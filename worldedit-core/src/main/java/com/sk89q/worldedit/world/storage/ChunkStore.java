@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.world.storage;
 
+import com.fastasyncworldedit.core.world.storage.ChunkSource;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.internal.Constants;
 import com.sk89q.worldedit.math.BlockVector2;
@@ -125,6 +126,29 @@ public Chunk getChunk(BlockVector2 position, World world) throws DataException,
         //FAWE end
     }
 
+    //FAWE start - parallel restore
+    /**
+     * Get a source for the chunks of this store that may be used from several threads at once. By default, reading
+     * chunk tags is serialized.
+     *
+     * @param world the world the chunks belong to
+     * @return a chunk source
+     */
+    public ChunkSource getChunkSource(World world) {
+        return position -> {
+            CompoundTag rootTag;
+            synchronized (this) {
+                rootTag = getChunkTag(position, world);
+            }
+            return ChunkStoreHelper.getChunk(rootTag, () -> {
+                synchronized (this) {
+                    return getEntitiesTag(position, world);
+                }
+            });
+        };
+    }
+    //FAWE end
+
     @Override
     public void close() throws IOException {
     }
@@ -19,7 +19,10 @@
 
 package com.sk89q.worldedit.world.storage;
 
+import com.fastasyncworldedit.core.world.storage.ChunkSource;
+import com.fastasyncworldedit.core.world.storage.MappedRegionChunkSource;
 import com.sk89q.worldedit.world.DataException;
+import com.sk89q.worldedit.world.World;
 
 import javax.annotation.Nullable;
 import java.io.File;
@@ -78,6 +81,13 @@ protected InputStream getInputStream(String name, String world, @Nullable String
         }
     }
 
+    //FAWE start - parallel restore
+    @Override
+    public ChunkSource getChunkSource(World world) {
+        return new MappedRegionChunkSource(new File(path, "region").toPath(), new File(path, "entities").toPath());
+    }
+    //FAWE end
+
     @Override
     public boolean isValid() {
         return new File(path, "region").isDirectory()
@@ -0,0 +1,97 @@
+package com.fastasyncworldedit.core.extent;
+
+import com.fastasyncworldedit.core.internal.exception.FaweException;
+import com.fastasyncworldedit.core.limit.FaweLimit;
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.fastasyncworldedit.core.queue.IChunkGet;
+import com.fastasyncworldedit.core.queue.IChunkSet;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.math.BlockVector3;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DisplayName("A limit extent counting changes per chunk")
+class LimitExtentTest {
+
+    private FaweLimit limit;
+    private LimitExtent extent;
+
+    @BeforeEach
+    void setUp() {
+        limit = new FaweLimit();
+        limit.MAX_CHANGES = 100;
+        limit.MAX_BLOCKSTATES = 10;
+        extent = new LimitExtent(mock(Extent.class), limit, true);
+    }
+
+    // A chunk set with the given number of blocks in its lowest section, and tiles at the first of them
+    private static IChunkSet chunkSet(int blocks, int tiles) {
+        char[] section = new char[4096];
+        for (int i = 0; i < blocks; i++) {
+            section[i] = 1;
+        }
+        Map<BlockVector3, CompoundTag> tileMap = new HashMap<>();
+        for (int i = 0; i < tiles; i++) {
+            tileMap.put(BlockVector3.at(i, 0, 0), new CompoundTag(new HashMap<>()));
+        }
+        IChunkSet set = mock(IChunkSet.class);
+        when(set.getMinSectionPosition()).thenReturn(0);
+        when(set.getMaxSectionPosition()).thenReturn(1);
+        when(set.hasSection(0)).thenReturn(true);
+        when(set.loadIfPresent(0)).thenReturn(section);
+        when(set.getTiles()).thenReturn(tileMap);
+        return set;
+    }
+
+    private IChunkSet process(IChunkSet set) {
+        return extent.processSet(mock(IChunk.class), mock(IChunkGet.class), set);
+    }
+
+    @Test
+    @DisplayName("takes the blocks of a chunk from the changes and its tiles from the block states only")
+    void countsChunk() {
+        IChunkSet empty = chunkSet(0, 0);
+        assertSame(empty, process(empty));
+        IChunkSet set = chunkSet(40, 2);
+        assertSame(set, process(set));
+        assertEquals(60, limit.MAX_CHANGES);
+        assertEquals(8, limit.MAX_BLOCKSTATES);
+        assertDoesNotThrow(extent::commit);
+    }
+
+    @Test
+    @DisplayName("drops chunks that do not fit and throws once committed")
+    void dropsAndThrows() {
+        IChunkSet fits = chunkSet(90, 0);
+        assertSame(fits, process(fits));
+        assertNull(process(chunkSet(20, 0)));
+        // Nothing is taken for the dropped chunk, and later chunks are dropped as well
+        assertEquals(10, limit.MAX_CHANGES);
+        assertNull(process(chunkSet(5, 0)));
+        assertEquals(10, limit.MAX_CHANGES);
+        assertThrows(FaweException.class, extent::commit);
+    }
+
+    @Test
+    @DisplayName("drops chunks with more tiles than block states left")
+    void dropsTiles() {
+        assertNull(process(chunkSet(11, 11)));
+        assertEquals(100, limit.MAX_CHANGES);
+        assertEquals(10, limit.MAX_BLOCKSTATES);
+        assertThrows(FaweException.class, extent::commit);
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.fastasyncworldedit.core.extent.clipboard;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("A disk optimized clipboard")
+class DiskOptimizedClipboardTest {
+
+    // One page more than fits in the first segment, and one more page that stays unallocated
+    private static final int PAGES = DiskOptimizedClipboard.SEGMENT_PAGES + 2;
+    private static final BlockVector3 DIMENSIONS = BlockVector3.at(16, 16, PAGES << 4);
+
+    private Path directory;
+    private File file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("fawe-clipboard");
+        file = directory.resolve("clipboard.bd").toFile();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(directory);
+    }
+
+    // Differs from page to page, and from the pages of the other segment
+    private static char ordinal(int page) {
+        return (char) (page % 4000 + 2);
+    }
+
+    private static void write(DiskOptimizedClipboard clipboard) {
+        for (int page = 0; page < PAGES - 1; page++) {
+            int z = page << 4;
+            clipboard.setOrdinal(page & 15, 7, z + 3, ordinal(page));
+            clipboard.setOrdinal(15, 15, z + 15, (char) 1);
+        }
+    }
+
+    private static void assertContent(DiskOptimizedClipboard clipboard) {
+        for (int page = 0; page < PAGES - 1; page++) {
+            int z = page << 4;
+            assertEquals(ordinal(page), clipboard.getOrdinal(page & 15, 7, z + 3), "page " + page);
+            assertEquals(1, clipboard.getOrdinal(15, 15, z + 15), "page " + page);
+            assertEquals(0, clipboard.getOrdinal(0, 0, z), "page " + page);
+        }
+        int last = (PAGES - 1) << 4;
+        assertEquals(0, clipboard.getOrdinal(15, 15, last + 15));
+    }
+
+    @Test
+    @DisplayName("reads back blocks of pages on both sides of a segment boundary")
+    void roundTripAcrossSegments() {
+        DiskOptimizedClipboard clipboard = new DiskOptimizedClipboard(DIMENSIONS, file);
+        try {
+            write(clipboard);
+            assertContent(clipboard);
+        } finally {
+            clipboard.close();
+        }
+    }
+
+    @Test
+    @DisplayName("reads back blocks of pages on both sides of a segment boundary once reopened")
+    void roundTripAcrossSegmentsReopened() {
+        DiskOptimizedClipboard clipboard = new DiskOptimizedClipboard(DIMENSIONS, file);
+        try {
+            write(clipboard);
+        } finally {
+            clipboard.close();
+        }
+        DiskOptimizedClipboard reopened = new DiskOptimizedClipboard(file);
+        try {
+            assertEquals(DIMENSIONS, reopened.getDimensions());
+            assertContent(reopened);
+        } finally {
+            reopened.close();
+        }
+    }
+
+}
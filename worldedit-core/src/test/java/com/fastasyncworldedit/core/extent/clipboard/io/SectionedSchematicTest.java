@@ -0,0 +1,216 @@
+package com.fastasyncworldedit.core.extent.clipboard.io;
+
+import com.fastasyncworldedit.core.extent.clipboard.CPUOptimizedClipboard;
+import com.fastasyncworldedit.util.MockedPlatform;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.entity.BaseEntity;
+import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.math.Vector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.Location;
+import com.sk89q.worldedit.util.test.ResourceLockKeys;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.entity.EntityType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@ResourceLock(ResourceLockKeys.WORLDEDIT_PLATFORM)
+@DisplayName("A sectioned schematic")
+class SectionedSchematicTest {
+
+    // Not aligned to sections on any axis, and spanning two sections on each
+    private static final CuboidRegion REGION = new CuboidRegion(BlockVector3.at(10, 60, -5), BlockVector3.at(29, 77, 11));
+    private static final BlockVector3 ORIGIN = BlockVector3.at(15, 60, 0);
+    // Starts on a biome cell of the schematic so that both clipboards store biomes the same way
+    private static final CuboidRegion PART = new CuboidRegion(BlockVector3.at(22, 63, 2), BlockVector3.at(29, 77, 11));
+    private static final BlockVector3 INNER_CHEST = BlockVector3.at(27, 75, 10);
+    private static final BlockVector3 OUTER_CHEST = BlockVector3.at(11, 61, -4);
+    private static final Vector3 INNER_PIG = Vector3.at(28.25, 76.5, 10.75);
+    private static final Vector3 OUTER_PIG = Vector3.at(12.5, 61, -3.5);
+
+    private static Platform platform;
+    private static BlockState stone;
+    private static BlockState dirt;
+    private static BlockState chest;
+    private static BiomeType[] biomes;
+    private static EntityType pig;
+
+    private ExecutorService executor;
+
+    @BeforeAll
+    static void setupFakePlatform() {
+        platform = MockedPlatform.register();
+        stone = BlockState.get("minecraft:stone");
+        dirt = BlockState.get("minecraft:dirt");
+        chest = BlockState.get("minecraft:chest");
+        biomes = new BiomeType[]{
+                MockedPlatform.biome("minecraft:plains"),
+                MockedPlatform.biome("minecraft:desert"),
+                MockedPlatform.biome("minecraft:forest")
+        };
+        pig = MockedPlatform.entityType("minecraft:pig");
+    }
+
+    @AfterAll
+    static void tearDownFakePlatform() {
+        MockedPlatform.unregister(platform);
+    }
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static BlockState block(BlockVector3 position) {
+        return switch (Math.floorMod(position.getX() + position.getY() * 3 + position.getZ() * 7, 5)) {
+            case 0, 1 -> stone;
+            case 2 -> dirt;
+            default -> BlockTypes.AIR.getDefaultState();
+        };
+    }
+
+    // Changes along x only, as clipboards keep a single biome per 4x4x4 cell
+    private static BiomeType biome(BlockVector3 position) {
+        return biomes[((position.getX() - REGION.getMinimumX()) >> 2) % biomes.length];
+    }
+
+    private static BaseBlock chest(String name) {
+        return chest.toBaseBlock(new CompoundTag(Map.<String, Tag>of(
+                "id", new StringTag("minecraft:chest"),
+                "CustomName", new StringTag(name)
+        )));
+    }
+
+    private static BaseEntity pig(String name) {
+        return new BaseEntity(pig, new CompoundTag(Map.<String, Tag>of(
+                "id", new StringTag("minecraft:pig"),
+                "CustomName", new StringTag(name)
+        )));
+    }
+
+    private static Clipboard createClipboard() {
+        Clipboard clipboard = new BlockArrayClipboard(REGION, new CPUOptimizedClipboard(REGION));
+        clipboard.setOrigin(ORIGIN);
+        for (BlockVector3 position : REGION) {
+            clipboard.setBlock(position, block(position));
+            clipboard.setBiome(position, biome(position));
+        }
+        clipboard.setBlock(INNER_CHEST, chest("inner"));
+        clipboard.setBlock(OUTER_CHEST, chest("outer"));
+        clipboard.createEntity(new Location(clipboard, INNER_PIG), pig("inner"));
+        clipboard.createEntity(new Location(clipboard, OUTER_PIG), pig("outer"));
+        return clipboard;
+    }
+
+    private static byte[] write(Clipboard clipboard) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (SectionedSchematicWriter writer = new SectionedSchematicWriter(bytes)) {
+            writer.write(clipboard);
+        }
+        return bytes.toByteArray();
+    }
+
+    private SectionedSchematicReader reader(byte[] bytes) {
+        return new SectionedSchematicReader(new ByteArrayInputStream(bytes), executor);
+    }
+
+    private static Clipboard createOutput(BlockVector3 dimensions) {
+        return new CPUOptimizedClipboard(new CuboidRegion(BlockVector3.ZERO, dimensions.subtract(BlockVector3.ONE)));
+    }
+
+    private static void assertContent(Clipboard expected, Clipboard actual, Region region) {
+        for (BlockVector3 position : region) {
+            assertEquals(expected.getBlock(position), actual.getBlock(position), () -> "block at " + position);
+            assertEquals(expected.getBiome(position), actual.getBiome(position), () -> "biome at " + position);
+        }
+    }
+
+    private static void assertChest(Clipboard clipboard, BlockVector3 position, String name) {
+        CompoundTag nbt = clipboard.getFullBlock(position).getNbtData();
+        assertNotNull(nbt, () -> "chest at " + position);
+        assertEquals(name, nbt.getString("CustomName"));
+    }
+
+    private static List<? extends Entity> sortedEntities(Clipboard clipboard) {
+        return clipboard.getEntities().stream()
+                .sorted(Comparator.comparingDouble(entity -> entity.getLocation().getX()))
+                .collect(Collectors.toList());
+    }
+
+    private static void assertPig(Entity entity, Vector3 position, String name) {
+        assertEquals(position, entity.getLocation().toVector());
+        assertEquals(pig, entity.getState().getType());
+        assertEquals(name, entity.getState().getNbtData().getString("CustomName"));
+    }
+
+    @Test
+    @DisplayName("reads back the whole clipboard")
+    void roundTrip() throws IOException {
+        Clipboard clipboard = createClipboard();
+        byte[] bytes = write(clipboard);
+        try (SectionedSchematicReader reader = reader(bytes)) {
+            assertEquals(REGION, reader.getRegion());
+            Clipboard read = reader.read(REGION, SectionedSchematicTest::createOutput);
+            assertEquals(REGION, read.getRegion());
+            assertEquals(ORIGIN, read.getOrigin());
+            assertContent(clipboard, read, REGION);
+            assertChest(read, INNER_CHEST, "inner");
+            assertChest(read, OUTER_CHEST, "outer");
+            List<? extends Entity> entities = sortedEntities(read);
+            assertEquals(2, entities.size());
+            assertPig(entities.get(0), OUTER_PIG, "outer");
+            assertPig(entities.get(1), INNER_PIG, "inner");
+        }
+    }
+
+    @Test
+    @DisplayName("reads back the part of the clipboard within a region")
+    void partialRoundTrip() throws IOException {
+        Clipboard clipboard = createClipboard();
+        byte[] bytes = write(clipboard);
+        try (SectionedSchematicReader reader = reader(bytes)) {
+            Clipboard read = reader.read(PART, SectionedSchematicTest::createOutput);
+            assertEquals(PART, read.getRegion());
+            assertEquals(ORIGIN, read.getOrigin());
+            assertContent(clipboard, read, PART);
+            assertChest(read, INNER_CHEST, "inner");
+            List<? extends Entity> entities = sortedEntities(read);
+            assertEquals(1, entities.size());
+            assertPig(entities.get(0), INNER_PIG, "inner");
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.fastasyncworldedit.core.extent.processor.heightmap;
+
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.fastasyncworldedit.core.queue.IChunkGet;
+import com.fastasyncworldedit.core.queue.IChunkSet;
+import com.fastasyncworldedit.core.queue.IQueueChunk;
+import com.fastasyncworldedit.core.queue.IQueueExtent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@DisplayName("A column height cache")
+class ColumnHeightCacheTest {
+
+    private static final char AIR = 1;
+    private static final char STONE = 2;
+    private static final byte[] FLAGS = {
+            0,
+            ColumnHeightCache.Flags.OPEN,
+            ColumnHeightCache.Flags.BLOCKER | ColumnHeightCache.Flags.TYPE_BLOCKER
+    };
+    private static final int MIN_Y = 0;
+    private static final int MAX_Y = 31;
+
+    // The blocks of chunk 0,0 as the world has them, stone up to y 7 and air above
+    private final char[][] world = new char[2][4096];
+    private IQueueExtent<IQueueChunk> queue;
+    private IQueueChunk worldChunk;
+    private ColumnHeightCache cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        for (int index = 0; index < 4096; index++) {
+            world[0][index] = (index >> 8) < 8 ? STONE : AIR;
+            world[1][index] = AIR;
+        }
+        queue = mock(IQueueExtent.class);
+        worldChunk = mock(IQueueChunk.class);
+        when(queue.getOrCreateChunk(0, 0)).thenReturn(worldChunk);
+        when(worldChunk.load(anyInt())).thenAnswer(invocation -> world[invocation.<Integer>getArgument(0)].clone());
+        cache = new ColumnHeightCache(MIN_Y, MAX_Y, FLAGS);
+    }
+
+    private int surface(int x, int z, int y) {
+        return cache.getNearestSurfaceTerrainBlock(queue, x, z, y, MIN_Y, MAX_Y, MIN_Y, MAX_Y, true);
+    }
+
+    private IChunkSet stoneColumn(int x, int z, int fromY, int toY) {
+        char[] blocks = new char[4096];
+        for (int y = fromY; y <= toY; y++) {
+            blocks[y << 8 | z << 4 | x] = STONE;
+        }
+        IChunkSet set = mock(IChunkSet.class);
+        when(set.loadIfPresent(0)).thenReturn(blocks);
+        return set;
+    }
+
+    private IChunkGet worldGet() {
+        IChunkGet get = mock(IChunkGet.class);
+        when(get.hasSection(anyInt())).thenReturn(true);
+        when(get.load(anyInt())).thenAnswer(invocation -> world[invocation.<Integer>getArgument(0)].clone());
+        return get;
+    }
+
+    private static IChunk chunk() {
+        IChunk chunk = mock(IChunk.class);
+        when(chunk.getX()).thenReturn(0);
+        when(chunk.getZ()).thenReturn(0);
+        return chunk;
+    }
+
+    private void flush(int x, int z, int fromY, int toY) {
+        for (int y = fromY; y <= toY; y++) {
+            world[0][y << 8 | z << 4 | x] = STONE;
+        }
+    }
+
+    @Test
+    @DisplayName("finds the surface from above and below")
+    void findsSurface() {
+        assertEquals(7, surface(0, 0, 20));
+        assertEquals(7, surface(0, 0, 3));
+        assertEquals(7, surface(5, 9, 31));
+    }
+
+    @Test
+    @DisplayName("applies a processed set to the sections it has cached before the chunk is flushed")
+    void appliesSetToCachedSections() {
+        assertEquals(7, surface(0, 0, 20));
+        IChunkSet set = stoneColumn(0, 0, 8, 11);
+        assertSame(set, cache.processSet(chunk(), worldGet(), set));
+        assertEquals(11, surface(0, 0, 20));
+        assertEquals(7, surface(1, 0, 20));
+        // The section is not read again
+        verify(worldChunk, times(1)).load(0);
+    }
+
+    @Test
+    @DisplayName("reads chunks it has not cached from the world once they are flushed")
+    void readsUncachedChunksAfterFlush() {
+        IChunkGet get = worldGet();
+        IChunkSet set = stoneColumn(0, 0, 8, 11);
+        assertSame(set, cache.processSet(chunk(), get, set));
+        verifyNoInteractions(get);
+        flush(0, 0, 8, 11);
+        assertEquals(11, surface(0, 0, 20));
+        assertEquals(7, surface(1, 0, 20));
+    }
+
+    @Test
+    @DisplayName("reads the world again once cleared")
+    void clearInvalidates() {
+        assertEquals(7, surface(0, 0, 20));
+        // Changed without passing through the cache
+        flush(0, 0, 8, 11);
+        assertEquals(7, surface(0, 0, 20));
+        cache.clear();
+        assertEquals(11, surface(0, 0, 20));
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.fastasyncworldedit.core.history;
+
+import com.fastasyncworldedit.core.extent.clipboard.CPUOptimizedClipboard;
+import com.fastasyncworldedit.util.MockedPlatform;
+import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.util.test.ResourceLockKeys;
+import com.sk89q.worldedit.world.World;
+import com.sk89q.worldedit.world.block.BlockState;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ResourceLock(ResourceLockKeys.WORLDEDIT_PLATFORM)
+@DisplayName("A disk storage history")
+class DiskStorageHistoryTest {
+
+    // Two chunks next to each other
+    private static final CuboidRegion REGION = new CuboidRegion(BlockVector3.at(0, 60, 0), BlockVector3.at(31, 63, 15));
+    private static final BlockVector3 TWICE = BlockVector3.at(3, 62, 5);
+    private static final BlockVector3 ONCE = BlockVector3.at(20, 61, 9);
+
+    private static Platform platform;
+    private static BlockState stone;
+    private static BlockState dirt;
+    private static BlockState sand;
+    private static BlockState gravel;
+    private static BlockState glass;
+
+    private Path directory;
+    private DiskStorageHistory history;
+
+    @BeforeAll
+    static void setupFakePlatform() {
+        platform = MockedPlatform.register();
+        stone = BlockState.get("minecraft:stone");
+        dirt = BlockState.get("minecraft:dirt");
+        sand = BlockState.get("minecraft:sand");
+        gravel = BlockState.get("minecraft:gravel");
+        glass = BlockState.get("minecraft:glass");
+    }
+
+    @AfterAll
+    static void tearDownFakePlatform() {
+        MockedPlatform.unregister(platform);
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("fawe-history");
+        World world = mock(World.class);
+        when(world.getName()).thenReturn("world");
+        when(world.getMinY()).thenReturn(-64);
+        when(world.getMaxY()).thenReturn(319);
+        history = new DiskStorageHistory(directory.toFile(), world, UUID.randomUUID(), 0);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        history.deleteFiles();
+        Files.deleteIfExists(directory);
+    }
+
+    private void add(BlockVector3 position, BlockState from, BlockState to) {
+        history.add(position.getX(), position.getY(), position.getZ(), from.getOrdinalChar(), to.getOrdinalChar());
+    }
+
+    // Changes one block twice within its first frame, and once more in a later frame of the same chunk
+    private void writeChanges() {
+        add(TWICE, stone, dirt);
+        add(TWICE, dirt, sand);
+        add(ONCE, stone, glass);
+        add(TWICE, sand, gravel);
+    }
+
+    private static Clipboard createExtent() {
+        return new BlockArrayClipboard(REGION, new CPUOptimizedClipboard(REGION));
+    }
+
+    @Test
+    @DisplayName("restores the original state of blocks changed several times in one edit on undo")
+    void undoRestoresOriginal() throws IOException {
+        writeChanges();
+        assertTrue(history.isChunked());
+        Clipboard extent = createExtent();
+        history.replayBlocks(extent, false);
+        assertEquals(stone, extent.getBlock(TWICE));
+        assertEquals(stone, extent.getBlock(ONCE));
+    }
+
+    @Test
+    @DisplayName("sets the last state of blocks changed several times in one edit on redo")
+    void redoSetsLast() throws IOException {
+        writeChanges();
+        assertTrue(history.isChunked());
+        Clipboard extent = createExtent();
+        history.replayBlocks(extent, true);
+        assertEquals(gravel, extent.getBlock(TWICE));
+        assertEquals(glass, extent.getBlock(ONCE));
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.fastasyncworldedit.core.limit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("A FAWE limit")
+class FaweLimitTest {
+
+    private static final int THREADS = 8;
+
+    private static FaweLimit limit(long changes, int blockStates) {
+        FaweLimit limit = new FaweLimit();
+        limit.MAX_CHANGES = changes;
+        limit.MAX_BLOCKSTATES = blockStates;
+        return limit;
+    }
+
+    @Test
+    @DisplayName("reserves changes and block states only if there are enough of both")
+    void reservesAllOrNothing() {
+        FaweLimit limit = limit(10, 1);
+        assertFalse(limit.reserve(5, 2));
+        assertFalse(limit.reserve(11, 0));
+        assertEquals(10, limit.MAX_CHANGES);
+        assertEquals(1, limit.MAX_BLOCKSTATES);
+
+        assertTrue(limit.reserve(4, 0));
+        assertTrue(limit.reserve(6, 1));
+        assertEquals(0, limit.MAX_CHANGES);
+        assertEquals(0, limit.MAX_BLOCKSTATES);
+        assertFalse(limit.reserve(1, 0));
+        assertTrue(limit.reserve(0, 0));
+    }
+
+    @Test
+    @DisplayName("never hands out more than it has to concurrent callers")
+    void reservesConcurrently() throws InterruptedException, ExecutionException {
+        FaweLimit limit = limit(1000, 500);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    int reserved = 0;
+                    for (int j = 0; j < 100; j++) {
+                        if (limit.reserve(3, 1)) {
+                            reserved++;
+                        }
+                    }
+                    return reserved;
+                }));
+            }
+            start.countDown();
+            int reserved = 0;
+            for (Future<Integer> result : results) {
+                reserved += result.get();
+            }
+            // 333 reservations fit in the changes, the block states would have room for more
+            assertEquals(333, reserved);
+            assertEquals(1, limit.MAX_CHANGES);
+            assertEquals(500 - 333, limit.MAX_BLOCKSTATES);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
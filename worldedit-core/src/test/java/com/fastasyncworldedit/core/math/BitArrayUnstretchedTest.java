@@ -0,0 +1,41 @@
+package com.fastasyncworldedit.core.math;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("An unstretched bit array")
+public class BitArrayUnstretchedTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4, 5, 7, 9, 12, 16})
+    @DisplayName("reads single entries the same as the raw conversion")
+    void getMatchesRaw(int bitsPerEntry) {
+        int[] raw = new int[4096];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = (i * 31) & ((1 << bitsPerEntry) - 1);
+        }
+        BitArrayUnstretched array = new BitArrayUnstretched(bitsPerEntry, 4096);
+        array.fromRaw(raw);
+        for (int i = 0; i < raw.length; i++) {
+            assertEquals(raw[i], array.get(i));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4, 5, 7, 9, 12, 16})
+    @DisplayName("writes single entries the same as the raw conversion")
+    void setMatchesRaw(int bitsPerEntry) {
+        int[] raw = new int[4096];
+        BitArrayUnstretched array = new BitArrayUnstretched(bitsPerEntry, 4096);
+        for (int i = raw.length - 1; i >= 0; i--) {
+            raw[i] = (i * 17) & ((1 << bitsPerEntry) - 1);
+            array.set(i, raw[i]);
+        }
+        assertArrayEquals(raw, array.toRaw());
+    }
+
+}
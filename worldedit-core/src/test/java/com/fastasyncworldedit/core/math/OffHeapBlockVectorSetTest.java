@@ -0,0 +1,145 @@
+package com.fastasyncworldedit.core.math;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.util.test.VariedVectorGenerator;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("An off-heap block vector set")
+class OffHeapBlockVectorSetTest {
+
+    // More sections than fit in the first slab of bitmaps
+    private static final int SECTIONS = 600;
+
+    private final VariedVectorGenerator generator = new VariedVectorGenerator(true);
+
+    private static Set<BlockVector3> contents(OffHeapBlockVectorSet set) {
+        Set<BlockVector3> contents = new HashSet<>();
+        for (BlockVector3 vector : set) {
+            assertTrue(contents.add(vector.toImmutable()), () -> "iterated twice over " + vector);
+        }
+        return contents;
+    }
+
+    // Positions around the origin, in as many sections as requested and on both sides of each axis
+    private static Set<BlockVector3> randomPositions(Random random, int sections) {
+        Set<BlockVector3> positions = new HashSet<>();
+        int side = (int) Math.ceil(Math.cbrt(sections)) * 16;
+        while (positions.size() < sections * 4) {
+            positions.add(BlockVector3.at(
+                    random.nextInt(side) - side / 2,
+                    random.nextInt(side) - side / 2,
+                    random.nextInt(side) - side / 2
+            ));
+        }
+        return positions;
+    }
+
+    @Test
+    @DisplayName("contains the positions added to it, including the outermost ones of the world")
+    void containsAdded() {
+        generator.makeVectorsStream().sequential().forEach(vec -> {
+            OffHeapBlockVectorSet set = new OffHeapBlockVectorSet();
+            assertFalse(set.contains(vec));
+            assertTrue(set.add(vec));
+            assertFalse(set.add(vec));
+            assertEquals(1, set.size());
+            assertTrue(set.contains(vec));
+            assertFalse(set.contains(vec.add(1, 0, 0)));
+            assertFalse(set.contains(vec.add(0, 0, -16)));
+            assertEquals(vec, set.iterator().next().toImmutable());
+        });
+    }
+
+    @Test
+    @DisplayName("does not contain the positions removed from it")
+    void doesNotContainRemoved() {
+        generator.makeVectorsStream().sequential().forEach(vec -> {
+            OffHeapBlockVectorSet set = new OffHeapBlockVectorSet();
+            set.add(vec);
+            set.add(vec.add(1, 1, 1));
+            assertTrue(set.remove(vec));
+            assertFalse(set.remove(vec));
+            assertFalse(set.contains(vec));
+            assertTrue(set.contains(vec.add(1, 1, 1)));
+            assertEquals(1, set.size());
+        });
+    }
+
+    @Test
+    @DisplayName("iterates over the same positions as a hash set, past the sections of a single slab")
+    void matchesHashSet() {
+        Random random = new Random(SECTIONS);
+        Set<BlockVector3> expected = randomPositions(random, SECTIONS);
+        OffHeapBlockVectorSet set = new OffHeapBlockVectorSet(expected);
+        assertEquals(expected.size(), set.size());
+        assertEquals(expected, contents(set));
+        for (BlockVector3 position : expected) {
+            assertTrue(set.contains(position), () -> "contains " + position);
+        }
+        int[] sections = new int[1];
+        int[] bits = new int[1];
+        set.forEachSection((sectionX, sectionY, sectionZ, words) -> {
+            sections[0]++;
+            for (long word : words) {
+                bits[0] += Long.bitCount(word);
+            }
+        });
+        assertEquals(expected.stream().map(vec -> vec.shr(4)).distinct().count(), sections[0]);
+        assertEquals(expected.size(), bits[0]);
+    }
+
+    @Test
+    @DisplayName("reuses the sections of removed positions")
+    void reusesSections() {
+        Random random = new Random(SECTIONS + 1);
+        Set<BlockVector3> first = randomPositions(random, SECTIONS);
+        OffHeapBlockVectorSet set = new OffHeapBlockVectorSet(first);
+        for (BlockVector3 position : first) {
+            assertTrue(set.remove(position), () -> "removes " + position);
+        }
+        assertTrue(set.isEmpty());
+        assertFalse(set.iterator().hasNext());
+
+        // Bitmaps of emptied sections have to be clear when they are used for other sections
+        Set<BlockVector3> second = new HashSet<>();
+        for (BlockVector3 position : randomPositions(random, SECTIONS)) {
+            second.add(position.add(8, -8, 8));
+        }
+        set.addAll(second);
+        assertEquals(second, contents(set));
+
+        set.clear();
+        assertTrue(set.isEmpty());
+        set.addAll(first);
+        assertEquals(first, contents(set));
+    }
+
+    @Test
+    @DisplayName("removes positions through its iterator")
+    void iteratorRemoves() {
+        Random random = new Random(SECTIONS + 2);
+        Set<BlockVector3> expected = randomPositions(random, SECTIONS);
+        OffHeapBlockVectorSet set = new OffHeapBlockVectorSet(expected);
+        Iterator<BlockVector3> iterator = set.iterator();
+        while (iterator.hasNext()) {
+            BlockVector3 position = iterator.next().toImmutable();
+            if (random.nextBoolean()) {
+                iterator.remove();
+                expected.remove(position);
+            }
+        }
+        assertEquals(expected.size(), set.size());
+        assertEquals(expected, contents(set));
+    }
+
+}
@@ -0,0 +1,332 @@
+package com.fastasyncworldedit.core.queue.implementation;
+
+import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.extent.clipboard.CPUOptimizedClipboard;
+import com.fastasyncworldedit.core.function.mask.SingleBlockStateMask;
+import com.fastasyncworldedit.core.math.BlockVectorSet;
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.fastasyncworldedit.core.queue.IQueueExtent;
+import com.fastasyncworldedit.util.MockedPlatform;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.function.visitor.BreadthFirstSearch;
+import com.sk89q.worldedit.function.visitor.RecursiveVisitor;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.util.test.ResourceLockKeys;
+import com.sk89q.worldedit.world.block.BlockState;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.ResourceLock;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ResourceLock(ResourceLockKeys.WORLDEDIT_PLATFORM)
+@DisplayName("A section flood")
+class FloodTest {
+
+    // Spans chunks and sections on both sides of zero
+    private static final int MIN_XZ = -24;
+    private static final int MAX_XZ = 39;
+    private static final int MIN_Y = 52;
+    private static final int MAX_Y = 83;
+    private static final int SIZE_XZ = MAX_XZ - MIN_XZ + 1;
+    private static final int SIZE_Y = MAX_Y - MIN_Y + 1;
+    private static final CuboidRegion REGION = new CuboidRegion(
+            BlockVector3.at(MIN_XZ, MIN_Y, MIN_XZ),
+            BlockVector3.at(MAX_XZ, MAX_Y, MAX_XZ)
+    );
+    private static final BlockVector3 START = BlockVector3.at(8, 68, 8);
+
+    private static Platform platform;
+    private static BlockState stone;
+    private static BlockState dirt;
+    private static boolean[] caves;
+
+    private int parallelThreads;
+
+    @BeforeAll
+    static void setupFakePlatform() {
+        platform = MockedPlatform.register();
+        stone = BlockState.get("minecraft:stone");
+        dirt = BlockState.get("minecraft:dirt");
+        // Enough stone for the flood to reach most of the region through many paths
+        Random random = new Random(SIZE_XZ);
+        caves = new boolean[SIZE_XZ * SIZE_XZ * SIZE_Y];
+        for (int i = 0; i < caves.length; i++) {
+            caves[i] = random.nextInt(100) < 65;
+        }
+    }
+
+    @AfterAll
+    static void tearDownFakePlatform() {
+        MockedPlatform.unregister(platform);
+    }
+
+    @BeforeEach
+    void setUp() {
+        parallelThreads = Settings.settings().QUEUE.PARALLEL_THREADS;
+        Settings.settings().QUEUE.PARALLEL_THREADS = 4;
+    }
+
+    @AfterEach
+    void tearDown() {
+        Settings.settings().QUEUE.PARALLEL_THREADS = parallelThreads;
+    }
+
+    private static boolean isCave(int x, int y, int z) {
+        if (x < MIN_XZ || x > MAX_XZ || y < MIN_Y || y > MAX_Y || z < MIN_XZ || z > MAX_XZ) {
+            return false;
+        }
+        return caves[((y - MIN_Y) * SIZE_XZ + (z - MIN_XZ)) * SIZE_XZ + x - MIN_XZ];
+    }
+
+    // A spine along x with ribs along z from every other block, and posts rising from every fourth rib
+    private static boolean isTree(int x, int y, int z) {
+        if (x < -20 || x > 35 || z < -20 || z > 35) {
+            return false;
+        }
+        if (y == 64) {
+            return z == 8 || (x & 1) == 0;
+        }
+        return y > 64 && y <= 80 && z == 20 && (x & 3) == 0;
+    }
+
+    private interface World {
+
+        boolean isStone(int x, int y, int z);
+
+    }
+
+    private static Clipboard clipboard(World world) {
+        Clipboard clipboard = new BlockArrayClipboard(REGION, new CPUOptimizedClipboard(REGION));
+        for (BlockVector3 position : REGION) {
+            int x = position.getX();
+            int y = position.getY();
+            int z = position.getZ();
+            clipboard.setBlock(x, y, z, world.isStone(x, y, z) ? stone : dirt);
+        }
+        return clipboard;
+    }
+
+    private record Search(Set<BlockVector3> applied, Set<BlockVector3> visited, int affected) {
+
+    }
+
+    /**
+     * Run a recursive visitor, either on the flood engine or on the set based search it replaces.
+     */
+    private static Search search(
+            Clipboard clipboard,
+            boolean flood,
+            int depth,
+            int maxBranch,
+            int minY,
+            int maxY,
+            BlockVector3[] directions,
+            BlockVector3... starts
+    ) throws WorldEditException {
+        Mask mask = new SingleBlockStateMask(clipboard, stone);
+        Set<BlockVector3> applied = new HashSet<>();
+        RecursiveVisitor visitor = new RecursiveVisitor(mask, position -> {
+            assertTrue(applied.add(position.toImmutable()), () -> "applied twice to " + position);
+            return (position.getX() + position.getY() + position.getZ() & 1) == 0;
+        }, depth, minY, maxY);
+        if (!flood) {
+            // A visited set of its own keeps the visitor on the set based search
+            visitor.setVisited(new BlockVectorSet());
+        }
+        visitor.setMaxBranch(maxBranch);
+        visitor.setDirections(directions);
+        for (BlockVector3 start : starts) {
+            visitor.visit(start);
+        }
+        Operations.complete(visitor);
+        Set<BlockVector3> visited = new HashSet<>();
+        for (BlockVector3 position : visitor.getVisited()) {
+            visited.add(position.toImmutable());
+        }
+        return new Search(applied, visited, visitor.getAffected());
+    }
+
+    private static void assertSameSearch(
+            Clipboard clipboard,
+            int depth,
+            int maxBranch,
+            int minY,
+            int maxY,
+            BlockVector3[] directions,
+            BlockVector3... starts
+    ) throws WorldEditException {
+        Search expected = search(clipboard, false, depth, maxBranch, minY, maxY, directions, starts);
+        Search actual = search(clipboard, true, depth, maxBranch, minY, maxY, directions, starts);
+        assertEquals(expected.applied(), actual.applied());
+        assertEquals(expected.visited(), actual.visited());
+        assertEquals(expected.affected(), actual.affected());
+    }
+
+    @Test
+    @DisplayName("visits the same blocks as the set based search")
+    void matchesSearch() throws WorldEditException {
+        Clipboard clipboard = clipboard(FloodTest::isCave);
+        assertSameSearch(clipboard, Integer.MAX_VALUE, Integer.MAX_VALUE, MIN_Y, MAX_Y,
+                BreadthFirstSearch.DEFAULT_DIRECTIONS, START
+        );
+        assertSameSearch(clipboard, Integer.MAX_VALUE, Integer.MAX_VALUE, MIN_Y, MAX_Y,
+                BreadthFirstSearch.DIAGONAL_DIRECTIONS, START
+        );
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 2, 7, 30})
+    @DisplayName("stops at the same depth as the set based search")
+    void matchesMaxDepth(int depth) throws WorldEditException {
+        assertSameSearch(clipboard(FloodTest::isCave), depth, Integer.MAX_VALUE, MIN_Y, MAX_Y,
+                BreadthFirstSearch.DEFAULT_DIRECTIONS, START
+        );
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3})
+    @DisplayName("branches as often as the set based search")
+    void matchesMaxBranch(int maxBranch) throws WorldEditException {
+        // Every block of a tree is reached from a single block, so the order blocks are visited in does not matter
+        assertSameSearch(clipboard(FloodTest::isTree), Integer.MAX_VALUE, maxBranch, MIN_Y, MAX_Y,
+                BreadthFirstSearch.DEFAULT_DIRECTIONS, BlockVector3.at(0, 64, 8)
+        );
+    }
+
+    @Test
+    @DisplayName("follows custom directions like the set based search, including ones past the adjacent sections")
+    void matchesCustomDirections() throws WorldEditException {
+        assertSameSearch(clipboard(FloodTest::isCave), Integer.MAX_VALUE, Integer.MAX_VALUE, MIN_Y, MAX_Y,
+                new BlockVector3[]{
+                        BlockVector3.at(2, 0, 0),
+                        BlockVector3.at(0, -1, 1),
+                        BlockVector3.at(1, 1, 1),
+                        BlockVector3.at(-1, 0, -1),
+                        BlockVector3.at(0, 17, 0),
+                        BlockVector3.at(0, -3, 0)
+                }, START
+        );
+    }
+
+    @Test
+    @DisplayName("stays within the same y limits as the set based search")
+    void matchesYLimits() throws WorldEditException {
+        assertSameSearch(clipboard(FloodTest::isCave), Integer.MAX_VALUE, Integer.MAX_VALUE, 60, 70,
+                BreadthFirstSearch.DEFAULT_DIRECTIONS, START
+        );
+    }
+
+    @Test
+    @DisplayName("crosses section boundaries like the set based search")
+    void matchesSectionBoundaries() throws WorldEditException {
+        assertSameSearch(clipboard(FloodTest::isCave), 4, Integer.MAX_VALUE, MIN_Y, MAX_Y,
+                BreadthFirstSearch.DIAGONAL_DIRECTIONS,
+                BlockVector3.at(-1, 63, -1),
+                BlockVector3.at(0, 64, 0),
+                BlockVector3.at(15, 79, 16),
+                BlockVector3.at(-17, 80, 31)
+        );
+    }
+
+    private static IChunk chunk(int chunkX, int chunkZ, boolean pending) {
+        IChunk chunk = mock(IChunk.class);
+        when(chunk.isEmpty()).thenReturn(!pending);
+        when(chunk.load(anyInt())).thenAnswer(invocation -> {
+            int sectionY = invocation.getArgument(0);
+            char[] blocks = new char[4096];
+            for (int index = 0; index < blocks.length; index++) {
+                int x = (chunkX << 4) + (index & 15);
+                int y = (sectionY << 4) + (index >> 8);
+                int z = (chunkZ << 4) + ((index >> 4) & 15);
+                blocks[index] = (isCave(x, y, z) ? stone : dirt).getOrdinalChar();
+            }
+            return blocks;
+        });
+        return chunk;
+    }
+
+    private static boolean isPending(int chunkX, int chunkZ) {
+        return (chunkX == 0 && chunkZ == 0) || (chunkX == -1 && chunkZ == 1);
+    }
+
+    /**
+     * Flood a whole layer of the region, collecting the blocks of each level.
+     */
+    private static List<Set<BlockVector3>> levels(Flood flood, Flood.VisitTest test) throws WorldEditException {
+        for (int x = MIN_XZ; x <= MAX_XZ; x++) {
+            for (int z = MIN_XZ; z <= MAX_XZ; z++) {
+                flood.start(x, 68, z);
+            }
+        }
+        List<Set<BlockVector3>> levels = new ArrayList<>();
+        while (flood.hasNext()) {
+            Set<BlockVector3> level = new HashSet<>();
+            flood.next(position -> level.add(position.toImmutable()), test);
+            levels.add(level);
+        }
+        return levels;
+    }
+
+    @Test
+    @DisplayName("finds the same levels testing raw block data on several threads, leaving pending blocks to the visit test")
+    void matchesRawLevels() throws WorldEditException {
+        // Blocks pending to be set in some chunks turn their stone into dirt and the other way around
+        Flood.VisitTest test = (from, to) -> {
+            boolean cave = isCave(to.getX(), to.getY(), to.getZ());
+            return isPending(to.getX() >> 4, to.getZ() >> 4) != cave;
+        };
+        List<Set<BlockVector3>> expected = levels(
+                new Flood(BreadthFirstSearch.DIAGONAL_DIRECTIONS, Integer.MAX_VALUE, 56, 79),
+                test
+        );
+
+        @SuppressWarnings("unchecked")
+        IQueueExtent<IChunk> queue = mock(IQueueExtent.class);
+        when(queue.getOrCreateChunk(anyInt(), anyInt())).thenAnswer(invocation -> {
+            int chunkX = invocation.getArgument(0);
+            int chunkZ = invocation.getArgument(1);
+            return chunk(chunkX, chunkZ, isPending(chunkX, chunkZ));
+        });
+        AtomicInteger tasks = new AtomicInteger();
+        Flood flood = new Flood(BreadthFirstSearch.DIAGONAL_DIRECTIONS, Integer.MAX_VALUE, 56, 79) {
+            @Override
+            ForkJoinTask<?> submit(Runnable task) {
+                tasks.incrementAndGet();
+                return ForkJoinPool.commonPool().submit(task);
+            }
+        };
+        flood.setBlockMask(new SingleBlockStateMask(mock(Extent.class), stone), queue);
+        List<Set<BlockVector3>> actual = levels(flood, test);
+
+        assertTrue(tasks.get() > 0, "levels were tested on several threads");
+        assertEquals(expected, actual);
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.fastasyncworldedit.core.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("A color index")
+class ColorIndexTest {
+
+    private static final int[] ALPHAS = {0x00, 0x80, 0xFF};
+
+    // The linear search the index replaces, ties go to the first color
+    private static int linearNearest(int[] colors, int color, boolean exclude) {
+        int red = (color >> 16) & 0xFF;
+        int green = (color >> 8) & 0xFF;
+        int blue = color & 0xFF;
+        int alpha = color >>> 24;
+        long min = Long.MAX_VALUE;
+        int closest = -1;
+        for (int i = 0; i < colors.length; i++) {
+            int other = colors[i];
+            if ((exclude && other == color) || other >>> 24 != alpha) {
+                continue;
+            }
+            long distance = TextureUtil.colorDistance(red, green, blue, other);
+            if (distance < min) {
+                min = distance;
+                closest = i;
+            }
+        }
+        return closest;
+    }
+
+    // Components from a coarse grid, so that colors repeat and distances tie often
+    private static int randomColor(Random random, int step) {
+        int alpha = ALPHAS[random.nextInt(ALPHAS.length)];
+        int red = random.nextInt(256 / step) * step;
+        int green = random.nextInt(256 / step) * step;
+        int blue = random.nextInt(256 / step) * step;
+        return alpha << 24 | red << 16 | green << 8 | blue;
+    }
+
+    private static void assertSameAsLinear(int[] colors, int color) {
+        ColorIndex index = new ColorIndex(colors);
+        assertEquals(linearNearest(colors, color, false), index.nearest(color, false),
+                () -> "nearest to " + Integer.toHexString(color)
+        );
+        assertEquals(linearNearest(colors, color, true), index.nearest(color, true),
+                () -> "nearest to " + Integer.toHexString(color) + " excluding itself"
+        );
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 16, 64})
+    @DisplayName("finds the same colors as the linear search")
+    void matchesLinearSearch(int step) {
+        Random random = new Random(step);
+        for (int set = 0; set < 50; set++) {
+            int[] colors = new int[1 + random.nextInt(300)];
+            for (int i = 0; i < colors.length; i++) {
+                colors[i] = randomColor(random, step);
+            }
+            ColorIndex index = new ColorIndex(colors);
+            for (int query = 0; query < 200; query++) {
+                // Half of the lookups are colors of the set, to be excluded
+                int color = random.nextBoolean() ? colors[random.nextInt(colors.length)] : randomColor(random, step);
+                assertEquals(linearNearest(colors, color, false), index.nearest(color, false),
+                        "nearest to " + Integer.toHexString(color)
+                );
+                assertEquals(linearNearest(colors, color, true), index.nearest(color, true),
+                        "nearest to " + Integer.toHexString(color) + " excluding itself"
+                );
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("resolves ties towards the first color")
+    void tiesGoToFirst() {
+        int color = 0xFF406080;
+        int[] colors = {0xFF000000, 0xFF406081, 0xFF406081, 0xFF40607F, color, color};
+        assertSameAsLinear(colors, color);
+        assertEquals(4, new ColorIndex(colors).nearest(color, false));
+    }
+
+    @Test
+    @DisplayName("skips every copy of the color when excluding it")
+    void excludeSkipsCopies() {
+        int color = 0xFF102030;
+        int[] colors = {color, 0xFFFFFFFF, color, 0xFF000000};
+        assertSameAsLinear(colors, color);
+        assertEquals(3, new ColorIndex(colors).nearest(color, true));
+        assertEquals(-1, new ColorIndex(new int[]{color, color}).nearest(color, true));
+    }
+
+    @Test
+    @DisplayName("only matches colors with the same alpha")
+    void matchesAlpha() {
+        int[] colors = {0x80102030, 0xFFFFFFFF};
+        assertEquals(1, new ColorIndex(colors).nearest(0xFF102030, false));
+        assertEquals(-1, new ColorIndex(colors).nearest(0x40102030, false));
+        assertEquals(-1, new ColorIndex(new int[0]).nearest(0xFF102030, false));
+    }
+
+}
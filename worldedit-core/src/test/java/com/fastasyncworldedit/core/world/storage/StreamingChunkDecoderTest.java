@@ -0,0 +1,269 @@
+package com.fastasyncworldedit.core.world.storage;
+
+import com.fastasyncworldedit.util.MockedPlatform;
+import com.sk89q.jnbt.ByteTag;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.IntTag;
+import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.LongArrayTag;
+import com.sk89q.jnbt.NBTOutputStream;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.internal.Constants;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.util.test.ResourceLockKeys;
+import com.sk89q.worldedit.world.DataException;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.chunk.AnvilChunk18;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@ResourceLock(ResourceLockKeys.WORLDEDIT_PLATFORM)
+@DisplayName("A streaming chunk decoder")
+class StreamingChunkDecoderTest {
+
+    private static final String[] BIOMES = {
+            "minecraft:plains",
+            "minecraft:desert",
+            "minecraft:forest",
+            "minecraft:taiga",
+            "minecraft:swamp",
+            "minecraft:river",
+            "minecraft:beach",
+            "minecraft:jungle",
+            "minecraft:savanna"
+    };
+    private static final int MIN_SECTION = -4;
+    // Block palette size and biome palette size of each section, from the lowest up
+    private static final int[][] PALETTES = {
+            {1, 1},
+            // 4 bits per block, 1 bit per biome
+            {2, 2},
+            // 4 bits per block, 2 bits per biome
+            {16, 3},
+            // 5 bits per block, 3 bits per biome, that take as many longs as 4 bits
+            {17, 5},
+            // 6 bits per block, 4 bits per biome
+            {33, 9},
+            {41, 4}
+    };
+    private static final BlockVector3 CHEST = BlockVector3.at(3, -27, 7);
+
+    private static Platform platform;
+
+    @BeforeAll
+    static void setupFakePlatform() {
+        platform = MockedPlatform.register();
+        for (String biome : BIOMES) {
+            MockedPlatform.biome(biome);
+        }
+    }
+
+    @AfterAll
+    static void tearDownFakePlatform() {
+        MockedPlatform.unregister(platform);
+    }
+
+    // The number of bits palette indices are stored with
+    private static int bits(int paletteSize) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(paletteSize - 1);
+    }
+
+    private static long[] pack(int[] indices, int bits) {
+        int perLong = 64 / bits;
+        long[] data = new long[(indices.length + perLong - 1) / perLong];
+        for (int i = 0; i < indices.length; i++) {
+            data[i / perLong] |= (long) indices[i] << (i % perLong * bits);
+        }
+        return data;
+    }
+
+    private static int[] randomIndices(Random random, int count, int paletteSize) {
+        int[] indices = new int[count];
+        for (int i = 0; i < count; i++) {
+            // The first cells use every entry of the palette
+            indices[i] = i < paletteSize ? i : random.nextInt(paletteSize);
+        }
+        return indices;
+    }
+
+    private static CompoundTag compound(Map<String, Tag> values) {
+        return new CompoundTag(values);
+    }
+
+    private static final class Chunk {
+
+        private final Map<Integer, String[]> blocks = new HashMap<>();
+        private final Map<Integer, String[]> biomes = new HashMap<>();
+        private final CompoundTag tag;
+
+        private Chunk(int dataVersion) {
+            Random random = new Random(dataVersion);
+            List<Tag> sections = new ArrayList<>();
+            for (int i = 0; i < PALETTES.length; i++) {
+                int y = MIN_SECTION + i;
+                Map<String, Tag> section = new HashMap<>();
+                section.put("Y", new ByteTag((byte) y));
+                section.put("block_states", blockStates(y, PALETTES[i][0], random));
+                section.put("biomes", biomes(y, PALETTES[i][1], random));
+                sections.add(compound(section));
+            }
+            // Above the world limits
+            sections.add(compound(Map.of("Y", new ByteTag((byte) (MIN_SECTION + PALETTES.length)))));
+
+            Map<String, Tag> chest = new HashMap<>();
+            chest.put("id", new StringTag("minecraft:chest"));
+            chest.put("x", new IntTag(CHEST.getX()));
+            chest.put("y", new IntTag(CHEST.getY()));
+            chest.put("z", new IntTag(CHEST.getZ()));
+            chest.put("CustomName", new StringTag("chest"));
+
+            Map<String, Tag> chunk = new HashMap<>();
+            chunk.put("DataVersion", new IntTag(dataVersion));
+            chunk.put("Status", new StringTag("full"));
+            chunk.put("sections", new ListTag(CompoundTag.class, sections));
+            chunk.put("block_entities", new ListTag(CompoundTag.class, List.of(compound(chest))));
+            tag = compound(chunk);
+        }
+
+        private CompoundTag blockStates(int y, int paletteSize, Random random) {
+            List<String> ids = MockedPlatform.BLOCKS.subList(MockedPlatform.BLOCKS.size() - paletteSize, MockedPlatform.BLOCKS.size());
+            List<Tag> palette = new ArrayList<>();
+            for (String id : ids) {
+                palette.add(compound(Map.of("Name", new StringTag(id))));
+            }
+            Map<String, Tag> values = new HashMap<>();
+            values.put("palette", new ListTag(CompoundTag.class, palette));
+            String[] cells;
+            if (paletteSize == 1) {
+                cells = new String[]{ids.get(0)};
+            } else {
+                int[] indices = randomIndices(random, 4096, paletteSize);
+                cells = new String[indices.length];
+                for (int i = 0; i < cells.length; i++) {
+                    cells[i] = ids.get(indices[i]);
+                }
+                values.put("data", new LongArrayTag(pack(indices, Math.max(4, bits(paletteSize)))));
+            }
+            blocks.put(y, cells);
+            return compound(values);
+        }
+
+        private CompoundTag biomes(int y, int paletteSize, Random random) {
+            List<Tag> palette = new ArrayList<>();
+            for (int i = 0; i < paletteSize; i++) {
+                palette.add(new StringTag(BIOMES[i]));
+            }
+            Map<String, Tag> values = new HashMap<>();
+            values.put("palette", new ListTag(StringTag.class, palette));
+            String[] cells;
+            if (paletteSize == 1) {
+                cells = new String[]{BIOMES[0]};
+            } else {
+                int[] indices = randomIndices(random, 64, paletteSize);
+                cells = new String[indices.length];
+                for (int i = 0; i < cells.length; i++) {
+                    cells[i] = BIOMES[indices[i]];
+                }
+                values.put("data", new LongArrayTag(pack(indices, bits(paletteSize))));
+            }
+            biomes.put(y, cells);
+            return compound(values);
+        }
+
+        private byte[] toBytes() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (NBTOutputStream out = new NBTOutputStream(bytes)) {
+                out.writeNamedTag("", tag);
+            }
+            return bytes.toByteArray();
+        }
+
+    }
+
+    private static SectionedChunk decode(Chunk chunk) throws IOException, DataException {
+        return StreamingChunkDecoder.decode(new ByteArrayInputStream(chunk.toBytes()), () -> null);
+    }
+
+    private static BlockVector3 biomeCell(int sectionY, int index) {
+        return BlockVector3.at((index & 3) << 2, (sectionY << 4) + ((index >> 4) << 2), ((index >> 2) & 3) << 2);
+    }
+
+    @Test
+    @DisplayName("decodes the blocks of every palette size the same as the tag based chunk")
+    void decodesBlocks() throws IOException, DataException {
+        Chunk chunk = new Chunk(Constants.DATA_VERSION_MC_1_18);
+        SectionedChunk decoded = decode(chunk);
+        assertNotNull(decoded);
+        AnvilChunk18 expected = new AnvilChunk18(chunk.tag.asBinaryTag(), () -> null);
+        for (int y = MIN_SECTION; y <= MIN_SECTION + PALETTES.length; y++) {
+            assertArrayEquals(expected.getSectionOrdinals(y), decoded.getSectionOrdinals(y), "section " + y);
+        }
+        for (Map.Entry<Integer, String[]> section : chunk.blocks.entrySet()) {
+            String[] cells = section.getValue();
+            char[] ordinals = decoded.getSectionOrdinals(section.getKey());
+            for (int i = 0; i < ordinals.length; i++) {
+                String id = cells[cells.length == 1 ? 0 : i];
+                assertEquals(BlockState.get(id).getOrdinalChar(), ordinals[i], "section " + section.getKey());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("decodes the biomes of every palette size")
+    void decodesBiomes() throws IOException, DataException {
+        Chunk chunk = new Chunk(Constants.DATA_VERSION_MC_1_18);
+        SectionedChunk decoded = decode(chunk);
+        assertNotNull(decoded);
+        AnvilChunk18 expected = new AnvilChunk18(chunk.tag.asBinaryTag(), () -> null);
+        for (Map.Entry<Integer, String[]> section : chunk.biomes.entrySet()) {
+            int y = section.getKey();
+            String[] cells = section.getValue();
+            for (int i = 0; i < 64; i++) {
+                BlockVector3 position = biomeCell(y, i);
+                BiomeType biome = decoded.getBiome(position);
+                assertEquals(cells[cells.length == 1 ? 0 : i], biome.getId(), "biome at " + position);
+                // The tag based chunk reads 3 bit biomes as 4 bits, as they take as many longs
+                if (cells.length == 1 || bits(PALETTES[y - MIN_SECTION][1]) != 3) {
+                    assertEquals(expected.getBiome(position), biome, "biome at " + position);
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("decodes block entities the same as the tag based chunk")
+    void decodesTiles() throws IOException, DataException {
+        Chunk chunk = new Chunk(Constants.DATA_VERSION_MC_1_18);
+        SectionedChunk decoded = decode(chunk);
+        assertNotNull(decoded);
+        assertEquals(new AnvilChunk18(chunk.tag.asBinaryTag(), () -> null).getTileEntities(), decoded.getTileEntities());
+        assertEquals("chest", decoded.getTileEntities().get(CHEST).getString("CustomName"));
+    }
+
+    @Test
+    @DisplayName("leaves chunks of older versions to the data fixer")
+    void skipsOlderChunks() throws IOException, DataException {
+        assertNull(decode(new Chunk(Constants.DATA_VERSION_MC_1_17)));
+    }
+
+}
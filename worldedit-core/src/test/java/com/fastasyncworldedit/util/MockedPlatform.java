@@ -0,0 +1,136 @@
+package com.fastasyncworldedit.util;
+
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.event.platform.PlatformsRegisteredEvent;
+import com.sk89q.worldedit.extension.platform.Capability;
+import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.extension.platform.Preference;
+import com.sk89q.worldedit.internal.Constants;
+import com.sk89q.worldedit.util.io.WorldEditResourceLoader;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import com.sk89q.worldedit.world.entity.EntityType;
+import com.sk89q.worldedit.world.registry.BlockRegistry;
+import com.sk89q.worldedit.world.registry.BundledBlockRegistry;
+import com.sk89q.worldedit.world.registry.BundledRegistries;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A mocked platform providing every capability, with the bundled registries and {@link #BLOCKS} as its blocks.
+ * <p>
+ * Block types are only initialised once, from the first platform registered when they are needed, so tests using
+ * blocks all register this platform before touching them.
+ */
+public final class MockedPlatform {
+
+    /**
+     * The blocks of the platform, all without properties.
+     */
+    public static final List<String> BLOCKS = List.of(
+            "minecraft:air",
+            "minecraft:cave_air",
+            "minecraft:void_air",
+            "minecraft:stone",
+            "minecraft:granite",
+            "minecraft:polished_granite",
+            "minecraft:diorite",
+            "minecraft:polished_diorite",
+            "minecraft:andesite",
+            "minecraft:polished_andesite",
+            "minecraft:dirt",
+            "minecraft:coarse_dirt",
+            "minecraft:cobblestone",
+            "minecraft:oak_planks",
+            "minecraft:spruce_planks",
+            "minecraft:birch_planks",
+            "minecraft:jungle_planks",
+            "minecraft:acacia_planks",
+            "minecraft:dark_oak_planks",
+            "minecraft:bedrock",
+            "minecraft:sand",
+            "minecraft:red_sand",
+            "minecraft:gravel",
+            "minecraft:gold_ore",
+            "minecraft:iron_ore",
+            "minecraft:coal_ore",
+            "minecraft:glass",
+            "minecraft:lapis_ore",
+            "minecraft:lapis_block",
+            "minecraft:sandstone",
+            "minecraft:gold_block",
+            "minecraft:iron_block",
+            "minecraft:bricks",
+            "minecraft:bookshelf",
+            "minecraft:mossy_cobblestone",
+            "minecraft:obsidian",
+            "minecraft:diamond_ore",
+            "minecraft:diamond_block",
+            "minecraft:crafting_table",
+            "minecraft:ice",
+            "minecraft:snow_block",
+            "minecraft:clay",
+            "minecraft:netherrack",
+            "minecraft:chest"
+    );
+
+    private MockedPlatform() {
+    }
+
+    /**
+     * Register a new mocked platform.
+     *
+     * @return the platform, to unregister once done
+     */
+    public static Platform register() {
+        BlockRegistry blockRegistry = new BundledBlockRegistry() {
+            @Override
+            public Collection<String> values() {
+                return BLOCKS;
+            }
+        };
+        Platform platform = mock(Platform.class);
+        when(platform.getRegistries()).thenReturn(new BundledRegistries() {
+            @Override
+            public BlockRegistry getBlockRegistry() {
+                return blockRegistry;
+            }
+        });
+        when(platform.getCapabilities()).thenReturn(
+                Stream.of(Capability.values())
+                        .collect(Collectors.toMap(Function.identity(), __ -> Preference.NORMAL))
+        );
+        when(platform.getDataVersion()).thenReturn(Constants.DATA_VERSION_MC_1_18);
+        when(platform.getResourceLoader()).thenReturn(new WorldEditResourceLoader(WorldEdit.getInstance()));
+        WorldEdit.getInstance().getPlatformManager().register(platform);
+        WorldEdit.getInstance().getEventBus().post(new PlatformsRegisteredEvent());
+        return platform;
+    }
+
+    public static void unregister(Platform platform) {
+        WorldEdit.getInstance().getPlatformManager().unregister(platform);
+    }
+
+    /**
+     * Get a biome type, registering it if no platform did.
+     */
+    public static BiomeType biome(String id) {
+        BiomeType biome = BiomeType.REGISTRY.get(id);
+        return biome != null ? biome : BiomeType.REGISTRY.register(id, new BiomeType(id));
+    }
+
+    /**
+     * Get an entity type, registering it if no platform did.
+     */
+    public static EntityType entityType(String id) {
+        EntityType type = EntityType.REGISTRY.get(id);
+        return type != null ? type : EntityType.REGISTRY.register(id, new EntityType(id));
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests that optimized expressions are compiled into classes, and give the same results as unoptimized ones.
+ */
+class CompiledExpressionTest extends BaseExpressionTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            // loops
+            "y = 0; while (y < x) { y++; } y",
+            "y = 0; do { y += 2; } while (y < x); y",
+            "y = 0; for (i = 0; i < x; i++) { y += i; } y",
+            "y = 0; for (i = 1, x) { y += i; } y",
+            // break and continue
+            "y = 0; while (1) { if (++y >= x) break; } y",
+            "y = 0; for (i = 0; i < 10; i++) { if (i % 2 == 0) continue; y += i; } y",
+            "y = 0; for (i = 1, 10) { if (i > x) break; if (i == 2) continue; y += i; } y",
+            // ternary
+            "x > 2 ? x * 2 : -x",
+            "x > 2 ? (x > 4 ? 1 : 2) : 3",
+            // functions
+            "sin(x) + cos(x) * atan2(x, 2)",
+            "max(1, x, 3, 4, 5) + min(x, 2)",
+            "abs(-x) + sqrt(x) + floor(x / 2)",
+            // assignments
+            "y = x; y += 2; y *= 3; y -= 1; y /= 2; y %= 5; y",
+            "y = 2; y ^= x; y",
+            "y = x++; z = --x; y + z",
+            "return x * 3"
+    })
+    void compilesToClass(String source) {
+        Expression optimized = compile(source, "x");
+        assertNotNull(optimized.getCompiledClass(), source);
+        Expression unoptimized = Expression.compile(source, "x");
+        for (int x = 0; x < 6; x++) {
+            assertEquals(unoptimized.evaluate(x), optimized.evaluate(x), 0, source + " with x = " + x);
+        }
+    }
+
+    @Test
+    void leavesSwitchToMethodHandles() {
+        Expression expression = compile("switch (x) { case 1: y = 2; break; default: y = 3; } y", "x");
+        assertNull(expression.getCompiledClass());
+        assertEquals(2, expression.evaluate(1), 0);
+        assertEquals(3, expression.evaluate(5), 0);
+    }
+
+    @Test
+    void clonesShareClass() {
+        Expression original = compile("y = x * z; y + 1", "x", "z");
+        Expression clone = original.clone();
+        assertNotNull(original.getCompiledClass());
+        assertSame(original.getCompiledClass(), clone.getCompiledClass());
+        // each copy keeps its own variables, in the order they were given
+        assertEquals(7, original.evaluate(2, 3), 0);
+        assertEquals(21, clone.evaluate(4, 5), 0);
+        assertEquals(6, readSlot(original, "y"), 0);
+        assertEquals(20, readSlot(clone, "y"), 0);
+    }
+
+    @Test
+    void clonesHaveOwnFunctions() {
+        Expression original = compile("megabuf(0, megabuf(0) + 1)");
+        assertNotNull(original.getCompiledClass());
+        assertEquals(1, original.evaluate(), 0);
+        assertEquals(2, original.evaluate(), 0);
+        // the buffer of the original is not shared with the copy
+        Expression clone = original.clone();
+        assertEquals(1, clone.evaluate(), 0);
+        assertEquals(3, original.evaluate(), 0);
+    }
+
+}
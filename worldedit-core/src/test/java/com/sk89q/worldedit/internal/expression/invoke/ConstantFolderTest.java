@@ -0,0 +1,95 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression.invoke;
+
+import com.sk89q.worldedit.antlr.ExpressionLexer;
+import com.sk89q.worldedit.antlr.ExpressionParser;
+import com.sk89q.worldedit.internal.expression.LocalSlot;
+import com.sk89q.worldedit.internal.expression.SlotTable;
+import com.sk89q.worldedit.internal.expression.TestFunctions;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests that only expressions without side effects, environment or variables are folded.
+ */
+class ConstantFolderTest {
+
+    private static Double fold(String source) {
+        SlotTable slots = new SlotTable();
+        slots.putSlot("pi", new LocalSlot.Constant(Math.PI));
+        slots.initVariable("x");
+        ExpressionLexer lexer = new ExpressionLexer(CharStreams.fromString(source));
+        ExpressionParser parser = new ExpressionParser(new CommonTokenStream(lexer));
+        ExpressionParser.ExpressionContext expression = parser.expression();
+        return new ConstantFolder(TestFunctions.create(), slots).fold(expression);
+    }
+
+    @Test
+    void foldsPureExpressions() {
+        assertEquals(5, fold("sin(pi / 2) * 2 + max(1, 3)"), 0);
+        assertEquals(1, fold("(1 << 3) == 8"), 0);
+        assertEquals(-4, fold("2 > 1 ? -abs(4) : 4"), 0);
+        assertEquals(Math.PI * 2, fold("pi * 2"), 0);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "random()",
+            "random() * 0",
+            "randint(5)",
+            "floor(random() * 10)"
+    })
+    void doesNotFoldRandom(String source) {
+        assertNull(fold(source));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "query(1, 2, 3, 0, 0)",
+            "queryAbs(1, 2, 3, 0, 0)",
+            "queryRel(1, 2, 3, 0, 0)",
+            "max(queryRel(1, 2, 3, 0, 0), 1)",
+            "megabuf(0)"
+    })
+    void doesNotFoldEnvironmentOrState(String source) {
+        assertNull(fold(source));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "x",
+            "x + 1",
+            "sin(x)",
+            "x = 2",
+            "x++",
+            "1 ? x : 2"
+    })
+    void doesNotFoldVariables(String source) {
+        assertNull(fold(source));
+    }
+
+}